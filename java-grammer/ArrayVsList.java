@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.*;
 import java.util.*;
 
 /**
@@ -89,6 +91,14 @@ public class ArrayVsList {
     // ========== 比較表 ==========
     static void comparison() {
         System.out.println("【3. 比較表】");
+
+        // ArrayVsListBenchmark の実測値があれば、そちらから表を作る
+        List<Measured> results = loadResults();
+        if (!results.isEmpty()) {
+            measuredComparison(results);
+            return;
+        }
+
         System.out.println("┌────────────────┬──────────────────┬──────────────────┐");
         System.out.println("│     項目       │     配列 (Array)  │    リスト (List)  │");
         System.out.println("├────────────────┼──────────────────┼──────────────────┤");
@@ -101,9 +111,155 @@ public class ArrayVsList {
         System.out.println("│ メモリ効率     │ 良い              │ やや悪い          │");
         System.out.println("│ 使いやすさ     │ シンプル          │ 多機能            │");
         System.out.println("└────────────────┴──────────────────┴──────────────────┘");
+        System.out.println("※ ArrayVsListBenchmark を実行すると、パフォーマンスとメモリ効率が実測値になる");
         System.out.println();
     }
 
+    // ArrayVsListBenchmark の結果（java-grammer ディレクトリで実行したときの場所）
+    static final Path RESULTS = Path.of("bench-results", "array-vs-list.csv");
+
+    static final String[] OPERATIONS = {"get", "add", "insert", "remove", "contains", "sort", "iterate", "memory"};
+    static final String[] CONTAINERS = {"int[]", "ArrayList", "LinkedList"};
+
+    // 1件の計測結果。memory の value は 1要素あたりのバイト数、それ以外は 1操作あたりのナノ秒
+    record Measured(String operation, String container, int size, double value) {
+    }
+
+    // JMH の CSV から読み込む（ファイルがなければ空のリスト）
+    //   "grammer.ArrayVsListBenchmark.get",...,Score,...,"Param: container","Param: size" の行が時間、
+    //   "…build:gc.alloc.rate.norm" の行が size 個を詰めたときの確保バイト数
+    static List<Measured> loadResults() {
+        List<Measured> results = new ArrayList<>();
+        if (!Files.exists(RESULTS)) {
+            return results;
+        }
+        try {
+            List<String> lines = Files.readAllLines(RESULTS);
+            List<String> header = csvFields(lines.get(0));
+            int benchmark = header.indexOf("Benchmark");
+            int score = header.indexOf("Score");
+            int container = header.indexOf("Param: container");
+            int size = header.indexOf("Param: size");
+            for (String line : lines.subList(1, lines.size())) {
+                List<String> fields = csvFields(line);
+                String name = fields.get(benchmark);
+                int colon = name.indexOf(':');
+                String operation = name.substring(name.lastIndexOf('.', colon >= 0 ? colon : name.length()) + 1);
+                int n = Integer.parseInt(fields.get(size));
+                double value = Double.parseDouble(fields.get(score));
+                if (operation.equals("build:gc.alloc.rate.norm")) {
+                    results.add(new Measured("memory", fields.get(container), n, value / n));
+                } else if (colon < 0 && !operation.equals("build")) {
+                    results.add(new Measured(operation, fields.get(container), n, value));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("ベンチマーク結果を読めませんでした: " + e.getMessage());
+            return List.of();
+        }
+        return results;
+    }
+
+    // JMH の CSV の1行（値にカンマは入らない）
+    static List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>();
+        for (String field : line.split(",")) {
+            fields.add(field.startsWith("\"") && field.endsWith("\"") ? field.substring(1, field.length() - 1) : field);
+        }
+        return fields;
+    }
+
+    static Measured find(List<Measured> results, String operation, String container, int size) {
+        for (Measured result : results) {
+            if (result.operation().equals(operation) && result.container().equals(container) && result.size() == size) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    // 実測値による比較表（リスト列は ArrayList）
+    static void measuredComparison(List<Measured> results) {
+        int size = 0;
+        for (Measured result : results) {
+            size = Math.max(size, result.size());
+        }
+
+        // パフォーマンスは「配列に対して何倍の時間がかかるか」の幾何平均
+        String[] timedOperations = {"get", "contains", "sort", "iterate"};
+        double logRatio = 0;
+        int count = 0;
+        for (String operation : timedOperations) {
+            Measured array = find(results, operation, "int[]", size);
+            Measured list = find(results, operation, "ArrayList", size);
+            if (array != null && list != null) {
+                logRatio += Math.log(list.value() / array.value());
+                count++;
+            }
+        }
+        String listSpeed = count == 0 ? "-" : String.format("%.2f倍の時間", Math.exp(logRatio / count));
+
+        System.out.println("┌────────────────┬──────────────────┬──────────────────┐");
+        System.out.println("│     項目       │     配列 (Array)  │    リスト (List)  │");
+        System.out.println("├────────────────┼──────────────────┼──────────────────┤");
+        System.out.println("│ サイズ         │ 固定              │ 可変              │");
+        System.out.println("│ 型             │ プリミティブ型OK  │ オブジェクト型のみ│");
+        System.out.println("│ 要素追加       │ できない          │ add()で簡単       │");
+        System.out.println("│ 要素削除       │ できない          │ remove()で簡単    │");
+        System.out.println("│ メソッド       │ 少ない            │ 豊富              │");
+        System.out.println(row("パフォーマンス", "基準 (1.00倍)", listSpeed));
+        System.out.println(row("メモリ効率",
+                format(find(results, "memory", "int[]", size)),
+                format(find(results, "memory", "ArrayList", size))));
+        System.out.println("│ 使いやすさ     │ シンプル          │ 多機能            │");
+        System.out.println("└────────────────┴──────────────────┴──────────────────┘");
+        System.out.println();
+
+        System.out.printf("【サイズ %,d の実測値】%n", size);
+        System.out.printf("  %-10s %14s %14s %14s%n", "操作", CONTAINERS[0], CONTAINERS[1], CONTAINERS[2]);
+        for (String operation : OPERATIONS) {
+            System.out.printf("  %-10s", operation);
+            for (String container : CONTAINERS) {
+                System.out.printf(" %14s", format(find(results, operation, container, size)));
+            }
+            System.out.println();
+        }
+        System.out.println();
+    }
+
+    static String format(Measured result) {
+        if (result == null || Double.isNaN(result.value())) {
+            return "-";
+        }
+        double value = result.value();
+        if (result.operation().equals("memory")) {
+            return String.format("%.1f B/要素", value);
+        }
+        if (value >= 1e9) {
+            return String.format("%.2f s", value / 1e9);
+        }
+        if (value >= 1e6) {
+            return String.format("%.2f ms", value / 1e6);
+        }
+        if (value >= 1e3) {
+            return String.format("%.2f µs", value / 1e3);
+        }
+        return String.format("%.1f ns", value);
+    }
+
+    static String row(String label, String array, String list) {
+        return "│ " + pad(label, 15) + "│ " + pad(array, 18) + "│ " + pad(list, 18) + "│";
+    }
+
+    // 全角文字を幅2として右側を空白で埋める
+    static String pad(String text, int width) {
+        int used = 0;
+        for (int i = 0; i < text.length(); i = text.offsetByCodePoints(i, 1)) {
+            used += text.codePointAt(i) >= 0x2E80 ? 2 : 1;
+        }
+        return text + " ".repeat(Math.max(0, width - used));
+    }
+
     // ========== 使い分け ==========
     static void whenToUse() {
         System.out.println("【4. 使い分けのガイドライン】");
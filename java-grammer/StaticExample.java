@@ -1,3 +1,5 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * staticの動作を理解するサンプル
  */
@@ -21,7 +23,7 @@ public class StaticExample {
         Counter c2 = new Counter("C2");
         Counter c3 = new Counter("C3");
 
-        System.out.println("総カウント: " + Counter.totalCount);  // 3
+        System.out.println("総カウント: " + Counter.totalCount.get());  // 3
         c1.showInfo();
         c2.showInfo();
         c3.showInfo();
@@ -62,7 +64,9 @@ class Calculator {
 // ========== Counter クラス ==========
 class Counter {
     // staticフィールド - 全インスタンスで共有される
-    static int totalCount = 0;
+    // int の totalCount++ は複数スレッドから同時に呼ぶと数え漏れや番号の重複が起きるので、
+    // AtomicInteger で「増やして値を読む」を1つの操作にする（多くのスレッドから作るなら grammer.Counter）
+    static final AtomicInteger totalCount = new AtomicInteger();
 
     // インスタンスフィールド - 各インスタンスごとに別々
     String name;
@@ -70,13 +74,12 @@ class Counter {
 
     Counter(String name) {
         this.name = name;
-        totalCount++;  // 共有カウンタを増やす
-        this.myNumber = totalCount;  // 自分の番号を記録
+        this.myNumber = totalCount.incrementAndGet();  // 共有カウンタを増やし、自分の番号を記録
     }
 
     void showInfo() {
         System.out.println(name + ": 私の番号=" + myNumber +
-                         ", 総カウント=" + totalCount);
+                         ", 総カウント=" + totalCount.get());
     }
 }
 
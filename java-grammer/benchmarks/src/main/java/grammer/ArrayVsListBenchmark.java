@@ -0,0 +1,191 @@
+package grammer;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ArrayVsList の比較表を実測値で裏付けるベンチマーク
+ *
+ * arrayExample() / listExample() で扱う操作（取得・追加・挿入・削除・検索・ソート・反復）を
+ * int[] / ArrayList<Integer> / LinkedList<Integer> について、サイズ 10 ～ 10M で計測する。
+ * 1要素あたりのメモリは build（size 個を詰めた入れ物を作る）の gc.alloc.rate.norm（-prof gc）を size で割る。
+ * main から実行すると結果を bench-results/array-vs-list.csv に保存し、ArrayVsList.comparison() が読み込んで表を作る。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -cp benchmarks/target/benchmarks.jar grammer.ArrayVsListBenchmark                    // すべて、CSV に保存
+ *   java -cp benchmarks/target/benchmarks.jar grammer.ArrayVsListBenchmark -p size=10000 -f 1 -wi 1 -i 1   // 短時間で確認
+ *   java -jar benchmarks/target/benchmarks.jar ArrayVsList.get -p container=LinkedList       // 一部だけ（保存しない）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ArrayVsListBenchmark {
+
+    static final Path RESULTS = Path.of("bench-results", "array-vs-list.csv");
+
+    // 検索は「見つからない値」で計測する（全要素を走査する最悪ケース）
+    static final int ABSENT = -1;
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"int[]", "ArrayList", "LinkedList"})
+    String container;
+
+    int[] data;
+    int[] array;         // container が int[] のとき
+    List<Integer> list;  // container が ArrayList・LinkedList のとき
+    int[] indexes;       // get で順に使うランダムなインデックス（長さは2の累乗）
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(Integer.MAX_VALUE);  // ABSENT(-1) は含まれない
+        }
+        indexes = new int[1024];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = random.nextInt(size);
+        }
+        switch (container) {
+            case "int[]" -> array = data.clone();
+            case "ArrayList" -> list = new ArrayList<>(size);
+            case "LinkedList" -> list = new LinkedList<>();
+            default -> throw new IllegalArgumentException("container: " + container);
+        }
+        if (list != null) {
+            for (int value : data) {
+                list.add(value);
+            }
+        }
+    }
+
+    // ========== 計測 ==========
+
+    @Benchmark
+    public int get() {
+        int index = indexes[next++ & (indexes.length - 1)];
+        return array != null ? array[index] : list.get(index);
+    }
+
+    // 配列はサイズ固定なので、追加・挿入・削除は新しい配列へのコピーになる。
+    // リストはサイズを保つため、末尾に対する O(1) の操作と組み合わせる
+    @Benchmark
+    public int add() {
+        if (array != null) {
+            int[] grown = Arrays.copyOf(array, size + 1);
+            grown[size] = 50;
+            return grown.length;
+        }
+        list.add(50);
+        return list.remove(list.size() - 1);
+    }
+
+    // リストは末尾の要素をインデックス1へ移す（要素の集合は変わらないので、ソートや検索の結果に影響しない）
+    @Benchmark
+    public int insert() {
+        if (array != null) {
+            int[] grown = new int[size + 1];
+            grown[0] = array[0];
+            grown[1] = 25;
+            System.arraycopy(array, 1, grown, 2, size - 1);
+            return grown.length;
+        }
+        Integer last = list.remove(list.size() - 1);
+        list.add(1, last);
+        return last;
+    }
+
+    @Benchmark
+    public int remove() {
+        if (array != null) {
+            int[] shrunk = new int[size - 1];
+            shrunk[0] = array[0];
+            System.arraycopy(array, 2, shrunk, 1, size - 2);
+            return shrunk.length;
+        }
+        Integer removed = list.remove(1);
+        list.add(removed);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        if (array != null) {
+            for (int value : array) {
+                if (value == ABSENT) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return list.contains(ABSENT);
+    }
+
+    // ソート済みの入れ物を並べ替えないよう、毎回コピーしてからソートする
+    @Benchmark
+    public int sort() {
+        if (array != null) {
+            int[] copy = array.clone();
+            Arrays.sort(copy);
+            return copy[0];
+        }
+        List<Integer> copy = list instanceof ArrayList ? new ArrayList<>(list) : new LinkedList<>(list);
+        Collections.sort(copy);
+        return copy.get(0);
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        if (array != null) {
+            for (int value : array) {
+                sum += value;
+            }
+        } else {
+            for (int value : list) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+
+    // size 個を詰めた入れ物を作る。-prof gc の gc.alloc.rate.norm がそのままメモリの量になる
+    // （ArrayList は大きさを指定して作るので、配列を広げるときのゴミは入らない。Integer の分は入る）
+    @Benchmark
+    public Object build() {
+        if (array != null) {
+            return data.clone();
+        }
+        List<Integer> built = list instanceof ArrayList ? new ArrayList<>(size) : new LinkedList<>();
+        for (int value : data) {
+            built.add(value);
+        }
+        return built;
+    }
+
+    // すべて計測して bench-results/array-vs-list.csv に保存する。引数は JMH のコマンドラインと同じ
+    public static void main(String[] args) throws Exception {
+        Files.createDirectories(RESULTS.getParent());
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(ArrayVsListBenchmark.class.getName() + "\\.")
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.CSV)
+            .result(RESULTS.toString())
+            .build()).run();
+        System.out.println("結果を保存しました: " + RESULTS.toAbsolutePath());
+    }
+}
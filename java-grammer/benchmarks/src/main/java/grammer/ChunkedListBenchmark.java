@@ -0,0 +1,248 @@
+package grammer;
+
+import java.lang.ref.Reference;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ChunkedList と ArrayList・LinkedList の比較（途中への挿入・削除、位置での取得、先頭からの走査）
+ *
+ * container は chunked（ChunkedList<Integer>）・ints（ChunkedList.Ints。getInt・addInt などボクシングなし）・
+ * array（ArrayList）・linked（LinkedList）。
+ *
+ * insertRemove 1回 = ランダムな位置に1つ入れて、ランダムな位置から1つ消す（大きさは変わらない）。
+ *              ArrayList は後ろをずらす（平均 n/2 個）、LinkedList は近い方の端からたどる（平均 n/4 個）ので、
+ *              どちらも n に比例する
+ * get          1回 = ランダムな位置の取得
+ * scan         1回 = 先頭から全体を1周（iterator。ints は forEachInt）
+ * footprint    要素1個あたりの残るバイト数（補助カウンタ bytesPerElement）
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar ChunkedListBenchmark                   // 10 万と 100 万
+ *   java -jar benchmarks/target/benchmarks.jar ChunkedListBenchmark -p size=10000000 -p container=chunked,ints,array
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChunkedListBenchmark {
+
+    static final int POSITIONS = 1 << 16;
+
+    @Param({"chunked", "ints", "array", "linked"})
+    String container;
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    int[] data;
+    int[] positions;
+    List<Integer> list;
+    ChunkedList.Ints ints;  // container = ints のときだけ（list も同じもの）
+    final Sum sum = new Sum();
+    int next;
+
+    // forEachInt に渡す足し算（ラムダに配列を捕まえさせると scan ごとにオブジェクトができる）
+    static final class Sum implements IntConsumer {
+        long total;
+
+        @Override
+        public void accept(int value) {
+            total += value;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        Random random = new Random(42);
+        data = random.ints(size, 0, Integer.MAX_VALUE).toArray();
+        positions = random.ints(POSITIONS, 0, size).toArray();
+        list = build();
+        if (list instanceof ChunkedList.Ints built) {
+            ints = built;
+        }
+    }
+
+    List<Integer> build() {
+        if (container.equals("ints")) {
+            ChunkedList.Ints list = ChunkedList.ofInts();
+            for (int value : data) {
+                list.addInt(value);
+            }
+            return list;
+        }
+        List<Integer> list = switch (container) {
+            case "chunked" -> new ChunkedList<>();
+            case "array" -> new ArrayList<>();
+            case "linked" -> new LinkedList<>();
+            default -> throw new IllegalArgumentException("container: " + container);
+        };
+        for (int value : data) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    // ========== メモリ使用量 ==========
+
+    // System.gc() の前後の使用量の差で、1回だけ測る（補助カウンタは回ごとに足し合わされるので、-i を変えずに実行する）
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerElement;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void footprint(Footprint footprint) {
+        long before = usedHeap();
+        List<Integer> built = build();
+        footprint.bytesPerElement = (double) (usedHeap() - before) / built.size();
+        Reference.reachabilityFence(built);
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    // ========== 操作 ==========
+
+    @Benchmark
+    public int insertRemove() {
+        int i = next++ & (POSITIONS - 1);
+        int at = positions[i];
+        int from = positions[POSITIONS - 1 - i];
+        if (ints != null) {
+            ints.addInt(at, i);
+            return ints.removeInt(from);
+        }
+        list.add(at, i);
+        return list.remove(from);
+    }
+
+    @Benchmark
+    public int get() {
+        int at = positions[next++ & (POSITIONS - 1)];
+        return ints != null ? ints.getInt(at) : list.get(at);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long scan() {
+        if (ints != null) {
+            sum.total = 0;
+            ints.forEachInt(sum);
+            return sum.total;
+        }
+        long sum = 0;
+        for (int value : list) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    // ========== 動作確認 ==========
+
+    // ランダムな操作を ArrayList と同じように行い、中身が一致し続けることを確かめる。
+    // 葉・内側の節の分割、合併、分け合い、根の入れ替えが起きるよう、何段にもなる大きさまで増やしてから減らす
+    static void verify() {
+        Random random = new Random(3);
+        List<Integer> expected = new ArrayList<>();
+        ChunkedList<Integer> list = new ChunkedList<>();
+        ChunkedList.Ints ints = ChunkedList.ofInts();
+        int target = ChunkedList.LEAF_CAPACITY * ChunkedList.BRANCH_CAPACITY * 3;
+        for (int phase = 0; phase < 4; phase++) {
+            boolean grow = phase % 2 == 0;
+            while (grow ? expected.size() < target : !expected.isEmpty()) {
+                int op = random.nextInt(10);
+                if (op < (grow ? 7 : 3)) {
+                    int index = random.nextInt(expected.size() + 1);
+                    // 末尾への追加も混ぜる
+                    if (random.nextInt(4) == 0) {
+                        index = expected.size();
+                    }
+                    int value = random.nextInt();
+                    expected.add(index, value);
+                    list.add(index, value);
+                    ints.addInt(index, value);
+                } else if (!expected.isEmpty()) {
+                    int index = random.nextInt(expected.size());
+                    if (op == 9) {
+                        int value = random.nextInt();
+                        int old = expected.set(index, value);
+                        check("set", list.set(index, value) == old && ints.setInt(index, value) == old);
+                    } else {
+                        int removed = expected.remove(index);
+                        check("remove", list.remove(index) == removed && ints.removeInt(index) == removed);
+                    }
+                }
+                if (random.nextInt(1000) == 0) {
+                    int index = expected.isEmpty() ? 0 : random.nextInt(expected.size());
+                    check("get", expected.isEmpty() || list.get(index).equals(expected.get(index))
+                        && ints.getInt(index) == expected.get(index));
+                }
+            }
+            checkSame(expected, list, ints);
+        }
+
+        // iterator の remove（葉の合併をまたいで消していく）
+        for (int i = 0; i < target; i++) {
+            expected.add(i);
+            list.add(i);
+        }
+        Iterator<Integer> it = list.iterator();
+        expected.removeIf(value -> value % 3 != 0);
+        while (it.hasNext()) {
+            if (it.next() % 3 != 0) {
+                it.remove();
+            }
+        }
+        check("iterator の remove", list.equals(expected));
+        try {
+            for (Integer value : list) {
+                list.add(value);
+            }
+            throw new AssertionError("走査中の変更に気づかない");
+        } catch (ConcurrentModificationException e) {
+            // 期待どおり
+        }
+        check("コレクションから作る", new ChunkedList<>(expected).equals(expected));
+        ChunkedList.Ints boxed = ChunkedList.ofInts();
+        boxed.addAll(expected);
+        boxed.add(0, -1);
+        check("Ints の add", boxed.getInt(0) == -1 && boxed.subList(1, boxed.size()).equals(expected));
+        list.clear();
+        check("clear", list.isEmpty() && !list.iterator().hasNext());
+    }
+
+    static void checkSame(List<Integer> expected, ChunkedList<Integer> list, ChunkedList.Ints ints) {
+        check("大きさ", list.size() == expected.size() && ints.size() == expected.size());
+        check("iterator", list.equals(expected) && ints.equals(expected));
+        List<Integer> each = new ArrayList<>();
+        list.forEach(each::add);
+        check("forEach", each.equals(expected));
+        check("toIntArray", Arrays.equals(ints.toIntArray(), expected.stream().mapToInt(Integer::intValue).toArray()));
+        for (int i = 0; i < expected.size(); i += 97) {
+            check("get " + i, list.get(i).equals(expected.get(i)) && ints.getInt(i) == expected.get(i));
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
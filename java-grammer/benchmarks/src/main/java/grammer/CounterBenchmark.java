@@ -0,0 +1,128 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Counter の採番をマルチスレッドで確かめるストレステストと、カウンタ方式ごとのスループット比較
+ *
+ * 全スレッドで1つのカウンタを共有し、1回 = 1つ数える（または番号を1つ取る）。
+ * main から実行するとスレッド数を 1～64 と変えて測り、表にまとめる（ThreadMatrix）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -cp benchmarks/target/benchmarks.jar grammer.CounterBenchmark              // 1～64 スレッド
+ *   java -cp benchmarks/target/benchmarks.jar grammer.CounterBenchmark -t 16 -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CounterBenchmark {
+
+    final AtomicInteger atomic = new AtomicInteger();
+    final LongAdder adder = new LongAdder();
+    final IdAllocator single = new IdAllocator(1, 1);
+    final IdAllocator blocked = new IdAllocator(1, 64);
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        verify();
+    }
+
+    @Benchmark
+    public int atomicInteger() {
+        return atomic.incrementAndGet();
+    }
+
+    @Benchmark
+    public void longAdder() {
+        adder.increment();
+    }
+
+    @Benchmark
+    public long idAllocator1() {
+        return single.nextId();
+    }
+
+    @Benchmark
+    public long idAllocator64() {
+        return blocked.nextId();
+    }
+
+    // Counter を作る（LongAdder と IdAllocator(64) を1回ずつ）
+    @Benchmark
+    public Counter newCounter() {
+        return new Counter("C");
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadMatrix.run(CounterBenchmark.class, args);
+    }
+
+    // ========== ストレステスト ==========
+
+    // 16 スレッドが同時に Counter を作っても、数え漏れも番号の重複もない
+    static void verify() throws InterruptedException {
+        int threads = 16;
+        int perThread = 100_000;
+        int expected = threads * perThread;
+
+        long before = Counter.totalCount();
+        long[] numbers = new long[expected];
+        runAll(threads, (t) -> {
+            for (int i = 0; i < perThread; i++) {
+                numbers[t * perThread + i] = new Counter("T" + t).getNumber();
+            }
+        });
+        long counted = Counter.totalCount() - before;
+        check("総カウント " + counted + " / " + expected, counted == expected);
+        check("重複した番号", duplicates(numbers) == 0);
+    }
+
+    interface Task {
+        void run(int threadIndex);
+    }
+
+    static void runAll(int threads, Task task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run(index);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    static int duplicates(long[] numbers) {
+        long[] sorted = numbers.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package grammer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CsvReader と BufferedReader + split の読み込み速度（MB/s）の比較
+ *
+ * 一時ファイルに CSV（id, 名前, 年齢, スコア, タイムスタンプ）を書き出し、
+ * 数値列の合計を求めるまでを1回とする。読む速さは補助カウンタ megabytes（MB/s）に出る。
+ * 3方式の集計結果が一致することは、計測の前に確かめる。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar CsvBenchmark                     // 200万行（約 100MB）
+ *   java -jar benchmarks/target/benchmarks.jar CsvBenchmark -p rows=20000000    // 2000万行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CsvBenchmark {
+
+    static final String[] NAMES = {"太郎", "花子", "次郎", "\"山田 \"\"タロー\"\" 太郎\"", "Aki"};
+
+    // 数値列の集計結果
+    record Totals(long rows, long ids, long ages, double scores, long timestamps) {
+        Totals plus(Totals other) {
+            return new Totals(rows + other.rows, ids + other.ids, ages + other.ages,
+                scores + other.scores, timestamps + other.timestamps);
+        }
+
+        boolean matches(Totals other) {
+            return rows == other.rows && ids == other.ids && ages == other.ages && timestamps == other.timestamps
+                && Math.abs(scores - other.scores) <= 1e-6 * Math.abs(scores);  // 足す順番による誤差は許す
+        }
+    }
+
+    @Param({"2000000"})
+    int rows;
+
+    Path file;
+    double megabytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        verify();
+        file = Files.createTempFile("csv-benchmark", ".csv");
+        generate(file, rows);
+        megabytes = Files.size(file) / 1e6;
+        Totals expected = readWithSplit(file);
+        check("CsvReader の集計", expected.matches(readWithCursor(file)));
+        check("CsvReader 並列の集計", expected.matches(readInParallel(file)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // 読んだ量。Throughput モードなので、1秒あたり（MB/s）で出る
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Read {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Benchmark
+    public Totals split(Read read) throws IOException {
+        read.megabytes += megabytes;
+        return readWithSplit(file);
+    }
+
+    @Benchmark
+    public Totals cursor(Read read) throws IOException {
+        read.megabytes += megabytes;
+        return readWithCursor(file);
+    }
+
+    @Benchmark
+    public Totals parallel(Read read) throws IOException {
+        read.megabytes += megabytes;
+        return readInParallel(file);
+    }
+
+    // ========== 読み込み方式 ==========
+
+    static Totals readWithSplit(Path file) throws IOException {
+        long count = 0, ids = 0, ages = 0, timestamps = 0;
+        double scores = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                ids += Integer.parseInt(fields[0]);
+                ages += Integer.parseInt(fields[2]);
+                scores += Double.parseDouble(fields[3]);
+                timestamps += Long.parseLong(fields[4]);
+                count++;
+            }
+        }
+        return new Totals(count, ids, ages, scores, timestamps);
+    }
+
+    static Totals readWithCursor(Path file) throws IOException {
+        try (CsvReader reader = CsvReader.open(file)) {
+            return sum(reader.cursor());
+        }
+    }
+
+    static Totals readInParallel(Path file) throws IOException {
+        try (CsvReader reader = CsvReader.open(file)) {
+            return reader.parallel(CsvBenchmark::sum).stream()
+                .reduce(new Totals(0, 0, 0, 0, 0), Totals::plus);
+        }
+    }
+
+    static Totals sum(CsvReader.Cursor cursor) {
+        long count = 0, ids = 0, ages = 0, timestamps = 0;
+        double scores = 0;
+        while (cursor.nextRecord()) {
+            cursor.nextField();
+            ids += cursor.intValue();
+            cursor.nextField();  // 名前は読み飛ばす
+            cursor.nextField();
+            ages += cursor.intValue();
+            cursor.nextField();
+            scores += cursor.doubleValue();
+            cursor.nextField();
+            timestamps += cursor.longValue();
+            count++;
+        }
+        return new Totals(count, ids, ages, scores, timestamps);
+    }
+
+    // ========== データ ==========
+
+    static void generate(Path file, int rows) throws IOException {
+        Random random = new Random(42);
+        long timestamp = 1_700_000_000_000L;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int id = 1; id <= rows; id++) {
+                writer.write(Integer.toString(id));
+                writer.write(',');
+                writer.write(NAMES[random.nextInt(NAMES.length)]);
+                writer.write(',');
+                writer.write(Integer.toString(random.nextInt(100)));
+                writer.write(',');
+                writer.write(String.format(Locale.ROOT, "%.2f", random.nextDouble() * 100));
+                writer.write(',');
+                writer.write(Long.toString(timestamp + random.nextInt(1_000_000)));
+                writer.write('\n');
+            }
+        }
+    }
+
+    // ========== 動作確認 ==========
+
+    // 引用符・エスケープ・CRLF・空の項目・数値の読み取りが正しいか確かめる
+    static void verify() throws IOException {
+        String csv = "name,memo,age\r\n"
+            + "太郎,\"apple,banana\",25\r\n"
+            + "\"花子 \"\"ハナ\"\"\",,-7\n"
+            + "次郎,\"\",+30";
+        List<List<String>> expected = List.of(
+            List.of("name", "memo", "age"),
+            List.of("太郎", "apple,banana", "25"),
+            List.of("花子 \"ハナ\"", "", "-7"),
+            List.of("次郎", "", "+30"));
+
+        Path file = Files.createTempFile("csv-verify", ".csv");
+        try {
+            Files.writeString(file, csv);
+            List<List<String>> actual = new ArrayList<>();
+            int ageTotal = 0;
+            try (CsvReader reader = CsvReader.open(file)) {
+                CsvReader.Cursor cursor = reader.cursor();
+                while (cursor.nextRecord()) {
+                    List<String> fields = new ArrayList<>();
+                    while (cursor.nextField()) {
+                        fields.add(cursor.stringValue());
+                    }
+                    if (!actual.isEmpty()) {
+                        ageTotal += Integer.parseInt(fields.get(2));
+                    }
+                    actual.add(fields);
+                }
+            }
+            check("項目の分割", expected.equals(actual));
+            check("年齢の合計", ageTotal == 48);
+
+            // doubleValue / longValue が標準の parse と同じ値になるか
+            Random random = new Random(1);
+            List<String> numbers = new ArrayList<>(List.of("0", "-0", "0.1", "1e3", "123456789012345678",
+                "-9223372036854775808", "3.14159265358979323846", ".5", "5.", "0.000000000000000000000000001"));
+            for (int i = 0; i < 1000; i++) {
+                numbers.add(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10)));
+                numbers.add(String.format(Locale.ROOT, "%.2f", random.nextDouble() * 100));
+                numbers.add(Long.toString(random.nextLong()));
+            }
+            Files.writeString(file, String.join("\n", numbers));
+            try (CsvReader reader = CsvReader.open(file)) {
+                CsvReader.Cursor cursor = reader.cursor();
+                for (String number : numbers) {
+                    cursor.nextRecord();
+                    cursor.nextField();
+                    check("double " + number, Double.compare(Double.parseDouble(number), cursor.doubleValue()) == 0);
+                    if (!number.contains(".") && !number.contains("e")) {
+                        check("long " + number, Long.parseLong(number) == cursor.longValue());
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
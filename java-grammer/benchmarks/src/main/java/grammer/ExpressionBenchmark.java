@@ -0,0 +1,281 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Expression の計算の速さ：コンパイルした式・インタプリタ・同じ式を Java で手書きしたもの
+ *
+ * 列 a・b（int）と rate（double）が ROWS 行あり、式（FORMULAS の formula 番目）を全行について計算して double[] に書く。
+ * 1行 = 1操作。
+ *   handWritten        同じ式を Java で書いたループ
+ *   compiledColumns    compile() した式の evaluate(Map, out)。ループごと生成したクラスで計算する
+ *   compiledRows       compile() した式の evaluate(double...) を1行ずつ呼ぶ
+ *   interpretedColumns parse() したままの式の evaluate(Map, out)。1行ずつ木をたどる
+ *   compile            式1つの parse() と compile()（javac がなければインタプリタのまま）
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar ExpressionBenchmark
+ *   java -jar benchmarks/target/benchmarks.jar ExpressionBenchmark.compile -bm ss -wi 0 -i 1   // 最初の1回（javac の読み込みを含む）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExpressionBenchmark {
+
+    static final int ROWS = 1 << 20;
+
+    // 式と、それを手書きしたもの（out に書く）
+    record Formula(String text, Kernel handWritten) {
+    }
+
+    interface Kernel {
+        void run(int[] a, int[] b, double[] rate, double[] out);
+    }
+
+    static final List<Formula> FORMULAS = List.of(
+        new Formula("a + b * 2", (a, b, rate, out) -> {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = a[i] + b[i] * 2;
+            }
+        }),
+        new Formula("a > b ? a * rate : b / 2.0", (a, b, rate, out) -> {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = a[i] > b[i] ? a[i] * rate[i] : b[i] / 2.0;
+            }
+        }),
+        new Formula("(a % 7 == 0 || b < 100) && a != b", (a, b, rate, out) -> {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = (a[i] % 7 == 0 || b[i] < 100) && a[i] != b[i] ? 1.0 : 0.0;
+            }
+        }),
+        new Formula("(a - b) * (a - b) / 3 + (rate >= 0.5 ? rate * 100 : -rate) - a % 10 * 1.5", (a, b, rate, out) -> {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = (a[i] - b[i]) * (a[i] - b[i]) / 3 + (rate[i] >= 0.5 ? rate[i] * 100 : -rate[i]) - a[i] % 10 * 1.5;
+            }
+        }));
+
+    int compiles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+    }
+
+    // 列と、FORMULAS の formula 番目の式（手書き・インタプリタ・コンパイルしたもの）
+    @State(Scope.Benchmark)
+    public static class Rows {
+        @Param({"0", "1", "2", "3"})
+        int formula;
+
+        int[] a;
+        int[] b;
+        double[] rate;
+        Map<String, Object> columns;
+        final double[] out = new double[ROWS];
+        final double[] values = new double[3];
+        Kernel handWritten;
+        Expression interpreted;
+        Expression compiled;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            a = random.ints(ROWS, 0, 1000).toArray();
+            b = random.ints(ROWS, 0, 1000).toArray();
+            rate = random.doubles(ROWS).toArray();
+            columns = Map.of("a", a, "b", b, "rate", rate);
+
+            Formula chosen = FORMULAS.get(formula);
+            handWritten = chosen.handWritten();
+            interpreted = variables().parse(chosen.text());
+            compiled = interpreted.compile();
+            check("結果 " + chosen.text(), Arrays.equals(compiled.evaluate(columns), handWritten(chosen, a, b, rate))
+                && Arrays.equals(interpreted.evaluate(columns), compiled.evaluate(columns)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] handWritten(Rows rows) {
+        rows.handWritten.run(rows.a, rows.b, rows.rate, rows.out);
+        return rows.out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] compiledColumns(Rows rows) {
+        rows.compiled.evaluate(rows.columns, rows.out);
+        return rows.out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double compiledRows(Rows rows) {
+        int[] a = rows.a;
+        int[] b = rows.b;
+        double[] rate = rows.rate;
+        double[] values = rows.values;
+        double sum = 0;
+        for (int i = 0; i < ROWS; i++) {
+            values[0] = a[i];
+            values[1] = b[i];
+            values[2] = rate[i];
+            sum += rows.compiled.evaluate(values);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] interpretedColumns(Rows rows) {
+        rows.interpreted.evaluate(rows.columns, rows.out);
+        return rows.out;
+    }
+
+    // 毎回違う式にする
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Expression compile() {
+        return variables().parse("a * " + compiles++ + " + b > rate ? a : b").compile();
+    }
+
+    static Expression.Variables variables() {
+        return Expression.variables().ints("a", "b").doubles("rate");
+    }
+
+    static double[] handWritten(Formula formula, int[] a, int[] b, double[] rate) {
+        double[] out = new double[a.length];
+        formula.handWritten().run(a, b, rate, out);
+        return out;
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() {
+        // JavaGrammar.operators() と同じ値
+        Object[][] cases = {
+            {"a + b", 13}, {"a - b", 7}, {"a * b", 30}, {"a / b", 3}, {"a % b", 1},
+            {"a == b", 0}, {"a != b", 1}, {"a > b", 1}, {"a <= b", 0},
+            {"true && false", 0}, {"true || false", 1}, {"!true", 0}, {"(a > b) ? a : b", 10},
+            {"a / b * 1.5", 4.5}, {"a / 4.0", 2.5}, {"-a - -b", -7}, {"a - b - 1", 6}, {"2 + 3 * 4 % 5", 4},
+        };
+        for (Object[] c : cases) {
+            Expression interpreted = Expression.variables().ints("a", "b").parse((String) c[0]);
+            Expression compiled = interpreted.compile();
+            double expected = ((Number) c[1]).doubleValue();
+            check((String) c[0], interpreted.evaluate(10, 3) == expected && compiled.evaluate(10, 3) == expected);
+        }
+
+        // 型と結果の型
+        check("型", variables().parse("a + b").type() == Expression.Type.INT
+            && variables().parse("a + rate").type() == Expression.Type.DOUBLE
+            && variables().parse("a < rate").type() == Expression.Type.BOOLEAN);
+        // int の最小値は、- と数字を1つのリテラルとして読む（Java と同じ）
+        for (String text : new String[] {"-2147483648", "- 2147483648", "a - -2147483648"}) {
+            Expression interpreted = Expression.variables().ints("a").parse(text);
+            Expression compiled = interpreted.compile();
+            double expected = text.startsWith("a") ? 1 - Integer.MIN_VALUE : Integer.MIN_VALUE;
+            check(text, interpreted.type() == Expression.Type.INT
+                && interpreted.evaluate(1) == expected && compiled.evaluate(1) == expected);
+        }
+        check("-(-2147483648)", same(() -> Expression.variables().parse("-(-2147483648)").evaluate(),
+            () -> Expression.variables().parse("-(-2147483648)").compile().evaluate()));
+        check("日本語の変数名", Expression.variables().ints("年齢").parse("年齢 >= 20 ? 1 : 0").evaluate(25) == 1);
+
+        // 間違った式は位置つきで断る
+        for (String bad : new String[] {"a +", "a && b", "c + 1", "1e400", "a < b < 3", "(a", "2147483648", "-2147483649", "-(2147483648)", "a ? 1 : 2",
+                                        "true ? 1 : false", "a b", "", "!a", "rate % true"}) {
+            try {
+                variables().parse(bad);
+                throw new AssertionError("読めてしまった: " + bad);
+            } catch (IllegalArgumentException expected) {
+                check("位置 " + bad, expected.getMessage().startsWith("位置 "));
+            }
+        }
+
+        // ランダムな式：インタプリタとコンパイルした式（javac が決める Java の意味）が、値も例外も一致する
+        Random random = new Random(11);
+        int compiledCount = 0;
+        for (int trial = 0; trial < 60; trial++) {
+            String text = random.nextInt(4) == 0 ? bool(random, 4) : number(random, 4);
+            Expression interpreted = variables().parse(text);
+            Expression compiled = interpreted.compile();
+            compiledCount += compiled.isCompiled() ? 1 : 0;
+            for (int row = 0; row < 50; row++) {
+                double[] values = {random.nextInt(7) - 3, random.nextInt(2) == 0 ? Integer.MAX_VALUE : random.nextInt(),
+                    row % 5 == 0 ? 0.0 : random.nextGaussian() * 10};
+                check(text, same(() -> interpreted.evaluate(values), () -> compiled.evaluate(values)));
+            }
+            int[] a = random.ints(100, -5, 5).toArray();
+            int[] b = random.ints(100, 1, 5).toArray();
+            double[] rate = random.doubles(100).toArray();
+            Map<String, Object> columns = Map.of("a", a, "b", b, "rate", rate);
+            check("列 " + text, same(() -> Arrays.hashCode(interpreted.evaluate(columns)),
+                () -> Arrays.hashCode(compiled.evaluate(columns))));
+        }
+        check("コンパイルされた", compiledCount == 60);
+    }
+
+    interface Evaluation {
+        double run();
+    }
+
+    // どちらも同じ値（NaN・-0.0 もビットまで同じ）か、どちらも ArithmeticException
+    static boolean same(Evaluation x, Evaluation y) {
+        String left;
+        String right;
+        try {
+            left = Long.toHexString(Double.doubleToRawLongBits(x.run()));
+        } catch (ArithmeticException e) {
+            left = "例外";
+        }
+        try {
+            right = Long.toHexString(Double.doubleToRawLongBits(y.run()));
+        } catch (ArithmeticException e) {
+            right = "例外";
+        }
+        return left.equals(right);
+    }
+
+    static final String[] ARITHMETIC = {"+", "-", "*", "/", "%"};
+    static final String[] COMPARISON = {"<", "<=", ">", ">=", "==", "!="};
+
+    static String number(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return switch (random.nextInt(5)) {
+                case 0 -> "a";
+                case 1 -> "b";
+                case 2 -> "rate";
+                case 3 -> String.valueOf(random.nextInt(10));
+                default -> String.valueOf(random.nextInt(100) / 8.0);
+            };
+        }
+        return switch (random.nextInt(4)) {
+            case 0 -> "-" + number(random, depth - 1);
+            case 1 -> "(" + bool(random, depth - 1) + " ? " + number(random, depth - 1) + " : " + number(random, depth - 1) + ")";
+            default -> "(" + number(random, depth - 1) + " " + ARITHMETIC[random.nextInt(ARITHMETIC.length)] + " "
+                + number(random, depth - 1) + ")";
+        };
+    }
+
+    static String bool(Random random, int depth) {
+        return switch (depth == 0 ? 0 : random.nextInt(4)) {
+            case 0 -> "(" + number(random, Math.max(0, depth - 1)) + " " + COMPARISON[random.nextInt(COMPARISON.length)] + " "
+                + number(random, Math.max(0, depth - 1)) + ")";
+            case 1 -> "!(" + bool(random, depth - 1) + ")";
+            case 2 -> "(" + bool(random, depth - 1) + (random.nextBoolean() ? " && " : " || ") + bool(random, depth - 1) + ")";
+            default -> "(" + bool(random, depth - 1) + " == " + bool(random, depth - 1) + ")";
+        };
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * IntList と ArrayList<Integer> のメモリ使用量・スループット比較
+ *
+ * 同じ操作を intList* と boxed* の組で計測する（1回の呼び出しで size 要素を扱う。get だけは1要素）。
+ * メモリ使用量は build* の gc.alloc.rate.norm（-prof gc）を size で割る。どちらも大きさを指定して作るので、
+ * 確保した分がそのまま残る量になる（Integer キャッシュ外の値なので、ArrayList は要素ごとに Integer が作られる）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar IntListBenchmark -prof gc
+ *   java -jar benchmarks/target/benchmarks.jar IntListBenchmark.build -prof gc -p size=1000000   // メモリだけ
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntListBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    int[] data;
+    int[] indexes;  // get で順に使うランダムなインデックス（長さは2の累乗）
+    int next;
+    IntList intList;
+    List<Integer> boxed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        data = new int[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        indexes = random.ints(1024, 0, size).toArray();
+        intList = new IntList();
+        boxed = new ArrayList<>();
+        for (int value : data) {
+            intList.add(value);
+            boxed.add(value);
+        }
+    }
+
+    // ========== メモリ（-prof gc） ==========
+
+    @Benchmark
+    public IntList buildIntList() {
+        IntList list = new IntList(size);
+        for (int value : data) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Integer> buildBoxed() {
+        List<Integer> list = new ArrayList<>(size);
+        for (int value : data) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    // ========== スループット ==========
+
+    // 大きさを指定せずに全件追加する（配列を広げる分も入る）
+    @Benchmark
+    public int addIntList() {
+        IntList list = new IntList();
+        for (int value : data) {
+            list.add(value);
+        }
+        return list.size();
+    }
+
+    @Benchmark
+    public int addBoxed() {
+        List<Integer> list = new ArrayList<>();
+        for (int value : data) {
+            list.add(value);
+        }
+        return list.size();
+    }
+
+    @Benchmark
+    public int getIntList() {
+        return intList.get(indexes[next++ & (indexes.length - 1)]);
+    }
+
+    @Benchmark
+    public int getBoxed() {
+        return boxed.get(indexes[next++ & (indexes.length - 1)]);
+    }
+
+    @Benchmark
+    public long forEachIntList() {
+        long[] sum = {0};
+        intList.forEach(n -> sum[0] += n);
+        return sum[0];
+    }
+
+    @Benchmark
+    public long forEachBoxed() {
+        long[] sum = {0};
+        boxed.forEach(n -> sum[0] += n);
+        return sum[0];
+    }
+
+    @Benchmark
+    public long streamIntList() {
+        return intList.stream().asLongStream().sum();
+    }
+
+    @Benchmark
+    public long streamBoxed() {
+        return boxed.stream().mapToLong(Integer::longValue).sum();
+    }
+
+    // 見つからない値（全要素を走査する）
+    @Benchmark
+    public boolean containsIntList() {
+        return intList.contains(-1);
+    }
+
+    @Benchmark
+    public boolean containsBoxed() {
+        return boxed.contains(-1);
+    }
+
+    // ソート済みにしないよう、毎回コピーしてからソートする
+    @Benchmark
+    public int sortIntList() {
+        IntList copy = IntList.wrap(intList.toArray());
+        copy.sort();
+        return copy.get(0);
+    }
+
+    @Benchmark
+    public int sortBoxed() {
+        List<Integer> copy = new ArrayList<>(boxed);
+        Collections.sort(copy);
+        return copy.get(0);
+    }
+}
@@ -0,0 +1,170 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JavaGrammar.lambdaAndStreams() のパイプラインを Stream<Integer>・IntStream・IntPipeline で比較
+ * （時間と確保バイト数）
+ *
+ *   even         filter(n -> n % 2 == 0) → リスト（配列）に集める
+ *   doubled      map(n -> n * 2) → リスト（配列）に集める
+ *   sum          reduce(0, (a, b) -> a + b)
+ *   sumOfSquares filter(n -> n > 2) → map(n -> n * n) → reduce(0, Integer::sum)
+ *
+ * 1回 = size 要素を1回処理する（1要素あたりは size で割る）。確保バイト数は -prof gc の gc.alloc.rate.norm。
+ * parallel* は共通プールのスレッドでも確保するので、gc.alloc.rate.norm には呼び出したスレッドの分しか出ない。
+ * main から実行すると、呼び出すスレッド数を 1～64 と変えて測る（ThreadMatrix）。
+ * 並列版は呼び出し側が増えると共通プールを取り合うので、逐次版との差が縮まる様子が見える。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar IntPipelineBenchmark -prof gc            // 100万要素
+ *   java -jar benchmarks/target/benchmarks.jar IntPipelineBenchmark -p size=10000000
+ *   java -cp benchmarks/target/benchmarks.jar grammer.IntPipelineBenchmark "IntPipelineBenchmark.(pipeline|parallel)"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntPipelineBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    int[] values;
+    List<Integer> numbers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        // サンプルと同じく小さい正の数（二乗しても int に収まる）
+        values = new Random(42).ints(size, 1, 1000).toArray();
+        numbers = Arrays.stream(values).boxed().collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadMatrix.run(IntPipelineBenchmark.class, args);
+    }
+
+    // ========== 偶数のみ ==========
+
+    @Benchmark
+    public List<Integer> boxedEven() {
+        return numbers.stream().filter(n -> n % 2 == 0).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public int[] intStreamEven() {
+        return IntStream.of(values).filter(n -> n % 2 == 0).toArray();
+    }
+
+    @Benchmark
+    public int[] pipelineEven() {
+        return IntPipeline.of(values).filter(n -> n % 2 == 0).toArray();
+    }
+
+    @Benchmark
+    public int[] parallelEven() {
+        return IntPipeline.of(values).parallel().filter(n -> n % 2 == 0).toArray();
+    }
+
+    // ========== 2倍 ==========
+
+    @Benchmark
+    public List<Integer> boxedDoubled() {
+        return numbers.stream().map(n -> n * 2).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public int[] intStreamDoubled() {
+        return IntStream.of(values).map(n -> n * 2).toArray();
+    }
+
+    @Benchmark
+    public int[] pipelineDoubled() {
+        return IntPipeline.of(values).map(n -> n * 2).toArray();
+    }
+
+    @Benchmark
+    public int[] parallelDoubled() {
+        return IntPipeline.of(values).parallel().map(n -> n * 2).toArray();
+    }
+
+    // ========== 合計 ==========
+
+    @Benchmark
+    public int boxedSum() {
+        return numbers.stream().reduce(0, (a, b) -> a + b);
+    }
+
+    @Benchmark
+    public int intStreamSum() {
+        return IntStream.of(values).reduce(0, (a, b) -> a + b);
+    }
+
+    @Benchmark
+    public int pipelineSum() {
+        return IntPipeline.of(values).reduce(0, (a, b) -> a + b);
+    }
+
+    @Benchmark
+    public int parallelSum() {
+        return IntPipeline.of(values).parallel().reduce(0, (a, b) -> a + b);
+    }
+
+    // ========== 二乗の合計 ==========
+
+    @Benchmark
+    public int boxedSumOfSquares() {
+        return numbers.stream().filter(n -> n > 2).map(n -> n * n).reduce(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int intStreamSumOfSquares() {
+        return IntStream.of(values).filter(n -> n > 2).map(n -> n * n).reduce(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int pipelineSumOfSquares() {
+        return IntPipeline.of(values).filter(n -> n > 2).map(n -> n * n).reduce(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int parallelSumOfSquares() {
+        return IntPipeline.of(values).parallel().filter(n -> n > 2).map(n -> n * n).reduce(0, Integer::sum);
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() {
+        Random random = new Random(1);
+        for (int size : new int[] {0, 5, IntPipeline.PARALLEL_THRESHOLD - 1, 1_000_003}) {
+            int[] values = random.ints(size, -1000, 1000).toArray();
+            for (IntPipeline base : List.of(IntPipeline.of(values), IntPipeline.of(values).parallel())) {
+                check("filter", Arrays.equals(base.filter(n -> n % 2 == 0).toArray(),
+                    IntStream.of(values).filter(n -> n % 2 == 0).toArray()));
+                check("map", Arrays.equals(base.map(n -> n * 2).toArray(), IntStream.of(values).map(n -> n * 2).toArray()));
+                check("reduce", base.reduce(0, (a, b) -> a + b) == IntStream.of(values).sum());
+                check("filter+map+sum", base.filter(n -> n > 2).map(n -> n * n).sum()
+                    == IntStream.of(values).filter(n -> n > 2).map(n -> n * n).sum());
+                check("map+filter+count", base.map(n -> n * 3).filter(n -> n % 7 == 0).count()
+                    == IntStream.of(values).map(n -> n * 3).filter(n -> n % 7 == 0).count());
+                check("reduce(max)", base.reduce(Integer.MIN_VALUE, Math::max)
+                    == IntStream.of(values).reduce(Integer.MIN_VALUE, Math::max));
+            }
+        }
+        int[] sample = {1, 2, 3, 4, 5};
+        check("範囲", Arrays.equals(IntPipeline.of(sample, 1, 4).map(n -> -n).toArray(), new int[] {-2, -3, -4}));
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package grammer;
+
+import java.lang.ref.Reference;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * IntSet と HashSet<Integer> のメモリ使用量・スループット比較
+ *
+ * 値の分布を2通り試す。
+ *   dense  … 0〜2N の範囲から N 回引いた ID（重複あり）。IntSet はビットセットになる
+ *   sparse … int 全体からランダムに N 回引いた値。IntSet はハッシュ表になる
+ *
+ * 同じ操作を intSet* と hashSet* の組で計測する。add・stream・集合演算は1回で集合全体を扱い、
+ * contains は1回 = 1回の検索（LOOKUPS 個の値を順に引く）。
+ * メモリ使用量は footprint の補助カウンタ（異なる値1個あたりの残るバイト数）に出る。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar IntSetBenchmark -prof gc             // 1M と 10M
+ *   java -jar benchmarks/target/benchmarks.jar IntSetBenchmark -p size=100000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntSetBenchmark {
+
+    // contains の計測で引く値の数
+    static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000000", "10000000"})
+    int size;
+
+    @Param({"dense", "sparse"})
+    String distribution;
+
+    int[] data;
+    int[] probes;
+    IntSet intSet;
+    Set<Integer> hashSet;
+    IntSet intOther;
+    Set<Integer> hashOther;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        Random random = new Random(42);
+        data = distribution.equals("dense") ? random.ints(size, 0, 2 * size).toArray() : random.ints(size).toArray();
+
+        // contains で引く値（半分はデータから、半分は同じ範囲の乱数）
+        probes = new int[LOOKUPS];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = i % 2 == 0 ? data[random.nextInt(size)] : data[random.nextInt(size)] ^ 1;
+        }
+        // 集合演算の相手（データの半分と、同じ分布の新しい値半分）
+        int[] otherData = new int[size];
+        for (int i = 0; i < size; i++) {
+            otherData[i] = i % 2 == 0 ? data[i] : data[random.nextInt(size)] + 1;
+        }
+
+        intSet = intSetAdd();
+        hashSet = hashSetAdd();
+        check("持ち方", intSet.isDense() == distribution.equals("dense"));
+        intOther = new IntSet();
+        hashOther = new HashSet<>();
+        for (int value : otherData) {
+            intOther.add(value);
+            hashOther.add(value);
+        }
+    }
+
+    // ========== メモリ使用量 ==========
+
+    // 集合が残すヒープ（異なる値1個あたりのバイト数）。System.gc() の前後の使用量の差で、1回だけ測る
+    // （補助カウンタは回ごとに足し合わされるので、-i を変えずに実行する）
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double intSetBytesPerValue;
+        public double hashSetBytesPerValue;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void footprint(Footprint footprint) {
+        long before = usedHeap();
+        IntSet intSet = intSetAdd();
+        footprint.intSetBytesPerValue = (double) (usedHeap() - before) / intSet.size();
+        Reference.reachabilityFence(intSet);
+
+        before = usedHeap();
+        Set<Integer> hashSet = hashSetAdd();
+        footprint.hashSetBytesPerValue = (double) (usedHeap() - before) / hashSet.size();
+        Reference.reachabilityFence(hashSet);
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    // ========== add（全件） ==========
+
+    @Benchmark
+    public IntSet intSetAdd() {
+        IntSet set = new IntSet();
+        for (int value : data) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public Set<Integer> hashSetAdd() {
+        Set<Integer> set = new HashSet<>();
+        for (int value : data) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    // ========== contains ==========
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long intSetContains() {
+        long hits = 0;
+        for (int probe : probes) {
+            if (intSet.contains(probe)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long hashSetContains() {
+        long hits = 0;
+        for (int probe : probes) {
+            if (hashSet.contains(probe)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    // ========== stream 合計 ==========
+
+    @Benchmark
+    public long intSetStream() {
+        return intSet.stream().asLongStream().sum();
+    }
+
+    @Benchmark
+    public long hashSetStream() {
+        return hashSet.stream().mapToLong(Integer::longValue).sum();
+    }
+
+    // ========== 集合演算（コピーしてから） ==========
+
+    @Benchmark
+    public int intSetUnion() {
+        return intSet.copy().addAll(intOther).size();
+    }
+
+    @Benchmark
+    public int hashSetUnion() {
+        Set<Integer> copy = new HashSet<>(hashSet);
+        copy.addAll(hashOther);
+        return copy.size();
+    }
+
+    @Benchmark
+    public int intSetIntersection() {
+        return intSet.copy().retainAll(intOther).size();
+    }
+
+    @Benchmark
+    public int hashSetIntersection() {
+        Set<Integer> copy = new HashSet<>(hashSet);
+        copy.retainAll(hashOther);
+        return copy.size();
+    }
+
+    @Benchmark
+    public int intSetDifference() {
+        return intSet.copy().removeAll(intOther).size();
+    }
+
+    @Benchmark
+    public int hashSetDifference() {
+        Set<Integer> copy = new HashSet<>(hashSet);
+        copy.removeAll(hashOther);
+        return copy.size();
+    }
+
+    // ========== 動作確認 ==========
+
+    // ランダムな add・remove を HashSet と突き合わせる。範囲を途中で広げて、
+    // ビットセット → ハッシュ表 → ビットセット の切り替えも起こす
+    static void verify() {
+        Random random = new Random(1);
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        int switches = 0;
+        boolean dense = set.isDense();
+        for (int step = 0; step < 1_000_000; step++) {
+            int bound = step < 300_000 ? 5_000 : step < 600_000 ? 1 << 30 : 50_000;
+            int value = random.nextInt(bound) - bound / 2;
+            if (random.nextInt(4) == 0) {
+                check("remove", set.remove(value) == expected.remove(value));
+            } else {
+                check("add", set.add(value) == expected.add(value));
+            }
+            check("contains", set.contains(value ^ 1) == expected.contains(value ^ 1));
+            check("size", set.size() == expected.size());
+            if (set.isDense() != dense) {
+                dense = set.isDense();
+                switches++;
+            }
+        }
+        check("要素", set.stream().boxed().collect(HashSet::new, Set::add, Set::addAll).equals(expected));
+        check("切り替え", switches >= 2);
+
+        // 集合演算（密×密、密×疎、疎×密）
+        IntSet dense1 = IntSet.of(random.ints(10_000, 0, 20_000).toArray());
+        IntSet dense2 = IntSet.of(random.ints(10_000, 10_000, 30_000).toArray());
+        IntSet sparse = IntSet.of(random.ints(10_000, 0, 20_000).map(n -> n * 100_000).toArray());
+        sparse.addAll(IntSet.of(random.ints(1_000, 0, 30_000).toArray()));
+        check("密", dense1.isDense() && dense2.isDense() && !sparse.isDense());
+        for (IntSet a : List.of(dense1, sparse)) {
+            for (IntSet b : List.of(dense2, sparse, dense1)) {
+                Set<Integer> union = boxed(a);
+                union.addAll(boxed(b));
+                Set<Integer> intersection = boxed(a);
+                intersection.retainAll(boxed(b));
+                Set<Integer> difference = boxed(a);
+                difference.removeAll(boxed(b));
+                check("和集合", boxed(a.copy().addAll(b)).equals(union));
+                check("積集合", boxed(a.copy().retainAll(b)).equals(intersection));
+                check("差集合", boxed(a.copy().removeAll(b)).equals(difference));
+            }
+        }
+        check("equals", dense1.equals(IntSet.of(dense1.toArray())) && dense1.hashCode() == boxed(dense1).hashCode());
+    }
+
+    static Set<Integer> boxed(IntSet set) {
+        Set<Integer> result = new HashSet<>();
+        set.forEach(result::add);
+        return result;
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * int[][] の素朴な3重ループと Matrix（タイル分割・並列）の掛け算の比較
+ *
+ * 1回 = size × size の掛け算1回。GOPS は 2 × size³ / 時間（掛け算と足し算を1回ずつ数える）。
+ * 大きさは 512・2048・8192。ただし naive は 512・2048 だけ：8192 の素朴な3重ループは 2048 の 64 倍、
+ * 1回で数十分以上かかり、ウォームアップと計測の回数を回しきれない。そのため大きさの @Param を
+ * naive 用の NaiveOperands と tiled・parallel 用の Operands に分けて持つ
+ * （-p size=8192 と指定すると naive も 8192 になるので、そのときは tiled・parallel だけを選ぶ）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar MatrixBenchmark                         // naive は 512, 2048 まで
+ *   java -jar benchmarks/target/benchmarks.jar "MatrixBenchmark.(tiled|parallel)" -p size=8192
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class MatrixBenchmark {
+
+    // 掛ける2つの行列（size × size）
+    @State(Scope.Benchmark)
+    public static class Operands {
+        @Param({"512", "2048", "8192"})
+        int size;
+
+        int[][] a;
+        int[][] b;
+        Matrix ma;
+        Matrix mb;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            verify();
+            Random random = new Random(42);
+            a = randomMatrix(random, size, size);
+            b = randomMatrix(random, size, size);
+            ma = Matrix.of(a);
+            mb = Matrix.of(b);
+        }
+    }
+
+    // naive 用。8192 は1回に数十分以上かかるので 2048 まで
+    @State(Scope.Benchmark)
+    public static class NaiveOperands {
+        @Param({"512", "2048"})
+        int size;
+
+        int[][] a;
+        int[][] b;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            a = randomMatrix(random, size, size);
+            b = randomMatrix(random, size, size);
+        }
+    }
+
+    @Benchmark
+    public int[][] naive(NaiveOperands operands) {
+        return naiveMultiply(operands.a, operands.b);
+    }
+
+    @Benchmark
+    public Matrix tiled(Operands operands) {
+        return operands.ma.multiply(operands.mb);
+    }
+
+    @Benchmark
+    public Matrix parallel(Operands operands) {
+        return operands.ma.parallelMultiply(operands.mb);
+    }
+
+    // 教科書どおりの i-j-k ループ。b を列方向にたどるのでキャッシュミスが多い
+    static int[][] naiveMultiply(int[][] a, int[][] b) {
+        int n = a.length;
+        int m = b[0].length;
+        int inner = b.length;
+        int[][] c = new int[n][m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                int sum = 0;
+                for (int k = 0; k < inner; k++) {
+                    sum += a[i][k] * b[k][j];
+                }
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    static int[][] randomMatrix(Random random, int rows, int columns) {
+        int[][] matrix = new int[rows][columns];
+        for (int[] row : matrix) {
+            for (int c = 0; c < columns; c++) {
+                row[c] = random.nextInt(100);
+            }
+        }
+        return matrix;
+    }
+
+    // ========== 動作確認 ==========
+
+    // タイルの大きさで割り切れない形も含めて、3つの掛け算と転置・行と列のビューが一致する
+    static void verify() {
+        Random random = new Random(7);
+        int[][] shapes = {{1, 1, 1}, {3, 5, 2}, {64, 64, 64}, {65, 130, 63}, {200, 70, 129}};
+        for (int[] shape : shapes) {
+            int[][] a = randomMatrix(random, shape[0], shape[1]);
+            int[][] b = randomMatrix(random, shape[1], shape[2]);
+            Matrix expected = Matrix.of(naiveMultiply(a, b));
+            Matrix ma = Matrix.of(a);
+            Matrix mb = Matrix.of(b);
+            String label = Arrays.toString(shape);
+            check("tiled " + label, ma.multiply(mb).equals(expected));
+            check("parallel " + label, ma.parallelMultiply(mb).equals(expected));
+            check("transpose " + label, ma.transpose().transpose().equals(ma));
+            for (int r = 0; r < shape[0]; r++) {
+                check("row " + label, Arrays.equals(ma.row(r).toArray(), a[r]));
+            }
+            Matrix t = ma.transpose();
+            for (int c = 0; c < shape[1]; c++) {
+                check("column " + label, Arrays.equals(ma.column(c).toArray(), t.row(c).toArray()));
+            }
+        }
+
+        // ビューへの書き込みは元の行列に届く
+        Matrix m = new Matrix(3, 4);
+        m.column(2).set(1, 7);
+        m.row(2).set(3, 9);
+        check("ビューへの書き込み", m.get(1, 2) == 7 && m.get(2, 3) == 9 && m.row(1).get(2) == 7);
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Memo のヒット時の速さと、複数スレッドでのスループット・ヒット率
+ *
+ * 比較相手は「関数を直接呼ぶ」と「ConcurrentHashMap.computeIfAbsent」（上限なし・キーはボックス化）。
+ * direct* / memo* / map* は1回 = 1回の呼び出しで、すべてヒットする（KEYS 種類の引数を順に引く）。
+ * キャッシュは全スレッドで共有するので、main から実行するとスレッド数を 1～64 と変えて測れる（ThreadMatrix）。
+ * skewed* は引数 10,000 種類・容量 1,024 で、よく使う引数に偏った呼び出しをしたときのヒット率を
+ * 補助カウンタ hits・misses に出す（比較相手は LRU の LinkedHashMap）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar MemoBenchmark -prof gc
+ *   java -cp benchmarks/target/benchmarks.jar grammer.MemoBenchmark "MemoBenchmark.(memo|map)"     // 1～64 スレッド
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MemoBenchmark {
+
+    // 引数の種類（すべてキャッシュに入る数）
+    static final int KEYS = 256;
+
+    final String[] names = new String[KEYS];
+    final double[] radii = new double[KEYS];
+    final Memo.ObjectCache<String, String> greet = Memo.of(MemoBenchmark::greet, 1024);
+    final Memo.DoubleCache area = Memo.ofDouble(MemoBenchmark::calculateArea, 1024);
+    final Memo.IntBinaryCache product = Memo.ofIntBinary(MemoBenchmark::multiply, 1024);
+    final Map<String, String> greetMap = new ConcurrentHashMap<>();
+    final Map<Double, Double> areaMap = new ConcurrentHashMap<>();
+    final Map<Long, Integer> productMap = new ConcurrentHashMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        for (int i = 0; i < KEYS; i++) {
+            names[i] = "名前" + i;
+            radii[i] = i * 0.5;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadMatrix.run(MemoBenchmark.class, args);
+    }
+
+    // ========== greet ==========
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long directGreet() {
+        long sum = 0;
+        for (String name : names) {
+            sum += greet(name).length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long memoGreet() {
+        long sum = 0;
+        for (String name : names) {
+            sum += greet.apply(name).length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long mapGreet() {
+        long sum = 0;
+        for (String name : names) {
+            sum += greetMap.computeIfAbsent(name, MemoBenchmark::greet).length();
+        }
+        return sum;
+    }
+
+    // ========== calculateArea ==========
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public double directArea() {
+        double sum = 0;
+        for (double radius : radii) {
+            sum += calculateArea(radius);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public double memoArea() {
+        double sum = 0;
+        for (double radius : radii) {
+            sum += area.applyAsDouble(radius);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public double mapArea() {
+        double sum = 0;
+        for (double radius : radii) {
+            sum += areaMap.computeIfAbsent(radius, MemoBenchmark::calculateArea);
+        }
+        return sum;
+    }
+
+    // ========== multiply ==========
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long directMultiply() {
+        long sum = 0;
+        for (int i = 0; i < KEYS; i++) {
+            sum += multiply(i >> 4, i & 15);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long memoMultiply() {
+        long sum = 0;
+        for (int i = 0; i < KEYS; i++) {
+            sum += product.applyAsInt(i >> 4, i & 15);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public long mapMultiply() {
+        long sum = 0;
+        for (int i = 0; i < KEYS; i++) {
+            long key = (long) (i >> 4) << 32 | (i & 15);
+            sum += productMap.computeIfAbsent(key, k -> multiply((int) (k >>> 32), (int) (long) k));
+        }
+        return sum;
+    }
+
+    // ========== キャッシュに入りきらないときのヒット率 ==========
+
+    // 引数 10,000 種類、容量 1,024。小さい番号ほどよく呼ばれる
+    static final int KEY_SPACE = 10_000;
+    static final int CAPACITY = 1024;
+
+    static int skewedKey(Random random) {
+        return (int) (KEY_SPACE * Math.pow(random.nextDouble(), 4));
+    }
+
+    // 補助カウンタは計測した回の呼び出しのうちヒットした数・ミスした数。スレッドごとに別のキャッシュを持つ
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SkewedMemo {
+        public long hits;
+        public long misses;
+        final Memo.IntCache memo = Memo.ofInt(n -> n * 31, CAPACITY);
+        final Random random = new Random(42);
+        Memo.Stats start;
+
+        // 呼び出しごとに stats() を読むと重いので、回の前後の差を数える
+        @Setup(Level.Iteration)
+        public void mark() {
+            start = memo.stats();
+        }
+
+        @TearDown(Level.Iteration)
+        public void count() {
+            Memo.Stats end = memo.stats();
+            hits = end.hits() - start.hits();
+            misses = end.misses() - start.misses();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SkewedLru {
+        public long hits;
+        public long misses;
+        @SuppressWarnings("serial")
+        final Map<Integer, Integer> lru = new LinkedHashMap<>(CAPACITY, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+        final Random random = new Random(42);
+    }
+
+    @Benchmark
+    public int skewedMemo(SkewedMemo skewed) {
+        return skewed.memo.applyAsInt(skewedKey(skewed.random));
+    }
+
+    @Benchmark
+    public int skewedLru(SkewedLru skewed) {
+        int key = skewedKey(skewed.random);
+        Integer value = skewed.lru.get(key);
+        if (value != null) {
+            skewed.hits++;
+            return value;
+        }
+        skewed.misses++;
+        skewed.lru.put(key, key * 31);
+        return key * 31;
+    }
+
+    // キャッシュする関数（JavaGrammar.greet・JavaGrammar.multiply・Circle.calculateArea と同じ）
+    static String greet(String name) {
+        return "こんにちは、" + name + "さん！";
+    }
+
+    static int multiply(int a, int b) {
+        return a * b;
+    }
+
+    static double calculateArea(double radius) {
+        return Math.PI * radius * radius;
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() {
+        // 容量より多いキーを入れても、返す値は常に関数の値と同じで、追い出しが数えられる
+        Memo.IntBinaryCache product = Memo.ofIntBinary(MemoBenchmark::multiply, 64);
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            int a = random.nextInt(100) - 50;
+            int b = random.nextInt(100) - 50;
+            check("multiply", product.applyAsInt(a, b) == a * b);
+        }
+        Memo.Stats stats = product.stats();
+        check("件数", stats.hits() + stats.misses() == 100_000 && stats.evictions() > 0
+            && stats.misses() - stats.evictions() <= product.capacity());
+
+        Memo.DoubleCache area = Memo.ofDouble(MemoBenchmark::calculateArea, 16);
+        check("area", area.applyAsDouble(2.0) == calculateArea(2.0) && area.applyAsDouble(2.0) == calculateArea(2.0)
+            && area.stats().hits() == 1);
+
+        // 同じ String が返る（2回目は greet を呼ばない）
+        Memo.ObjectCache<String, String> greet = Memo.of(MemoBenchmark::greet, 16);
+        check("greet", greet.apply("太郎") == greet.apply("太郎") && greet.apply(null).equals(greet(null)));
+
+        // 複数スレッドから、容量の4倍のキーで同時に引いても値が崩れない
+        Memo.ObjectCache<Integer, String> shared = Memo.of(String::valueOf, 256);
+        Thread[] threads = new Thread[8];
+        boolean[] failed = new boolean[1];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                for (int i = 0; i < 200_000; i++) {
+                    int key = r.nextInt(1024);
+                    if (!shared.apply(key).equals(String.valueOf(key))) {
+                        failed[0] = true;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        check("複数スレッド", !failed[0]);
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package grammer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Metrics で計測したときに、計測される側がどれだけ遅くなるか
+ *
+ * 計測対象は add（JavaGrammar.add と同じ）と Integer.parseInt（どちらも static メソッド）。
+ * 比較相手は「計測なし」「AtomicLong」「LongAdder」。計測器は全スレッドで共有し、1回 = 記録1回。
+ * main から実行するとスレッド数を 1～64 と変えて測り、同じ計測器に書き込みが集まったときの伸び方を表にする（ThreadMatrix）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar MetricsBenchmark -prof gc
+ *   java -cp benchmarks/target/benchmarks.jar grammer.MetricsBenchmark "MetricsBenchmark.(atomicLong|longAdder|counter|timerRecord)$"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MetricsBenchmark {
+
+    static final int N = 1024;
+
+    final String[] texts = new String[N];
+    final Metrics.Counter counter = Metrics.counter("bench.counter");
+    final Metrics.Timer timer = Metrics.timer("bench.timer");
+    final Metrics.Timer parseTimer = Metrics.timer("bench.parseInt");
+    final AtomicLong atomic = new AtomicLong();
+    final LongAdder adder = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        verify();
+        for (int i = 0; i < N; i++) {
+            texts[i] = String.valueOf(i * 7919);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadMatrix.run(MetricsBenchmark.class, args);
+    }
+
+    // ========== 記録1回の手間 ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long baseline() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += add(i, N);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long atomicLong() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += add(i, N);
+            atomic.incrementAndGet();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long longAdder() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += add(i, N);
+            adder.increment();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long counter() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += add(i, N);
+            counter.increment();
+        }
+        return sum;
+    }
+
+    // 時刻を取らずに値だけ記録する
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long timerRecord() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += add(i, N);
+            timer.record(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long nanoTime() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            long start = System.nanoTime();
+            sum += add(i, N);
+            sum += System.nanoTime() - start;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long timerRecordSince() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            long start = System.nanoTime();
+            sum += add(i, N);
+            timer.recordSince(start);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long parseInt() {
+        long sum = 0;
+        for (String text : texts) {
+            sum += Integer.parseInt(text);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long parseIntRecordSince() {
+        long sum = 0;
+        for (String text : texts) {
+            long start = System.nanoTime();
+            sum += Integer.parseInt(text);
+            parseTimer.recordSince(start);
+        }
+        return sum;
+    }
+
+    // ========== 読み取り（全スレッド分の合計） ==========
+
+    @Benchmark
+    public long counterCount() {
+        return counter.count();
+    }
+
+    @Benchmark
+    public long timerSnapshot() {
+        return timer.snapshot().count();
+    }
+
+    // 計測される側（JavaGrammar.add と同じ）
+    static int add(int a, int b) {
+        return a + b;
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() throws Exception {
+        // 区間の番号と上端が合っていて、相対誤差が 1/SUB_BUCKETS 以内
+        Random random = new Random(1);
+        for (int i = 0; i < 1_000_000; i++) {
+            long value = i < 1000 ? i : random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = Metrics.bucket(value);
+            long upper = Metrics.bucketUpperBound(bucket);
+            check("区間の範囲", bucket < Metrics.BUCKETS && upper >= value
+                && (bucket == 0 || Metrics.bucketUpperBound(bucket - 1) < value));
+            check("相対誤差", upper - value <= value / Metrics.SUB_BUCKETS);
+        }
+        check("最大値", Metrics.bucket(Long.MAX_VALUE) == Metrics.BUCKETS - 1
+            && Metrics.bucketUpperBound(Metrics.BUCKETS - 1) == Long.MAX_VALUE);
+
+        // 複数スレッドの記録がすべて合計される（スレッドが終わった後も残る）
+        Metrics.Counter counter = Metrics.counter("verify.counter");
+        Metrics.Timer timer = Metrics.timer("verify.timer");
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 100_000; i++) {
+                    counter.increment();
+                    timer.record(id * 100_000L + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        check("Counter の合計", counter.count() == 800_000);
+        Metrics.Snapshot s = timer.snapshot();
+        check("Timer の回数", s.count() == 800_000 && s.max() == 800_000);
+        check("Timer の平均", Math.abs(s.mean() - 400_000.5) < 1e-6);
+        for (double p : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            long exact = (long) Math.ceil(800_000 * p / 100);
+            long estimate = s.percentile(p);
+            check("百分位数 " + p, estimate >= exact && estimate - exact <= exact / Metrics.SUB_BUCKETS);
+        }
+
+        // 記録してすぐ終わるスレッドを読まずに作り続けても、領域は増え続けない
+        Metrics.Timer shortLived = Metrics.timer("verify.shortLived");
+        for (int i = 0; i < 10_000; i++) {
+            Thread.ofVirtual().start(() -> shortLived.record(1)).join();
+            check("終わったスレッドの領域 " + shortLived.threadCells(), shortLived.threadCells() <= 64);
+        }
+        check("終わったスレッドの記録", shortLived.snapshot().count() == 10_000);
+
+        check("同じ名前は同じ計測器", Metrics.counter("verify.counter") == counter);
+        try {
+            Metrics.timer("verify.counter");
+            check("種類の違う登録", false);
+        } catch (IllegalArgumentException expected) {
+            // 同じ名前で別の種類は登録できない
+        }
+
+        // JFR の記録に定期イベントとして出る
+        Metrics.enableJfr();
+        Path file = Files.createTempFile("metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("javagrammer.Metric").withPeriod(Duration.ofMillis(50));
+            recording.start();
+            Thread.sleep(300);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        check("JFR イベント", events.stream().anyMatch(e -> e.getEventType().getName().equals("javagrammer.Metric")
+            && "verify.timer".equals(e.getString("name")) && e.getLong("count") == 800_000));
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package grammer;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Numbers の try〜 と「Integer.parseInt + catch (NumberFormatException)」の比較
+ *
+ * 入力の 0% / 10% / 50% を不正な文字列（数字の途中に英字・空・符号だけ）にして、1件あたりの時間を測る。
+ * 不正な入力では parseInt は例外を作る（スタックトレース込み）ので、割合が増えるほど差が開く。
+ * 確保バイト数は -prof gc の gc.alloc.rate.norm。
+ * バイト列の列は、同じ文字列を UTF-8 で1つの byte[] に並べたものを MemorySegment の範囲として読む。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar NumbersBenchmark -prof gc
+ *   java -jar benchmarks/target/benchmarks.jar "NumbersBenchmark.int" -p invalidPercent=50
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NumbersBenchmark {
+
+    static final int N = 4096;
+
+    @Param({"0", "10", "50"})
+    int invalidPercent;
+
+    Input ints;
+    Input longs;
+    Input doubles;
+    final Numbers.Result result = new Numbers.Result();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        Random random = new Random(42);
+        ints = new Input(N, random, invalidPercent, r -> String.valueOf(r.nextInt()));
+        longs = new Input(N, random, invalidPercent, r -> String.valueOf(r.nextLong()));
+        doubles = new Input(N, random, invalidPercent, r -> String.valueOf(Math.round(r.nextGaussian() * 1e8) / 1e4));
+    }
+
+    // ========== int ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long intParseCatch() {
+        long sum = 0;
+        for (String text : ints.texts) {
+            try {
+                sum += Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                sum--;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long intTryParse() {
+        long sum = 0;
+        for (String text : ints.texts) {
+            long value = Numbers.tryParseInt(text);
+            sum += value == Numbers.INVALID ? -1 : value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long intTryParseBytes() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            long value = Numbers.tryParseInt(ints.bytes, ints.offsets[i], ints.offsets[i + 1]);
+            sum += value == Numbers.INVALID ? -1 : value;
+        }
+        return sum;
+    }
+
+    // ========== long ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long longParseCatch() {
+        long sum = 0;
+        for (String text : longs.texts) {
+            try {
+                sum += Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                sum--;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long longTryParse() {
+        long sum = 0;
+        for (String text : longs.texts) {
+            sum += Numbers.tryParseLong(text, result) ? result.longValue() : -1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long longTryParseBytes() {
+        long sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += Numbers.tryParseLong(longs.bytes, longs.offsets[i], longs.offsets[i + 1], result)
+                ? result.longValue() : -1;
+        }
+        return sum;
+    }
+
+    // ========== double ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public double doubleParseCatch() {
+        double sum = 0;
+        for (String text : doubles.texts) {
+            try {
+                sum += Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                sum--;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public double doubleTryParse() {
+        double sum = 0;
+        for (String text : doubles.texts) {
+            sum += Numbers.tryParseDouble(text, result) ? result.doubleValue() : -1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public double doubleTryParseBytes() {
+        double sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += Numbers.tryParseDouble(doubles.bytes, doubles.offsets[i], doubles.offsets[i + 1], result)
+                ? result.doubleValue() : -1;
+        }
+        return sum;
+    }
+
+    interface Valid {
+        String next(Random random);
+    }
+
+    // 同じ文字列の String[] と、それを並べた byte[]（offsets[i]〜offsets[i + 1] が i 番目）
+    static final class Input {
+        final String[] texts;
+        final MemorySegment bytes;
+        final long[] offsets;
+
+        Input(int n, Random random, int invalidPercent, Valid valid) {
+            texts = new String[n];
+            for (int i = 0; i < n; i++) {
+                String text = valid.next(random);
+                if (random.nextInt(100) < invalidPercent) {
+                    text = switch (random.nextInt(3)) {
+                        case 0 -> text.substring(0, text.length() / 2) + "x" + text.substring(text.length() / 2);
+                        case 1 -> "";
+                        default -> "-";
+                    };
+                }
+                texts[i] = text;
+            }
+            offsets = new long[n + 1];
+            StringBuilder all = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                all.append(texts[i]);
+                offsets[i + 1] = all.length();  // ASCII だけなので文字数 = バイト数
+            }
+            bytes = MemorySegment.ofArray(all.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    // ========== 動作確認 ==========
+
+    // 例外を投げるかどうか・値が、標準の parseInt・parseLong・parseDouble と一致する
+    static void verify() {
+        List<String> cases = new ArrayList<>(List.of(
+            "", "-", "+", "0", "-0", "+0", "00000000000000000000012", "-00000000000000000000000",
+            "2147483647", "2147483648", "-2147483648", "-2147483649", "12345678", "123456789", "1234567x9",
+            "9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+            "9999999999999999999", "99999999999999999999", "+-1", "--1",
+            "1.5", ".5", "5.", ".", "1e10", "1E-5", "1e", "e5", "1.2.3", "1e+", "-1.5e-3",
+            "Infinity", "-Infinity", "NaN", "-NaN", "Inf", "1.7976931348623157e308", "4.9e-324", "1e-400", "1e400",
+            "0.1234567890123456789", "12345678901234567890123.5", "9007199254740993", "0.000000001234", "1.00000000"));
+        Random random = new Random(1);
+        String alphabet = "0123456789012345678901234567890123456789-+.eE";
+        for (int i = 0; i < 300_000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(26);
+            for (int k = 0; k < length; k++) {
+                text.append(alphabet.charAt(random.nextInt(i % 2 == 0 ? 10 : alphabet.length())));
+            }
+            cases.add(text.toString());
+        }
+        for (int i = 0; i < 100_000; i++) {
+            cases.add(String.valueOf(random.nextInt()));
+            cases.add(String.valueOf(random.nextLong() >> random.nextInt(64)));
+            cases.add(String.valueOf(Double.longBitsToDouble(random.nextLong())));
+            cases.add(String.valueOf(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)));
+        }
+
+        Numbers.Result result = new Numbers.Result();
+        for (String text : cases) {
+            byte[] bytes = ("#" + text + "#").getBytes(StandardCharsets.UTF_8);
+            int to = bytes.length - 1;  // 範囲の外の '#' を読まないことも確かめる
+
+            Integer expectedInt = parse(() -> Integer.parseInt(text));
+            long actualInt = Numbers.tryParseInt(text);
+            check("int " + text, expectedInt == null ? actualInt == Numbers.INVALID : actualInt == expectedInt);
+            check("int bytes " + text, Numbers.tryParseInt(bytes, 1, to) == actualInt);
+
+            Long expectedLong = parse(() -> Long.parseLong(text));
+            boolean ok = Numbers.tryParseLong(text, result);
+            check("long " + text, expectedLong == null ? !ok : ok && result.longValue() == expectedLong);
+            ok = Numbers.tryParseLong(bytes, 1, to, result);
+            check("long bytes " + text, expectedLong == null ? !ok : ok && result.longValue() == expectedLong);
+
+            Double expectedDouble = parse(() -> Double.parseDouble(text));
+            ok = Numbers.tryParseDouble(text, result);
+            check("double " + text, expectedDouble == null ? !ok
+                : ok && Double.compare(result.doubleValue(), expectedDouble) == 0);
+            ok = Numbers.tryParseDouble(bytes, 1, to, result);
+            check("double bytes " + text, expectedDouble == null ? !ok
+                : ok && Double.compare(result.doubleValue(), expectedDouble) == 0);
+        }
+        // 標準の解析は受け付けるが、Numbers は受け付けないもの（全角数字・前後の空白）
+        for (String text : List.of("１２３", "1 ", " 1", "1.5d")) {
+            check("受け付けない " + text, Numbers.tryParseInt(text) == Numbers.INVALID
+                && !Numbers.tryParseLong(text, result) && !Numbers.tryParseDouble(text, result));
+        }
+    }
+
+    interface Parse<T> {
+        T get();
+    }
+
+    // 標準の解析の結果。例外なら null
+    static <T> T parse(Parse<T> parse) {
+        try {
+            return parse.get();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package grammer;
+
+import java.lang.ref.Reference;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ObjectIntMap<String> と HashMap<String, Integer> のメモリ使用量・スループット比較
+ *
+ * 同じ操作を map* と hashMap* の組で計測する。put・反復は1回でマップ全体（size キー）を扱い、
+ * get・addTo・remove は1回 = 1操作（ランダムに選んだ LOOKUPS 個のキーを順に引く）。
+ * メモリ使用量は footprint の補助カウンタ（1キーあたりの残るバイト数）に出る。
+ * 値は i なので、HashMap では Integer キャッシュ外の Integer も作られる。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar ObjectIntMapBenchmark -prof gc            // 1K〜10M キー
+ *   java -jar benchmarks/target/benchmarks.jar ObjectIntMapBenchmark -p size=50000000 -jvmArgsAppend -Xmx16g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ObjectIntMapBenchmark {
+
+    // get などで1回に引くキーの数
+    static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    String[] keys;
+    String[] hits;
+    String[] misses;
+    ObjectIntMap<String> map;
+    Map<String, Integer> hashMap;
+    ObjectIntMap.Cursor<String> cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        // キーの String は両方のマップで共有するので、差はマップ自体の大きさになる
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "name" + i;
+            keys[i].hashCode();  // ハッシュ値を先に計算させておく（String はキャッシュする）
+        }
+        Random random = new Random(42);
+        hits = new String[LOOKUPS];
+        misses = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits[i] = keys[random.nextInt(size)];
+            // 連番だと HashMap ではハッシュ値が隣り合ったバケットに並び、キャッシュに乗って有利になる
+            misses[i] = "missing" + random.nextInt(Integer.MAX_VALUE);
+            misses[i].hashCode();
+        }
+        map = mapPut();
+        hashMap = hashMapPut();
+        cursor = map.cursor();
+    }
+
+    // ========== メモリ使用量 ==========
+
+    // マップが残すヒープ（1キーあたりのバイト数）。System.gc() の前後の使用量の差で、1回だけ測る
+    // （補助カウンタは回ごとに足し合わされるので、-i を変えずに実行する）
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double mapBytesPerKey;
+        public double hashMapBytesPerKey;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void footprint(Footprint footprint) {
+        long before = usedHeap();
+        ObjectIntMap<String> map = mapPut();
+        footprint.mapBytesPerKey = (double) (usedHeap() - before) / size;
+        Reference.reachabilityFence(map);
+
+        before = usedHeap();
+        Map<String, Integer> hashMap = hashMapPut();
+        footprint.hashMapBytesPerKey = (double) (usedHeap() - before) / size;
+        Reference.reachabilityFence(hashMap);
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    // ========== put（全件） ==========
+
+    @Benchmark
+    public ObjectIntMap<String> mapPut() {
+        ObjectIntMap<String> m = new ObjectIntMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            m.put(keys[i], i);
+        }
+        return m;
+    }
+
+    @Benchmark
+    public Map<String, Integer> hashMapPut() {
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            m.put(keys[i], i);
+        }
+        return m;
+    }
+
+    // ========== get（あり・なし） ==========
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long mapGetHit() {
+        long sum = 0;
+        for (String key : hits) {
+            sum += map.getOrDefault(key, -1);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long hashMapGetHit() {
+        long sum = 0;
+        for (String key : hits) {
+            sum += hashMap.getOrDefault(key, -1);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long mapGetMiss() {
+        long sum = 0;
+        for (String key : misses) {
+            sum += map.getOrDefault(key, -1);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long hashMapGetMiss() {
+        long sum = 0;
+        for (String key : misses) {
+            sum += hashMap.getOrDefault(key, -1);
+        }
+        return sum;
+    }
+
+    // ========== addTo / merge ==========
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long mapAddTo() {
+        long sum = 0;
+        for (String key : hits) {
+            sum += map.addTo(key, 1);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long hashMapMerge() {
+        long sum = 0;
+        for (String key : hits) {
+            sum += hashMap.merge(key, 1, Integer::sum);
+        }
+        return sum;
+    }
+
+    // ========== remove + put ==========
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long mapRemovePut() {
+        long sum = 0;
+        for (String key : hits) {
+            map.remove(key);
+            sum += map.put(key, 1);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long hashMapRemovePut() {
+        long sum = 0;
+        for (String key : hits) {
+            hashMap.remove(key);
+            Integer old = hashMap.put(key, 1);
+            sum += old == null ? 0 : old;
+        }
+        return sum;
+    }
+
+    // ========== 反復合計 ==========
+
+    @Benchmark
+    public long mapIterate() {
+        long sum = 0;
+        cursor.reset();
+        while (cursor.next()) {
+            sum += cursor.value();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long hashMapIterate() {
+        long sum = 0;
+        for (Map.Entry<String, Integer> entry : hashMap.entrySet()) {
+            sum += entry.getValue();
+        }
+        return sum;
+    }
+
+    // ========== 動作確認 ==========
+
+    // 狭いキー空間でランダムに put・addTo・remove を繰り返し、HashMap と同じ内容になることを確かめる。
+    // 衝突・テーブル末尾での折り返し・削除時の詰め直しが頻繁に起きる
+    static void verify() {
+        Random random = new Random(1);
+        ObjectIntMap<String> map = new ObjectIntMap<>(4);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 1_000_000; step++) {
+            String key = "k" + random.nextInt(2_000);
+            int value = random.nextInt(100);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    Integer old = expected.put(key, value);
+                    check("put", map.put(key, value) == (old == null ? 0 : old));
+                }
+                case 1 -> check("addTo", map.addTo(key, value) == expected.merge(key, value, Integer::sum));
+                case 2 -> check("remove", map.remove(key) == (expected.remove(key) != null));
+                default -> check("get", map.getOrDefault(key, -1) == expected.getOrDefault(key, -1)
+                    && map.containsKey(key) == expected.containsKey(key));
+            }
+            check("size", map.size() == expected.size());
+        }
+
+        Map<String, Integer> iterated = new HashMap<>();
+        ObjectIntMap.Cursor<String> cursor = map.cursor();
+        while (cursor.next()) {
+            iterated.put(cursor.key(), cursor.value());
+        }
+        check("cursor", iterated.equals(expected));
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
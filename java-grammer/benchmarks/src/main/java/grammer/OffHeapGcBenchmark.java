@@ -0,0 +1,83 @@
+package grammer;
+
+import java.lang.foreign.Arena;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 大きな数値データをヒープに置いた場合と、ヒープ外（OffHeapIntArray）に置いた場合の GC 停止時間の比較
+ *
+ * 同じ量のデータを int[][]（行ごとに別オブジェクト）または OffHeapIntArray の Grid に保持したまま、
+ * 短命・中寿命のオブジェクトを作る処理（1回 = 1行を読んで 256 個の Integer と1つの配列を作る）を計測する。
+ * GC の回数と停止時間の合計は -prof gc の gc.count・gc.time、1回ごとの停止時間は -Xlog:gc で見る。
+ * storage ごとに別の JVM にフォークするので、結果は混ざらない。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar OffHeapGcBenchmark -prof gc
+ *   java -jar benchmarks/target/benchmarks.jar OffHeapGcBenchmark -prof gc -p megabytes=256 -jvmArgs -Xlog:gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx3g"})
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OffHeapGcBenchmark {
+
+    static final int COLUMNS = 1024;  // 1行 4KB
+
+    @Param({"heap", "offheap"})
+    String storage;
+
+    // 保持するデータの量
+    @Param({"1024"})
+    int megabytes;
+
+    int rows;
+    int[][] matrix;             // storage = heap
+    Arena arena;                // storage = offheap（JMH のスレッドから読むので共有の Arena）
+    OffHeapIntArray.Grid grid;
+
+    // 中寿命のオブジェクト（リングバッファで保持）
+    final Object[] survivors = new Object[4096];
+    long iterations;
+    final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rows = (int) ((long) megabytes * 1024 * 1024 / Integer.BYTES / COLUMNS);
+        if (storage.equals("heap")) {
+            matrix = new int[rows][COLUMNS];
+            for (int r = 0; r < rows; r++) {
+                Arrays.fill(matrix[r], r);
+            }
+        } else {
+            arena = Arena.ofShared();
+            grid = OffHeapIntArray.allocate(arena, (long) rows * COLUMNS).asGrid(rows, COLUMNS);
+            for (int r = 0; r < rows; r++) {
+                grid.row(r).fill(r);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
+    // データを読みながら、短命オブジェクトと中寿命オブジェクトを作る
+    @Benchmark
+    public long workload() {
+        int row = random.nextInt(rows);
+        List<Integer> temporary = new ArrayList<>(256);
+        for (int i = 0; i < 256; i++) {
+            int cell = matrix != null ? matrix[row][i] : grid.get(row, i);
+            temporary.add(cell + i * 1000);  // Integer キャッシュ外の値
+        }
+        survivors[(int) (iterations++ & (survivors.length - 1))] = new int[64 + random.nextInt(512)];
+        return temporary.get(random.nextInt(256));
+    }
+}
@@ -0,0 +1,150 @@
+package grammer;
+
+import java.lang.foreign.Arena;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * OffHeapIntArray・OffHeapLongArray の sort() と、ヒープの int[] の Arrays.sort の比較
+ *
+ * 値の種類が少ない（同じ値が多い）データでも遅くならないことを fewValues で確かめる。
+ * 毎回ソート前のデータを写してからソートする（写す時間も入る。どれも同じ条件）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar OffHeapSortBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OffHeapSortBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    // random：ばらばら、fewValues：4種類の値だけ、sorted：ソート済み
+    @Param({"random", "fewValues", "sorted"})
+    String data;
+
+    int[] values;
+    int[] heap;
+    Arena arena;
+    OffHeapIntArray ints;
+    OffHeapIntArray intsSorted;
+    OffHeapLongArray longs;
+    OffHeapLongArray longsSorted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        values = generate(data, size, new Random(42));
+        heap = new int[size];
+        arena = Arena.ofShared();
+        ints = OffHeapIntArray.copyOf(arena, values);
+        intsSorted = OffHeapIntArray.allocate(arena, size);
+        long[] wide = new long[size];
+        for (int i = 0; i < size; i++) {
+            wide[i] = (long) values[i] << 16;
+        }
+        longs = OffHeapLongArray.copyOf(arena, wide);
+        longsSorted = OffHeapLongArray.allocate(arena, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        arena.close();
+    }
+
+    static int[] generate(String kind, int size, Random random) {
+        int[] generated = new int[size];
+        for (int i = 0; i < size; i++) {
+            generated[i] = switch (kind) {
+                case "random" -> random.nextInt();
+                case "fewValues" -> random.nextInt(4);
+                case "sorted" -> i;
+                default -> throw new IllegalArgumentException("data: " + kind);
+            };
+        }
+        return generated;
+    }
+
+    // ========== 計測 ==========
+
+    @Benchmark
+    public int heapInt() {
+        System.arraycopy(values, 0, heap, 0, size);
+        Arrays.sort(heap);
+        return heap[0];
+    }
+
+    @Benchmark
+    public int offHeapInt() {
+        OffHeapIntArray.copy(ints, 0, intsSorted, 0, size);
+        intsSorted.sort();
+        return intsSorted.get(0);
+    }
+
+    @Benchmark
+    public long offHeapLong() {
+        OffHeapLongArray.copy(longs, 0, longsSorted, 0, size);
+        longsSorted.sort();
+        return longsSorted.get(0);
+    }
+
+    // ========== 動作確認 ==========
+
+    // いろいろな長さ・値の種類・範囲で、Arrays.sort と同じ結果になる
+    static void verify() {
+        Random random = new Random(7);
+        try (Arena arena = Arena.ofConfined()) {
+            for (String kind : new String[] {"random", "fewValues", "sorted"}) {
+                for (int size : new int[] {0, 1, 2, 16, 17, 100, 10_000}) {
+                    int[] source = generate(kind, size, random);
+                    if (kind.equals("sorted")) {
+                        reverse(source);  // 逆順
+                    }
+                    int[] expected = source.clone();
+                    Arrays.sort(expected);
+                    OffHeapIntArray ints = OffHeapIntArray.copyOf(arena, source);
+                    ints.sort();
+                    check("int " + kind + " " + size, Arrays.equals(ints.toArray(), expected));
+
+                    long[] wide = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        wide[i] = source[i] * 0x1_0000_0001L;  // int に収まらない値
+                    }
+                    long[] expectedWide = wide.clone();
+                    Arrays.sort(expectedWide);
+                    OffHeapLongArray longs = OffHeapLongArray.copyOf(arena, wide);
+                    longs.sort();
+                    check("long " + kind + " " + size, Arrays.equals(longs.toArray(), expectedWide));
+                }
+            }
+
+            // 範囲を指定すると、その外は動かない
+            int[] source = generate("random", 1_000, random);
+            int[] expected = source.clone();
+            Arrays.sort(expected, 100, 900);
+            OffHeapIntArray ints = OffHeapIntArray.copyOf(arena, source);
+            ints.sort(100, 900);
+            check("範囲", Arrays.equals(ints.toArray(), expected));
+        }
+    }
+
+    static void reverse(int[] array) {
+        for (int i = 0, j = array.length - 1; i < j; i++, j--) {
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package grammer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Output と PrintStream（System.out と同じ作り）で、日本語の多いレポートを書き出す速さの比較
+ *
+ * 書き出し先は /dev/null の FileChannel。データは捨てられるが write のシステムコールは毎回発生するので、
+ * 「何回 write するか」と「文字列を何回作って変換するか」の差が出る。
+ * System.out はコンソールに出すとき行ごとに書き出すので、autoflush の PrintStream（lineFlushed）がそれに当たる。
+ *
+ * report* は LINES 行のレポート、forEach* は numbers.forEach(n -> System.out.print(n + " ")) と同じ出力で、
+ * どちらも1行（1個）あたりの時間。確保バイト数は -prof gc、write 回数は補助カウンタ writes（計測した回の合計）。
+ * line* は1回 = 1行で、出力先を全スレッドで共有する。main から実行するとスレッド数を 1～64 と変えて測る（ThreadMatrix）。
+ * writes は出力先全体の回数なので、1スレッドで見る。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar OutputBenchmark -prof gc
+ *   java -cp benchmarks/target/benchmarks.jar grammer.OutputBenchmark "OutputBenchmark.line"       // 1～64 スレッド
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OutputBenchmark {
+
+    static final int LINES = 1000;
+    static final String[] NAMES = {"太郎", "花子", "次郎", "三郎"};
+
+    FileChannel devNull;
+    CountingChannel channel;
+    PrintStream lineFlushed;
+    PrintStream buffered;
+    Output line;
+    Output full;
+    final List<Integer> numbers = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        verify();
+        devNull = FileChannel.open(Path.of("/dev/null"), StandardOpenOption.WRITE);
+        channel = new CountingChannel(devNull);
+        lineFlushed = new PrintStream(Channels.newOutputStream(channel), true, StandardCharsets.UTF_8);
+        buffered = new PrintStream(
+            new BufferedOutputStream(Channels.newOutputStream(channel), 8192), false, StandardCharsets.UTF_8);
+        line = Output.of(channel, Output.FlushPolicy.LINE, Output.DEFAULT_CAPACITY);
+        full = Output.of(channel, Output.FlushPolicy.FULL, Output.DEFAULT_CAPACITY);
+        for (int i = 0; i < LINES; i++) {
+            numbers.add(i * 37);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        devNull.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadMatrix.run(OutputBenchmark.class, args);
+    }
+
+    // 計測した回に出力先へ write した回数
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Writes {
+        public long writes;
+        CountingChannel channel;
+        long start;
+
+        @Setup(Level.Iteration)
+        public void mark(OutputBenchmark benchmark) {
+            channel = benchmark.channel;
+            start = channel.writes();
+        }
+
+        @TearDown(Level.Iteration)
+        public void count() {
+            writes = channel.writes() - start;
+        }
+    }
+
+    // ========== 1行ずつの表（文字列の連結 + println と、部品ごとの print） ==========
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void reportLineFlushed(Writes writes) {
+        for (int i = 0; i < LINES; i++) {
+            lineFlushed.println("【" + i + "】 名前: " + NAMES[i & 3] + "  年齢: " + (i % 100) + "歳");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void reportBuffered(Writes writes) {
+        for (int i = 0; i < LINES; i++) {
+            buffered.println("【" + i + "】 名前: " + NAMES[i & 3] + "  年齢: " + (i % 100) + "歳");
+        }
+        buffered.flush();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void reportOutputLine(Writes writes) {
+        for (int i = 0; i < LINES; i++) {
+            report(line, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void reportOutputFull(Writes writes) {
+        for (int i = 0; i < LINES; i++) {
+            report(full, i);
+        }
+        full.flush();
+    }
+
+    // ========== forEach で数を空白区切りで出す ==========
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void forEachLineFlushed(Writes writes) {
+        numbers.forEach(n -> lineFlushed.print(n + " "));
+        lineFlushed.println();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void forEachBuffered(Writes writes) {
+        numbers.forEach(n -> buffered.print(n + " "));
+        buffered.println();
+        buffered.flush();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void forEachOutputFull(Writes writes) {
+        numbers.forEach(n -> {
+            full.print((int) n);  // Integer のままだと print(Object) になり文字列を作る
+            full.print(' ');
+        });
+        full.println();
+        full.flush();
+    }
+
+    // ========== 複数スレッドから同じ出力先に1行ずつ ==========
+
+    @Benchmark
+    public void lineLineFlushed(Writes writes) {
+        lineFlushed.println("【1】 名前: 太郎  年齢: 20歳");
+    }
+
+    @Benchmark
+    public void lineBuffered(Writes writes) {
+        buffered.println("【1】 名前: 太郎  年齢: 20歳");
+    }
+
+    @Benchmark
+    public void lineOutputFull(Writes writes) {
+        report(full, 1);
+    }
+
+    static void report(Output out, int i) {
+        out.print('【');
+        out.print(i);
+        out.print("】 名前: ");
+        out.print(NAMES[i & 3]);
+        out.print("  年齢: ");
+        out.print(i % 100);
+        out.println("歳");
+    }
+
+    // write を呼んだ回数を数える
+    static final class CountingChannel implements WritableByteChannel {
+        final WritableByteChannel target;
+        private long writes;
+
+        CountingChannel(WritableByteChannel target) {
+            this.target = target;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            writes++;
+            return target.write(src);
+        }
+
+        synchronized long writes() {
+            return writes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return target.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() throws IOException {
+        // 日本語・サロゲートペア（𠮷）・数値・printf が String.getBytes(UTF_8) と同じバイト列になる
+        for (Output.FlushPolicy policy : Output.FlushPolicy.values()) {
+            for (int capacity : new int[] {2, 7, 64, Output.DEFAULT_CAPACITY}) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                Output out = Output.of(Channels.newChannel(bytes), policy, capacity);
+                StringBuilder expected = new StringBuilder();
+                for (int i = 0; i < 2000; i++) {
+                    out.print("𠮷野家" + i);
+                    out.print(i * 1_000_000_007L);
+                    out.print(i / 7.0);
+                    out.print(i % 2 == 0);
+                    out.print('é');
+                    out.printf("%5d|%-4s|%n", i, NAMES[i & 3]);
+                    out.println(NAMES[i & 3]);
+                    expected.append("𠮷野家").append(i).append(i * 1_000_000_007L).append(i / 7.0).append(i % 2 == 0)
+                        .append('é').append(String.format("%5d|%-4s|%n", i, NAMES[i & 3])).append(NAMES[i & 3]).append('\n');
+                }
+                out.flush();
+                check(policy + " " + capacity, Arrays.equals(bytes.toByteArray(),
+                    expected.toString().getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+
+        // サロゲートペアの前半だけで flush しても、後半と合わせて1文字になる
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Output split = Output.of(Channels.newChannel(bytes), Output.FlushPolicy.MANUAL, 16);
+        split.print("𠮷".charAt(0));
+        split.flush();
+        check("前半だけは書かない", bytes.size() == 0);
+        split.print("𠮷".charAt(1));
+        split.flush();
+        check("サロゲートペア", bytes.toString(StandardCharsets.UTF_8).equals("𠮷"));
+
+        // 複数スレッドの行が混ざらず、すべて書かれる
+        ByteArrayOutputStream shared = new ByteArrayOutputStream();
+        Output out = Output.of(Channels.newChannel(shared), Output.FlushPolicy.FULL, 100);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    out.print("スレッド");
+                    out.print(id);
+                    out.print(" 行");
+                    out.println(i);
+                }
+                out.flush();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        int[] next = new int[threads.length];
+        for (String written : shared.toString(StandardCharsets.UTF_8).split("\n")) {
+            String[] parts = written.substring("スレッド".length()).split(" 行");
+            int id = Integer.parseInt(parts[0]);
+            check("スレッドごとの順序", Integer.parseInt(parts[1]) == next[id]++);
+        }
+        check("行数", Arrays.stream(next).allMatch(n -> n == 10_000));
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package grammer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * PersonCodec と String.format・文字列結合・テキストブロックの比較（1件あたりの時間と確保バイト数）
+ *
+ * 確保バイト数は -prof gc の gc.alloc.rate.norm。配列の読み書きは1000件で1回だが、1件あたりの値で出る。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar PersonCodecBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersonCodecBenchmark {
+
+    static final int BATCH = 1000;
+
+    final Person person = new Person("太郎", 25);
+    final PersonCodec codec = new PersonCodec();
+    final PersonCodec batchCodec = new PersonCodec();
+    final List<Person> batch = new ArrayList<>();
+    byte[] json;
+    byte[] batchJson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        json = codec.reset().write(person).toString().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(new Person(i % 2 == 0 ? "山田太郎" : "Hanako", i % 100));
+        }
+        batchCodec.reset().writeArray(batch);
+        batchJson = Arrays.copyOf(batchCodec.buffer(), batchCodec.size());
+    }
+
+    // ========== String を作る書き方（JavaGrammar.stringOperations() の書き方。最後に UTF-8 へ変換する） ==========
+
+    @Benchmark
+    public byte[] format() {
+        return String.format("名前: %s, 年齢: %d", person.getName(), person.getAge()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // introduce() と同じ
+    @Benchmark
+    public byte[] concat() {
+        return ("私の名前は" + person.getName() + "、" + person.getAge() + "歳です。").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] textBlock() {
+        return """
+            {"name":"%s","age":%d}""".formatted(person.getName(), person.getAge()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ========== PersonCodec ==========
+
+    @Benchmark
+    public int write() {
+        return codec.reset().write(person).size();
+    }
+
+    @Benchmark
+    public Person read() {
+        return PersonCodec.read(json, 0, json.length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int writeArray() {
+        return batchCodec.reset().writeArray(batch).size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long readArray() {
+        long[] total = {0};
+        PersonCodec.readArray(batchJson, 0, batchJson.length, p -> total[0] += p.getAge());
+        return total[0];
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() {
+        PersonCodec codec = new PersonCodec(8);  // 小さいバッファから伸びることも確かめる
+        for (Person person : List.of(new Person("太郎", 25), new Person("\"引用\" \\ 😀\n", -1),
+                new Person("", Integer.MIN_VALUE), new Person("Hanako", Integer.MAX_VALUE))) {
+            codec.reset().write(person);
+            Person back = PersonCodec.read(codec.buffer(), 0, codec.size());
+            check(codec.toString(), back.getName().equals(person.getName()) && back.getAge() == person.getAge());
+        }
+
+        byte[] spaced = """
+            [ { "age" : 30, "id": 7, "name" : "花子", "admin": false },
+              {"name":"\\u6b21\\u90ce","age":23} ]
+            """.getBytes(StandardCharsets.UTF_8);
+        List<Person> people = PersonCodec.readArray(spaced, 0, spaced.length);
+        check("readArray", people.size() == 2 && people.get(0).getName().equals("花子")
+            && people.get(1).getName().equals("次郎") && people.get(1).getAge() == 23);
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package grammer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * PersonLog の追記の速さ（commit の間隔ごと・グループコミット）と、開き直したときの復元時間
+ *
+ * append       1回 = 1件の追記。interval 件ごとに commit する（1件ごとに commit すると、毎回 force を待つ）
+ * appendCommit 1回 = 「追記して commit」。main から実行するとスレッド数を 1～64 と変えて測り（ThreadMatrix）、
+ *              何件が1回の force にまとまるかは、件数と補助カウンタ forces（計測した回の force の回数）の比で分かる
+ * recover      records 件（既定 1 億件、約 2GB）のファイルを開き直し、名前ごとの最新の年齢を復元する1回
+ * read         記録番号でランダムに読む1件（疎な索引から最大 INDEX_INTERVAL - 1 件読み飛ばす）
+ *
+ * ファイルは java.io.tmpdir に作り、最後に消す。
+ * 復元はファイルがページキャッシュに載ったまま測るので、ディスクから読む時間は含まない。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar PersonLogBenchmark.append$
+ *   java -jar benchmarks/target/benchmarks.jar "PersonLogBenchmark.(recover|read)" -p records=10000000   // 1000 万件
+ *   java -cp benchmarks/target/benchmarks.jar grammer.PersonLogBenchmark PersonLogBenchmark.appendCommit
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersonLogBenchmark {
+
+    static final int NAMES = 1 << 20;
+    static final int READS = 1 << 16;
+    static final String[] PEOPLE = new String[NAMES];
+
+    static {
+        for (int i = 0; i < NAMES; i++) {
+            PEOPLE[i] = "人" + i;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        verify();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadMatrix.run(PersonLogBenchmark.class, args);
+    }
+
+    // ========== 追記 ==========
+
+    // 追記先のログ（全スレッドで共有）
+    @State(Scope.Benchmark)
+    public static class Log {
+        Path file;
+        PersonLog log;
+        long forcesAtStart;
+        final AtomicBoolean counted = new AtomicBoolean();
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            file = Files.createTempFile("person-log", ".log");
+            Files.delete(file);
+            log = PersonLog.open(file);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            try {
+                log.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void mark() {
+            forcesAtStart = log.forces();
+            counted.set(false);
+        }
+
+        // この回の force の回数（最初に呼んだスレッドだけが受け取る）
+        long claimForces() {
+            return counted.compareAndSet(false, true) ? log.forces() - forcesAtStart : 0;
+        }
+    }
+
+    // 計測した回の force の回数（全スレッドの合計が、ログ全体の回数になる）
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Forces {
+        public long forces;
+        long appended;
+
+        @TearDown(Level.Iteration)
+        public void count(Log log) {
+            forces = log.claimForces();
+        }
+    }
+
+    // 何件ごとに commit するか（append）
+    @State(Scope.Benchmark)
+    public static class Interval {
+        @Param({"1", "10", "100", "1000", "10000"})
+        int interval;
+    }
+
+    @Benchmark
+    public long append(Log log, Interval interval, Forces forces) {
+        long number = log.log.append(PEOPLE[(int) (forces.appended++ & (NAMES - 1))], 20);
+        if (forces.appended % interval.interval == 0) {
+            log.log.commit();
+        }
+        return number;
+    }
+
+    // 名前はスレッドごとに変える（同じ名前の記録が並ばないように）
+    @Benchmark
+    public long appendCommit(Log log, Forces forces) {
+        long number = log.log.append(PEOPLE[(int) (Thread.currentThread().threadId() & (NAMES - 1))], 30);
+        log.log.commit();
+        return number;
+    }
+
+    // ========== 復元・読み取り ==========
+
+    // records 件を書いたファイル
+    @State(Scope.Benchmark)
+    public static class Filled {
+        @Param({"100000000"})
+        long records;
+
+        Path file;
+        int[] expected;  // 名前ごとの最新の年齢 + 1（0 は「記録なし」）
+        long[] numbers;
+        PersonLog log;
+
+        @Setup(Level.Trial)
+        public void fill() throws IOException {
+            file = Files.createTempFile("person-log", ".log");
+            Files.delete(file);
+            expected = new int[NAMES];
+            try (PersonLog log = PersonLog.open(file)) {
+                for (long i = 0; i < records; i++) {
+                    int person = (int) (i * 0x9E3779B1L >>> 12) & (NAMES - 1);
+                    int age = (int) (i % 100);
+                    log.append(PEOPLE[person], age);
+                    expected[person] = age + 1;
+                    if ((i + 1) % 10_000 == 0) {
+                        log.commit();
+                    }
+                }
+            }
+            log = PersonLog.open(file);
+            check("件数", log.size() == records);
+            for (int person = 0; person < NAMES; person++) {
+                check("最新の年齢 " + person, log.age(PEOPLE[person], -1) == expected[person] - 1);
+            }
+            numbers = new Random(1).longs(READS, 0, records).toArray();
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            try {
+                log.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long recover(Filled filled) throws IOException {
+        try (PersonLog log = PersonLog.open(filled.file)) {
+            return log.size();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(READS)
+    public long read(Filled filled) {
+        long sum = 0;
+        for (long number : filled.numbers) {
+            sum += filled.log.read(number).getAge();
+        }
+        return sum;
+    }
+
+    interface WithLog {
+        void run(PersonLog log) throws Exception;
+    }
+
+    static void withTempLog(WithLog body) throws Exception {
+        Path file = Files.createTempFile("person-log", ".log");
+        Files.delete(file);
+        try (PersonLog log = PersonLog.open(file)) {
+            body.run(log);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() throws Exception {
+        Path file = Files.createTempFile("person-log-verify", ".log");
+        Files.delete(file);
+        try {
+            // 小さいチャンク（4KB）で、チャンクの境目の PADDING も通す
+            Random random = new Random(7);
+            List<Person> written = new ArrayList<>();
+            Map<String, Integer> latest = new HashMap<>();
+            String[] names = {"山田太郎", "Hanako", "𠮷田", "", "次郎" + "ー".repeat(300), "a\u0000b"};
+            for (int round = 0; round < 5; round++) {
+                try (PersonLog log = PersonLog.open(file, 12)) {
+                    check("開き直した件数", log.size() == written.size());
+                    for (int i = 0; i < 2000; i++) {
+                        String name = names[random.nextInt(names.length)] + random.nextInt(50);
+                        int age = random.nextInt() >> random.nextInt(32);
+                        check("記録番号", log.append(name, age) == written.size());
+                        written.add(new Person(name, age));
+                        latest.put(name, age);
+                        if (random.nextInt(100) == 0) {
+                            log.commit();
+                        }
+                    }
+                    checkContents(log, written, latest);
+                }
+                try (PersonLog log = PersonLog.open(file, 20)) {  // 既存のファイルはヘッダのチャンクの大きさに従う
+                    checkContents(log, written, latest);
+                }
+            }
+
+            // 最後の記録が書きかけ（CRC が合わない）なら、その前までを復元し、後ろを切り詰める
+            long size;
+            try (PersonLog log = PersonLog.open(file)) {
+                size = log.size();
+                log.append("書きかけ", 1);
+            }
+            corruptLastByteOfRecord(file, size);
+            try (PersonLog log = PersonLog.open(file)) {
+                check("書きかけを捨てる", log.size() == size && log.age("書きかけ", -1) == -1);
+                // 捨てた後ろに、短い記録を書いても古いデータとつながらない
+                log.append("短", 2);
+                written.add(new Person("短", 2));
+                latest.put("短", 2);
+            }
+            try (PersonLog log = PersonLog.open(file)) {
+                check("書き直し", log.size() == size + 1 && log.read(size).getName().equals("短"));
+                checkContents(log, written, latest);
+            }
+
+            // 途中の記録が壊れていたら、そこから後ろは読まない
+            corruptLastByteOfRecord(file, 100);
+            try (PersonLog log = PersonLog.open(file)) {
+                check("途中で止める", log.size() == 100);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // 複数のスレッドの commit がまとまり、すべての記録が残る
+        withTempLog(log -> {
+            Thread[] threads = new Thread[8];
+            for (int t = 0; t < threads.length; t++) {
+                int id = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        log.append("スレッド" + id, i);
+                        log.commit();
+                        check("commit 後", log.durableSize() >= 1);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            check("件数", log.size() == 4000 && log.durableSize() == 4000);
+            for (int t = 0; t < threads.length; t++) {
+                check("最後の年齢", log.age("スレッド" + t, -1) == 499);
+            }
+        });
+
+        // PersonLog のファイルでなければ開かない
+        Path other = Files.createTempFile("not-a-log", ".txt");
+        try {
+            Files.writeString(other, "name,age\n");
+            try {
+                PersonLog.open(other).close();
+                throw new AssertionError("開けてしまった");
+            } catch (IOException expected) {
+                // 期待どおり
+            }
+        } finally {
+            Files.deleteIfExists(other);
+        }
+    }
+
+    static void checkContents(PersonLog log, List<Person> written, Map<String, Integer> latest) {
+        for (int i = 0; i < written.size(); i++) {
+            Person person = log.read(i);
+            check("読み出し " + i, person.getName().equals(written.get(i).getName())
+                && person.getAge() == written.get(i).getAge());
+        }
+        check("人数", log.people() == latest.size());
+        latest.forEach((name, age) -> check("最新の年齢 " + name, log.age(name, age + 1) == age));
+    }
+
+    // recordNumber 番目の記録の最後のバイトを書き換えて、CRC を合わなくする（ファイルを直接読む）
+    static void corruptLastByteOfRecord(Path file, long recordNumber) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(16).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            long chunkSize = 1L << header.getInt(8);
+            ByteBuffer buffer = ByteBuffer.allocate(4).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            long offset = 16;
+            for (long i = 0; ; ) {
+                long remaining = chunkSize - offset % chunkSize;
+                int length = -1;
+                if (remaining >= 12) {
+                    channel.read(buffer.clear(), offset);
+                    length = buffer.getInt(0);
+                }
+                if (length == -1) {
+                    offset += remaining;
+                    continue;
+                }
+                if (i++ == recordNumber) {
+                    long last = offset + 8 + length - 1;
+                    ByteBuffer b = ByteBuffer.allocate(1);
+                    channel.read(b, last);
+                    channel.write(ByteBuffer.wrap(new byte[] {(byte) (b.get(0) ^ 0x5A)}), last);
+                    return;
+                }
+                offset += 8 + length;
+            }
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * PersonRegistry の動作確認（マルチスレッドのストレステスト）と、ConcurrentHashMap<String, Person> とのスループット比較
+ *
+ * 比較する ConcurrentHashMap 側は、年齢の更新を compute で新しい Person に差し替える
+ * （get した Person の setAge を呼ぶと、読む側とのデータ競合になる）。
+ *   registry / concurrentHashMap  1回 = PEOPLE 人からランダムに選んだ1人の操作。
+ *                                 writePercent % が updateAge(name, age -> age + 1)、残りが年齢の読み取り
+ *   snapshot                      snapshot() 1回（書き込みなし）
+ *   snapshotWhileWriting          snapshot() 1回（別の 4 スレッドが書き込み続けている）
+ *   copyConcurrentHashMap         参考：CHM を HashMap に写す1回（一瞬の状態にはならない）
+ * main から実行するとスレッド数を 1～64 と変えて測り、表にまとめる（ThreadMatrix）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -cp benchmarks/target/benchmarks.jar grammer.PersonRegistryBenchmark "PersonRegistryBenchmark.(registry|concurrentHashMap)"
+ *   java -cp benchmarks/target/benchmarks.jar grammer.PersonRegistryBenchmark -t 16 -p writePercent=50 -prof gc
+ *   java -jar benchmarks/target/benchmarks.jar "PersonRegistryBenchmark.(snapshot|copy)"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersonRegistryBenchmark {
+
+    static final int PEOPLE = 1 << 16;
+
+    final String[] names = new String[PEOPLE];
+    final PersonRegistry registry = new PersonRegistry(PEOPLE);
+    final ConcurrentHashMap<String, Person> map = new ConcurrentHashMap<>(PEOPLE);
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        verify();
+        for (int i = 0; i < PEOPLE; i++) {
+            names[i] = "人" + i;
+            registry.put(names[i], i % 100);
+            map.put(names[i], new Person(names[i], i % 100));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadMatrix.run(PersonRegistryBenchmark.class, args);
+    }
+
+    // ========== 読み書きの混ざった操作 ==========
+
+    @State(Scope.Benchmark)
+    public static class Mix {
+        // 更新の割合（%）
+        @Param({"5", "50"})
+        int writePercent;
+    }
+
+    @Benchmark
+    public long registry(Mix mix) {
+        return registryOp(registry, names, mix.writePercent);
+    }
+
+    @Benchmark
+    public long concurrentHashMap(Mix mix) {
+        return mapOp(map, names, mix.writePercent);
+    }
+
+    // ========== スナップショット ==========
+
+    // 計測している間、別の 4 スレッドが updateAge し続ける
+    @State(Scope.Benchmark)
+    public static class Writers {
+        final AtomicBoolean running = new AtomicBoolean();
+        final Thread[] threads = new Thread[4];
+
+        @Setup(Level.Trial)
+        public void start(PersonRegistryBenchmark benchmark) {
+            running.set(true);
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    while (running.get()) {
+                        registryOp(benchmark.registry, benchmark.names, 100);
+                    }
+                });
+                threads[t].start();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws InterruptedException {
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public PersonRegistry.Snapshot snapshot() {
+        return registry.snapshot();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public PersonRegistry.Snapshot snapshotWhileWriting(Writers writers) {
+        return registry.snapshot();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Map<String, Person> copyConcurrentHashMap() {
+        return new HashMap<>(map);
+    }
+
+    static long registryOp(PersonRegistry registry, String[] names, int writePercent) {
+        int r = ThreadLocalRandom.current().nextInt();
+        String name = names[r & (PEOPLE - 1)];
+        if ((r >>> 16) % 100 < writePercent) {
+            return registry.updateAge(name, age -> age + 1);
+        }
+        return registry.age(name, -1);
+    }
+
+    static long mapOp(ConcurrentHashMap<String, Person> map, String[] names, int writePercent) {
+        int r = ThreadLocalRandom.current().nextInt();
+        String name = names[r & (PEOPLE - 1)];
+        if ((r >>> 16) % 100 < writePercent) {
+            return map.compute(name, (key, person) -> new Person(key, person.getAge() + 1)).getAge();
+        }
+        return map.get(name).getAge();
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() throws InterruptedException {
+        sameAsHashMap();
+        atomicUpdates(8, 20_000);
+        consistentSnapshots();
+    }
+
+    // 1スレッドでランダムに操作して、HashMap と同じ結果になる（表の拡張・削除・再登録を含む）
+    static void sameAsHashMap() {
+        Random random = new Random(7);
+        PersonRegistry registry = new PersonRegistry(16);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 200_000; step++) {
+            String name = "名前" + random.nextInt(5_000);
+            switch (random.nextInt(4)) {
+                case 0 -> check("put " + name, registry.put(name, step) == (expected.put(name, step) == null));
+                case 1 -> check("remove " + name, registry.remove(name) == (expected.remove(name) != null));
+                case 2 -> {
+                    if (expected.containsKey(name)) {
+                        check("updateAge " + name, registry.updateAge(name, age -> age * 3 + 1) == expected.merge(name, 0, (age, zero) -> age * 3 + 1));
+                    } else {
+                        try {
+                            registry.updateAge(name, age -> age);
+                            throw new AssertionError("登録されていない名前を更新できた: " + name);
+                        } catch (NoSuchElementException expectedException) {
+                            // 登録されていない
+                        }
+                    }
+                }
+                default -> check("age " + name, registry.age(name, -1) == expected.getOrDefault(name, -1)
+                    && registry.contains(name) == expected.containsKey(name));
+            }
+            if (step % 20_000 == 0) {
+                check("size", registry.size() == expected.size());
+                Map<String, Integer> copied = new HashMap<>();
+                registry.snapshot().forEach((name2, age) -> copied.put(name2, age));
+                check("snapshot", copied.equals(expected) && registry.snapshot().size() == expected.size());
+            }
+        }
+        Map<String, Integer> iterated = new HashMap<>();
+        for (Person person : registry.snapshot()) {
+            iterated.put(person.getName(), person.getAge());
+        }
+        check("iterator", iterated.equals(expected));
+    }
+
+    // updateAge は読んでから書くまでが1つの操作なので、同時に足しても取りこぼさない
+    static void atomicUpdates(int threads, int perThread) throws InterruptedException {
+        PersonRegistry registry = new PersonRegistry();
+        int people = 16;
+        for (int i = 0; i < people; i++) {
+            registry.put("P" + i, 0);
+        }
+        runAll(threads, (t) -> {
+            for (int i = 0; i < perThread; i++) {
+                registry.updateAge("P" + (i % people), age -> age + 1);
+            }
+        });
+        for (int i = 0; i < people; i++) {
+            check("updateAge P" + i, registry.age("P" + i, -1) == threads * perThread / people);
+        }
+    }
+
+    // 書き込みが続いている間に撮ったスナップショットが、どれもある一瞬の状態になっている。
+    //   階段：各書き手は自分の STEPS 人を順番に +1 する。一瞬の状態なら、前の人ほど年齢が大きく、差は 1 以内
+    //   入れ替え：s0, s1, ... を順に登録し、WINDOW 人前を削除する。一瞬の状態なら、番号は連続し WINDOW + 1 人以下
+    //   年齢は setRelease / getAcquire なので、ロックなしで読んでも同じ人の年齢は減らない
+    static final int STEPS = 97;
+    static final int WINDOW = 50;
+
+    static void consistentSnapshots() throws InterruptedException {
+        PersonRegistry registry = new PersonRegistry(16);
+        int writers = 4;
+        for (int w = 0; w < writers; w++) {
+            for (int j = 0; j < STEPS; j++) {
+                registry.put("w" + w + "-" + j, 0);
+            }
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        runAll(writers + 4, (t) -> {
+            try {
+                if (t < writers) {
+                    while (running.get()) {
+                        for (int j = 0; j < STEPS; j++) {
+                            registry.updateAge("w" + t + "-" + j, age -> age + 1);
+                        }
+                    }
+                } else if (t == writers) {
+                    for (int k = 0; running.get(); k++) {
+                        registry.put("s" + k, k);
+                        if (k >= WINDOW) {
+                            registry.remove("s" + (k - WINDOW));
+                        }
+                    }
+                } else if (t == writers + 1) {
+                    int last = 0;
+                    while (running.get()) {
+                        int age = registry.age("w0-" + STEPS / 2, -1);
+                        if (age < last) {
+                            throw new AssertionError("年齢が減った: " + last + " → " + age);
+                        }
+                        last = age;
+                    }
+                } else {
+                    for (int round = 0; round < 300; round++) {
+                        checkSnapshot(registry.snapshot(), writers);
+                    }
+                    running.set(false);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e.toString());
+                running.set(false);
+            }
+        });
+        check("並行 " + failure.get(), failure.get() == null);
+    }
+
+    static void checkSnapshot(PersonRegistry.Snapshot snapshot, int writers) {
+        int[][] steps = new int[writers][STEPS];
+        int[] lowHigh = {Integer.MAX_VALUE, -1, 0};
+        snapshot.forEach((name, age) -> {
+            if (name.startsWith("w")) {
+                int dash = name.indexOf('-');
+                steps[Integer.parseInt(name.substring(1, dash))][Integer.parseInt(name.substring(dash + 1))] = age;
+            } else {
+                int k = Integer.parseInt(name.substring(1));
+                check("入れ替えの年齢", age == k);
+                lowHigh[0] = Math.min(lowHigh[0], k);
+                lowHigh[1] = Math.max(lowHigh[1], k);
+                lowHigh[2]++;
+            }
+        });
+        for (int[] ages : steps) {
+            for (int j = 1; j < STEPS; j++) {
+                check("階段 " + Arrays.toString(ages), ages[j] <= ages[j - 1] && ages[j] >= ages[0] - 1);
+            }
+        }
+        check("入れ替え " + Arrays.toString(lowHigh), lowHigh[2] == 0
+            || (lowHigh[1] - lowHigh[0] + 1 == lowHigh[2] && lowHigh[2] <= WINDOW + 1));
+    }
+
+    interface Task {
+        void run(int threadIndex);
+    }
+
+    static void runAll(int threads, Task task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run(index);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
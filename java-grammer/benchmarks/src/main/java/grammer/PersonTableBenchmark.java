@@ -0,0 +1,178 @@
+package grammer;
+
+import java.lang.ref.Reference;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * List<Person> と PersonTable のメモリ使用量・集計速度の比較
+ *
+ * 集計は1回 = 全 rows 行を1回なめる処理（1行あたりの時間は rows で割る）。
+ * メモリ使用量は footprint の補助カウンタ（1行あたりの残るバイト数）に出る。入力から読んだ名前は行ごとに
+ * 別の String になるので、new String でそれを再現する（List は String を、PersonTable は辞書の番号を残す）。
+ * build* は表を作る時間で、-prof gc の gc.alloc.rate.norm には捨てた String と、伸ばすときに捨てた古い配列の分も含まれる。
+ * 3方式の集計結果が一致することは、計測の前に確かめる。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar PersonTableBenchmark -prof gc          // 1000万行
+ *   java -jar benchmarks/target/benchmarks.jar PersonTableBenchmark -p rows=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersonTableBenchmark {
+
+    static final String[] NAMES = {"太郎", "花子", "次郎", "三郎", "山田太郎", "Aki", "Hanako", "Jiro"};
+    static final int THRESHOLD = 30;
+
+    @Param({"10000000"})
+    int rows;
+
+    int[] ages;
+    int[] nameIndexes;
+    List<Person> people;
+    PersonTable table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        ages = random.ints(rows, 0, 100).toArray();
+        nameIndexes = random.ints(rows, 0, NAMES.length).toArray();
+        people = buildList();
+        table = buildTable();
+        verify(people, table);
+    }
+
+    // ========== 作成とメモリ使用量 ==========
+
+    @Benchmark
+    public List<Person> buildList() {
+        List<Person> people = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            people.add(new Person(new String(NAMES[nameIndexes[i]]), ages[i]));
+        }
+        return people;
+    }
+
+    @Benchmark
+    public PersonTable buildTable() {
+        PersonTable table = new PersonTable();
+        for (int i = 0; i < rows; i++) {
+            table.append(new String(NAMES[nameIndexes[i]]), ages[i]);
+        }
+        return table;
+    }
+
+    // 作った表が残すヒープ（1行あたりのバイト数）。System.gc() の前後の使用量の差で、1回だけ測る
+    // （補助カウンタは回ごとに足し合わされるので、-i を変えずに実行する）
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double listBytesPerRow;
+        public double tableBytesPerRow;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void footprint(Footprint footprint) {
+        long before = usedHeap();
+        List<Person> people = buildList();
+        footprint.listBytesPerRow = (double) (usedHeap() - before) / rows;
+        Reference.reachabilityFence(people);
+
+        before = usedHeap();
+        PersonTable table = buildTable();
+        footprint.tableBytesPerRow = (double) (usedHeap() - before) / rows;
+        Reference.reachabilityFence(table);
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    // ========== 集計（年齢 > THRESHOLD の件数と合計） ==========
+
+    @Benchmark
+    public long listStream() {
+        IntSummaryStatistics stats = people.stream().filter(p -> p.getAge() > THRESHOLD)
+            .mapToInt(Person::getAge).summaryStatistics();
+        return stats.getCount() + stats.getSum();
+    }
+
+    @Benchmark
+    public long listLoop() {
+        long count = 0;
+        long sum = 0;
+        for (Person person : people) {
+            if (person.getAge() > THRESHOLD) {
+                count++;
+                sum += person.getAge();
+            }
+        }
+        return count + sum;
+    }
+
+    @Benchmark
+    public PersonTable.AgeSummary table() {
+        return table.summarizeAgeAbove(THRESHOLD);
+    }
+
+    @Benchmark
+    public PersonTable.AgeSummary tableParallel() {
+        return table.parallelSummarizeAgeAbove(THRESHOLD);
+    }
+
+    // ========== 名前で絞り込み ==========
+
+    @Benchmark
+    public long listByName() {
+        long sum = 0;
+        for (Person person : people) {
+            if (person.getName().equals("花子")) {
+                sum += person.getAge();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public PersonTable.AgeSummary tableByName() {
+        return table.summarizeByName("花子");
+    }
+
+    // ========== 動作確認 ==========
+
+    // 素朴な stream・逐次・並列の集計と、名前での絞り込みが一致する
+    static void verify(List<Person> people, PersonTable table) {
+        long expectedCount = people.stream().filter(p -> p.getAge() > THRESHOLD).count();
+        double expectedAverage = people.stream().filter(p -> p.getAge() > THRESHOLD)
+            .mapToInt(Person::getAge).average().orElse(Double.NaN);
+        PersonTable.AgeSummary sequential = table.summarizeAgeAbove(THRESHOLD);
+        PersonTable.AgeSummary parallel = table.parallelSummarizeAgeAbove(THRESHOLD);
+        check("件数", sequential.count() == expectedCount);
+        check("逐次と並列", sequential.equals(parallel));
+        check("平均", Math.abs(sequential.average() - expectedAverage) <= 1e-9);
+
+        long hanako = people.stream().filter(p -> p.getName().equals("花子")).mapToLong(Person::getAge).sum();
+        check("名前で絞り込み", table.summarizeByName("花子").sum() == hanako);
+        check("辞書", table.size() == people.size() && table.distinctNames() == NAMES.length);
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Rules（表・完全ハッシュに変換した規則）と、if-else・switch・HashMap で書いた規則の分類の速さの比較
+ *
+ * どれも N = 2^20 個の値をまとめて分類して byte[] に書き、1件 = 1操作として出す。
+ * 規則ごとに *Branch（分岐や HashMap で書いたもの）と *Rules の組で計測する。
+ *   grade  成績 3段（0〜100、表）        tax     税率 7段（0〜5千万、二分探索）
+ *   week   曜日 3キー（switch）          region  都道府県 47キー（HashMap）
+ * order は random（値の並びがばらばらで、if-else の分岐予測が外れやすい）と
+ * sorted（同じカテゴリの値が続き、分岐予測がほぼ当たる）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar RulesBenchmark
+ *   java -jar benchmarks/target/benchmarks.jar "RulesBenchmark.(grade|tax)" -p order=random
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RulesBenchmark {
+
+    static final int N = 1 << 20;
+
+    static final String[] DAYS = {"月曜日", "火曜日", "水曜日", "木曜日", "金曜日", "土曜日", "日曜日", "祝日"};
+
+    static final String[][] REGIONS = {
+        {"北海道", "北海道"},
+        {"東北", "青森県", "岩手県", "宮城県", "秋田県", "山形県", "福島県"},
+        {"関東", "茨城県", "栃木県", "群馬県", "埼玉県", "千葉県", "東京都", "神奈川県"},
+        {"中部", "新潟県", "富山県", "石川県", "福井県", "山梨県", "長野県", "岐阜県", "静岡県", "愛知県"},
+        {"近畿", "三重県", "滋賀県", "京都府", "大阪府", "兵庫県", "奈良県", "和歌山県"},
+        {"中国", "鳥取県", "島根県", "岡山県", "広島県", "山口県"},
+        {"四国", "徳島県", "香川県", "愛媛県", "高知県"},
+        {"九州", "福岡県", "佐賀県", "長崎県", "熊本県", "大分県", "宮崎県", "鹿児島県", "沖縄県"},
+    };
+
+    // JavaGrammar.controlFlow() の if-else・switch と同じ規則
+    static final Rules.Bands GRADE = Rules.bands("要努力").atLeast(70, "良好").atLeast(90, "優秀").build();
+    static final Rules.Keywords WEEK = Rules.keywords("その他の日")
+        .put("週の始まり", "月曜日", "火曜日")
+        .put("週末前", "金曜日")
+        .build();
+
+    // 所得税の税率（課税所得・円）。しきい値の幅が広いので二分探索になる
+    static final Rules.Bands TAX = Rules.bands("5%")
+        .atLeast(1_950_000, "10%")
+        .atLeast(3_300_000, "20%")
+        .atLeast(6_950_000, "23%")
+        .atLeast(9_000_000, "33%")
+        .atLeast(18_000_000, "40%")
+        .atLeast(40_000_000, "45%")
+        .build();
+
+    static final Rules.Keywords REGION = regions();
+
+    @Param({"random", "sorted"})
+    String order;
+
+    final byte[] out = new byte[N];
+    int[] scores;
+    int[] incomes;
+    String[] days;
+    String[] addresses;
+    final Map<String, Integer> regionMap = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        Random random = new Random(42);
+        scores = random.ints(N, 0, 101).toArray();
+        incomes = random.ints(N, 0, 50_000_000).toArray();
+
+        // 文字列は読み込んだデータのように、リテラルとは別のオブジェクトにする（hashCode は1回目に計算されて残る）
+        days = new String[N];
+        for (int i = 0; i < N; i++) {
+            days[i] = new String(DAYS[random.nextInt(DAYS.length)]);
+        }
+        List<String> prefectures = new ArrayList<>();
+        for (String[] region : REGIONS) {
+            for (int i = 1; i < region.length; i++) {
+                regionMap.put(region[i], REGION.classify(region[i]));
+                prefectures.add(region[i]);
+            }
+        }
+        prefectures.add("不明");
+        addresses = new String[N];
+        for (int i = 0; i < N; i++) {
+            addresses[i] = new String(prefectures.get(random.nextInt(prefectures.size())));
+        }
+
+        if (order.equals("sorted")) {
+            Arrays.sort(scores);
+            Arrays.sort(incomes);
+            Arrays.sort(days);
+            Arrays.sort(addresses);
+        }
+    }
+
+    // ========== 成績 ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] gradeBranch() {
+        for (int i = 0; i < scores.length; i++) {
+            out[i] = (byte) grade(scores[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] gradeRules() {
+        GRADE.classify(scores, out);
+        return out;
+    }
+
+    // ========== 税率 ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] taxBranch() {
+        for (int i = 0; i < incomes.length; i++) {
+            out[i] = (byte) tax(incomes[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] taxRules() {
+        TAX.classify(incomes, out);
+        return out;
+    }
+
+    // ========== 曜日 ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] weekBranch() {
+        for (int i = 0; i < days.length; i++) {
+            out[i] = (byte) week(days[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] weekRules() {
+        WEEK.classify(days, out);
+        return out;
+    }
+
+    // ========== 都道府県 ==========
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] regionBranch() {
+        for (int i = 0; i < addresses.length; i++) {
+            out[i] = (byte) (int) regionMap.getOrDefault(addresses[i], 0);
+        }
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] regionRules() {
+        REGION.classify(addresses, out);
+        return out;
+    }
+
+    // ========== 分岐で書いた規則 ==========
+
+    static int grade(int score) {
+        if (score >= 90) {
+            return 2;
+        } else if (score >= 70) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+
+    static int tax(int income) {
+        if (income >= 40_000_000) {
+            return 6;
+        } else if (income >= 18_000_000) {
+            return 5;
+        } else if (income >= 9_000_000) {
+            return 4;
+        } else if (income >= 6_950_000) {
+            return 3;
+        } else if (income >= 3_300_000) {
+            return 2;
+        } else if (income >= 1_950_000) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+
+    static int week(String day) {
+        switch (day) {
+            case "月曜日":
+            case "火曜日":
+                return 1;
+            case "金曜日":
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    static Rules.Keywords regions() {
+        Rules.KeywordsBuilder builder = Rules.keywords("不明");
+        for (String[] region : REGIONS) {
+            builder.put(region[0], Arrays.copyOfRange(region, 1, region.length));
+        }
+        return builder.build();
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() {
+        // controlFlow() の if-else・switch と同じ答え
+        for (int score = -5; score <= 105; score++) {
+            check("成績 " + score, GRADE.classify(score) == grade(score));
+        }
+        check("良好", GRADE.label(GRADE.classify(85)).equals("良好"));
+        for (String day : DAYS) {
+            check("曜日 " + day, WEEK.classify(day) == week(day));
+        }
+        check("週の始まり", WEEK.label(WEEK.classify("月曜日")).equals("週の始まり"));
+        check("税率は二分探索", !TAX.dense() && GRADE.dense());
+        for (int income : new int[] {0, 1_949_999, 1_950_000, 39_999_999, 40_000_000, Integer.MAX_VALUE, -1}) {
+            check("税率 " + income, TAX.classify(income) == tax(Math.max(income, 0)));
+        }
+
+        // ランダムなしきい値（表になる幅・ならない幅、int の両端）で、しきい値を順に比べた答えと一致する
+        Random random = new Random(5);
+        for (int trial = 0; trial < 2000; trial++) {
+            int k = random.nextInt(12);
+            int span = switch (trial % 3) {
+                case 0 -> 100;
+                case 1 -> Rules.DENSE_LIMIT * 4;
+                default -> Integer.MAX_VALUE;
+            };
+            long base = switch (trial % 5) {
+                case 0 -> Integer.MIN_VALUE;
+                case 1 -> Integer.MAX_VALUE - (long) span;
+                default -> random.nextInt(1000) - 500;
+            };
+            TreeSet<Long> set = new TreeSet<>();
+            while (set.size() < k) {
+                set.add(Math.min(Integer.MAX_VALUE, base + (long) (random.nextDouble() * span)));
+            }
+            int[] thresholds = set.stream().mapToInt(Long::intValue).toArray();
+            String[] names = new String[k + 1];  // 段ごとのカテゴリの名前（同じ名前が何度も出てよい）
+            names[0] = "c" + random.nextInt(4);
+            Rules.BandsBuilder builder = Rules.bands(names[0]);
+            for (int i = 0; i < k; i++) {
+                names[i + 1] = "c" + random.nextInt(4);
+                builder.atLeast(thresholds[i], names[i + 1]);
+            }
+            Rules.Bands bands = builder.build();
+            int[] values = new int[200];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = switch (i % 4) {
+                    case 0 -> random.nextInt();
+                    case 1 -> k == 0 ? 0 : thresholds[random.nextInt(k)] + random.nextInt(3) - 1;
+                    case 2 -> (int) Math.min(Integer.MAX_VALUE, base + (long) (random.nextDouble() * span));
+                    default -> i % 8 == 3 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+                };
+            }
+            byte[] batch = bands.classify(values);
+            for (int i = 0; i < values.length; i++) {
+                int rank = 0;
+                while (rank < k && thresholds[rank] <= values[i]) {
+                    rank++;
+                }
+                int category = bands.classify(values[i]);
+                check("段階分け " + values[i], bands.label(category).equals(names[rank]) && (batch[i] & 0xFF) == category);
+            }
+        }
+
+        // ランダムなキーの集合と、キーでない文字列。hashCode が同じキー（"Aa" と "BB"）も区別する
+        for (int trial = 0; trial < 300; trial++) {
+            Map<String, String> expected = new HashMap<>();
+            Rules.KeywordsBuilder builder = Rules.keywords("なし");
+            int groups = random.nextInt(6);
+            for (int g = 0; g < groups; g++) {
+                List<String> keys = new ArrayList<>();
+                for (int i = random.nextInt(trial + 1); i >= 0; i--) {
+                    String key = Long.toString(random.nextLong() & 0xFFFFFFL, 36);
+                    if (!expected.containsKey(key)) {
+                        keys.add(key);
+                        expected.put(key, "g" + g);
+                    }
+                }
+                builder.put("g" + g, keys.toArray(String[]::new));
+            }
+            if (trial % 10 == 0) {
+                builder.put("衝突", "Aa", "BB");
+                expected.put("Aa", "衝突");
+                expected.put("BB", "衝突");
+            }
+            Rules.Keywords keywords = builder.build();
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                check("キー " + entry.getKey(),
+                    keywords.label(keywords.classify(new String(entry.getKey()))).equals(entry.getValue()));
+            }
+            for (int i = 0; i < 200; i++) {
+                String other = "x" + random.nextInt(100_000);
+                check("キーでない " + other, keywords.classify(other) == 0);
+            }
+            check("表の大きさ", keywords.slotCount() <= 8 * Math.max(1, expected.size()));
+        }
+
+        try {
+            Rules.bands("a").atLeast(10, "b").atLeast(10, "c");
+            throw new AssertionError("しきい値の順番");
+        } catch (IllegalArgumentException expected) {
+            // 期待どおり
+        }
+        try {
+            Rules.keywords("a").put("b", "x").put("c", "x");
+            throw new AssertionError("キーの重複");
+        } catch (IllegalArgumentException expected) {
+            // 期待どおり
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package grammer;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Sections で節を同時に実行したときの、順に実行する場合に対する速さ
+ *
+ * 待ちのある節（*Waiting）：ローカルのサーバーに REQUESTS 回問い合わせる（サーバーは DELAY_MILLIS ミリ秒待ってから返事をする）。
+ * 計算だけの節（*Compute）：ビットを数えて結果を出力する10個の節（待ちがないので、速くなってもコアの数まで）。
+ * 1回 = すべての節を1回実行する。
+ * 順に実行すると 1000 節で 20 秒かかるので、1000 節は同時に実行する方だけで測る。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar SectionsBenchmark                              // 10, 100 節
+ *   java -jar benchmarks/target/benchmarks.jar SectionsBenchmark.concurrentWaiting -p count=1000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SectionsBenchmark {
+
+    static final int DELAY_MILLIS = 10;
+    static final int REQUESTS = 2;
+
+    // 待ちのある節の数
+    @Param({"10", "100"})
+    int count;
+
+    DelayServer server;
+    List<Sections.Section> waiting;
+    List<Sections.Section> compute;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        verify();
+        server = new DelayServer(DELAY_MILLIS);
+        waiting = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int id = i;
+            waiting.add(Sections.section("節" + i, () -> {
+                for (int r = 0; r < REQUESTS; r++) {
+                    System.out.println(server.ask("節" + id + " の問い合わせ " + r));
+                }
+            }));
+        }
+        compute = computeSections();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public List<Sections.Result> sequentialWaiting() {
+        return check("順", Sections.runSequentially(waiting));
+    }
+
+    @Benchmark
+    public List<Sections.Result> concurrentWaiting() {
+        return check("同時", Sections.run(waiting));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Sections.Result> sequentialCompute() {
+        return Sections.runSequentially(compute);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Sections.Result> concurrentCompute() {
+        return Sections.run(compute);
+    }
+
+    static List<Sections.Result> check(String label, List<Sections.Result> results) {
+        for (Sections.Result result : results) {
+            check(label + " " + result.name(), !result.failed() && result.output().lines().count() == REQUESTS);
+        }
+        return results;
+    }
+
+    // 計算して結果を数行出力する10個の節（チュートリアルの節と同じく、待ちがなく出力が少ない）
+    static List<Sections.Section> computeSections() {
+        List<Sections.Section> sections = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            int id = i;
+            sections.add(Sections.section(id + ". 計算", () -> {
+                System.out.println("【" + id + ". 計算】");
+                long sum = 0;
+                for (int n = 0; n < 20_000 * id; n++) {
+                    sum += Integer.bitCount(n * 0x9E3779B9);
+                }
+                System.out.println("合計: " + sum);
+                System.out.println();
+            }));
+        }
+        return sections;
+    }
+
+    // 1行受け取り、delay ミリ秒待ってから「返事: 」を付けて返すサーバー（接続ごとに仮想スレッド）
+    static final class DelayServer implements AutoCloseable {
+        final ServerSocket socket;
+        final Thread acceptor;
+
+        DelayServer(int delayMillis) throws IOException {
+            socket = new ServerSocket(0, 4096, InetAddress.getLoopbackAddress());
+            acceptor = Thread.ofVirtual().start(() -> {
+                try {
+                    while (true) {
+                        Socket client = socket.accept();
+                        Thread.ofVirtual().start(() -> {
+                            try (client;
+                                 BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                                 Writer out = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)) {
+                                String line = in.readLine();
+                                Thread.sleep(delayMillis);
+                                out.write("返事: " + line + "\n");
+                            } catch (IOException | InterruptedException e) {
+                                // 接続ごとの失敗は問い合わせた側で分かる
+                            }
+                        });
+                    }
+                } catch (IOException e) {
+                    // close() で止めた
+                }
+            });
+        }
+
+        // 問い合わせて返事を待つ（ブロックする）
+        String ask(String question) throws IOException {
+            try (Socket client = new Socket(socket.getInetAddress(), socket.getLocalPort());
+                 BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                 Writer out = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)) {
+                out.write(question + "\n");
+                out.flush();
+                return in.readLine();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+            try {
+                acceptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() throws Exception {
+        // 後の節ほど早く終わっても、出力は元の順番。失敗した節があっても他の節は最後まで動く
+        List<Sections.Section> sections = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int id = i;
+            sections.add(Sections.section("節" + i, () -> {
+                System.out.println("節" + id + " 開始");
+                Thread.sleep(50 - id);
+                if (id % 10 == 3) {
+                    throw new IllegalStateException("節" + id + " の失敗");
+                }
+                // 節の中で作ったスレッドの出力もこの節に入る
+                Thread child = Thread.ofVirtual().start(() -> System.out.println("節" + id + " の子スレッド"));
+                child.join();
+                // Output.stdout() に貯めた分も入る
+                Output.stdout().print("節");
+                Output.stdout().print(id);
+                Output.stdout().println(" 終了");
+            }));
+        }
+        List<Sections.Result> results = Sections.run(sections);
+        for (int i = 0; i < results.size(); i++) {
+            Sections.Result result = results.get(i);
+            check("名前", result.name().equals("節" + i));
+            if (i % 10 == 3) {
+                check("失敗", result.failed() && result.failure().getMessage().equals("節" + i + " の失敗")
+                    && result.output().equals("節" + i + " 開始\n"));
+            } else {
+                check("出力 " + i, !result.failed()
+                    && result.output().equals("節" + i + " 開始\n節" + i + " の子スレッド\n節" + i + " 終了\n"));
+            }
+            check("時間", result.elapsed().toMillis() >= 50 - i);
+        }
+
+        // runAndPrint で順に並べた出力は、節を1つずつ直接呼んだ出力と同じ
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        try {
+            System.setOut(new PrintStream(direct, true, StandardCharsets.UTF_8));
+            for (Sections.Section section : computeSections()) {
+                section.body().run();
+            }
+            System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+            Sections.runAndPrint(computeSections());
+        } finally {
+            System.setOut(original);
+        }
+        check("順に並べた出力", direct.toString(StandardCharsets.UTF_8).equals(printed.toString(StandardCharsets.UTF_8)));
+
+        // 共通プールのスレッドの出力は、節が終わって System.out を戻した後にまとめて出る
+        ByteArrayOutputStream outside = new ByteArrayOutputStream();
+        PrintStream replaced = new PrintStream(outside, true, StandardCharsets.UTF_8);
+        List<Sections.Result> parallel;
+        try {
+            System.setOut(replaced);
+            parallel = Sections.run(List.of(Sections.section("並列", () -> {
+                IntStream.range(0, 1000).parallel().filter(n -> n % 100 == 0).forEach(n -> System.out.println("数 " + n));
+                check("節の間は差し替える", System.out != replaced);
+            })));
+            check("System.out を戻す", System.out == replaced);
+        } finally {
+            System.setOut(original);
+        }
+        check("並列", !parallel.get(0).failed()
+            && parallel.get(0).output().lines().count() + outside.toString(StandardCharsets.UTF_8).lines().count() == 10);
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
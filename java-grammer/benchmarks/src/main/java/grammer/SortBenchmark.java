@@ -0,0 +1,256 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Sorts と Arrays.sort / Arrays.parallelSort の比較
+ *
+ * どの計測も入力を作業用配列に写してからソートする（写す時間も含む）。1回 = size 要素のソート1回で、
+ * 1要素あたりの時間は size で割る。int[]・long[]・Person[] の入力はそれぞれ別の State で、
+ * 使うベンチマークのときだけ作る。
+ * 5億要素の long[] は入力・作業用・基数ソートの作業領域で 12GB 必要になる。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar grammer.SortBenchmark              // 1000万・1億要素
+ *   java -jar benchmarks/target/benchmarks.jar "grammer.SortBenchmark.long" -p size=500000000 -jvmArgsAppend -Xmx24g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class SortBenchmark {
+
+    static final int TOP_K = 100;
+
+    @Param({"10000000", "100000000"})
+    int size;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+    }
+
+    static int[] randomInts(int size) {
+        return new Random(42).ints(size).toArray();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ints {
+        int[] input;
+        int[] work;
+
+        @Setup(Level.Trial)
+        public void setUp(SortBenchmark benchmark) {
+            input = randomInts(benchmark.size);
+            work = new int[input.length];
+        }
+
+        int[] copy() {
+            System.arraycopy(input, 0, work, 0, input.length);
+            return work;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Longs {
+        long[] input;
+        long[] work;
+
+        @Setup(Level.Trial)
+        public void setUp(SortBenchmark benchmark) {
+            int[] ints = randomInts(benchmark.size);
+            input = new long[ints.length];
+            for (int i = 0; i < ints.length; i++) {
+                input[i] = ints[i] * 0x9E3779B97F4A7C15L;
+            }
+            work = new long[input.length];
+        }
+
+        long[] copy() {
+            System.arraycopy(input, 0, work, 0, input.length);
+            return work;
+        }
+    }
+
+    // Person は年齢が 0〜99 なので、同じキーがたくさんある
+    @State(Scope.Benchmark)
+    public static class People {
+        static final String[] NAMES = {"太郎", "花子", "次郎", "三郎"};
+        static final Comparator<Person> BY_AGE = Comparator.comparingInt(Person::getAge);
+
+        Person[] input;
+        Person[] work;
+
+        @Setup(Level.Trial)
+        public void setUp(SortBenchmark benchmark) {
+            int[] ints = randomInts(benchmark.size);
+            input = new Person[ints.length];
+            for (int i = 0; i < ints.length; i++) {
+                input[i] = new Person(NAMES[i & 3], Math.floorMod(ints[i], 100));
+            }
+            work = new Person[input.length];
+        }
+
+        Person[] copy() {
+            System.arraycopy(input, 0, work, 0, input.length);
+            return work;
+        }
+    }
+
+    // ========== int[] ==========
+
+    @Benchmark
+    public int intArraysSort(Ints ints) {
+        int[] work = ints.copy();
+        Arrays.sort(work);
+        return work[0];
+    }
+
+    @Benchmark
+    public int intParallelSort(Ints ints) {
+        int[] work = ints.copy();
+        Arrays.parallelSort(work);
+        return work[0];
+    }
+
+    @Benchmark
+    public int intRadixSort(Ints ints) {
+        int[] work = ints.copy();
+        Sorts.radixSort(work);
+        return work[0];
+    }
+
+    @Benchmark
+    public int intParallelRadixSort(Ints ints) {
+        int[] work = ints.copy();
+        Sorts.parallelRadixSort(work);
+        return work[0];
+    }
+
+    @Benchmark
+    public int[] intParallelTopK(Ints ints) {
+        return Sorts.parallelTopK(ints.input, TOP_K);
+    }
+
+    // ========== long[] ==========
+
+    @Benchmark
+    public long longParallelSort(Longs longs) {
+        long[] work = longs.copy();
+        Arrays.parallelSort(work);
+        return work[0];
+    }
+
+    @Benchmark
+    public long longRadixSort(Longs longs) {
+        long[] work = longs.copy();
+        Sorts.radixSort(work);
+        return work[0];
+    }
+
+    @Benchmark
+    public long longParallelRadixSort(Longs longs) {
+        long[] work = longs.copy();
+        Sorts.parallelRadixSort(work);
+        return work[0];
+    }
+
+    // ========== Person[]（年齢で安定ソート） ==========
+
+    @Benchmark
+    public Person personParallelSort(People people) {
+        Person[] work = people.copy();
+        Arrays.parallelSort(work, People.BY_AGE);
+        return work[0];
+    }
+
+    @Benchmark
+    public Person personSortByKey(People people) {
+        Person[] work = people.copy();
+        Sorts.sortByKey(work, Person::getAge);
+        return work[0];
+    }
+
+    @Benchmark
+    public Person personParallelSortByKey(People people) {
+        Person[] work = people.copy();
+        Sorts.parallelSortByKey(work, Person::getAge);
+        return work[0];
+    }
+
+    @Benchmark
+    public List<Person> personParallelTopKByKey(People people) {
+        return Sorts.parallelTopKByKey(people.input, TOP_K, Person::getAge);
+    }
+
+    // ========== 動作確認 ==========
+
+    static void verify() {
+        Random random = new Random(1);
+        for (int size : new int[] {0, 1, 100, Sorts.RADIX_THRESHOLD, 1_000_003}) {
+            // 全域の乱数と、狭い範囲（上位バイトが同じでパスを飛ばす）の2通り
+            for (int bound : new int[] {0, 1000}) {
+                int[] ints = bound == 0 ? random.ints(size).toArray() : random.ints(size, -bound, bound).toArray();
+                int[] expected = ints.clone();
+                Arrays.sort(expected);
+                int[] sorted = ints.clone();
+                Sorts.radixSort(sorted);
+                check("radixSort(int[])", Arrays.equals(sorted, expected));
+                sorted = ints.clone();
+                Sorts.parallelRadixSort(sorted);
+                check("parallelRadixSort(int[])", Arrays.equals(sorted, expected));
+
+                long[] longs = Arrays.stream(ints).asLongStream().map(n -> n * (bound == 0 ? 0x9E3779B97F4A7C15L : 1)).toArray();
+                long[] expectedLongs = longs.clone();
+                Arrays.sort(expectedLongs);
+                long[] sortedLongs = longs.clone();
+                Sorts.radixSort(sortedLongs);
+                check("radixSort(long[])", Arrays.equals(sortedLongs, expectedLongs));
+                sortedLongs = longs.clone();
+                Sorts.parallelRadixSort(sortedLongs);
+                check("parallelRadixSort(long[])", Arrays.equals(sortedLongs, expectedLongs));
+
+                int k = Math.min(TOP_K, size);
+                int[] top = Sorts.parallelTopK(ints, TOP_K);
+                for (int i = 0; i < k; i++) {
+                    check("parallelTopK", top[i] == expected[size - 1 - i]);
+                }
+                check("parallelTopK の個数", top.length == k);
+            }
+
+            // 安定ソート：同じ年齢なら元の順序（名前に入れた番号の順）のまま
+            Person[] people = new Person[size];
+            for (int i = 0; i < size; i++) {
+                people[i] = new Person(String.valueOf(i), random.nextInt(100));
+            }
+            Person[] expected = people.clone();
+            Arrays.sort(expected, Comparator.comparingInt(Person::getAge));  // Arrays.sort(Object[]) は安定
+            Person[] sorted = people.clone();
+            Sorts.sortByKey(sorted, Person::getAge);
+            check("sortByKey", Arrays.equals(sorted, expected));
+            sorted = people.clone();
+            Sorts.parallelSortByKey(sorted, Person::getAge);
+            check("parallelSortByKey", Arrays.equals(sorted, expected));
+            List<Person> list = new ArrayList<>(Arrays.asList(people));
+            Sorts.parallelSortByKey(list, Person::getAge);
+            check("parallelSortByKey(List)", list.equals(Arrays.asList(expected)));
+
+            List<Person> top = Sorts.parallelTopKByKey(people, TOP_K, Person::getAge);
+            List<Person> expectedTop = Arrays.stream(people)
+                .sorted(Comparator.comparingInt(Person::getAge).reversed())
+                .limit(TOP_K)
+                .toList();
+            check("parallelTopKByKey", top.equals(expectedTop));
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package grammer;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 入口のプログラムを別の JVM で起動し、AppCDS のアーカイブの有無で起動の速さとメモリを比べる
+ *
+ * startup モジュールが作る jar（startup/target/startup.jar）とアーカイブ（startup.jsa）を使うので、先に mvn package しておく。
+ *   firstOutput  プロセスを作ってから、標準出力に最初の1バイトが届くまで
+ *   exit         プロセスが終わるまで
+ *   maxRss       補助カウンタ rssMegabytes に、/proc/<pid>/status の VmHWM（実メモリの最大値）を出す。
+ *                終わるまで数ミリ秒ごとに読み、最後に読めた値を使う（Linux 以外では 0）
+ *
+ * launch は起動方法：
+ *   noShare  -Xshare:off（JDK 標準のクラスも毎回 jrt から読む）
+ *   jdkCds   何も付けない（JDK 標準のクラスだけアーカイブから読む。JDK 12 以降の既定）
+ *   appCds   -XX:SharedArchiveFile（アプリのクラスと、練習の実行で使った JDK のクラスもアーカイブから読む）
+ *   source   java --source 21 Xxx.java（メモリ上でコンパイルしてから実行する）
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   mvn -B package
+ *   java -jar benchmarks/target/benchmarks.jar StartupBenchmark
+ *   java -jar benchmarks/target/benchmarks.jar StartupBenchmark.firstOutput -p entryPoint=first -i 30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+public class StartupBenchmark {
+
+    static final Path JAR = Path.of("startup", "target", "startup.jar");
+    static final Path ARCHIVE = Path.of("startup", "target", "startup.jsa");
+    static final List<String> LAUNCHES = List.of("noShare", "jdkCds", "appCds", "source");
+
+    @Param({"JavaGrammar", "ArrayVsList", "StaticExample", "first"})
+    String entryPoint;
+
+    @Param({"noShare", "jdkCds", "appCds", "source"})
+    String launch;
+
+    List<String> command;
+    Process process;  // firstOutput が起動して、まだ終わっていないプロセス
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        if (!Files.exists(JAR) || !Files.exists(ARCHIVE)) {
+            throw new IllegalStateException(JAR + " と " + ARCHIVE + " がありません（java-grammer ディレクトリで mvn -B package する）");
+        }
+        verify(entryPoint);
+        command = command(entryPoint, launch);
+    }
+
+    // ========== 計測 ==========
+
+    @Benchmark
+    public int firstOutput() throws IOException {
+        process = start(command);
+        return process.getInputStream().read();
+    }
+
+    @TearDown(Level.Invocation)
+    public void finish() throws IOException, InterruptedException {
+        if (process != null) {
+            process.getInputStream().transferTo(OutputStream.nullOutputStream());
+            waitFor(process, command);
+            process = null;
+        }
+    }
+
+    @Benchmark
+    public int exit() throws IOException, InterruptedException {
+        Process started = start(command);
+        started.getInputStream().transferTo(OutputStream.nullOutputStream());
+        return waitFor(started, command);
+    }
+
+    // 実メモリの最大値（補助カウンタは回ごとに足し合わされるので、-i を変えずに実行する）
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Rss {
+        public double rssMegabytes;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1)
+    public void maxRss(Rss rss) throws IOException, InterruptedException {
+        Process started = start(command);
+        RssPoller poller = new RssPoller(started);
+        poller.start();
+        started.getInputStream().transferTo(OutputStream.nullOutputStream());
+        waitFor(started, command);
+        poller.join();
+        rss.rssMegabytes = poller.maxRssBytes / (1024.0 * 1024);
+    }
+
+    // ========== 起動 ==========
+
+    static List<String> command(String entryPoint, String launch) {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String release = String.valueOf(Runtime.version().feature());
+        return switch (launch) {
+            case "noShare" -> List.of(java, "--enable-preview", "-Xshare:off", "-cp", JAR.toString(), entryPoint);
+            case "jdkCds" -> List.of(java, "--enable-preview", "-cp", JAR.toString(), entryPoint);
+            case "appCds" -> List.of(java, "--enable-preview", "-XX:SharedArchiveFile=" + ARCHIVE,
+                "-cp", JAR.toString(), entryPoint);
+            case "source" -> List.of(java, "--enable-preview", "--source", release, entryPoint + ".java");
+            default -> throw new IllegalArgumentException("launch: " + launch);
+        };
+    }
+
+    static Process start(List<String> command) throws IOException {
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+    }
+
+    static int waitFor(Process process, List<String> command) throws InterruptedException {
+        int status = process.waitFor();
+        if (status != 0) {
+            throw new IllegalStateException("終了コード " + status + ": " + String.join(" ", command));
+        }
+        return status;
+    }
+
+    // プロセスが終わるまで VmHWM を読み続ける。終わった後は読めないので、最後に読めた値が最大値に近い
+    static final class RssPoller extends Thread {
+        final Path status;
+        final Process process;
+        volatile long maxRssBytes;
+
+        RssPoller(Process process) {
+            this.process = process;
+            this.status = Path.of("/proc", String.valueOf(process.pid()), "status");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (process.isAlive()) {
+                try {
+                    for (String line : Files.readAllLines(status)) {
+                        if (line.startsWith("VmHWM:")) {
+                            long kb = Long.parseLong(line.replaceAll("[^0-9]", ""));
+                            maxRssBytes = Math.max(maxRssBytes, kb * 1024);
+                        }
+                    }
+                    Thread.sleep(2);
+                } catch (IOException | InterruptedException | NumberFormatException e) {
+                    return;  // 終わった（/proc が消えた）か、/proc のない OS
+                }
+            }
+        }
+    }
+
+    // ========== 動作確認 ==========
+
+    // どの起動方法でも出力が同じで、appCds ではアプリのクラスがアーカイブから読まれる
+    static void verify(String entryPoint) throws IOException, InterruptedException {
+        String expected = null;
+        for (String launch : LAUNCHES) {
+            String output = withoutNumbers(run(command(entryPoint, launch)));
+            if (expected == null) {
+                expected = output;
+            }
+            check(entryPoint + " " + launch + " の出力", expected.equals(output));
+        }
+
+        // -Xshare:on はアーカイブを使えないと起動に失敗する
+        Path log = Files.createTempFile("class-load", ".log");
+        try {
+            List<String> command = new ArrayList<>(command(entryPoint, "appCds"));
+            command.addAll(1, List.of("-Xshare:on", "-Xlog:class+load=info:file=" + log));
+            run(command);
+            int fromArchive = 0;
+            int fromJar = 0;
+            for (String line : Files.readAllLines(log)) {
+                if (line.contains("source: shared objects file (top)")) {
+                    fromArchive++;
+                } else if (line.contains("source: file:") && line.contains(JAR.getFileName().toString())) {
+                    fromJar++;
+                }
+            }
+            check(entryPoint + " のクラスがアーカイブにない", fromArchive > 0 && fromJar == 0);
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+
+    static String run(List<String> command) throws IOException, InterruptedException {
+        Process process = start(command);
+        byte[] output = process.getInputStream().readAllBytes();
+        waitFor(process, command);
+        return new String(output);
+    }
+
+    // StaticExample は時刻や計測した時間を出すので、数（と単位）を伏せ、桁揃えの空白もまとめてから比べる
+    static String withoutNumbers(String output) {
+        return output.replaceAll("[0-9][0-9.,]*( ?\\S?s\\b)?", "#").replaceAll(" +", " ");
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * StringUtils の確保バイト数と速度の比較（1回 = 1つの文字列を逆順にする、または分割して全項目をたどる）
+ *
+ * 確保バイト数は -prof gc の gc.alloc.rate.norm。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar StringUtilsBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StringUtilsBenchmark {
+
+    static final String TEXT = "Hello, Java! こんにちは 😀🍣";
+    static final String CSV = "apple,banana,orange";
+    static final String LONG_CSV = String.join(",", Collections.nCopies(50, "field"));
+
+    final char[] buffer = new char[64];
+    final StringUtils.Splitter splitter = new StringUtils.Splitter();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+    }
+
+    // ========== 逆順 ==========
+
+    @Benchmark
+    public String reverseString() {
+        return StringUtils.reverse(TEXT);
+    }
+
+    @Benchmark
+    public int reverseIntoBuffer() {
+        return StringUtils.reverse(TEXT, buffer);
+    }
+
+    // ========== 分割（3項目・50項目） ==========
+
+    @Benchmark
+    public String[] split3() {
+        return CSV.split(",");
+    }
+
+    @Benchmark
+    public long splitter3() {
+        return total(CSV, ',');
+    }
+
+    @Benchmark
+    public String[] split50() {
+        return LONG_CSV.split(",");
+    }
+
+    @Benchmark
+    public long splitter50() {
+        return total(LONG_CSV, ',');
+    }
+
+    // 2文字の区切り（見つからないので1項目になる）
+    @Benchmark
+    public long splitter50TwoCharDelimiter() {
+        return total(LONG_CSV, ", ");
+    }
+
+    // 全項目の長さの合計（splitter は reset で使い回す）
+    long total(String text, char delimiter) {
+        splitter.reset(text, delimiter);
+        return lengths();
+    }
+
+    long total(String text, String delimiter) {
+        splitter.reset(text, delimiter);
+        return lengths();
+    }
+
+    private long lengths() {
+        long total = 0;
+        while (splitter.next()) {
+            total += splitter.length();
+        }
+        return total;
+    }
+
+    // ========== 結果の確認 ==========
+
+    static void verify() {
+        char[] buffer = new char[TEXT.length()];
+        int length = StringUtils.reverse(TEXT, buffer);
+        String reversed = new String(buffer, 0, length);
+        check("reverse", StringUtils.reverse(TEXT).equals(reversed));
+
+        StringUtils.Splitter splitter = new StringUtils.Splitter();
+        for (String csv : new String[] {CSV, LONG_CSV, "a,,b", ",a", "", "single"}) {
+            List<String> fields = new ArrayList<>();
+            splitter.reset(csv, ',');
+            while (splitter.next()) {
+                fields.add(splitter.current());
+            }
+            check("split " + csv, fields.equals(Arrays.asList(csv.split(",", -1))));
+        }
+        splitter.reset("a::b::c", "::");
+        List<String> fields = new ArrayList<>();
+        while (splitter.next()) {
+            fields.add(splitter.current());
+        }
+        check("split ::", fields.equals(List.of("a", "b", "c")));
+    }
+
+    static void check(String label, boolean ok) {
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
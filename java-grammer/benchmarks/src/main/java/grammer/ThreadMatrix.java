@@ -0,0 +1,79 @@
+package grammer;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * スレッド数を 1, 2, 4, … 64 と変えて同じベンチマークを実行し、主な結果を「行 = ベンチマーク、列 = スレッド数」の表にまとめる
+ *
+ * JMH の -t は1つの値しか受け取らないので、スレッド数ごとに Runner を呼ぶ。
+ * 引数は JMH のコマンドラインと同じ（-p・-prof gc・-f など）。-t を付けたときはそのスレッド数だけで実行し、
+ * ベンチマーク名の正規表現を付けたときは、それに当たるもののうちこのクラスのものだけを実行する
+ * （正規表現はいつもどおり完全な名前 grammer.Xxx.method のどこかに当たればよい。例："PersonRegistryBenchmark.(registry|concurrentHashMap)"）。
+ *
+ *   public static void main(String[] args) throws Exception {
+ *       ThreadMatrix.run(CounterBenchmark.class, args);
+ *   }
+ */
+final class ThreadMatrix {
+
+    static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private ThreadMatrix() {
+    }
+
+    static void run(Class<?> benchmark, String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        int[] threadCounts = options.getThreads().hasValue() ? new int[] {options.getThreads().get()} : THREADS;
+
+        // 行（ベンチマーク名とパラメータ）→ スレッド数 → 結果
+        Map<String, Map<Integer, Result<?>>> table = new LinkedHashMap<>();
+        for (int threads : threadCounts) {
+            OptionsBuilder builder = new OptionsBuilder();
+            builder.parent(options);
+            // 指定された正規表現は親の include のまま使い、クラスの外のものを exclude で外す（include 同士は「または」になるため）
+            String prefix = Pattern.quote(benchmark.getName()) + "\\.";
+            if (options.getIncludes().isEmpty()) {
+                builder.include("^" + prefix);
+            }
+            builder.exclude("^(?!" + prefix + ")");
+            for (RunResult result : new Runner(builder.threads(threads).build()).run()) {
+                table.computeIfAbsent(label(benchmark, result.getParams()), key -> new TreeMap<>())
+                    .put(threads, result.getPrimaryResult());
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-44s", benchmark.getSimpleName() + "（スレッド数ごと）");
+        for (int threads : threadCounts) {
+            System.out.printf(" %10d", threads);
+        }
+        System.out.println();
+        table.forEach((label, row) -> {
+            System.out.printf("%-44s", label);
+            String unit = "";
+            for (int threads : threadCounts) {
+                Result<?> result = row.get(threads);
+                System.out.printf(" %10s", result == null ? "-" : String.format("%.1f", result.getScore()));
+                unit = result == null ? unit : result.getScoreUnit();
+            }
+            System.out.println("  " + unit);
+        });
+    }
+
+    private static String label(Class<?> benchmark, BenchmarkParams params) {
+        String name = params.getBenchmark();
+        StringBuilder label = new StringBuilder(name.startsWith(benchmark.getName() + ".")
+            ? name.substring(benchmark.getName().length() + 1) : name);
+        for (String key : params.getParamsKeys()) {
+            label.append(' ').append(key).append('=').append(params.getParam(key));
+        }
+        return label.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * VectorKernels のスカラー版との一致確認と、カーネルごとの速度比較
+ *
+ * カーネルごとに Stream（あれば）・スカラー・ベクトルの3つを計測する（1回 = size 要素を1回処理）。
+ *
+ * 実行例（java-grammer ディレクトリで）：
+ *   java -jar benchmarks/target/benchmarks.jar VectorKernelsBenchmark                      // 1000万要素
+ *   java -jar benchmarks/target/benchmarks.jar VectorKernelsBenchmark -p size=100000000 -jvmArgs -Xmx8g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VectorKernelsBenchmark {
+
+    @Param({"10000000"})
+    int size;
+
+    int[] a;
+    int[] b;
+    int[] intResult;
+    double[] da;
+    double[] db;
+    double[] doubleResult;
+    List<Integer> boxed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        verify();
+        Random random = new Random(42);
+        a = random.ints(size, -1000, 1000).toArray();
+        b = random.ints(size, -1000, 1000).toArray();
+        intResult = new int[size];
+        da = random.doubles(size).toArray();
+        db = random.doubles(size).toArray();
+        doubleResult = new double[size];
+        boxed = IntStream.of(a).boxed().toList();
+    }
+
+    // ========== sum ==========
+
+    @Benchmark
+    public int sumStream() {
+        return boxed.stream().reduce(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int sumScalar() {
+        return VectorKernels.scalarSum(a);
+    }
+
+    @Benchmark
+    public int sumVector() {
+        return VectorKernels.vectorSum(a);
+    }
+
+    // ========== sumToLong ==========
+
+    @Benchmark
+    public long sumToLongStream() {
+        return IntStream.of(a).asLongStream().sum();
+    }
+
+    @Benchmark
+    public long sumToLongScalar() {
+        return VectorKernels.scalarSumToLong(a);
+    }
+
+    @Benchmark
+    public long sumToLongVector() {
+        return VectorKernels.vectorSumToLong(a);
+    }
+
+    // ========== dot ==========
+
+    @Benchmark
+    public int dotScalar() {
+        return VectorKernels.scalarDot(a, b);
+    }
+
+    @Benchmark
+    public int dotVector() {
+        return VectorKernels.vectorDot(a, b);
+    }
+
+    // ========== multiply ==========
+
+    @Benchmark
+    public int[] multiplyIntScalar() {
+        VectorKernels.scalarMultiply(a, b, intResult);
+        return intResult;
+    }
+
+    @Benchmark
+    public int[] multiplyIntVector() {
+        VectorKernels.vectorMultiply(a, b, intResult);
+        return intResult;
+    }
+
+    @Benchmark
+    public double[] multiplyDoubleScalar() {
+        VectorKernels.scalarMultiply(da, db, doubleResult);
+        return doubleResult;
+    }
+
+    @Benchmark
+    public double[] multiplyDoubleVector() {
+        VectorKernels.vectorMultiply(da, db, doubleResult);
+        return doubleResult;
+    }
+
+    // ========== filter → 二乗 → 合計 ==========
+
+    @Benchmark
+    public int squaresAboveStream() {
+        return boxed.stream().filter(n -> n > 2).map(n -> n * n).reduce(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int squaresAboveScalar() {
+        return VectorKernels.scalarSumOfSquaresAbove(a, 2);
+    }
+
+    @Benchmark
+    public int squaresAboveVector() {
+        return VectorKernels.vectorSumOfSquaresAbove(a, 2);
+    }
+
+    // ========== 一致確認 ==========
+
+    // 端数処理（ループの残り）が必ず通るよう、レーン数の前後の長さも含めて確かめる
+    static void verify() {
+        Random random = new Random(7);
+        int lanes = VectorKernels.INTS.length();
+        int[] lengths = {0, 1, lanes - 1, lanes, lanes + 1, 3 * lanes + 2, 1000, 100_003};
+        for (int length : lengths) {
+            for (int[] range : new int[][] {{-10, 10}, {Integer.MIN_VALUE, Integer.MAX_VALUE}}) {
+                int[] a = random.ints(length, range[0], range[1]).toArray();
+                int[] b = random.ints(length, range[0], range[1]).toArray();
+                int threshold = random.nextInt(-5, 5);
+
+                check("sum", VectorKernels.scalarSum(a), VectorKernels.vectorSum(a));
+                check("sumToLong", VectorKernels.scalarSumToLong(a), VectorKernels.vectorSumToLong(a));
+                check("dot", VectorKernels.scalarDot(a, b), VectorKernels.vectorDot(a, b));
+                check("sumOfSquaresAbove",
+                    VectorKernels.scalarSumOfSquaresAbove(a, threshold), VectorKernels.vectorSumOfSquaresAbove(a, threshold));
+
+                int[] expected = new int[length];
+                int[] actual = new int[length];
+                VectorKernels.scalarMultiply(a, b, expected);
+                VectorKernels.vectorMultiply(a, b, actual);
+                check("multiply(int)", Arrays.equals(expected, actual) ? 1 : 0, 1);
+
+                double[] da = random.doubles(length, -1e6, 1e6).toArray();
+                double[] db = random.doubles(length, -1e6, 1e6).toArray();
+                double[] expectedDoubles = new double[length];
+                double[] actualDoubles = new double[length];
+                VectorKernels.scalarMultiply(da, db, expectedDoubles);
+                VectorKernels.vectorMultiply(da, db, actualDoubles);
+                check("multiply(double)", Arrays.equals(expectedDoubles, actualDoubles) ? 1 : 0, 1);
+            }
+        }
+        // JavaGrammar のサンプルと同じ値
+        int[] sample = {1, 2, 3, 4, 5};
+        check("sumAll(1,2,3,4,5)", 15, VectorKernels.sum(sample));
+        check("3,4,5の二乗の合計", 50, VectorKernels.sumOfSquaresAbove(sample, 2));
+    }
+
+    static void check(String kernel, long expected, long actual) {
+        if (expected != actual) {
+            throw new AssertionError(kernel + ": スカラー版 " + expected + " に対してベクトル版 " + actual);
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package grammer;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * 途中への挿入・削除・位置の取得がどれも O(log n) のリスト（要素を固定長の塊に分けて木にしたもの）
+ *
+ * ArrayList の add(i, x)・remove(i) は後ろの要素をすべてずらすので O(n)、LinkedList は i 番目まで
+ * たどるので O(n)。ChunkedList は要素を LEAF_CAPACITY 個ずつの配列（葉）に分け、葉を B+ 木で束ねる。
+ * 内側の節は子ごとの要素数を int[] で持ち、i 番目の要素がどの葉の何番目かを根から数段でたどる。
+ * 挿入・削除でずらすのは1つの葉の中だけで、満杯になった葉は半分に割り、少なくなった葉は隣と合わせる。
+ *
+ *   List<String> names = new ChunkedList<>();
+ *   names.add(0, "太郎");                      // どこに入れても O(log n)
+ *
+ *   ChunkedList.Ints numbers = ChunkedList.ofInts();   // 葉が int[]（要素ごとの Integer を作らない）
+ *   numbers.addInt(numbers.size() / 2, 25);
+ *   int n = numbers.getInt(0);
+ *
+ * 葉は次の葉を指しているので、先頭からの走査（iterator・forEach・forEachInt）は配列を順に読むのとほぼ同じ。
+ * get(i) も O(log n) なので RandomAccess ではない。for (i...) get(i) より iterator で回す方が速い。
+ */
+public class ChunkedList<E> extends AbstractList<E> {
+
+    static final int LEAF_CAPACITY = 512;   // 葉1つの要素数の上限（int なら 2KB）
+    static final int BRANCH_CAPACITY = 64;  // 内側の節1つの子の数の上限
+    private static final int LEAF_MIN = LEAF_CAPACITY / 4;      // これより少なくなったら隣と合わせるか分け合う
+    private static final int BRANCH_MIN = BRANCH_CAPACITY / 4;
+
+    private abstract static class Node {
+        int size;  // この部分木の要素数
+    }
+
+    // data は Object[] か int[]（LEAF_CAPACITY 個）。[0, size) が要素
+    private static final class Leaf extends Node {
+        final Object data;
+        Leaf next;
+
+        Leaf(Object data) {
+            this.data = data;
+        }
+    }
+
+    // sizes[k] は children[k] の要素数（子をたどらずに位置を数えられるよう、ここにも持つ）
+    private static final class Inner extends Node {
+        final Node[] children = new Node[BRANCH_CAPACITY];
+        final int[] sizes = new int[BRANCH_CAPACITY];
+        int count;
+    }
+
+    private Node root;
+    private Leaf first;   // 一番左の葉（合わせるときは左の葉を残すので、最初に作った葉がずっと先頭）
+
+    public ChunkedList() {
+        this(new Object[LEAF_CAPACITY]);
+    }
+
+    // 最初の葉の配列を受け取る（Ints は int[] を渡す。以降の葉は newChunk がこれと同じ型で作る）
+    ChunkedList(Object chunk) {
+        init(chunk);
+    }
+
+    // 上書きできる addAll・add は呼ばず、private な経路（insertAt）で末尾に足していく
+    public ChunkedList(Collection<? extends E> values) {
+        this();
+        for (E value : values) {
+            insertAt(root.size, value, 0);
+        }
+    }
+
+    private void init(Object chunk) {
+        first = new Leaf(chunk);
+        root = first;
+    }
+
+    // 葉を int[] で持つリスト
+    public static Ints ofInts() {
+        return new Ints();
+    }
+
+    // ========== 葉の中身 ==========
+
+    // like と同じ型（Object[] か int[]）の空の葉の配列
+    private static Object newChunk(Object like) {
+        return like instanceof int[] ? new int[LEAF_CAPACITY] : new Object[LEAF_CAPACITY];
+    }
+
+    // element・store は Ints が int[] 用に差し替える
+
+    @SuppressWarnings("unchecked")
+    E element(Object chunk, int i) {
+        return (E) ((Object[]) chunk)[i];
+    }
+
+    void store(Object chunk, int i, E value) {
+        ((Object[]) chunk)[i] = value;
+    }
+
+    // 使わなくなった [from, to) の参照を消す（GC のため。int[] では何もしない）
+    private static void release(Object chunk, int from, int to) {
+        if (chunk instanceof Object[] references) {
+            Arrays.fill(references, from, to, null);
+        }
+    }
+
+    // ========== 取得・更新 ==========
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    // 根から葉までのたどり方は get・set・getInt・setInt・Itr.remove にそれぞれ書く。
+    // 葉と葉の中の位置の2つを返すにはオブジェクトが要るので、たどった変数をそのまま使う（呼び出しごとに何も作らない）
+
+    @Override
+    public E get(int index) {
+        Objects.checkIndex(index, root.size);
+        Node node = root;
+        while (node instanceof Inner inner) {
+            int[] sizes = inner.sizes;
+            int k = 0;
+            while (index >= sizes[k]) {
+                index -= sizes[k++];
+            }
+            node = inner.children[k];
+        }
+        return element(((Leaf) node).data, index);
+    }
+
+    @Override
+    public E set(int index, E value) {
+        Objects.checkIndex(index, root.size);
+        Node node = root;
+        while (node instanceof Inner inner) {
+            int[] sizes = inner.sizes;
+            int k = 0;
+            while (index >= sizes[k]) {
+                index -= sizes[k++];
+            }
+            node = inner.children[k];
+        }
+        Object data = ((Leaf) node).data;
+        E old = element(data, index);
+        store(data, index, value);
+        return old;
+    }
+
+    final Node root() {
+        return root;
+    }
+
+    final Leaf firstLeaf() {
+        return first;
+    }
+
+    // ========== 挿入 ==========
+
+    @Override
+    public boolean add(E value) {
+        add(root.size, value);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E value) {
+        Objects.checkIndex(index, root.size + 1);
+        insertAt(index, value, 0);
+    }
+
+    // index の位置に値を入れる。葉が Object[] なら value を、int[] なら intValue を書く
+    final void insertAt(int index, Object value, int intValue) {
+        Node split = insert(root, index, true, value, intValue);
+        if (split != null) {
+            Inner newRoot = new Inner();
+            newRoot.children[0] = root;
+            newRoot.sizes[0] = root.size;
+            newRoot.children[1] = split;
+            newRoot.sizes[1] = split.size;
+            newRoot.count = 2;
+            newRoot.size = root.size + split.size;
+            root = newRoot;
+        }
+        modCount++;
+    }
+
+    // node の index の位置に値を入れる。node が割れたら右側を返す。
+    // 満杯のノードはふつう半分に割るが、木の右端の末尾に足すときは、左を満杯のまま残して新しいノードだけを作る
+    // （末尾への追加を繰り返しても、葉が半分しか埋まらない、ということにならない）
+    private static Node insert(Node node, int index, boolean rightmost, Object value, int intValue) {
+        if (node instanceof Leaf leaf) {
+            if (leaf.size < LEAF_CAPACITY) {
+                insertInLeaf(leaf, index, value, intValue);
+                return null;
+            }
+            Leaf right = new Leaf(newChunk(leaf.data));
+            int cut = rightmost && index == LEAF_CAPACITY ? LEAF_CAPACITY : LEAF_CAPACITY / 2;
+            System.arraycopy(leaf.data, cut, right.data, 0, LEAF_CAPACITY - cut);
+            release(leaf.data, cut, LEAF_CAPACITY);
+            right.size = LEAF_CAPACITY - cut;
+            leaf.size = cut;
+            right.next = leaf.next;
+            leaf.next = right;
+            if (index <= cut && cut < LEAF_CAPACITY) {
+                insertInLeaf(leaf, index, value, intValue);
+            } else {
+                insertInLeaf(right, index - cut, value, intValue);
+            }
+            return right;
+        }
+        Inner inner = (Inner) node;
+        // 子の境目に入れるときは左の子の末尾に入れる（末尾への追加が一番右の葉に集まる）
+        int k = 0;
+        while (k < inner.count - 1 && index > inner.sizes[k]) {
+            index -= inner.sizes[k++];
+        }
+        Node split = insert(inner.children[k], index, rightmost && k == inner.count - 1, value, intValue);
+        inner.size++;
+        inner.sizes[k] = inner.children[k].size;
+        return split == null ? null : insertChild(inner, k + 1, split, rightmost);
+    }
+
+    private static void insertInLeaf(Leaf leaf, int index, Object value, int intValue) {
+        System.arraycopy(leaf.data, index, leaf.data, index + 1, leaf.size - index);
+        leaf.size++;
+        if (leaf.data instanceof int[] ints) {
+            ints[index] = intValue;
+        } else {
+            ((Object[]) leaf.data)[index] = value;
+        }
+    }
+
+    // inner の position に child を入れる。inner が満杯なら割って右側を返す（割り方は insert と同じ）
+    private static Node insertChild(Inner inner, int position, Node child, boolean rightmost) {
+        if (inner.count < BRANCH_CAPACITY) {
+            shiftIn(inner, position, child);
+            return null;
+        }
+        Inner right = new Inner();
+        int cut = rightmost && position == BRANCH_CAPACITY ? BRANCH_CAPACITY : BRANCH_CAPACITY / 2;
+        moveChildren(inner, cut, right, 0, BRANCH_CAPACITY - cut);
+        inner.count = cut;
+        right.count = BRANCH_CAPACITY - cut;
+        recount(inner);
+        recount(right);
+        Inner target = position <= cut && cut < BRANCH_CAPACITY ? inner : right;
+        shiftIn(target, target == inner ? position : position - cut, child);
+        target.size += child.size;
+        return right;
+    }
+
+    private static void shiftIn(Inner inner, int position, Node child) {
+        System.arraycopy(inner.children, position, inner.children, position + 1, inner.count - position);
+        System.arraycopy(inner.sizes, position, inner.sizes, position + 1, inner.count - position);
+        inner.children[position] = child;
+        inner.sizes[position] = child.size;
+        inner.count++;
+    }
+
+    // ========== 削除 ==========
+
+    @Override
+    public E remove(int index) {
+        E old = get(index);
+        delete(index);
+        return old;
+    }
+
+    final void delete(int index) {
+        delete(root, index);
+        if (root instanceof Inner inner && inner.count == 1) {
+            root = inner.children[0];
+        }
+        modCount++;
+    }
+
+    private void delete(Node node, int index) {
+        if (node instanceof Leaf leaf) {
+            System.arraycopy(leaf.data, index + 1, leaf.data, index, leaf.size - index - 1);
+            leaf.size--;
+            release(leaf.data, leaf.size, leaf.size + 1);
+            return;
+        }
+        Inner inner = (Inner) node;
+        int k = 0;
+        while (index >= inner.sizes[k]) {
+            index -= inner.sizes[k++];
+        }
+        Node child = inner.children[k];
+        delete(child, index);
+        inner.size--;
+        inner.sizes[k]--;
+        boolean underflow = child instanceof Leaf ? child.size < LEAF_MIN : ((Inner) child).count < BRANCH_MIN;
+        if (underflow && inner.count > 1) {
+            rebalance(inner, k);
+        }
+    }
+
+    // 少なくなった子 k を隣の子と合わせる（入りきらなければ半分ずつに分け合う）
+    private void rebalance(Inner parent, int k) {
+        int left = k > 0 ? k - 1 : k;
+        Node a = parent.children[left];
+        Node b = parent.children[left + 1];
+        if (a instanceof Leaf leftLeaf) {
+            Leaf rightLeaf = (Leaf) b;
+            if (leftLeaf.size + rightLeaf.size <= LEAF_CAPACITY) {
+                System.arraycopy(rightLeaf.data, 0, leftLeaf.data, leftLeaf.size, rightLeaf.size);
+                leftLeaf.size += rightLeaf.size;
+                leftLeaf.next = rightLeaf.next;
+                removeChild(parent, left + 1);
+            } else {
+                int target = (leftLeaf.size + rightLeaf.size) / 2;
+                if (leftLeaf.size > target) {
+                    int move = leftLeaf.size - target;
+                    System.arraycopy(rightLeaf.data, 0, rightLeaf.data, move, rightLeaf.size);
+                    System.arraycopy(leftLeaf.data, target, rightLeaf.data, 0, move);
+                    release(leftLeaf.data, target, leftLeaf.size);
+                    leftLeaf.size -= move;
+                    rightLeaf.size += move;
+                } else {
+                    int move = target - leftLeaf.size;
+                    System.arraycopy(rightLeaf.data, 0, leftLeaf.data, leftLeaf.size, move);
+                    System.arraycopy(rightLeaf.data, move, rightLeaf.data, 0, rightLeaf.size - move);
+                    release(rightLeaf.data, rightLeaf.size - move, rightLeaf.size);
+                    leftLeaf.size += move;
+                    rightLeaf.size -= move;
+                }
+            }
+        } else {
+            Inner leftInner = (Inner) a;
+            Inner rightInner = (Inner) b;
+            if (leftInner.count + rightInner.count <= BRANCH_CAPACITY) {
+                moveChildren(rightInner, 0, leftInner, leftInner.count, rightInner.count);
+                leftInner.count += rightInner.count;
+                leftInner.size += rightInner.size;
+                removeChild(parent, left + 1);
+            } else {
+                int target = (leftInner.count + rightInner.count) / 2;
+                if (leftInner.count > target) {
+                    int move = leftInner.count - target;
+                    moveChildren(rightInner, 0, rightInner, move, rightInner.count);
+                    moveChildren(leftInner, target, rightInner, 0, move);
+                    leftInner.count -= move;
+                    rightInner.count += move;
+                } else {
+                    int move = target - leftInner.count;
+                    moveChildren(rightInner, 0, leftInner, leftInner.count, move);
+                    moveChildren(rightInner, move, rightInner, 0, rightInner.count - move);
+                    leftInner.count += move;
+                    rightInner.count -= move;
+                }
+                Arrays.fill(leftInner.children, leftInner.count, BRANCH_CAPACITY, null);
+                Arrays.fill(rightInner.children, rightInner.count, BRANCH_CAPACITY, null);
+                recount(leftInner);
+                recount(rightInner);
+            }
+        }
+        parent.sizes[left] = parent.children[left].size;
+        if (left + 1 < parent.count) {
+            parent.sizes[left + 1] = parent.children[left + 1].size;
+        }
+    }
+
+    private static void removeChild(Inner inner, int position) {
+        System.arraycopy(inner.children, position + 1, inner.children, position, inner.count - position - 1);
+        System.arraycopy(inner.sizes, position + 1, inner.sizes, position, inner.count - position - 1);
+        inner.children[--inner.count] = null;
+    }
+
+    private static void moveChildren(Inner from, int fromIndex, Inner to, int toIndex, int length) {
+        System.arraycopy(from.children, fromIndex, to.children, toIndex, length);
+        System.arraycopy(from.sizes, fromIndex, to.sizes, toIndex, length);
+    }
+
+    private static void recount(Inner inner) {
+        int size = 0;
+        for (int k = 0; k < inner.count; k++) {
+            size += inner.sizes[k];
+        }
+        Arrays.fill(inner.children, inner.count, BRANCH_CAPACITY, null);
+        inner.size = size;
+    }
+
+    @Override
+    public void clear() {
+        init(newChunk(first.data));
+        modCount++;
+    }
+
+    // ========== 走査（葉を順にたどる） ==========
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        int expected = modCount;
+        for (Leaf leaf = first; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.size; i++) {
+                action.accept(element(leaf.data, i));
+            }
+        }
+        if (modCount != expected) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private final class Itr implements Iterator<E> {
+        Leaf leaf = first;
+        int position;        // leaf の中の次の位置
+        int index;           // リスト全体での次の位置
+        int last = -1;       // next で返した位置（remove 用）
+        int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return index < root.size;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (index >= root.size) {
+                throw new NoSuchElementException();
+            }
+            while (position >= leaf.size) {
+                leaf = leaf.next;
+                position = 0;
+            }
+            last = index++;
+            return element(leaf.data, position++);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            delete(last);
+            // 葉が合わさったり分け合ったりしているかもしれないので、位置から探し直す
+            index = last;
+            last = -1;
+            if (index < root.size) {
+                Node node = root;
+                int offset = index;
+                while (node instanceof Inner inner) {
+                    int k = 0;
+                    while (offset >= inner.sizes[k]) {
+                        offset -= inner.sizes[k++];
+                    }
+                    node = inner.children[k];
+                }
+                leaf = (Leaf) node;
+                position = offset;
+            }
+            expectedModCount = modCount;
+        }
+    }
+
+    // ========== int の葉 ==========
+
+    // 葉を int[] で持つ ChunkedList。getInt・addInt・removeInt・forEachInt はボクシングしない
+    public static final class Ints extends ChunkedList<Integer> {
+
+        private Ints() {
+            super(new int[LEAF_CAPACITY]);
+        }
+
+        @Override
+        Integer element(Object chunk, int i) {
+            return ((int[]) chunk)[i];
+        }
+
+        @Override
+        void store(Object chunk, int i, Integer value) {
+            ((int[]) chunk)[i] = value;
+        }
+
+        public int getInt(int index) {
+            Objects.checkIndex(index, size());
+            Node node = root();
+            while (node instanceof Inner inner) {
+                int[] sizes = inner.sizes;
+                int k = 0;
+                while (index >= sizes[k]) {
+                    index -= sizes[k++];
+                }
+                node = inner.children[k];
+            }
+            return ((int[]) ((Leaf) node).data)[index];
+        }
+
+        public int setInt(int index, int value) {
+            Objects.checkIndex(index, size());
+            Node node = root();
+            while (node instanceof Inner inner) {
+                int[] sizes = inner.sizes;
+                int k = 0;
+                while (index >= sizes[k]) {
+                    index -= sizes[k++];
+                }
+                node = inner.children[k];
+            }
+            int[] data = (int[]) ((Leaf) node).data;
+            int old = data[index];
+            data[index] = value;
+            return old;
+        }
+
+        public void addInt(int value) {
+            addInt(size(), value);
+        }
+
+        @Override
+        public void add(int index, Integer value) {
+            addInt(index, value);
+        }
+
+        public void addInt(int index, int value) {
+            Objects.checkIndex(index, size() + 1);
+            insertAt(index, null, value);
+        }
+
+        public int removeInt(int index) {
+            int old = getInt(index);
+            delete(index);
+            return old;
+        }
+
+        public void forEachInt(IntConsumer action) {
+            Objects.requireNonNull(action);
+            for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+                int[] data = (int[]) leaf.data;
+                for (int i = 0, n = leaf.size; i < n; i++) {
+                    action.accept(data[i]);
+                }
+            }
+        }
+
+        public int[] toIntArray() {
+            int[] result = new int[size()];
+            int n = 0;
+            for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+                System.arraycopy(leaf.data, 0, result, n, leaf.size);
+                n += leaf.size;
+            }
+            return result;
+        }
+    }
+}
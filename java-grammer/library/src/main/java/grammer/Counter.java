@@ -0,0 +1,46 @@
+package grammer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 作られた数を数え、インスタンスごとに番号を配るカウンタ（StaticExample の Counter を、多くのスレッドから作っても詰まらないようにしたもの）
+ *
+ * static int の totalCount++ は複数スレッドから同時に呼ぶと数え漏れや番号の重複が起きる。
+ * AtomicInteger.incrementAndGet にすれば正しくなるが、1つの変数に全スレッドの書き込みが集まる。
+ * ここでは合計を LongAdder、番号を IdAllocator（スレッドごとに 64 個ずつまとめて確保）で配る。
+ * 番号は重複しないが、作られた順にはならず、欠番もある（IdAllocator を参照）。
+ * 1つ作って終わるスレッドでも 64 個分の番号を使うので、番号は long にする（int では約 3300 万スレッドで尽きる）。
+ */
+public class Counter {
+
+    // staticフィールド - 全インスタンスで共有される
+    private static final LongAdder totalCount = new LongAdder();
+    private static final IdAllocator numbers = new IdAllocator(1, 64);
+
+    // インスタンスフィールド - 各インスタンスごとに別々
+    private final String name;
+    private final long myNumber;
+
+    public Counter(String name) {
+        this.name = name;
+        totalCount.increment();  // 共有カウンタを増やす
+        this.myNumber = numbers.nextId();  // 自分の番号を記録
+    }
+
+    // これまでに作られた数（全スレッドの合計）
+    public static long totalCount() {
+        return totalCount.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNumber() {
+        return myNumber;
+    }
+
+    public void showInfo() {
+        System.out.println(name + ": 私の番号=" + myNumber + ", 総カウント=" + totalCount());
+    }
+}
@@ -0,0 +1,289 @@
+package grammer;
+
+import java.io.IOException;
+import java.lang.foreign.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * メモリマップしたファイルを、文字列を作らずに読み進める CSV リーダー
+ *
+ * JavaGrammar.stringOperations() の csv.split(",") はファイル全体を String にしてから分割するが、
+ * CsvReader は FileChannel.map でファイルをそのまま MemorySegment として見て、
+ * 各項目を「バイト範囲」として返す。数値はバイト列から直接読むので Integer.parseInt(String) も通らない。
+ *
+ * 引用符（"..."）で囲んだ項目の中の区切り文字と、"" による引用符のエスケープ（RFC 4180）に対応する。
+ * 文字コードは UTF-8 を前提とする。
+ *
+ *   try (CsvReader reader = CsvReader.open(path)) {
+ *       CsvReader.Cursor cursor = reader.cursor();
+ *       while (cursor.nextRecord()) {
+ *           cursor.nextField();
+ *           int id = cursor.intValue();
+ *           ...
+ *       }
+ *   }
+ */
+public class CsvReader implements AutoCloseable {
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final Arena arena;
+    private final MemorySegment data;
+
+    private CsvReader(Arena arena, MemorySegment data) {
+        this.arena = arena;
+        this.data = data;
+    }
+
+    // 2GB を超えるファイルも1つの MemorySegment としてマップできる。並列に読めるよう共有 Arena を使う
+    public static CsvReader open(Path file) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CsvReader(arena, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return data.byteSize();
+    }
+
+    public Cursor cursor() {
+        return new Cursor(data, 0, data.byteSize());
+    }
+
+    // [from, to) の範囲だけを読むカーソル。from は行の先頭でなければならない
+    public Cursor cursor(long from, long to) {
+        Objects.checkFromToIndex(from, to, data.byteSize());
+        return new Cursor(data, from, to);
+    }
+
+    // ========== 並列読み込み ==========
+
+    // ファイルを行の境目でおよそ chunks 等分した境界の位置（先頭 0 と末尾 size を含む）
+    // 引用符の中の改行は考慮しないので、項目内に改行を含むファイルには使えない
+    public long[] split(int chunks) {
+        long size = data.byteSize();
+        long[] bounds = new long[chunks + 1];
+        bounds[chunks] = size;
+        for (int i = 1; i < chunks; i++) {
+            long position = Math.max(bounds[i - 1], size * i / chunks);
+            while (position < size && position > 0 && data.get(ValueLayout.JAVA_BYTE, position - 1) != LF) {
+                position++;
+            }
+            bounds[i] = position;
+        }
+        return bounds;
+    }
+
+    // 行の境目で分けた各範囲を Fork/Join の共通プールで並列に処理し、結果を範囲の順に返す
+    public <T> List<T> parallel(int chunks, Function<Cursor, T> task) {
+        long[] bounds = split(chunks);
+        return IntStream.range(0, chunks)
+            .parallel()
+            .mapToObj(i -> task.apply(cursor(bounds[i], bounds[i + 1])))
+            .toList();
+    }
+
+    public <T> List<T> parallel(Function<Cursor, T> task) {
+        return parallel(Runtime.getRuntime().availableProcessors() * 4, task);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    // ========== カーソル ==========
+
+    // 1レコード・1項目ずつ読み進める。スレッドごとに別のカーソルを使うこと
+    public static final class Cursor {
+        private final MemorySegment data;
+        private final long limit;
+        private long position;
+
+        private boolean inRecord;
+        private boolean recordDone;
+
+        private long fieldStart;
+        private long fieldEnd;
+        private boolean quoted;
+        private boolean escaped;  // 引用符の中に "" があった
+
+        private final Numbers.Result parsed = new Numbers.Result();
+
+        private Cursor(MemorySegment data, long from, long to) {
+            this.data = data;
+            this.position = from;
+            this.limit = to;
+        }
+
+        // 次のレコード（行）に進む。読み残した項目は読み飛ばす
+        public boolean nextRecord() {
+            if (inRecord) {
+                while (nextField()) {
+                    // 残りの項目を読み飛ばす
+                }
+            }
+            if (position >= limit) {
+                inRecord = false;
+                return false;
+            }
+            inRecord = true;
+            recordDone = false;
+            return true;
+        }
+
+        // 現在のレコードの次の項目に進む。レコードの終わりなら false
+        public boolean nextField() {
+            if (!inRecord || recordDone) {
+                return false;
+            }
+            if (position < limit && byteAt(position) == QUOTE) {
+                readQuoted();
+            } else {
+                readUnquoted();
+            }
+
+            // 項目の後ろの区切り（, または改行）を読み飛ばす
+            if (position >= limit) {
+                recordDone = true;
+            } else {
+                byte b = byteAt(position);
+                if (b == COMMA) {
+                    position++;
+                } else if (b == CR) {
+                    position++;
+                    if (position < limit && byteAt(position) == LF) {
+                        position++;
+                    }
+                    recordDone = true;
+                } else if (b == LF) {
+                    position++;
+                    recordDone = true;
+                } else {
+                    throw new IllegalArgumentException("引用符の後ろに余分な文字があります（位置 " + position + "）");
+                }
+            }
+            return true;
+        }
+
+        private void readUnquoted() {
+            quoted = false;
+            escaped = false;
+            fieldStart = position;
+            while (position < limit) {
+                byte b = byteAt(position);
+                if (b == COMMA || b == LF || b == CR) {
+                    break;
+                }
+                position++;
+            }
+            fieldEnd = position;
+        }
+
+        private void readQuoted() {
+            quoted = true;
+            escaped = false;
+            fieldStart = ++position;
+            while (true) {
+                if (position >= limit) {
+                    throw new IllegalArgumentException("引用符が閉じられていません（位置 " + fieldStart + "）");
+                }
+                if (byteAt(position) == QUOTE) {
+                    if (position + 1 < limit && byteAt(position + 1) == QUOTE) {
+                        escaped = true;
+                        position += 2;
+                        continue;
+                    }
+                    fieldEnd = position++;
+                    return;
+                }
+                position++;
+            }
+        }
+
+        private byte byteAt(long offset) {
+            return data.get(ValueLayout.JAVA_BYTE, offset);
+        }
+
+        // ========== 項目の値 ==========
+
+        // 項目のバイト範囲（引用符で囲まれていた場合は引用符の内側）
+        public long fieldStart() {
+            return fieldStart;
+        }
+
+        public long fieldEnd() {
+            return fieldEnd;
+        }
+
+        public boolean quoted() {
+            return quoted;
+        }
+
+        public MemorySegment fieldBytes() {
+            return data.asSlice(fieldStart, fieldEnd - fieldStart);
+        }
+
+        public boolean isEmpty() {
+            return fieldStart == fieldEnd;
+        }
+
+        // 数値の解析は Numbers に任せる。try〜 は読めなければ例外を投げずに INVALID / false を返す
+        public long tryIntValue() {
+            return Numbers.tryParseInt(data, fieldStart, fieldEnd);
+        }
+
+        public boolean tryLongValue(Numbers.Result out) {
+            return Numbers.tryParseLong(data, fieldStart, fieldEnd, out);
+        }
+
+        public boolean tryDoubleValue(Numbers.Result out) {
+            return Numbers.tryParseDouble(data, fieldStart, fieldEnd, out);
+        }
+
+        public int intValue() {
+            long value = tryIntValue();
+            if (value == Numbers.INVALID) {
+                throw numberFormat("int として読めません");
+            }
+            return (int) value;
+        }
+
+        public long longValue() {
+            if (!tryLongValue(parsed)) {
+                throw numberFormat("long として読めません");
+            }
+            return parsed.longValue();
+        }
+
+        public double doubleValue() {
+            if (!tryDoubleValue(parsed)) {
+                throw numberFormat("double として読めません");
+            }
+            return parsed.doubleValue();
+        }
+
+        // 文字列が必要なときだけ作る（"" は " に戻す）
+        public String stringValue() {
+            String raw = new String(data.asSlice(fieldStart, fieldEnd - fieldStart).toArray(ValueLayout.JAVA_BYTE),
+                StandardCharsets.UTF_8);
+            return escaped ? raw.replace("\"\"", "\"") : raw;
+        }
+
+        private NumberFormatException numberFormat(String reason) {
+            return new NumberFormatException(reason + ": \"" + stringValue() + "\"（位置 " + fieldStart + "）");
+        }
+    }
+}
@@ -0,0 +1,764 @@
+package grammer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.ToDoubleFunction;
+import javax.tools.*;
+
+/**
+ * int・double の変数を使った式（JavaGrammar.operators() の演算子）を読み込み、行ごと・列ごとに計算する
+ *
+ *   Expression max = Expression.variables().ints("a", "b").parse("a > b ? a : b");
+ *   max.evaluate(10, 3);                       // 10.0（変数を宣言した順に渡す）
+ *
+ *   Expression price = Expression.variables().ints("個数").doubles("単価").parse("個数 * 単価 * 1.1");
+ *   Expression fast = price.compile();         // バイトコードにする
+ *   double[] totals = fast.evaluate(Map.of("個数", counts, "単価", prices));   // int[]・double[] の列をまとめて
+ *
+ * 使える演算子（優先順位と型の決まりは Java と同じ）：
+ *   算術 + - * / %（int どうしなら int の計算。割り算は切り捨て、0 で割ると ArithmeticException）
+ *   比較 == != < <= > >=    論理 && || !    三項 ? :    かっこ    数値・true・false
+ *
+ * parse は構文木を作るだけで、evaluate は木をたどって計算する（インタプリタ）。
+ * compile は式を Java のソースにして javax.tools でメモリ上でコンパイルし、隠しクラス
+ * （Lookup.defineHiddenClass。使われなくなればアンロードされる）として読み込む。
+ * 列ごとの計算はループごと生成するので、JIT がループの中に式をそのまま展開できる。
+ * コンパイルには 1 回数十ミリ秒かかる（最初の 1 回は javac の読み込みで 1 秒ほど）ので、何度も使う式に使う。
+ * javac のない実行環境（java.compiler モジュールを含まない jlink のイメージなど）や
+ * -Dexpression.compile=false のときは、compile もインタプリタのまま返す。
+ *
+ * 結果は double で返す。int の式は正確に（int の範囲はすべて double で表せる）、真偽値の式は 1.0 か 0.0。
+ * evaluate(double...) に渡した int の変数の値は、小数点以下を切り捨てて使う。
+ */
+public final class Expression {
+
+    public enum Type { INT, DOUBLE, BOOLEAN }
+
+    private static final boolean COMPILE = !"false".equals(System.getProperty("expression.compile"));
+
+    private final String text;
+    private final String[] names;
+    private final Type[] types;
+    private final Node tree;
+    private final ToDoubleFunction<double[]> row;        // 1行（変数の値は宣言順）
+    private final BiConsumer<Object[], double[]> columns; // 列（宣言順の int[]・double[]）→ out
+    private final boolean compiled;
+
+    private Expression(String text, String[] names, Type[] types, Node tree,
+                       ToDoubleFunction<double[]> row, BiConsumer<Object[], double[]> columns, boolean compiled) {
+        this.text = text;
+        this.names = names;
+        this.types = types;
+        this.tree = tree;
+        this.row = row;
+        this.columns = columns;
+        this.compiled = compiled;
+    }
+
+    public static Variables variables() {
+        return new Variables();
+    }
+
+    // 式で使う変数（宣言した順に、evaluate(double...) と列の並びが決まる）
+    public static final class Variables {
+        private final Map<String, Type> declared = new LinkedHashMap<>();
+
+        private Variables() {
+        }
+
+        public Variables ints(String... names) {
+            return declare(Type.INT, names);
+        }
+
+        public Variables doubles(String... names) {
+            return declare(Type.DOUBLE, names);
+        }
+
+        private Variables declare(Type type, String... names) {
+            for (String name : names) {
+                if (!isIdentifier(name) || name.equals("true") || name.equals("false")) {
+                    throw new IllegalArgumentException("変数名にできません: " + name);
+                }
+                if (declared.putIfAbsent(name, type) != null) {
+                    throw new IllegalArgumentException("変数が重複しています: " + name);
+                }
+            }
+            return this;
+        }
+
+        // 式を読む。書き方や型が間違っていれば IllegalArgumentException（位置つき）
+        public Expression parse(String text) {
+            String[] names = declared.keySet().toArray(String[]::new);
+            Type[] types = declared.values().toArray(Type[]::new);
+            Node tree = new Parser(text, names, types).parse();
+            return new Expression(text, names, types, tree,
+                values -> Interpreter.result(tree, values),
+                (columns, out) -> Interpreter.columns(tree, types, columns, out), false);
+        }
+    }
+
+    // ========== 計算 ==========
+
+    public double evaluate(double... values) {
+        if (values.length != names.length) {
+            throw new IllegalArgumentException("変数は " + names.length + " 個です: " + Arrays.toString(names));
+        }
+        return row.applyAsDouble(values);
+    }
+
+    // 変数名 → 列（int の変数は int[]、double の変数は double[]。長さはそろえる）
+    public double[] evaluate(Map<String, ?> columns) {
+        double[] out = new double[Math.max(rows(columns), 0)];
+        evaluate(columns, out);
+        return out;
+    }
+
+    // 結果を out に書く（out の長さは列と同じ。変数がなければ out の長さだけ計算する）
+    public void evaluate(Map<String, ?> columns, double[] out) {
+        int rows = rows(columns);
+        if (rows >= 0 && out.length != rows) {
+            throw new IllegalArgumentException("out の長さ " + out.length + " が列の長さ " + rows + " と違います");
+        }
+        Object[] ordered = new Object[names.length];
+        for (int k = 0; k < names.length; k++) {
+            ordered[k] = columns.get(names[k]);
+        }
+        this.columns.accept(ordered, out);
+    }
+
+    // 列の長さ（変数がなければ -1）。型と長さが合わなければ IllegalArgumentException
+    private int rows(Map<String, ?> columns) {
+        int rows = -1;
+        for (int k = 0; k < names.length; k++) {
+            Object column = columns.get(names[k]);
+            int length = switch (types[k]) {
+                case INT -> column instanceof int[] ints ? ints.length : -1;
+                default -> column instanceof double[] doubles ? doubles.length : -1;
+            };
+            if (length < 0) {
+                throw new IllegalArgumentException(names[k] + " の列は " + (types[k] == Type.INT ? "int[]" : "double[]")
+                    + " で渡してください");
+            }
+            if (rows >= 0 && length != rows) {
+                throw new IllegalArgumentException("列の長さがそろっていません: " + names[k]);
+            }
+            rows = length;
+        }
+        return rows;
+    }
+
+    // 結果の型（BOOLEAN なら evaluate は 1.0 か 0.0）
+    public Type type() {
+        return tree.type();
+    }
+
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    // バイトコードにした同じ式（コンパイルできなければこの式のまま）
+    public Expression compile() {
+        if (compiled || !COMPILE || ModuleLayer.boot().findModule("java.compiler").isEmpty()) {
+            return this;
+        }
+        Object kernel = Javac.load(javaSource());
+        @SuppressWarnings("unchecked")
+        ToDoubleFunction<double[]> row = (ToDoubleFunction<double[]>) kernel;
+        @SuppressWarnings("unchecked")
+        BiConsumer<Object[], double[]> columns = (BiConsumer<Object[], double[]>) kernel;
+        return new Expression(text, names, types, tree, row, columns, true);
+    }
+
+    // 木をたどって計算する同じ式
+    public Expression interpreted() {
+        return compiled ? variablesOf().parse(text) : this;
+    }
+
+    private Variables variablesOf() {
+        Variables variables = new Variables();
+        for (int k = 0; k < names.length; k++) {
+            variables.declare(types[k], names[k]);
+        }
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    // ========== 構文木 ==========
+
+    enum Op {
+        ADD("+"), SUB("-"), MUL("*"), DIV("/"), REM("%"),
+        LT("<"), LE("<="), GT(">"), GE(">="), EQ("=="), NE("!="),
+        AND("&&"), OR("||"), NEG("-"), NOT("!");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    sealed interface Node permits Literal, Variable, Unary, Binary, Conditional {
+        Type type();
+    }
+
+    record Literal(Type type, double value) implements Node {
+    }
+
+    record Variable(Type type, int index) implements Node {
+    }
+
+    record Unary(Type type, Op op, Node operand) implements Node {
+    }
+
+    record Binary(Type type, Op op, Node left, Node right) implements Node {
+    }
+
+    record Conditional(Type type, Node condition, Node then, Node otherwise) implements Node {
+    }
+
+    // ========== 構文解析（再帰下降。優先順位の低い順にメソッドを並べる） ==========
+
+    private static final class Parser {
+        private final String text;
+        private final String[] names;
+        private final Type[] types;
+        private int position;
+
+        Parser(String text, String[] names, Type[] types) {
+            this.text = text;
+            this.names = names;
+            this.types = types;
+        }
+
+        Node parse() {
+            Node node = conditional();
+            skipSpaces();
+            if (position < text.length()) {
+                throw error("余分な文字があります");
+            }
+            return node;
+        }
+
+        private Node conditional() {
+            Node condition = or();
+            if (!accept("?")) {
+                return condition;
+            }
+            int at = position;
+            Node then = conditional();
+            expect(":");
+            Node otherwise = conditional();
+            requireType(condition, Type.BOOLEAN, at, "?");
+            Type type;
+            if (then.type() == Type.BOOLEAN && otherwise.type() == Type.BOOLEAN) {
+                type = Type.BOOLEAN;
+            } else if (then.type() != Type.BOOLEAN && otherwise.type() != Type.BOOLEAN) {
+                type = promote(then, otherwise);
+            } else {
+                throw error(at, "? : の両側は、どちらも数値かどちらも真偽値にしてください");
+            }
+            return new Conditional(type, condition, then, otherwise);
+        }
+
+        private Node or() {
+            Node left = and();
+            while (true) {
+                int at = position;
+                if (!accept("||")) {
+                    return left;
+                }
+                left = logical(Op.OR, left, and(), at);
+            }
+        }
+
+        private Node and() {
+            Node left = equality();
+            while (true) {
+                int at = position;
+                if (!accept("&&")) {
+                    return left;
+                }
+                left = logical(Op.AND, left, equality(), at);
+            }
+        }
+
+        private Node equality() {
+            Node left = relational();
+            while (true) {
+                int at = position;
+                Op op = accept("==") ? Op.EQ : accept("!=") ? Op.NE : null;
+                if (op == null) {
+                    return left;
+                }
+                Node right = relational();
+                boolean booleans = left.type() == Type.BOOLEAN && right.type() == Type.BOOLEAN;
+                if (!booleans && (left.type() == Type.BOOLEAN || right.type() == Type.BOOLEAN)) {
+                    throw error(at, op.symbol + " の両側は、どちらも数値かどちらも真偽値にしてください");
+                }
+                left = new Binary(Type.BOOLEAN, op, left, right);
+            }
+        }
+
+        // Java と同じく a < b < c は書けない（真偽値と数値を比べることになる）
+        private Node relational() {
+            Node left = additive();
+            int at = position;
+            Op op = accept("<=") ? Op.LE : accept(">=") ? Op.GE : accept("<") ? Op.LT : accept(">") ? Op.GT : null;
+            if (op == null) {
+                return left;
+            }
+            Node right = additive();
+            requireNumber(left, at, op);
+            requireNumber(right, at, op);
+            return new Binary(Type.BOOLEAN, op, left, right);
+        }
+
+        private Node additive() {
+            Node left = multiplicative();
+            while (true) {
+                int at = position;
+                Op op = accept("+") ? Op.ADD : accept("-") ? Op.SUB : null;
+                if (op == null) {
+                    return left;
+                }
+                left = arithmetic(op, left, multiplicative(), at);
+            }
+        }
+
+        private Node multiplicative() {
+            Node left = unary();
+            while (true) {
+                int at = position;
+                Op op = accept("*") ? Op.MUL : accept("/") ? Op.DIV : accept("%") ? Op.REM : null;
+                if (op == null) {
+                    return left;
+                }
+                left = arithmetic(op, left, unary(), at);
+            }
+        }
+
+        private Node unary() {
+            int at = position;
+            if (accept("-")) {
+                // 数字が続くなら符号ごと1つのリテラルにする（-2147483648 は int に入るが、2147483648 は入らない）
+                skipSpaces();
+                if (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    return number(true);
+                }
+                Node operand = unary();
+                requireNumber(operand, at, Op.NEG);
+                return new Unary(operand.type(), Op.NEG, operand);
+            }
+            if (accept("+")) {
+                Node operand = unary();
+                requireNumber(operand, at, Op.ADD);
+                return operand;
+            }
+            if (accept("!")) {
+                Node operand = unary();
+                requireType(operand, Type.BOOLEAN, at, "!");
+                return new Unary(Type.BOOLEAN, Op.NOT, operand);
+            }
+            return primary();
+        }
+
+        private Node primary() {
+            skipSpaces();
+            if (accept("(")) {
+                Node node = conditional();
+                expect(")");
+                return node;
+            }
+            int start = position;
+            if (position < text.length() && Character.isDigit(text.charAt(position))) {
+                return number(false);
+            }
+            if (position < text.length() && Character.isJavaIdentifierStart(text.codePointAt(position))) {
+                while (position < text.length() && Character.isJavaIdentifierPart(text.codePointAt(position))) {
+                    position += Character.charCount(text.codePointAt(position));
+                }
+                String name = text.substring(start, position);
+                if (name.equals("true") || name.equals("false")) {
+                    return new Literal(Type.BOOLEAN, name.equals("true") ? 1 : 0);
+                }
+                for (int k = 0; k < names.length; k++) {
+                    if (names[k].equals(name)) {
+                        return new Variable(types[k], k);
+                    }
+                }
+                throw error(start, "宣言していない変数です: " + name);
+            }
+            throw error(position < text.length() ? "式が必要です" : "式が途中で終わっています");
+        }
+
+        // 123（int）・1.5・1e3・2.（double）。negative なら直前の単項の - を合わせた値にする
+        private Node number(boolean negative) {
+            int start = position;
+            boolean decimal = false;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            if (position < text.length() && text.charAt(position) == '.') {
+                decimal = true;
+                position++;
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+            }
+            if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                decimal = true;
+                position++;
+                if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                    position++;
+                }
+                int digits = position;
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+                if (digits == position) {
+                    throw error("指数の数字がありません");
+                }
+            }
+            String literal = text.substring(start, position);
+            if (decimal) {
+                double value = Double.parseDouble(literal);
+                if (Double.isInfinite(value)) {
+                    throw error(start, "double の範囲を超えています: " + literal);
+                }
+                return new Literal(Type.DOUBLE, negative ? -value : value);
+            }
+            // 数字だけなので、読めないのは大きすぎるときだけ
+            String digits = literal.replaceFirst("^0+(?=.)", "");
+            long value = digits.length() > 10 ? Long.MAX_VALUE : Long.parseLong(digits);
+            if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                throw error(start, "int の範囲を超えています: " + (negative ? "-" : "") + literal);
+            }
+            return new Literal(Type.INT, negative ? -value : value);
+        }
+
+        private Node arithmetic(Op op, Node left, Node right, int at) {
+            requireNumber(left, at, op);
+            requireNumber(right, at, op);
+            return new Binary(promote(left, right), op, left, right);
+        }
+
+        private Node logical(Op op, Node left, Node right, int at) {
+            requireType(left, Type.BOOLEAN, at, op.symbol);
+            requireType(right, Type.BOOLEAN, at, op.symbol);
+            return new Binary(Type.BOOLEAN, op, left, right);
+        }
+
+        private static Type promote(Node left, Node right) {
+            return left.type() == Type.INT && right.type() == Type.INT ? Type.INT : Type.DOUBLE;
+        }
+
+        private void requireNumber(Node node, int at, Op op) {
+            if (node.type() == Type.BOOLEAN) {
+                throw error(at, op.symbol + " は数値にしか使えません");
+            }
+        }
+
+        private void requireType(Node node, Type type, int at, String symbol) {
+            if (node.type() != type) {
+                throw error(at, symbol + " には真偽値が必要です");
+            }
+        }
+
+        private boolean accept(String token) {
+            skipSpaces();
+            if (!text.startsWith(token, position)) {
+                return false;
+            }
+            // < と <=、! と !=、& と && のように、長い方の演算子の先頭だけを取らない
+            if (token.length() == 1 && "<>!=".indexOf(token.charAt(0)) >= 0
+                && position + 1 < text.length() && text.charAt(position + 1) == '=') {
+                return false;
+            }
+            position += token.length();
+            return true;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw error("'" + token + "' が必要です");
+            }
+        }
+
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return error(position, message);
+        }
+
+        private IllegalArgumentException error(int at, String message) {
+            return new IllegalArgumentException("位置 " + at + ": " + message + "\n  " + text + "\n  " + " ".repeat(at) + "^");
+        }
+    }
+
+    private static boolean isIdentifier(String name) {
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.codePointAt(0))) {
+            return false;
+        }
+        return name.codePoints().allMatch(Character::isJavaIdentifierPart);
+    }
+
+    // ========== インタプリタ（木をたどる） ==========
+
+    private static final class Interpreter {
+
+        static double result(Node node, double[] values) {
+            return switch (node.type()) {
+                case INT -> evalInt(node, values);
+                case DOUBLE -> evalDouble(node, values);
+                case BOOLEAN -> evalBoolean(node, values) ? 1 : 0;
+            };
+        }
+
+        // 1行ずつ変数の値を詰め直して、木をたどる
+        static void columns(Node node, Type[] types, Object[] columns, double[] out) {
+            double[] values = new double[types.length];
+            for (int i = 0; i < out.length; i++) {
+                for (int k = 0; k < types.length; k++) {
+                    values[k] = types[k] == Type.INT ? ((int[]) columns[k])[i] : ((double[]) columns[k])[i];
+                }
+                out[i] = result(node, values);
+            }
+        }
+
+        static int evalInt(Node node, double[] values) {
+            return switch (node) {
+                case Literal literal -> (int) literal.value();
+                case Variable variable -> (int) values[variable.index()];
+                case Unary unary -> -evalInt(unary.operand(), values);
+                case Binary binary -> {
+                    int left = evalInt(binary.left(), values);
+                    int right = evalInt(binary.right(), values);
+                    yield switch (binary.op()) {
+                        case ADD -> left + right;
+                        case SUB -> left - right;
+                        case MUL -> left * right;
+                        case DIV -> left / right;
+                        case REM -> left % right;
+                        default -> throw new IllegalStateException(binary.op().symbol);
+                    };
+                }
+                case Conditional conditional -> evalBoolean(conditional.condition(), values)
+                    ? evalInt(conditional.then(), values) : evalInt(conditional.otherwise(), values);
+            };
+        }
+
+        static double evalDouble(Node node, double[] values) {
+            if (node.type() == Type.INT) {
+                return evalInt(node, values);
+            }
+            return switch (node) {
+                case Literal literal -> literal.value();
+                case Variable variable -> values[variable.index()];
+                case Unary unary -> -evalDouble(unary.operand(), values);
+                case Binary binary -> {
+                    double left = evalDouble(binary.left(), values);
+                    double right = evalDouble(binary.right(), values);
+                    yield switch (binary.op()) {
+                        case ADD -> left + right;
+                        case SUB -> left - right;
+                        case MUL -> left * right;
+                        case DIV -> left / right;
+                        case REM -> left % right;
+                        default -> throw new IllegalStateException(binary.op().symbol);
+                    };
+                }
+                case Conditional conditional -> evalBoolean(conditional.condition(), values)
+                    ? evalDouble(conditional.then(), values) : evalDouble(conditional.otherwise(), values);
+            };
+        }
+
+        static boolean evalBoolean(Node node, double[] values) {
+            return switch (node) {
+                case Literal literal -> literal.value() != 0;
+                case Unary unary -> !evalBoolean(unary.operand(), values);
+                case Binary binary -> switch (binary.op()) {
+                    case AND -> evalBoolean(binary.left(), values) && evalBoolean(binary.right(), values);
+                    case OR -> evalBoolean(binary.left(), values) || evalBoolean(binary.right(), values);
+                    default -> compare(binary, values);
+                };
+                case Conditional conditional -> evalBoolean(conditional.condition(), values)
+                    ? evalBoolean(conditional.then(), values) : evalBoolean(conditional.otherwise(), values);
+                case Variable variable -> throw new IllegalStateException("真偽値の変数はありません");
+            };
+        }
+
+        // int どうしは int で、どちらかが double なら double で比べる（Java と同じ）
+        private static boolean compare(Binary binary, double[] values) {
+            Node left = binary.left();
+            Node right = binary.right();
+            if (left.type() == Type.BOOLEAN) {
+                boolean equal = evalBoolean(left, values) == evalBoolean(right, values);
+                return binary.op() == Op.EQ ? equal : !equal;
+            }
+            if (left.type() == Type.INT && right.type() == Type.INT) {
+                int l = evalInt(left, values);
+                int r = evalInt(right, values);
+                return switch (binary.op()) {
+                    case LT -> l < r;
+                    case LE -> l <= r;
+                    case GT -> l > r;
+                    case GE -> l >= r;
+                    case EQ -> l == r;
+                    case NE -> l != r;
+                    default -> throw new IllegalStateException(binary.op().symbol);
+                };
+            }
+            double l = evalDouble(left, values);
+            double r = evalDouble(right, values);
+            return switch (binary.op()) {
+                case LT -> l < r;
+                case LE -> l <= r;
+                case GT -> l > r;
+                case GE -> l >= r;
+                case EQ -> l == r;
+                case NE -> l != r;
+                default -> throw new IllegalStateException(binary.op().symbol);
+            };
+        }
+    }
+
+    // ========== コンパイル（Java のソース → javac → 隠しクラス） ==========
+
+    // 生成するクラスは JDK の型だけを使う（ソースのまま起動したときも、この Expression を javac が探さずに済む）
+    String javaSource() {
+        String body = java(tree);
+        String result = tree.type() == Type.BOOLEAN ? body + " ? 1.0 : 0.0" : body;
+        BitSet used = new BitSet();
+        collectVariables(tree, used);
+        StringBuilder rowLocals = new StringBuilder();
+        StringBuilder columnArrays = new StringBuilder();
+        StringBuilder columnLocals = new StringBuilder();
+        used.stream().forEach(k -> {
+            String type = types[k] == Type.INT ? "int" : "double";
+            rowLocals.append("        ").append(type).append(" v").append(k).append(" = ")
+                .append(types[k] == Type.INT ? "(int) " : "").append("values[").append(k).append("];\n");
+            columnArrays.append("        ").append(type).append("[] c").append(k).append(" = (").append(type)
+                .append("[]) columns[").append(k).append("];\n");
+            columnLocals.append("            ").append(type).append(" v").append(k).append(" = c").append(k)
+                .append("[i];\n");
+        });
+        return """
+            // %s
+            public final class ExpressionKernel
+                    implements java.util.function.ToDoubleFunction<double[]>,
+                               java.util.function.BiConsumer<Object[], double[]> {
+
+                @Override
+                public double applyAsDouble(double[] values) {
+            %s        return %s;
+                }
+
+                @Override
+                public void accept(Object[] columns, double[] out) {
+            %s        for (int i = 0; i < out.length; i++) {
+            %s            out[i] = %s;
+                    }
+                }
+            }
+            """.formatted(text.replaceAll("\\s+", " "), rowLocals, result, columnArrays, columnLocals, result);
+    }
+
+    private static String java(Node node) {
+        return switch (node) {
+            // 負の数は括弧に入れる（- の後ろに続いても -- にならないように）
+            case Literal literal -> switch (literal.type()) {
+                case INT -> parenthesizeNegative(Integer.toString((int) literal.value()));
+                case DOUBLE -> parenthesizeNegative(Double.toString(literal.value()));
+                case BOOLEAN -> literal.value() != 0 ? "true" : "false";
+            };
+            case Variable variable -> "v" + variable.index();
+            case Unary unary -> "(" + unary.op().symbol + java(unary.operand()) + ")";
+            case Binary binary -> "(" + java(binary.left()) + " " + binary.op().symbol + " " + java(binary.right()) + ")";
+            case Conditional conditional -> "(" + java(conditional.condition()) + " ? " + java(conditional.then())
+                + " : " + java(conditional.otherwise()) + ")";
+        };
+    }
+
+    private static String parenthesizeNegative(String number) {
+        return number.startsWith("-") ? "(" + number + ")" : number;
+    }
+
+    private static void collectVariables(Node node, BitSet used) {
+        switch (node) {
+            case Literal literal -> {
+            }
+            case Variable variable -> used.set(variable.index());
+            case Unary unary -> collectVariables(unary.operand(), used);
+            case Binary binary -> {
+                collectVariables(binary.left(), used);
+                collectVariables(binary.right(), used);
+            }
+            case Conditional conditional -> {
+                collectVariables(conditional.condition(), used);
+                collectVariables(conditional.then(), used);
+                collectVariables(conditional.otherwise(), used);
+            }
+        }
+    }
+
+    // javac は1つずつしか動かせないので、コンパイルはまとめて同期する
+    // （隠しクラスは Expression と同じパッケージでないと定義できないので、生成したソースにも同じ package 宣言を付ける）
+    private static final class Javac {
+        private static final String PACKAGE = Expression.class.getPackageName();
+        private static final String KERNEL = PACKAGE.isEmpty() ? "ExpressionKernel" : PACKAGE + ".ExpressionKernel";
+        private static final JavaCompiler JAVAC = ToolProvider.getSystemJavaCompiler();
+        private static final StandardJavaFileManager FILES = JAVAC.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+
+        static synchronized Object load(String kernelSource) {
+            String source = PACKAGE.isEmpty() ? kernelSource : "package " + PACKAGE + ";\n" + kernelSource;
+            Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+            JavaFileManager memory = new ForwardingJavaFileManager<>(FILES) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                           JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(URI.create("mem:///" + className + kind.extension), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            return classes.computeIfAbsent(className, name -> new ByteArrayOutputStream());
+                        }
+                    };
+                }
+            };
+            JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///ExpressionKernel.java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            StringWriter messages = new StringWriter();
+            boolean ok = JAVAC.getTask(messages, memory, null, List.of("-proc:none", "-g:none", "-Xlint:none"),
+                null, List.of(file)).call();
+            if (!ok || !classes.containsKey(KERNEL)) {
+                throw new IllegalStateException("式のコンパイルに失敗しました:\n" + messages + "\n" + source);
+            }
+            try {
+                MethodHandles.Lookup kernel = MethodHandles.lookup()
+                    .defineHiddenClass(classes.get(KERNEL).toByteArray(), true);
+                return kernel.findConstructor(kernel.lookupClass(), MethodType.methodType(void.class)).invoke();
+            } catch (Throwable e) {
+                throw new IllegalStateException("式のクラスを読み込めませんでした", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package grammer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 複数スレッドから同時に呼んでも重複しない連番の発行器
+ *
+ * 共有のカウンタからはスレッドごとに blockSize 個まとめて番号を取り、
+ * その範囲を使い切るまではスレッド内だけで番号を配る。共有カウンタへの
+ * アクセスが blockSize 回に1回になるので、スレッドが多くても競合しにくい。
+ *
+ * 番号は重複せず、各スレッドの中では昇順になる。ただしスレッドをまたぐと発行順とは一致せず、
+ * ブロックを使い切らずに終わったスレッドの残りは欠番になる。欠番を許さない場合は blockSize を 1 にする。
+ */
+public class IdAllocator {
+
+    private final AtomicLong nextBlock;
+    private final int blockSize;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    // スレッドが確保済みの範囲 [next, end)
+    private static final class Block {
+        long next;
+        long end;
+    }
+
+    public IdAllocator(long firstId, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("ブロックサイズは1以上です: " + blockSize);
+        }
+        this.nextBlock = new AtomicLong(firstId);
+        this.blockSize = blockSize;
+    }
+
+    public long nextId() {
+        if (blockSize == 1) {
+            return nextBlock.getAndIncrement();
+        }
+        Block block = blocks.get();
+        if (block.next == block.end) {
+            long start = nextBlock.getAndAdd(blockSize);
+            block.next = start;
+            block.end = start + blockSize;
+        }
+        return block.next++;
+    }
+
+    // これまでにどのスレッドにも渡していない最初の番号（発行済みの番号はすべてこれより小さい）
+    public long highWaterMark() {
+        return nextBlock.get();
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+}
@@ -0,0 +1,249 @@
+package grammer;
+
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * int[] の上で filter → map → reduce をつなげる小さなパイプライン
+ *
+ * Stream<Integer> は要素ごとに Integer を作り、段ごとに Sink を呼び継ぐ。
+ * IntPipeline は filter と map を1つの関数に合成しておき、終端操作で配列を1回なめるだけにする。
+ * 途中の値はすべて int のままで、結果も int[] で返す。
+ *
+ *   int result = IntPipeline.of(values)
+ *       .filter(n -> n > 2)
+ *       .map(n -> n * n)
+ *       .sum();
+ *
+ * parallel() を付けると、PARALLEL_THRESHOLD 要素以上のときに範囲を分けて Fork/Join の共通プールで処理する。
+ * reduce に渡す演算は Stream と同じく結合的（(a op b) op c == a op (b op c)）でなければならない。
+ */
+public final class IntPipeline {
+
+    // これより少ない要素は parallel() でも分割しない
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    // 並列処理で1タスクが受け持つ要素数
+    static final int CHUNK = 1 << 16;
+
+    // filter で捨てた印。int の範囲外の long なので、どの int の値とも重ならない
+    private static final long NONE = Long.MIN_VALUE;
+
+    // 合成した filter・map。戻り値は int の値か NONE
+    private interface Step {
+        long apply(int value);
+    }
+
+    private final int[] source;
+    private final int from;
+    private final int to;
+    private final Step step;  // null なら何もしない（要素をそのまま流す）
+    private final boolean parallel;
+
+    private IntPipeline(int[] source, int from, int to, Step step, boolean parallel) {
+        this.source = source;
+        this.from = from;
+        this.to = to;
+        this.step = step;
+        this.parallel = parallel;
+    }
+
+    // 配列をコピーせずに流す
+    public static IntPipeline of(int... source) {
+        return new IntPipeline(source, 0, source.length, null, false);
+    }
+
+    public static IntPipeline of(int[] source, int from, int to) {
+        Objects.checkFromToIndex(from, to, source.length);
+        return new IntPipeline(source, from, to, null, false);
+    }
+
+    // ========== 中間操作（新しい IntPipeline を返す） ==========
+
+    public IntPipeline filter(IntPredicate predicate) {
+        Step previous = step;
+        Step next = previous == null
+            ? value -> predicate.test(value) ? value : NONE
+            : value -> {
+                long r = previous.apply(value);
+                return r != NONE && predicate.test((int) r) ? r : NONE;
+            };
+        return new IntPipeline(source, from, to, next, parallel);
+    }
+
+    public IntPipeline map(IntUnaryOperator mapper) {
+        Step previous = step;
+        Step next = previous == null
+            ? value -> mapper.applyAsInt(value)
+            : value -> {
+                long r = previous.apply(value);
+                return r == NONE ? NONE : mapper.applyAsInt((int) r);
+            };
+        return new IntPipeline(source, from, to, next, parallel);
+    }
+
+    public IntPipeline parallel() {
+        return new IntPipeline(source, from, to, step, true);
+    }
+
+    public IntPipeline sequential() {
+        return new IntPipeline(source, from, to, step, false);
+    }
+
+    // ========== 終端操作 ==========
+
+    // Stream.reduce(identity, op) と同じ
+    public int reduce(int identity, IntBinaryOperator op) {
+        if (!isParallel()) {
+            return reduce(from, to, identity, op);
+        }
+        return chunks().map(c -> reduce(chunkFrom(c), chunkTo(c), identity, op)).reduce(identity, op);
+    }
+
+    private int reduce(int lo, int hi, int identity, IntBinaryOperator op) {
+        int[] source = this.source;
+        Step step = this.step;
+        int acc = identity;
+        for (int i = lo; i < hi; i++) {
+            if (step == null) {
+                acc = op.applyAsInt(acc, source[i]);
+            } else {
+                long r = step.apply(source[i]);
+                if (r != NONE) {
+                    acc = op.applyAsInt(acc, (int) r);
+                }
+            }
+        }
+        return acc;
+    }
+
+    // reduce(0, Integer::sum) と同じ（int で足すのでオーバーフローしたら折り返す）
+    public int sum() {
+        if (!isParallel()) {
+            return sum(from, to);
+        }
+        return chunks().map(c -> sum(chunkFrom(c), chunkTo(c))).sum();
+    }
+
+    private int sum(int lo, int hi) {
+        int[] source = this.source;
+        Step step = this.step;
+        int sum = 0;
+        if (step == null) {
+            for (int i = lo; i < hi; i++) {
+                sum += source[i];
+            }
+            return sum;
+        }
+        for (int i = lo; i < hi; i++) {
+            long r = step.apply(source[i]);
+            if (r != NONE) {
+                sum += (int) r;
+            }
+        }
+        return sum;
+    }
+
+    public int count() {
+        if (!isParallel()) {
+            return count(from, to);
+        }
+        return chunks().map(c -> count(chunkFrom(c), chunkTo(c))).sum();
+    }
+
+    private int count(int lo, int hi) {
+        if (step == null) {
+            return hi - lo;
+        }
+        int count = 0;
+        for (int i = lo; i < hi; i++) {
+            if (step.apply(source[i]) != NONE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // 結果を新しい int[] に集める（順序は元の配列の順）
+    public int[] toArray() {
+        if (!isParallel()) {
+            int[] result = new int[to - from];
+            int size = collect(from, to, result);
+            return size == result.length ? result : Arrays.copyOf(result, size);
+        }
+        // 範囲ごとに別々の配列へ書き、件数が決まってから1本につなげる
+        int chunkCount = chunkCount();
+        int[][] parts = new int[chunkCount][];
+        int[] sizes = new int[chunkCount];
+        chunks().forEach(c -> {
+            parts[c] = new int[chunkTo(c) - chunkFrom(c)];
+            sizes[c] = collect(chunkFrom(c), chunkTo(c), parts[c]);
+        });
+        int[] result = new int[Arrays.stream(sizes).sum()];
+        for (int c = 0, position = 0; c < chunkCount; position += sizes[c], c++) {
+            System.arraycopy(parts[c], 0, result, position, sizes[c]);
+        }
+        return result;
+    }
+
+    // [lo, hi) の結果を out の先頭から書き、件数を返す
+    private int collect(int lo, int hi, int[] out) {
+        int[] source = this.source;
+        Step step = this.step;
+        if (step == null) {
+            System.arraycopy(source, lo, out, 0, hi - lo);
+            return hi - lo;
+        }
+        int size = 0;
+        for (int i = lo; i < hi; i++) {
+            // 捨てる値も書いてから位置を進めないようにすると、filter の当たり外れで分岐しない
+            long r = step.apply(source[i]);
+            out[size] = (int) r;
+            size += r != NONE ? 1 : 0;
+        }
+        return size;
+    }
+
+    public IntList toIntList() {
+        return IntList.wrap(toArray());
+    }
+
+    // 順番に1つずつ渡す（parallel() でも順番どおりに1スレッドで呼ぶ）
+    public void forEach(IntConsumer action) {
+        for (int i = from; i < to; i++) {
+            if (step == null) {
+                action.accept(source[i]);
+            } else {
+                long r = step.apply(source[i]);
+                if (r != NONE) {
+                    action.accept((int) r);
+                }
+            }
+        }
+    }
+
+    // ========== 分割 ==========
+
+    private boolean isParallel() {
+        return parallel && to - from >= PARALLEL_THRESHOLD;
+    }
+
+    private int chunkCount() {
+        return (int) (((long) to - from + CHUNK - 1) / CHUNK);
+    }
+
+    private int chunkFrom(int chunk) {
+        return (int) (from + (long) chunk * CHUNK);
+    }
+
+    private int chunkTo(int chunk) {
+        return (int) Math.min(to, from + (long) (chunk + 1) * CHUNK);
+    }
+
+    private IntStream chunks() {
+        return IntStream.range(0, chunkCount()).parallel();
+    }
+}
@@ -0,0 +1,545 @@
+package grammer;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * int 専用の集合（HashSet<Integer> の代わり）
+ *
+ * HashSet<Integer> は要素ごとに HashMap の Node と Integer を作り、1要素 50 バイト以上使う。
+ * IntSet は中身の分布に合わせて2つの持ち方を自動で切り替える。
+ *
+ *   ビットセット  … 値の範囲が狭く密なとき。1つの値を1ビットで表す（ID の重複除去など）
+ *   ハッシュ表    … 値がまばらなとき。int[] のオープンアドレス法（線形探索）
+ *
+ * どちらが小さくなるかを、値の範囲（最小〜最大）と要素数から比べて決める。
+ * 切り替えは要素が増えるとき（ハッシュ表の拡張時と、ビットセットの範囲外への追加時）にだけ行い、
+ * 削除では切り替えない。
+ *
+ *   IntSet ids = new IntSet();
+ *   ids.add(3);
+ *   ids.addAll(other);        // 和集合
+ *   ids.retainAll(other);     // 積集合
+ *   ids.removeAll(other);     // 差集合
+ *   ids.stream().sum();
+ */
+public class IntSet {
+
+    static final float LOAD_FACTOR = 0.75f;
+
+    // ハッシュ表（ビットセットのときは null）。0 は空きスロットなので、値 0 は hasZero で持つ
+    private int[] table;
+    private boolean hasZero;
+    private int mask;
+    private int resizeAt;
+
+    // ビットセット（ハッシュ表のときは null）。words[0] の最下位ビットが値 base を表す。base は 64 の倍数
+    private long[] words;
+    private long base;
+
+    private int size;
+    // これまでに追加した値の範囲（削除しても縮めない）
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public IntSet() {
+        allocateTable(16);
+    }
+
+    public static IntSet of(int... values) {
+        IntSet set = new IntSet();
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public IntSet copy() {
+        IntSet copy = new IntSet();
+        copy.table = table == null ? null : table.clone();
+        copy.hasZero = hasZero;
+        copy.mask = mask;
+        copy.resizeAt = resizeAt;
+        copy.words = words == null ? null : words.clone();
+        copy.base = base;
+        copy.size = size;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    // ビットセットで持っているとき true
+    public boolean isDense() {
+        return words != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ========== 大きさの見積もり ==========
+
+    // n 要素を入れるハッシュ表のスロット数（2のべき乗）
+    private static int tableCapacity(long n) {
+        long needed = Math.max(4, (long) Math.ceil(n / (double) LOAD_FACTOR));
+        return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    private static long hashBytes(long n) {
+        return (long) tableCapacity(n) * Integer.BYTES;
+    }
+
+    private static long bitsetBytes(long lo, long hi) {
+        return ((Math.floorDiv(hi, 64) - Math.floorDiv(lo, 64)) + 1) * Long.BYTES;
+    }
+
+    // ========== 検索 ==========
+
+    public boolean contains(int value) {
+        if (words != null) {
+            long offset = value - base;
+            return offset >= 0 && offset < (long) words.length << 6
+                && (words[(int) (offset >>> 6)] & (1L << offset)) != 0;
+        }
+        if (value == 0) {
+            return hasZero;
+        }
+        int[] table = this.table;
+        for (int i = slot(value); ; i = (i + 1) & mask) {
+            int stored = table[i];
+            if (stored == value) {
+                return true;
+            }
+            if (stored == 0) {
+                return false;
+            }
+        }
+    }
+
+    // 連続した値でも散らばるよう、黄金比の定数を掛けて上位ビットを混ぜる
+    private int slot(int value) {
+        int h = value * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // ========== 追加・削除 ==========
+
+    // 追加したら true（すでにあれば false）
+    public boolean add(int value) {
+        if (words == null) {
+            return addToTable(value);
+        }
+        long offset = value - base;
+        if (offset < 0 || offset >= (long) words.length << 6) {
+            if (!extendBits(value)) {
+                toTable();
+                return addToTable(value);
+            }
+            offset = value - base;
+        }
+        int w = (int) (offset >>> 6);
+        long bit = 1L << offset;
+        if ((words[w] & bit) != 0) {
+            return false;
+        }
+        words[w] |= bit;
+        size++;
+        track(value, value);
+        return true;
+    }
+
+    private boolean addToTable(int value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            track(0, 0);
+            return true;
+        }
+        int i = slot(value);
+        for (int stored; (stored = table[i]) != 0; i = (i + 1) & mask) {
+            if (stored == value) {
+                return false;
+            }
+        }
+        table[i] = value;
+        track(value, value);
+        if (++size > resizeAt) {
+            growTable();
+        }
+        return true;
+    }
+
+    private void track(long lo, long hi) {
+        min = Math.min(min, lo);
+        max = Math.max(max, hi);
+    }
+
+    // 削除したら true
+    public boolean remove(int value) {
+        if (words != null) {
+            long offset = value - base;
+            if (offset < 0 || offset >= (long) words.length << 6) {
+                return false;
+            }
+            int w = (int) (offset >>> 6);
+            long bit = 1L << offset;
+            if ((words[w] & bit) == 0) {
+                return false;
+            }
+            words[w] &= ~bit;
+            size--;
+            return true;
+        }
+        if (value == 0) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int gap = slot(value);
+        while (table[gap] != value) {
+            if (table[gap] == 0) {
+                return false;
+            }
+            gap = (gap + 1) & mask;
+        }
+        // 後ろに続く要素のうち、本来の位置から gap を通って来たものを gap に詰めていく（ObjectIntMap と同じ）
+        for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int ideal = slot(table[i]);
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                table[gap] = table[i];
+                gap = i;
+            }
+        }
+        table[gap] = 0;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        words = null;
+        hasZero = false;
+        allocateTable(16);
+        size = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    // ========== 持ち方の切り替え ==========
+
+    private void allocateTable(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // ハッシュ表が一杯になったら、広げた表よりビットセットの方が小さければ切り替える
+    private void growTable() {
+        if (bitsetBytes(min, max) <= (long) table.length * 2 * Integer.BYTES) {
+            toBits();
+        } else {
+            int[] old = table;
+            allocateTable(old.length * 2);
+            reinsert(old);
+        }
+    }
+
+    private void reinsert(int[] values) {
+        for (int value : values) {
+            if (value != 0) {
+                int i = slot(value);
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+    private void toBits() {
+        int[] old = table;
+        boolean zero = hasZero;
+        table = null;
+        hasZero = false;
+        base = Math.floorDiv(min, 64) * 64;
+        words = new long[(int) ((max - base) / 64 + 1)];
+        for (int value : old) {
+            if (value != 0) {
+                setBit(value);
+            }
+        }
+        if (zero) {
+            setBit(0);
+        }
+    }
+
+    private void setBit(int value) {
+        long offset = value - base;
+        words[(int) (offset >>> 6)] |= 1L << offset;
+    }
+
+    private void toTable() {
+        int[] values = toArray();
+        words = null;
+        allocateTable(tableCapacity(values.length + 1L));
+        for (int value : values) {
+            if (value == 0) {
+                hasZero = true;
+            } else {
+                int i = slot(value);
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+    // value が入るようビットセットを広げる。同じ要素数のハッシュ表より大きくなるなら広げずに false
+    private boolean extendBits(int value) {
+        long lo = Math.min(min, value);
+        long hi = Math.max(max, value);
+        if (bitsetBytes(lo, hi) > hashBytes(size + 1L)) {
+            return false;
+        }
+        // 伸ばす側に今の幅の半分の余裕を取り、連番の追加で毎回作り直さないようにする
+        long span = (long) words.length << 6;
+        if (value < base) {
+            lo = Math.max(Integer.MIN_VALUE, Math.min(lo, base - span / 2));
+        } else {
+            hi = Math.min(Integer.MAX_VALUE, Math.max(hi, base + span + span / 2));
+        }
+        resizeBits(lo, hi);
+        return true;
+    }
+
+    // ビットセットが [lo, hi] を含むよう作り直す
+    private void resizeBits(long lo, long hi) {
+        long newBase = Math.min(base, Math.floorDiv(lo, 64) * 64);
+        long end = Math.max(base + ((long) words.length << 6), Math.floorDiv(hi, 64) * 64 + 64);
+        long[] grown = new long[(int) ((end - newBase) >>> 6)];
+        System.arraycopy(words, 0, grown, (int) ((base - newBase) >>> 6), words.length);
+        words = grown;
+        base = newBase;
+    }
+
+    // ========== 集合演算 ==========
+
+    // 和集合（this に other の要素を加える）
+    public IntSet addAll(IntSet other) {
+        if (words != null && other.words != null && !other.isEmpty()) {
+            long lo = Math.min(min, other.min);
+            long hi = Math.max(max, other.max);
+            if (bitsetBytes(lo, hi) <= hashBytes((long) size + other.size)) {
+                resizeBits(lo, hi);
+                // other の余裕分（min〜max の外）は 0 なので、this の範囲外は飛ばしてよい
+                for (int j = 0; j < other.words.length; j++) {
+                    long offset = other.base - base + ((long) j << 6);
+                    if (offset >= 0 && offset < (long) words.length << 6) {
+                        words[(int) (offset >>> 6)] |= other.words[j];
+                    }
+                }
+                track(other.min, other.max);
+                size = countBits();
+                return this;
+            }
+        }
+        other.forEach(this::add);
+        return this;
+    }
+
+    // 積集合（this を other にもある要素だけにする）
+    public IntSet retainAll(IntSet other) {
+        if (words != null) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                if (word == 0) {
+                    continue;
+                }
+                if (other.words != null) {
+                    long offset = base - other.base + ((long) i << 6);
+                    words[i] = offset >= 0 && offset < (long) other.words.length << 6
+                        ? word & other.words[(int) (offset >>> 6)] : 0;
+                } else {
+                    for (long bits = word; bits != 0; bits &= bits - 1) {
+                        int value = (int) (base + ((long) i << 6) + Long.numberOfTrailingZeros(bits));
+                        if (!other.contains(value)) {
+                            word &= ~Long.lowestOneBit(bits);
+                        }
+                    }
+                    words[i] = word;
+                }
+            }
+            size = countBits();
+        } else {
+            int[] kept = stream().filter(other::contains).toArray();
+            hasZero = false;
+            allocateTable(table.length);
+            size = 0;
+            for (int value : kept) {
+                addToTable(value);
+            }
+        }
+        return this;
+    }
+
+    // 差集合（this から other の要素を除く）
+    public IntSet removeAll(IntSet other) {
+        if (words != null && other.words != null) {
+            for (int j = 0; j < other.words.length; j++) {
+                long offset = other.base - base + ((long) j << 6);
+                if (offset >= 0 && offset < (long) words.length << 6) {
+                    words[(int) (offset >>> 6)] &= ~other.words[j];
+                }
+            }
+            size = countBits();
+        } else {
+            other.forEach(this::remove);
+        }
+        return this;
+    }
+
+    private int countBits() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // ========== 反復 ==========
+
+    // ビットセットのときは小さい順、ハッシュ表のときは順不同
+    public void forEach(IntConsumer action) {
+        if (words != null) {
+            for (int i = 0; i < words.length; i++) {
+                for (long bits = words[i]; bits != 0; bits &= bits - 1) {
+                    action.accept((int) (base + ((long) i << 6) + Long.numberOfTrailingZeros(bits)));
+                }
+            }
+        } else {
+            if (hasZero) {
+                action.accept(0);
+            }
+            for (int value : table) {
+                if (value != 0) {
+                    action.accept(value);
+                }
+            }
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return words != null ? new BitIterator() : new TableIterator();
+    }
+
+    // 要素をコピーせずに流す（流している間に集合を変更してはいけない）
+    public IntStream stream() {
+        int characteristics = Spliterator.DISTINCT | Spliterator.NONNULL
+            | (words != null ? Spliterator.SORTED | Spliterator.ORDERED : 0);
+        return StreamSupport.intStream(Spliterators.spliterator(iterator(), size, characteristics), false);
+    }
+
+    public int[] toArray() {
+        int[] result = new int[size];
+        int[] index = {0};
+        forEach(value -> result[index[0]++] = value);
+        return result;
+    }
+
+    private final class BitIterator implements PrimitiveIterator.OfInt {
+        private int wordIndex = -1;
+        private long bits;
+
+        @Override
+        public boolean hasNext() {
+            while (bits == 0) {
+                if (++wordIndex >= words.length) {
+                    return false;
+                }
+                bits = words[wordIndex];
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int value = (int) (base + ((long) wordIndex << 6) + Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+            return value;
+        }
+    }
+
+    private final class TableIterator implements PrimitiveIterator.OfInt {
+        private boolean zeroPending = hasZero;
+        private int index = -1;
+
+        @Override
+        public boolean hasNext() {
+            if (zeroPending) {
+                return true;
+            }
+            while (index + 1 < table.length) {
+                if (table[index + 1] != 0) {
+                    return true;
+                }
+                index++;
+            }
+            return false;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (zeroPending) {
+                zeroPending = false;
+                return 0;
+            }
+            return table[++index];
+        }
+    }
+
+    // ========== Object のメソッド ==========
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntSet other) || other.size != size) {
+            return false;
+        }
+        return stream().allMatch(other::contains);
+    }
+
+    // Set<Integer> と同じく要素の合計
+    @Override
+    public int hashCode() {
+        int[] sum = {0};
+        forEach(value -> sum[0] += value);
+        return sum[0];
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        forEach(value -> joiner.add(String.valueOf(value)));
+        return joiner.toString();
+    }
+}
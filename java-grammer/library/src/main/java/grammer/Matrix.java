@@ -0,0 +1,258 @@
+package grammer;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 1本の int[] に行優先（row-major）で要素を並べた行列
+ *
+ * int[][] は行ごとに別オブジェクトなので、アクセスのたびに行の参照をたどる必要があり、
+ * 行どうしがメモリ上で離れていることもある。Matrix は全要素が連続しているのでキャッシュに乗りやすい。
+ * 掛け算はタイル（ブロック）単位で行い、parallelMultiply() では Fork/Join で複数コアに分ける。
+ */
+public class Matrix {
+
+    // 3枚のタイル（64×64×4バイト×3 = 48KB）が L1/L2 キャッシュに収まる大きさ
+    static final int TILE = 64;
+
+    // 並列化するときの1タスクあたりの最小行数
+    static final int PARALLEL_ROWS = TILE;
+
+    private final int rows;
+    private final int columns;
+    private final int[] data;
+
+    public Matrix(int rows, int columns) {
+        if (rows < 0 || columns < 0 || (long) rows * columns > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("不正なサイズです: " + rows + "×" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.data = new int[rows * columns];
+    }
+
+    public static Matrix of(int[][] values) {
+        int columns = values.length == 0 ? 0 : values[0].length;
+        Matrix matrix = new Matrix(values.length, columns);
+        for (int r = 0; r < values.length; r++) {
+            if (values[r].length != columns) {
+                throw new IllegalArgumentException(r + "行目の長さが " + values[r].length + " です（" + columns + " が必要）");
+            }
+            System.arraycopy(values[r], 0, matrix.data, r * columns, columns);
+        }
+        return matrix;
+    }
+
+    // ========== 取得・更新 ==========
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int get(int row, int column) {
+        return data[index(row, column)];
+    }
+
+    public void set(int row, int column, int value) {
+        data[index(row, column)] = value;
+    }
+
+    private int index(int row, int column) {
+        return Objects.checkIndex(row, rows) * columns + Objects.checkIndex(column, columns);
+    }
+
+    public int[][] toArray() {
+        int[][] result = new int[rows][];
+        for (int r = 0; r < rows; r++) {
+            result[r] = Arrays.copyOfRange(data, r * columns, (r + 1) * columns);
+        }
+        return result;
+    }
+
+    // ========== 行・列のビュー ==========
+
+    // 行も列も「開始位置と間隔」で表せるので、コピーせずに同じ配列を見る
+    public Slice row(int row) {
+        Objects.checkIndex(row, rows);
+        return new Slice(data, row * columns, 1, columns);
+    }
+
+    public Slice column(int column) {
+        Objects.checkIndex(column, columns);
+        return new Slice(data, column, columns, rows);
+    }
+
+    // 行列の1行または1列。元の配列はそのまま見せず、get・set・toArray を通して読み書きする
+    public static final class Slice {
+        private final int[] data;
+        private final int offset;
+        private final int stride;
+        private final int length;
+
+        private Slice(int[] data, int offset, int stride, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public int get(int i) {
+            return data[offset + Objects.checkIndex(i, length) * stride];
+        }
+
+        public void set(int i, int value) {
+            data[offset + Objects.checkIndex(i, length) * stride] = value;
+        }
+
+        public int[] toArray() {
+            int[] result = new int[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = data[offset + i * stride];
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(toArray());
+        }
+    }
+
+    // ========== 転置 ==========
+
+    // タイルごとに転置して、書き込み側のキャッシュミスを抑える
+    public Matrix transpose() {
+        Matrix result = new Matrix(columns, rows);
+        for (int r0 = 0; r0 < rows; r0 += TILE) {
+            int rEnd = Math.min(r0 + TILE, rows);
+            for (int c0 = 0; c0 < columns; c0 += TILE) {
+                int cEnd = Math.min(c0 + TILE, columns);
+                for (int r = r0; r < rEnd; r++) {
+                    for (int c = c0; c < cEnd; c++) {
+                        result.data[c * rows + r] = data[r * columns + c];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // ========== 掛け算 ==========
+
+    public Matrix multiply(Matrix other) {
+        Matrix result = new Matrix(rows, checkMultipliable(other));
+        multiplyRows(other, result, 0, rows);
+        return result;
+    }
+
+    // 結果の行をブロック単位で Fork/Join のタスクに分けて並列に計算する
+    public Matrix parallelMultiply(Matrix other) {
+        return parallelMultiply(other, ForkJoinPool.commonPool());
+    }
+
+    public Matrix parallelMultiply(Matrix other, ForkJoinPool pool) {
+        Matrix result = new Matrix(rows, checkMultipliable(other));
+        pool.invoke(new MultiplyTask(this, other, result, 0, rows));
+        return result;
+    }
+
+    private int checkMultipliable(Matrix other) {
+        if (columns != other.rows) {
+            throw new IllegalArgumentException(rows + "×" + columns + " と " + other.rows + "×" + other.columns + " は掛けられません");
+        }
+        return other.columns;
+    }
+
+    // result の [fromRow, toRow) 行を計算する。i-k-j の順で回し、最内ループを連続アクセスにする
+    private void multiplyRows(Matrix other, Matrix result, int fromRow, int toRow) {
+        int n = other.columns;
+        int[] a = data;
+        int[] b = other.data;
+        int[] c = result.data;
+        for (int i0 = fromRow; i0 < toRow; i0 += TILE) {
+            int iEnd = Math.min(i0 + TILE, toRow);
+            for (int k0 = 0; k0 < columns; k0 += TILE) {
+                int kEnd = Math.min(k0 + TILE, columns);
+                for (int j0 = 0; j0 < n; j0 += TILE) {
+                    int jEnd = Math.min(j0 + TILE, n);
+                    for (int i = i0; i < iEnd; i++) {
+                        int rowA = i * columns;
+                        int rowC = i * n;
+                        for (int k = k0; k < kEnd; k++) {
+                            int aik = a[rowA + k];
+                            int rowB = k * n;
+                            for (int j = j0; j < jEnd; j++) {
+                                c[rowC + j] += aik * b[rowB + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")  // Fork/Join で分けるためだけのタスクで、直列化はしない
+    private static class MultiplyTask extends RecursiveAction {
+        private final Matrix left;
+        private final Matrix right;
+        private final Matrix result;
+        private final int fromRow;
+        private final int toRow;
+
+        MultiplyTask(Matrix left, Matrix right, Matrix result, int fromRow, int toRow) {
+            this.left = left;
+            this.right = right;
+            this.result = result;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= PARALLEL_ROWS) {
+                left.multiplyRows(right, result, fromRow, toRow);
+                return;
+            }
+            // タイルの境界で半分に分ける（各タスクは別々の行に書くので同期は不要）
+            int middle = fromRow + (toRow - fromRow) / 2 / TILE * TILE;
+            if (middle == fromRow) {
+                middle = fromRow + TILE;
+            }
+            invokeAll(new MultiplyTask(left, right, result, fromRow, middle),
+                      new MultiplyTask(left, right, result, middle, toRow));
+        }
+    }
+
+    // ========== その他 ==========
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Matrix other)) return false;
+        return rows == other.rows && columns == other.columns && Arrays.equals(data, other.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + columns) + Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < rows; r++) {
+            sb.append(row(r)).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,363 @@
+package grammer;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 副作用のない関数の結果を覚えておく、大きさに上限のあるキャッシュ（メモ化）
+ *
+ *   Memo.ObjectCache<String, String> greet = Memo.of(name -> "こんにちは、" + name + "さん！", 1024);
+ *   Memo.DoubleCache area = Memo.ofDouble(radius -> Math.PI * radius * radius, 1024);
+ *   Memo.IntBinaryCache product = Memo.ofIntBinary((a, b) -> a * b, 1024);
+ *   greet.apply("太郎");        // 2回目からは同じ String を返す
+ *
+ * 中身は「セット連想」の表で、キーのハッシュ値で決まる WAYS 個の枠のどれかに入る。
+ * 枠が埋まっていれば CLOCK（参照ビットが立っていれば一度だけ見逃す）で追い出す相手を選ぶ。
+ * キーが int・double の関数は long[] にそのまま入れるので、引くときにボクシングしない。
+ *
+ * 複数スレッドから呼べる。ヒットしたときは StampedLock の楽観的読み取りだけで済み、ロックを取らない。
+ * ミスしたときはロックの外で関数を呼ぶので、同じキーを同時に計算することがある（結果は同じなので問題ない）。
+ */
+public final class Memo {
+
+    // 1つのセットの枠の数
+    static final int WAYS = 8;
+    // ロックの数（セットをこの数に振り分ける）
+    static final int LOCKS = 64;
+
+    private Memo() {
+    }
+
+    public static <K, V> ObjectCache<K, V> of(Function<? super K, ? extends V> function, int capacity) {
+        return new ObjectCache<>(function, capacity);
+    }
+
+    public static DoubleCache ofDouble(DoubleUnaryOperator function, int capacity) {
+        return new DoubleCache(function, capacity);
+    }
+
+    public static IntCache ofInt(IntUnaryOperator function, int capacity) {
+        return new IntCache(function, capacity);
+    }
+
+    public static IntBinaryCache ofIntBinary(IntBinaryOperator function, int capacity) {
+        return new IntBinaryCache(function, capacity);
+    }
+
+    public static LongCache ofLong(LongUnaryOperator function, int capacity) {
+        return new LongCache(function, capacity);
+    }
+
+    // ヒット・ミス・追い出しの回数
+    public record Stats(long hits, long misses, long evictions) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? Double.NaN : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ヒット %,d / ミス %,d / 追い出し %,d（ヒット率 %.1f%%）",
+                hits, misses, evictions, hitRate() * 100);
+        }
+    }
+
+    // ========== 共通部分（セット・ロック・CLOCK・カウンタ） ==========
+
+    abstract static class Table {
+        final int setMask;
+        final byte[] used;        // 枠が使われていれば 1
+        final byte[] referenced;  // CLOCK の参照ビット。ヒットしたスレッドがロックなしで立てる（競合しても害はない）
+        final byte[] hands;       // セットごとの CLOCK の針
+        final StampedLock[] locks;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+
+        Table(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("容量は1以上です: " + capacity);
+            }
+            int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS - 1)) << 1;
+            setMask = sets - 1;
+            used = new byte[sets * WAYS];
+            referenced = new byte[sets * WAYS];
+            hands = new byte[sets];
+            locks = new StampedLock[Math.min(sets, LOCKS)];
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new StampedLock();
+            }
+        }
+
+        final StampedLock lockOf(int set) {
+            return locks[set & (locks.length - 1)];
+        }
+
+        // 掛け算の上位ビットを使う。double のビット列のように下位ビットが 0 ばかりのキーでも散らばる
+        static int spread(long h) {
+            return (int) (((h ^ (h >>> 32)) * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+
+        // 書き込みロック中に呼ぶ。空いている枠か、CLOCK で選んだ追い出す枠を返す
+        final int victim(int set) {
+            int base = set * WAYS;
+            for (int w = 0; w < WAYS; w++) {
+                if (used[base + w] == 0) {
+                    return base + w;
+                }
+            }
+            int hand = hands[set];
+            while (referenced[base + hand] != 0) {
+                referenced[base + hand] = 0;
+                hand = (hand + 1) & (WAYS - 1);
+            }
+            hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+            evictions.increment();
+            return base + hand;
+        }
+
+        // 入れられる件数
+        public int capacity() {
+            return used.length;
+        }
+
+        public Stats stats() {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    // ========== キーがオブジェクトの関数 ==========
+
+    public static final class ObjectCache<K, V> extends Table implements Function<K, V> {
+        private final Function<? super K, ? extends V> function;
+        private final int[] hashes;  // hashCode を比べてから equals を呼ぶ
+        private final Object[] keys;
+        private final Object[] values;
+
+        ObjectCache(Function<? super K, ? extends V> function, int capacity) {
+            super(capacity);
+            this.function = Objects.requireNonNull(function);
+            hashes = new int[used.length];
+            keys = new Object[used.length];
+            values = new Object[used.length];
+        }
+
+        private boolean matches(int i, int hash, Object key) {
+            return used[i] != 0 && hashes[i] == hash && Objects.equals(keys[i], key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V apply(K key) {
+            int hash = Objects.hashCode(key);
+            int set = spread(hash) & setMask;
+            int base = set * WAYS;
+            StampedLock lock = lockOf(set);
+            long stamp = lock.tryOptimisticRead();
+            for (int i = base; i < base + WAYS; i++) {
+                if (matches(i, hash, key)) {
+                    Object value = values[i];
+                    if (lock.validate(stamp)) {
+                        referenced[i] = 1;
+                        hits.increment();
+                        return (V) value;
+                    }
+                    break;
+                }
+            }
+            // 書き込み中だったら、読み取りロックを取って見直す
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    for (int i = base; i < base + WAYS; i++) {
+                        if (matches(i, hash, key)) {
+                            referenced[i] = 1;
+                            hits.increment();
+                            return (V) values[i];
+                        }
+                    }
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            misses.increment();
+            V value = function.apply(key);
+            stamp = lock.writeLock();
+            try {
+                int slot = -1;
+                for (int i = base; i < base + WAYS; i++) {
+                    if (matches(i, hash, key)) {
+                        slot = i;  // 他のスレッドが先に入れていた
+                        break;
+                    }
+                }
+                if (slot < 0) {
+                    slot = victim(set);
+                }
+                hashes[slot] = hash;
+                keys[slot] = key;
+                values[slot] = value;
+                used[slot] = 1;
+                referenced[slot] = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            return value;
+        }
+    }
+
+    // ========== キーが long に収まる関数 ==========
+
+    // キーも値も long（int・double はビット列をそのまま入れる）
+    abstract static class LongTable extends Table {
+        private final long[] keys;
+        private final long[] values;
+
+        LongTable(int capacity) {
+            super(capacity);
+            keys = new long[used.length];
+            values = new long[used.length];
+        }
+
+        abstract long load(long key);
+
+        final long get(long key) {
+            int set = spread(key) & setMask;
+            int base = set * WAYS;
+            StampedLock lock = lockOf(set);
+            long stamp = lock.tryOptimisticRead();
+            for (int i = base; i < base + WAYS; i++) {
+                if (used[i] != 0 && keys[i] == key) {
+                    long value = values[i];
+                    if (lock.validate(stamp)) {
+                        referenced[i] = 1;
+                        hits.increment();
+                        return value;
+                    }
+                    break;
+                }
+            }
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    for (int i = base; i < base + WAYS; i++) {
+                        if (used[i] != 0 && keys[i] == key) {
+                            referenced[i] = 1;
+                            hits.increment();
+                            return values[i];
+                        }
+                    }
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            misses.increment();
+            long value = load(key);
+            stamp = lock.writeLock();
+            try {
+                int slot = -1;
+                for (int i = base; i < base + WAYS; i++) {
+                    if (used[i] != 0 && keys[i] == key) {
+                        slot = i;
+                        break;
+                    }
+                }
+                if (slot < 0) {
+                    slot = victim(set);
+                }
+                keys[slot] = key;
+                values[slot] = value;
+                used[slot] = 1;
+                referenced[slot] = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            return value;
+        }
+    }
+
+    public static final class LongCache extends LongTable implements LongUnaryOperator {
+        private final LongUnaryOperator function;
+
+        LongCache(LongUnaryOperator function, int capacity) {
+            super(capacity);
+            this.function = Objects.requireNonNull(function);
+        }
+
+        @Override
+        long load(long key) {
+            return function.applyAsLong(key);
+        }
+
+        @Override
+        public long applyAsLong(long operand) {
+            return get(operand);
+        }
+    }
+
+    public static final class IntCache extends LongTable implements IntUnaryOperator {
+        private final IntUnaryOperator function;
+
+        IntCache(IntUnaryOperator function, int capacity) {
+            super(capacity);
+            this.function = Objects.requireNonNull(function);
+        }
+
+        @Override
+        long load(long key) {
+            return function.applyAsInt((int) key);
+        }
+
+        @Override
+        public int applyAsInt(int operand) {
+            return (int) get(operand);
+        }
+    }
+
+    // 2つの int を1つの long のキーにまとめる
+    public static final class IntBinaryCache extends LongTable implements IntBinaryOperator {
+        private final IntBinaryOperator function;
+
+        IntBinaryCache(IntBinaryOperator function, int capacity) {
+            super(capacity);
+            this.function = Objects.requireNonNull(function);
+        }
+
+        @Override
+        long load(long key) {
+            return function.applyAsInt((int) (key >>> 32), (int) key);
+        }
+
+        @Override
+        public int applyAsInt(int left, int right) {
+            return (int) get((long) left << 32 | (right & 0xFFFFFFFFL));
+        }
+    }
+
+    // double はビット列で比べる（0.0 と -0.0、NaN どうしは別のキーになる）
+    public static final class DoubleCache extends LongTable implements DoubleUnaryOperator {
+        private final DoubleUnaryOperator function;
+
+        DoubleCache(DoubleUnaryOperator function, int capacity) {
+            super(capacity);
+            this.function = Objects.requireNonNull(function);
+        }
+
+        @Override
+        long load(long key) {
+            return Double.doubleToRawLongBits(function.applyAsDouble(Double.longBitsToDouble(key)));
+        }
+
+        @Override
+        public double applyAsDouble(double operand) {
+            return Double.longBitsToDouble(get(Double.doubleToRawLongBits(operand)));
+        }
+    }
+}
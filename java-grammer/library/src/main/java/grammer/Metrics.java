@@ -0,0 +1,404 @@
+package grammer;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jdk.jfr.*;
+
+/**
+ * メソッドごとの呼び出し回数と所要時間を数える計測器
+ *
+ *   static final Metrics.Timer PARSE = Metrics.timer("Integer.parseInt");
+ *   static final Metrics.Counter CALLS = Metrics.counter("Calculator.add");
+ *
+ *   long start = System.nanoTime();
+ *   int n = Integer.parseInt(text);
+ *   PARSE.recordSince(start);
+ *   CALLS.increment();
+ *
+ *   System.out.print(Metrics.report());             // 今の値を表にする
+ *   Metrics.dumpEvery(Duration.ofSeconds(10), System.err);  // 定期的に書き出す
+ *   Metrics.enableJfr();                            // JFR のイベント javagrammer.Metric として出す
+ *
+ * 記録はスレッドごとの領域に書くだけで、共有の変数を奪い合わない。読むときに全スレッド分を合計する。
+ * 記録の途中でオブジェクトは作らない（スレッドが初めて記録するときに領域を1つ作るだけ）。
+ * Timer の領域は1スレッドあたり約15KB。終わったスレッドの分は、読むときと、新しいスレッドの領域を作るときに1つにまとめる
+ * （仮想スレッドを次々に作って誰も読まなくても、領域は生きているスレッドの数の2倍程度までしか残らない）。
+ * 読み取りは記録と同時に行われるので、その瞬間の値からわずかにずれることがある。
+ *
+ * 所要時間は HdrHistogram と同じ考え方の「対数＋線形」の区間で数える。
+ * 2のべき乗ごとの範囲を SUB_BUCKETS 等分するので、どの値も相対誤差 1/SUB_BUCKETS（約3%）以内で数えられる。
+ */
+public final class Metrics {
+
+    static final int SUB_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // long の範囲全体を数えられる区間の数
+    static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final ConcurrentMap<String, Metric> REGISTRY = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return register(name, Counter.class, Counter::new);
+    }
+
+    public static Timer timer(String name) {
+        return register(name, Timer.class, Timer::new);
+    }
+
+    private static <M extends Metric> M register(String name, Class<M> type, java.util.function.Function<String, M> factory) {
+        Metric metric = REGISTRY.computeIfAbsent(name, factory);
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " はすでに " + metric.getClass().getSimpleName() + " として登録されています");
+        }
+        return type.cast(metric);
+    }
+
+    public abstract static sealed class Metric permits Counter, Timer {
+        final String name;
+
+        Metric(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+    }
+
+    // ========== スレッドごとの記録領域 ==========
+
+    // 書くのは持ち主のスレッドだけ。他のスレッドから読めるよう opaque（値が崩れず、いずれ見える）で読み書きする
+    private static final class Cells {
+        final long[] values;
+        final WeakReference<Thread> owner;
+
+        Cells(int length, Thread owner) {
+            values = new long[length];
+            this.owner = new WeakReference<>(owner);
+        }
+
+        void add(int index, long delta) {
+            LONGS.setOpaque(values, index, (long) LONGS.getOpaque(values, index) + delta);
+        }
+
+        void max(int index, long value) {
+            if (value > (long) LONGS.getOpaque(values, index)) {
+                LONGS.setOpaque(values, index, value);
+            }
+        }
+
+        long get(int index) {
+            return (long) LONGS.getOpaque(values, index);
+        }
+
+        // 持ち主のスレッドが終わっていれば、もう書き込まれない
+        boolean isRetired() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    // スレッドが初めて記録するときに領域を作り、読み取り用の一覧にも載せる。
+    // 終わったスレッドの領域は retired へ足し込んで一覧から外す（記録は失われない）。
+    // 外すのは読むときと、一覧が前回外した後の2倍の長さになったとき（領域を作る回数に対して均すと O(1)）
+    private static final class PerThread extends ThreadLocal<Cells> {
+        private static final int MIN_SWEEP = 64;
+
+        private final int length;
+        private final int maxIndex;  // 足さずに最大値を取る位置（なければ -1）
+        private final List<Cells> live = new ArrayList<>();
+        private final Cells retired;
+        private int sweepAt = MIN_SWEEP;
+
+        PerThread(int length, int maxIndex) {
+            this.length = length;
+            this.maxIndex = maxIndex;
+            retired = new Cells(length, null);
+        }
+
+        @Override
+        protected Cells initialValue() {
+            Cells cells = new Cells(length, Thread.currentThread());
+            synchronized (this) {
+                if (live.size() >= sweepAt) {
+                    sweep();
+                    sweepAt = Math.max(MIN_SWEEP, live.size() * 2);
+                }
+                live.add(cells);
+            }
+            return cells;
+        }
+
+        // 終わったスレッドの領域を retired に足し込んで一覧から外す
+        private void sweep() {
+            live.removeIf(cells -> {
+                if (cells.isRetired()) {
+                    mergeInto(retired.values, cells);
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        synchronized int liveCount() {
+            return live.size();
+        }
+
+        // 全スレッド分を index ごとに合計する（maxIndex だけは最大値）
+        synchronized long[] merge() {
+            sweep();
+            long[] total = retired.values.clone();
+            for (Cells cells : live) {
+                mergeInto(total, cells);
+            }
+            return total;
+        }
+
+        private void mergeInto(long[] total, Cells cells) {
+            for (int i = 0; i < length; i++) {
+                long value = cells.get(i);
+                total[i] = i == maxIndex ? Math.max(total[i], value) : total[i] + value;
+            }
+        }
+    }
+
+    // ========== カウンタ ==========
+
+    public static final class Counter extends Metric {
+        private final PerThread cells = new PerThread(1, -1);
+
+        Counter(String name) {
+            super(name);
+        }
+
+        public void increment() {
+            cells.get().add(0, 1);
+        }
+
+        public void add(long delta) {
+            cells.get().add(0, delta);
+        }
+
+        public long count() {
+            return cells.merge()[0];
+        }
+    }
+
+    // ========== 所要時間のヒストグラム ==========
+
+    public static final class Timer extends Metric {
+        // [0, BUCKETS) が各区間の回数、その後ろに合計と最大値
+        private static final int SUM = BUCKETS;
+        private static final int MAX = BUCKETS + 1;
+
+        private final PerThread cells = new PerThread(BUCKETS + 2, MAX);
+
+        Timer(String name) {
+            super(name);
+        }
+
+        // 所要時間（ナノ秒）を1回分記録する。負の値は 0 とみなす
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            Cells c = cells.get();
+            c.add(bucket(value), 1);
+            c.add(SUM, value);
+            c.max(MAX, value);
+        }
+
+        // System.nanoTime() で取った開始時刻から今までを記録する
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        // 一覧に残っているスレッドごとの領域の数（終わったスレッドの分も、まとめられるまでは数える）
+        int threadCells() {
+            return cells.liveCount();
+        }
+
+        public Snapshot snapshot() {
+            long[] total = cells.merge();
+            return new Snapshot(name, Arrays.copyOf(total, BUCKETS), total[SUM], total[MAX]);
+        }
+    }
+
+    // 値の入る区間の番号。SUB_BUCKETS 未満はそのまま、それ以上は 2のべき乗ごとに SUB_BUCKETS 等分する
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // 区間に入る最大の値
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) - 1);
+    }
+
+    // ある時点の Timer の集計
+    public static final class Snapshot {
+        private final String name;
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(String name, long[] buckets, long sum, long max) {
+            this.name = name;
+            this.buckets = buckets;
+            this.count = Arrays.stream(buckets).sum();
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public double mean() {
+            return count == 0 ? Double.NaN : (double) sum / count;
+        }
+
+        // 百分位数（0〜100）。区間の上端を返すので、実際の値より最大 1/SUB_BUCKETS 大きい
+        public long percentile(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percent / 100));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    // ========== 書き出し ==========
+
+    // 登録されているすべての計測器の今の値（名前順）
+    public static String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-28s %12s %10s %10s %10s %10s %10s%n",
+            "名前", "回数", "平均", "p50", "p90", "p99", "最大"));
+        for (Metric metric : REGISTRY.values()) {
+            if (metric instanceof Counter counter) {
+                out.append(String.format("%-28s %,12d%n", counter.name, counter.count()));
+            } else if (metric instanceof Timer timer) {
+                Snapshot s = timer.snapshot();
+                out.append(String.format("%-28s %,12d %10s %10s %10s %10s %10s%n", s.name(), s.count(),
+                    formatNanos(s.mean()), formatNanos(s.percentile(50)), formatNanos(s.percentile(90)),
+                    formatNanos(s.percentile(99)), formatNanos(s.max())));
+            }
+        }
+        return out.toString();
+    }
+
+    // 単位を付けた時間（ns / µs / ms / s）
+    static String formatNanos(double nanos) {
+        if (Double.isNaN(nanos)) return "-";
+        if (nanos >= 1_000_000_000) return String.format("%.2f s", nanos / 1_000_000_000);
+        if (nanos >= 1_000_000) return String.format("%.2f ms", nanos / 1_000_000);
+        if (nanos >= 1_000) return String.format("%.2f µs", nanos / 1_000);
+        return String.format("%.0f ns", nanos);
+    }
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // period ごとに report() を out へ書く。止めるときは戻り値を cancel する
+    public static ScheduledFuture<?> dumpEvery(Duration period, PrintStream out) {
+        long millis = period.toMillis();
+        return SCHEDULER.scheduleAtFixedRate(() -> out.print(report()), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    // ========== JFR ==========
+
+    // 計測器1つ分の集計。JFR の記録中に定期的に（既定は1秒ごと）出す
+    @Name("javagrammer.Metric")
+    @Label("Metric")
+    @Category("Java Grammar")
+    @Description("Metrics に登録された計測器の集計")
+    @Period("1 s")
+    @StackTrace(false)
+    public static final class MetricEvent extends Event {
+        @Label("名前")
+        String name;
+
+        @Label("回数")
+        long count;
+
+        @Label("平均")
+        @Timespan(Timespan.NANOSECONDS)
+        long mean;
+
+        @Label("p50")
+        @Timespan(Timespan.NANOSECONDS)
+        long p50;
+
+        @Label("p99")
+        @Timespan(Timespan.NANOSECONDS)
+        long p99;
+
+        @Label("最大")
+        @Timespan(Timespan.NANOSECONDS)
+        long max;
+    }
+
+    private static final AtomicBoolean JFR_ENABLED = new AtomicBoolean();
+
+    // JFR に定期イベントを登録する（何度呼んでも1回だけ）。記録していないときは何もしない
+    public static void enableJfr() {
+        if (JFR_ENABLED.compareAndSet(false, true)) {
+            FlightRecorder.addPeriodicEvent(MetricEvent.class, Metrics::emitJfrEvents);
+        }
+    }
+
+    private static void emitJfrEvents() {
+        for (Metric metric : REGISTRY.values()) {
+            MetricEvent event = new MetricEvent();
+            event.name = metric.name;
+            if (metric instanceof Counter counter) {
+                event.count = counter.count();
+            } else if (metric instanceof Timer timer) {
+                Snapshot s = timer.snapshot();
+                event.count = s.count();
+                event.mean = s.count() == 0 ? 0 : Math.round(s.mean());
+                event.p50 = s.percentile(50);
+                event.p99 = s.percentile(99);
+                event.max = s.max();
+            }
+            event.commit();
+        }
+    }
+}
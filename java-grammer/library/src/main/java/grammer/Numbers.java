@@ -0,0 +1,499 @@
+package grammer;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 例外を投げない数値の解析
+ *
+ * Integer.parseInt は不正な入力で NumberFormatException を投げ、そのたびにスタックトレースを作る。
+ * 汚れたデータを大量に読むと、解析そのものより例外の方が重くなる。
+ * Numbers は成功・失敗を戻り値で返し、値は戻り値（int）か Result（long・double）で受け取る。
+ *
+ *   long n = Numbers.tryParseInt(text);
+ *   if (n != Numbers.INVALID) { int value = (int) n; ... }
+ *
+ *   Numbers.Result result = new Numbers.Result();   // 使い回せる
+ *   if (Numbers.tryParseDouble(text, result)) { double d = result.doubleValue(); ... }
+ *
+ * CharSequence と、バイト列（MemorySegment・byte[]、UTF-8/ASCII）の範囲から読める。
+ * バイト列は8バイトを1回で long として読み、数字かどうかの判定と10進への変換を数回の演算でまとめて行う（SWAR）。
+ *
+ * 受け付ける書式は Integer.parseInt・Long.parseLong・Double.parseDouble の部分集合：
+ *   整数   [+-]?[0-9]+
+ *   小数   [+-]?([0-9]+(.[0-9]*)?|.[0-9]+)([eE][+-]?[0-9]+)?、[+-]?Infinity、[+-]?NaN
+ * ASCII 以外の数字（全角など）・前後の空白・16進・末尾の d/f は受け付けない。
+ */
+public final class Numbers {
+
+    // tryParseInt が失敗したときの戻り値（int の範囲外なので、どの int の値とも重ならない）
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final ValueLayout.OfLong LONG_LE = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private Numbers() {
+    }
+
+    // long・double の解析結果を受け取る入れ物。使い回せば解析のたびにオブジェクトを作らない
+    public static final class Result {
+        private long longValue;
+        private double doubleValue;
+        private final DecimalScanner scan = new DecimalScanner();  // 小数を読む途中の状態
+
+        public long longValue() {
+            return longValue;
+        }
+
+        public double doubleValue() {
+            return doubleValue;
+        }
+    }
+
+    // ========== 8桁まとめて（SWAR） ==========
+
+    // 1バイト目を最下位に詰めた8文字が、すべて '0'〜'9' か
+    static boolean isEightDigits(long word) {
+        // '0'〜'9' は 0x30〜0x39。上位4ビットが 3 で、6 を足しても 0x3F を超えない
+        return ((word & 0xF0F0F0F0F0F0F0F0L) | (((word + 0x0606060606060606L) & 0xF0F0F0F0F0F0F0F0L) >>> 4))
+            == 0x3333333333333333L;
+    }
+
+    // isEightDigits な8文字を数値にする。隣り合う2桁 → 4桁 → 8桁の順に、掛け算でまとめて合わせる
+    static long eightDigits(long word) {
+        word -= 0x3030303030303030L;
+        word = word * 10 + (word >>> 8);
+        return ((word & 0x000000FF000000FFL) * (100 + (1_000_000L << 32))
+            + ((word >>> 16) & 0x000000FF000000FFL) * (1 + (10_000L << 32))) >>> 32;
+    }
+
+    // ========== CharSequence ==========
+
+    public static long tryParseInt(CharSequence s) {
+        return tryParseInt(s, 0, s.length());
+    }
+
+    // [from, to) を int として読み、値か INVALID を返す
+    public static long tryParseInt(CharSequence s, int from, int to) {
+        if (from >= to) {
+            return INVALID;
+        }
+        char first = s.charAt(from);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            from++;
+        }
+        while (from < to - 1 && s.charAt(from) == '0') {
+            from++;  // 先頭の 0 は桁数に数えない
+        }
+        if (from >= to || to - from > 10) {
+            return INVALID;
+        }
+        long magnitude = magnitude(s, from, to);
+        if (magnitude < 0) {
+            return INVALID;
+        }
+        long value = negative ? -magnitude : magnitude;
+        return value == (int) value ? value : INVALID;
+    }
+
+    // 読めなければ defaultValue を返す
+    public static int parseInt(CharSequence s, int defaultValue) {
+        long value = tryParseInt(s);
+        return value == INVALID ? defaultValue : (int) value;
+    }
+
+    public static boolean tryParseLong(CharSequence s, Result out) {
+        return tryParseLong(s, 0, s.length(), out);
+    }
+
+    public static boolean tryParseLong(CharSequence s, int from, int to, Result out) {
+        if (from >= to) {
+            return false;
+        }
+        char first = s.charAt(from);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            from++;
+        }
+        while (from < to - 1 && s.charAt(from) == '0') {
+            from++;
+        }
+        int length = to - from;
+        if (length <= 0 || length > 19) {
+            return false;
+        }
+        if (length <= 18) {
+            long magnitude = magnitude(s, from, to);
+            if (magnitude < 0) {
+                return false;
+            }
+            out.longValue = negative ? -magnitude : magnitude;
+            return true;
+        }
+        // 19桁は long からあふれることがある。最後の1桁は符号なしで足して範囲を確かめる
+        long head = magnitude(s, from, to - 1);
+        int digit = s.charAt(to - 1) - '0';
+        if (head < 0 || digit < 0 || digit > 9) {
+            return false;
+        }
+        return toLong(head * 10 + digit, negative, out);
+    }
+
+    // 18桁以下の数字の並びの値。数字以外があれば -1。
+    // 文字（char）は8つを long に詰める手間が掛かり、1文字ずつ読む方が速かったので SWAR は使わない
+    private static long magnitude(CharSequence s, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public static boolean tryParseDouble(CharSequence s, Result out) {
+        return tryParseDouble(s, 0, s.length(), out);
+    }
+
+    public static boolean tryParseDouble(CharSequence s, int from, int to, Result out) {
+        if (from >= to) {
+            return false;
+        }
+        int i = from;
+        char first = s.charAt(i);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            i++;
+        }
+        if (i < to && (s.charAt(i) == 'I' || s.charAt(i) == 'N')) {
+            return special(s.subSequence(i, to).toString(), negative, out);
+        }
+        DecimalScanner scan = out.scan.reset();
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                break;
+            }
+            if (!scan.digit(c - '0', false)) {
+                return false;
+            }
+        }
+        if (i < to && s.charAt(i) == '.') {
+            for (i++; i < to; i++) {
+                char c = s.charAt(i);
+                if (c == 'e' || c == 'E') {
+                    break;
+                }
+                if (!scan.digit(c - '0', true)) {
+                    return false;
+                }
+            }
+        }
+        if (i < to) {
+            // 指数部
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                negativeExponent = s.charAt(i) == '-';
+                i++;
+            }
+            if (i >= to) {
+                return false;
+            }
+            for (; i < to; i++) {
+                if (!scan.exponentDigit(s.charAt(i) - '0')) {
+                    return false;
+                }
+            }
+            scan.negativeExponent = negativeExponent;
+        }
+        return scan.finish(negative, out) || scan.anyDigit && slowDouble(s.subSequence(from, to).toString(), out);
+    }
+
+    // ========== バイト列 ==========
+
+    // byte[] の [from, to) を読む。MemorySegment.ofArray で包むだけで、中身は写さない
+    public static long tryParseInt(byte[] bytes, int from, int to) {
+        return tryParseInt(MemorySegment.ofArray(bytes), from, to);
+    }
+
+    public static boolean tryParseLong(byte[] bytes, int from, int to, Result out) {
+        return tryParseLong(MemorySegment.ofArray(bytes), from, to, out);
+    }
+
+    public static boolean tryParseDouble(byte[] bytes, int from, int to, Result out) {
+        return tryParseDouble(MemorySegment.ofArray(bytes), from, to, out);
+    }
+
+    public static long tryParseInt(MemorySegment data, long from, long to) {
+        if (from >= to) {
+            return INVALID;
+        }
+        byte first = byteAt(data, from);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            from++;
+        }
+        while (from < to - 1 && byteAt(data, from) == '0') {
+            from++;
+        }
+        if (from >= to || to - from > 10) {
+            return INVALID;
+        }
+        long magnitude = magnitude(data, from, to);
+        if (magnitude < 0) {
+            return INVALID;
+        }
+        long value = negative ? -magnitude : magnitude;
+        return value == (int) value ? value : INVALID;
+    }
+
+    public static boolean tryParseLong(MemorySegment data, long from, long to, Result out) {
+        if (from >= to) {
+            return false;
+        }
+        byte first = byteAt(data, from);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            from++;
+        }
+        while (from < to - 1 && byteAt(data, from) == '0') {
+            from++;
+        }
+        long length = to - from;
+        if (length <= 0 || length > 19) {
+            return false;
+        }
+        if (length <= 18) {
+            long magnitude = magnitude(data, from, to);
+            if (magnitude < 0) {
+                return false;
+            }
+            out.longValue = negative ? -magnitude : magnitude;
+            return true;
+        }
+        long head = magnitude(data, from, to - 1);
+        int digit = byteAt(data, to - 1) - '0';
+        if (head < 0 || digit < 0 || digit > 9) {
+            return false;
+        }
+        return toLong(head * 10 + digit, negative, out);
+    }
+
+    private static long magnitude(MemorySegment data, long from, long to) {
+        long value = 0;
+        long i = from;
+        for (; i + 8 <= to; i += 8) {
+            long word = data.get(LONG_LE, i);
+            if (!isEightDigits(word)) {
+                return -1;
+            }
+            value = value * 100_000_000 + eightDigits(word);
+        }
+        for (; i < to; i++) {
+            int digit = byteAt(data, i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public static boolean tryParseDouble(MemorySegment data, long from, long to, Result out) {
+        if (from >= to) {
+            return false;
+        }
+        long i = from;
+        byte first = byteAt(data, i);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            i++;
+        }
+        if (i < to && (byteAt(data, i) == 'I' || byteAt(data, i) == 'N')) {
+            return special(string(data, i, to), negative, out);
+        }
+        DecimalScanner scan = out.scan.reset();
+        for (; i < to; i++) {
+            byte b = byteAt(data, i);
+            if (b == '.' || b == 'e' || b == 'E') {
+                break;
+            }
+            if (!scan.digit(b - '0', false)) {
+                return false;
+            }
+        }
+        if (i < to && byteAt(data, i) == '.') {
+            // 小数部は8桁ずつまとめて読める（有効数字が MAX_DIGITS 桁に収まる間）
+            i++;
+            while (i + 8 <= to && scan.digits + 8 <= DecimalScanner.MAX_DIGITS) {
+                long word = data.get(LONG_LE, i);
+                if (!isEightDigits(word)) {
+                    break;
+                }
+                scan.eightFractionDigits(eightDigits(word));
+                i += 8;
+            }
+            for (; i < to; i++) {
+                byte b = byteAt(data, i);
+                if (b == 'e' || b == 'E') {
+                    break;
+                }
+                if (!scan.digit(b - '0', true)) {
+                    return false;
+                }
+            }
+        }
+        if (i < to) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (byteAt(data, i) == '-' || byteAt(data, i) == '+')) {
+                negativeExponent = byteAt(data, i) == '-';
+                i++;
+            }
+            if (i >= to) {
+                return false;
+            }
+            for (; i < to; i++) {
+                if (!scan.exponentDigit(byteAt(data, i) - '0')) {
+                    return false;
+                }
+            }
+            scan.negativeExponent = negativeExponent;
+        }
+        return scan.finish(negative, out) || scan.anyDigit && slowDouble(string(data, from, to), out);
+    }
+
+    private static byte byteAt(MemorySegment data, long offset) {
+        return data.get(ValueLayout.JAVA_BYTE, offset);
+    }
+
+    private static String string(MemorySegment data, long from, long to) {
+        return new String(data.asSlice(from, to - from).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    // ========== 共通部分 ==========
+
+    // 0 以上 2^64 未満（符号なし）の値に符号を付け、long に収まれば out に入れる
+    private static boolean toLong(long unsigned, boolean negative, Result out) {
+        if (Long.compareUnsigned(unsigned, negative ? Long.MIN_VALUE : Long.MAX_VALUE) > 0) {
+            return false;
+        }
+        out.longValue = negative ? -unsigned : unsigned;
+        return true;
+    }
+
+    private static boolean special(String text, boolean negative, Result out) {
+        if (text.equals("Infinity")) {
+            out.doubleValue = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            return true;
+        }
+        if (text.equals("NaN")) {
+            out.doubleValue = Double.NaN;
+            return true;
+        }
+        return false;
+    }
+
+    // 書式は確かめてあるので例外は投げない
+    private static boolean slowDouble(String text, Result out) {
+        out.doubleValue = Double.parseDouble(text);
+        return true;
+    }
+
+    // 小数を1桁ずつ受け取り、仮数（有効数字 MAX_DIGITS 桁まで）と10の指数に分けて貯める
+    private static final class DecimalScanner {
+        static final int MAX_DIGITS = 18;  // 10^18 未満なので long に収まる
+
+        long mantissa;
+        int digits;           // mantissa に入れた桁数（先頭の 0 は除く）
+        int scale;            // 小数点以下に入れた桁数、あふれて捨てた整数部の桁数はマイナス
+        boolean truncated;    // 0 でない桁を捨てた
+        boolean anyDigit;
+        long exponent;
+        boolean negativeExponent;
+
+        DecimalScanner reset() {
+            mantissa = 0;
+            digits = 0;
+            scale = 0;
+            truncated = false;
+            anyDigit = false;
+            exponent = 0;
+            negativeExponent = false;
+            return this;
+        }
+
+        boolean digit(int digit, boolean fraction) {
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            anyDigit = true;
+            if (mantissa == 0 && digit == 0) {
+                if (fraction) {
+                    scale++;
+                }
+            } else if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+                if (fraction) {
+                    scale++;
+                }
+            } else {
+                truncated |= digit != 0;
+                if (!fraction) {
+                    scale--;
+                }
+            }
+            return true;
+        }
+
+        // 小数部の8桁（先頭の 0 も桁数に数えるが、仮数があふれない範囲で呼ぶので値は正しい）
+        void eightFractionDigits(long value) {
+            anyDigit = true;
+            mantissa = mantissa * 100_000_000 + value;
+            if (mantissa != 0) {
+                digits += 8;
+            }
+            scale += 8;
+        }
+
+        boolean exponentDigit(int digit) {
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            // 大きすぎる指数はどうせ 0 か無限大になるので、あふれないところで止める
+            exponent = Math.min(exponent * 10 + digit, 1_000_000);
+            return true;
+        }
+
+        // 有効数字が 2^53 以下・10の指数が ±22 以内なら、どちらも double で正確に表せるので
+        // 1回の掛け算・割り算で正しく丸められる。
+        // false のときは、数字が1つもない（不正）か、Double.parseDouble に任せる必要がある（anyDigit で区別する）
+        boolean finish(boolean negative, Result out) {
+            if (!anyDigit) {
+                return false;
+            }
+            long power = (negativeExponent ? -exponent : exponent) - scale;
+            double value;
+            if (mantissa == 0) {
+                value = 0;
+            } else if (!truncated && mantissa <= 1L << 53 && power >= -22 && power <= 22) {
+                value = power < 0 ? mantissa / POWERS_OF_TEN[(int) -power] : mantissa * POWERS_OF_TEN[(int) power];
+            } else {
+                return false;
+            }
+            out.doubleValue = negative ? -value : value;
+            return true;
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+}
@@ -0,0 +1,253 @@
+package grammer;
+
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * キーがオブジェクト、値が int のハッシュマップ（オープンアドレス法・線形探索）
+ *
+ * HashMap<String, Integer> は put のたびに Node と Integer のオブジェクトを作るが、
+ * ObjectIntMap はキーの配列と、ハッシュ値と値を交互に並べた int[] の2本だけで持つ。
+ * 衝突したら隣のスロットを順に探し（線形探索）、削除では後ろの要素を前に詰める（backward-shift）ので、
+ * 削除済みの印（tombstone）が溜まって遅くなることもない。
+ * 探索中はまず int[] のハッシュ値を比べ、一致したときだけキーの equals を呼ぶ。
+ *
+ *   ObjectIntMap<String> ages = new ObjectIntMap<>();
+ *   ages.put("太郎", 25);
+ *   ages.addTo("太郎", 1);                  // 26
+ *   ObjectIntMap.Cursor<String> cursor = ages.cursor();
+ *   while (cursor.next()) {
+ *       ... cursor.key(), cursor.value() ...
+ *   }
+ *
+ * キーに null は使えない。
+ */
+public class ObjectIntMap<K> {
+
+    // HashMap と同じ上限。これを超えたら2倍に広げる
+    static final float LOAD_FACTOR = 0.75f;
+
+    private Object[] keys;
+    // スロット i のハッシュ値が [2i]、値が [2i + 1]。ハッシュ値 0 は空きスロット
+    private int[] slots;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public ObjectIntMap() {
+        this(16);
+    }
+
+    public ObjectIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        slots = new int[capacity * 2];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // hashCode の下位ビットが偏っていても散らばるよう、黄金比の定数を掛けて上位ビットを混ぜる。
+    // 0 は空きの印なので使わない
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h == 0 ? 1 : h;
+    }
+
+    // キーのあるスロット。なければ -1
+    private int find(Object key) {
+        int h = hash(key);
+        int[] slots = this.slots;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int stored = slots[2 * i];
+            if (stored == 0) {
+                return -1;
+            }
+            if (stored == h) {
+                Object k = keys[i];
+                if (k == key || k.equals(key)) {
+                    return i;
+                }
+            }
+        }
+    }
+
+    // ========== 取得 ==========
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(K key) {
+        return find(Objects.requireNonNull(key)) >= 0;
+    }
+
+    public int getOrDefault(K key, int defaultValue) {
+        int i = find(Objects.requireNonNull(key));
+        return i < 0 ? defaultValue : slots[2 * i + 1];
+    }
+
+    // ========== 更新 ==========
+
+    // 値を設定し、以前の値を返す（なかった場合は 0）
+    public int put(K key, int value) {
+        int i = findOrInsert(Objects.requireNonNull(key), value);
+        if (i < 0) {
+            return 0;
+        }
+        int old = slots[2 * i + 1];
+        slots[2 * i + 1] = value;
+        return old;
+    }
+
+    // 値に increment を足して、足した後の値を返す。キーがなければ 0 に足す（map.merge(key, n, Integer::sum) 相当）
+    public int addTo(K key, int increment) {
+        int i = findOrInsert(Objects.requireNonNull(key), increment);
+        return i < 0 ? increment : (slots[2 * i + 1] += increment);
+    }
+
+    // キーがあればそのスロットを返す。なければ value で追加して -1 を返す
+    private int findOrInsert(Object key, int value) {
+        int h = hash(key);
+        int[] slots = this.slots;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int stored = slots[2 * i];
+            if (stored == 0) {
+                keys[i] = key;
+                slots[2 * i] = h;
+                slots[2 * i + 1] = value;
+                if (++size > resizeAt) {
+                    rehash(keys.length * 2);
+                }
+                return -1;
+            }
+            if (stored == h) {
+                Object k = keys[i];
+                if (k == key || k.equals(key)) {
+                    return i;
+                }
+            }
+        }
+    }
+
+    // 保存してあるハッシュ値で並べ直すので、キーの hashCode は呼ばない
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldSlots = slots;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            int h = oldSlots[2 * j];
+            if (h != 0) {
+                int i = h & mask;
+                while (slots[2 * i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                slots[2 * i] = h;
+                slots[2 * i + 1] = oldSlots[2 * j + 1];
+            }
+        }
+    }
+
+    // キーを削除する。削除したら true
+    public boolean remove(K key) {
+        int gap = find(Objects.requireNonNull(key));
+        if (gap < 0) {
+            return false;
+        }
+        // 後ろに続く要素のうち、本来の位置から gap を通って来たものを gap に詰めていく
+        for (int i = (gap + 1) & mask; slots[2 * i] != 0; i = (i + 1) & mask) {
+            int ideal = slots[2 * i] & mask;
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                slots[2 * gap] = slots[2 * i];
+                slots[2 * gap + 1] = slots[2 * i + 1];
+                gap = i;
+            }
+        }
+        keys[gap] = null;
+        slots[2 * gap] = 0;
+        slots[2 * gap + 1] = 0;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(slots, 0);
+        size = 0;
+    }
+
+    // ========== 反復 ==========
+
+    public void forEach(ObjIntConsumer<? super K> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(key(i), slots[2 * i + 1]);
+            }
+        }
+    }
+
+    // Map.Entry を作らずにキーと値をたどるカーソル。反復中にマップを変更してはいけない
+    public Cursor<K> cursor() {
+        return new Cursor<>(this);
+    }
+
+    public static final class Cursor<K> {
+        private final ObjectIntMap<K> map;
+        private int index = -1;
+
+        private Cursor(ObjectIntMap<K> map) {
+            this.map = map;
+        }
+
+        public boolean next() {
+            Object[] keys = map.keys;
+            while (++index < keys.length) {
+                if (keys[index] != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public K key() {
+            return map.key(index);
+        }
+
+        public int value() {
+            return map.slots[2 * index + 1];
+        }
+
+        // 現在のキーの値を書き換える（構造は変わらないので反復中でもよい）
+        public void setValue(int value) {
+            map.slots[2 * index + 1] = value;
+        }
+
+        // 同じカーソルをもう一度先頭から使う
+        public Cursor<K> reset() {
+            index = -1;
+            return this;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(int index) {
+        return (K) keys[index];
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        forEach((key, value) -> joiner.add(key + "=" + value));
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,195 @@
+package grammer;
+
+import java.lang.foreign.*;
+import java.util.Objects;
+
+/**
+ * ヒープの外（ネイティブメモリ）に置く int 配列
+ *
+ * FFM API（Arena / MemorySegment）でメモリを確保するので、GC の対象にならず、
+ * ヒープサイズを超える数GBのデータも持てる。インデックスは long。
+ *
+ * 解放のしかたは2通り：
+ *   try (var array = OffHeapIntArray.allocate(n)) { ... }      // close() で解放
+ *   try (var arena = Arena.ofConfined()) {
+ *       var array = OffHeapIntArray.allocate(arena, n);         // arena を閉じたときにまとめて解放
+ *   }
+ */
+public class OffHeapIntArray implements AutoCloseable {
+
+    private static final ValueLayout.OfInt LAYOUT = ValueLayout.JAVA_INT;
+
+    private final MemorySegment segment;
+    private final Arena ownedArena;  // 自分で確保した場合のみ。借りた Arena や view の場合は null
+    private final long length;
+
+    private OffHeapIntArray(MemorySegment segment, Arena ownedArena) {
+        this.segment = segment;
+        this.ownedArena = ownedArena;
+        this.length = segment.byteSize() / LAYOUT.byteSize();
+    }
+
+    // 専用の Arena を作って確保する（close() で解放。確保したスレッドからのみアクセスできる）
+    public static OffHeapIntArray allocate(long length) {
+        Arena arena = Arena.ofConfined();
+        return new OffHeapIntArray(allocateSegment(arena, length), arena);
+    }
+
+    // 呼び出し側の Arena から確保する（寿命は Arena に従い、close() は何もしない）
+    public static OffHeapIntArray allocate(Arena arena, long length) {
+        return new OffHeapIntArray(allocateSegment(arena, length), null);
+    }
+
+    public static OffHeapIntArray copyOf(Arena arena, int[] source) {
+        OffHeapIntArray array = allocate(arena, source.length);
+        MemorySegment.copy(source, 0, array.segment, LAYOUT, 0, source.length);
+        return array;
+    }
+
+    private static MemorySegment allocateSegment(Arena arena, long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("長さが負です: " + length);
+        }
+        return arena.allocate(length * LAYOUT.byteSize(), LAYOUT.byteAlignment());  // 0 で初期化される
+    }
+
+    // ========== 取得・更新 ==========
+
+    public long length() {
+        return length;
+    }
+
+    public int get(long index) {
+        return segment.getAtIndex(LAYOUT, Objects.checkIndex(index, length));
+    }
+
+    public void set(long index, int value) {
+        segment.setAtIndex(LAYOUT, Objects.checkIndex(index, length), value);
+    }
+
+    public void fill(int value) {
+        if (value == 0) {
+            segment.fill((byte) 0);
+            return;
+        }
+        for (long i = 0; i < length; i++) {
+            segment.setAtIndex(LAYOUT, i, value);
+        }
+    }
+
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    // ========== コピー ==========
+
+    // Arrays.copyOf 相当。足りない分は 0、余る分は切り捨て
+    public OffHeapIntArray copyOf(long newLength) {
+        OffHeapIntArray copy = allocate(newLength);
+        copy(this, 0, copy, 0, Math.min(length, newLength));
+        return copy;
+    }
+
+    public OffHeapIntArray copyOf(Arena arena, long newLength) {
+        OffHeapIntArray copy = allocate(arena, newLength);
+        copy(this, 0, copy, 0, Math.min(length, newLength));
+        return copy;
+    }
+
+    // System.arraycopy 相当（重なっていても正しくコピーされる）
+    public static void copy(OffHeapIntArray source, long sourceIndex,
+                            OffHeapIntArray target, long targetIndex, long count) {
+        MemorySegment.copy(source.segment, LAYOUT, sourceIndex * LAYOUT.byteSize(),
+            target.segment, LAYOUT, targetIndex * LAYOUT.byteSize(), count);
+    }
+
+    // ヒープの int[] との間のコピー
+    public void copyFrom(int[] source, int sourceIndex, long targetIndex, int count) {
+        MemorySegment.copy(source, sourceIndex, segment, LAYOUT, targetIndex * LAYOUT.byteSize(), count);
+    }
+
+    public void copyTo(long sourceIndex, int[] target, int targetIndex, int count) {
+        MemorySegment.copy(segment, LAYOUT, sourceIndex * LAYOUT.byteSize(), target, targetIndex, count);
+    }
+
+    public int[] toArray() {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("int[] に収まりません: " + length);
+        }
+        return segment.toArray(LAYOUT);
+    }
+
+    // ========== ソート ==========
+
+    // その場でソートする（OffHeapSort：イントロソート。同じ値が多くても遅くならない）
+    public void sort() {
+        sort(0, length);
+    }
+
+    public void sort(long fromIndex, long toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, length);
+        OffHeapSort.INT.sort(segment, fromIndex, toIndex);
+    }
+
+    // 範囲チェック済みの内部用アクセサ
+    private int at(long index) {
+        return segment.getAtIndex(LAYOUT, index);
+    }
+
+    // ========== 2次元ビュー ==========
+
+    // 行優先（row-major）の2次元配列として見る。int[][] と違い、全行が1つの連続領域に並ぶ
+    public Grid asGrid(long rows, long columns) {
+        if (rows < 0 || columns < 0 || rows * columns != length) {
+            throw new IllegalArgumentException(rows + "×" + columns + " は長さ " + length + " と一致しません");
+        }
+        return new Grid(this, rows, columns);
+    }
+
+    public record Grid(OffHeapIntArray array, long rows, long columns) {
+
+        public int get(long row, long column) {
+            return array.get(index(row, column));
+        }
+
+        public void set(long row, long column, int value) {
+            array.set(index(row, column), value);
+        }
+
+        // 1行分をコピーなしで切り出す（元の配列と同じメモリを指す）
+        public OffHeapIntArray row(long row) {
+            Objects.checkIndex(row, rows);
+            long bytes = columns * LAYOUT.byteSize();
+            return new OffHeapIntArray(array.segment.asSlice(row * bytes, bytes), null);
+        }
+
+        private long index(long row, long column) {
+            return Objects.checkIndex(row, rows) * columns + Objects.checkIndex(column, columns);
+        }
+    }
+
+    // ========== 解放 ==========
+
+    @Override
+    public void close() {
+        if (ownedArena != null) {
+            ownedArena.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        long shown = Math.min(length, 20);
+        for (long i = 0; i < shown; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(at(i));
+        }
+        if (shown < length) {
+            sb.append(", ...（全 ").append(length).append(" 要素）");
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,163 @@
+package grammer;
+
+import java.lang.foreign.*;
+
+/**
+ * OffHeapIntArray・OffHeapLongArray の中身を、その場でソートする
+ *
+ * イントロソート：クイックソート＋挿入ソート、深すぎる再帰はヒープソート。
+ * 分割は3点の中央値をピボットにした3分割（Dutch national flag 問題。Bentley-McIlroy の方法）で、
+ * ピボットと等しい値は次の再帰に入らない。
+ * 同じ値ばかりの配列でも再帰が浅いまま終わる（2分割だと深さの上限に達してヒープソートになる）。
+ * 値はどちらも long として比べる（int は符号を保って広げるので順序は変わらない）。
+ */
+abstract class OffHeapSort {
+
+    static final OffHeapSort INT = new OffHeapSort() {
+        @Override
+        long at(MemorySegment segment, long index) {
+            return segment.getAtIndex(ValueLayout.JAVA_INT, index);
+        }
+
+        @Override
+        void put(MemorySegment segment, long index, long value) {
+            segment.setAtIndex(ValueLayout.JAVA_INT, index, (int) value);
+        }
+    };
+
+    static final OffHeapSort LONG = new OffHeapSort() {
+        @Override
+        long at(MemorySegment segment, long index) {
+            return segment.getAtIndex(ValueLayout.JAVA_LONG, index);
+        }
+
+        @Override
+        void put(MemorySegment segment, long index, long value) {
+            segment.setAtIndex(ValueLayout.JAVA_LONG, index, value);
+        }
+    };
+
+    private OffHeapSort() {
+    }
+
+    // 範囲チェックは呼び出し側で済ませる
+    abstract long at(MemorySegment segment, long index);
+
+    abstract void put(MemorySegment segment, long index, long value);
+
+    // [fromIndex, toIndex) をソートする
+    final void sort(MemorySegment segment, long fromIndex, long toIndex) {
+        int depthLimit = 2 * (64 - Long.numberOfLeadingZeros(Math.max(1, toIndex - fromIndex)));
+        introSort(segment, fromIndex, toIndex - 1, depthLimit);
+    }
+
+    private void introSort(MemorySegment segment, long low, long high, int depthLimit) {
+        while (high - low > 16) {
+            if (depthLimit-- == 0) {
+                heapSort(segment, low, high);
+                return;
+            }
+            // Bentley-McIlroy の3分割：ピボットと等しい値を両端に寄せながら Hoare 分割し、最後に中央へ集める。
+            // 等しい値がなければ Hoare 分割と同じ手間（ソート済みの範囲では1つも入れ替えない）
+            long pivot = medianOfThree(segment, low, (low + high) >>> 1, high);
+            long a = low;
+            long b = low;
+            long c = high;
+            long d = high;
+            while (true) {
+                long value;
+                while (b <= c && (value = at(segment, b)) <= pivot) {
+                    if (value == pivot) {
+                        swap(segment, a++, b);
+                    }
+                    b++;
+                }
+                while (c >= b && (value = at(segment, c)) >= pivot) {
+                    if (value == pivot) {
+                        swap(segment, c, d--);
+                    }
+                    c--;
+                }
+                if (b > c) {
+                    break;
+                }
+                swap(segment, b++, c--);
+            }
+            long left = Math.min(a - low, b - a);
+            swapRange(segment, low, b - left, left);
+            long right = Math.min(d - c, high - d);
+            swapRange(segment, b, high + 1 - right, right);
+            // [low, lt) < pivot、[lt, gt] == pivot、(gt, high] > pivot
+            long lt = low + (b - a);
+            long gt = high - (d - c);
+            // 小さい方を再帰、大きい方をループで処理して再帰の深さを抑える
+            if (lt - low < high - gt) {
+                introSort(segment, low, lt - 1, depthLimit);
+                low = gt + 1;
+            } else {
+                introSort(segment, gt + 1, high, depthLimit);
+                high = lt - 1;
+            }
+        }
+        insertionSort(segment, low, high);
+    }
+
+    private long medianOfThree(MemorySegment segment, long a, long b, long c) {
+        long x = at(segment, a);
+        long y = at(segment, b);
+        long z = at(segment, c);
+        return Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+    }
+
+    private void insertionSort(MemorySegment segment, long low, long high) {
+        for (long i = low + 1; i <= high; i++) {
+            long value = at(segment, i);
+            long j = i - 1;
+            while (j >= low && at(segment, j) > value) {
+                put(segment, j + 1, at(segment, j));
+                j--;
+            }
+            put(segment, j + 1, value);
+        }
+    }
+
+    private void heapSort(MemorySegment segment, long low, long high) {
+        long count = high - low + 1;
+        for (long i = count / 2 - 1; i >= 0; i--) {
+            siftDown(segment, low, i, count);
+        }
+        for (long end = count - 1; end > 0; end--) {
+            swap(segment, low, low + end);
+            siftDown(segment, low, 0, end);
+        }
+    }
+
+    private void siftDown(MemorySegment segment, long base, long node, long count) {
+        while (true) {
+            long child = 2 * node + 1;
+            if (child >= count) {
+                return;
+            }
+            if (child + 1 < count && at(segment, base + child + 1) > at(segment, base + child)) {
+                child++;
+            }
+            if (at(segment, base + node) >= at(segment, base + child)) {
+                return;
+            }
+            swap(segment, base + node, base + child);
+            node = child;
+        }
+    }
+
+    private void swapRange(MemorySegment segment, long i, long j, long count) {
+        for (long k = 0; k < count; k++) {
+            swap(segment, i + k, j + k);
+        }
+    }
+
+    private void swap(MemorySegment segment, long i, long j) {
+        long tmp = at(segment, i);
+        put(segment, i, at(segment, j));
+        put(segment, j, tmp);
+    }
+}
@@ -0,0 +1,295 @@
+package grammer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Formatter;
+import java.util.Objects;
+
+/**
+ * 書き出しをまとめて行う出力先（System.out.print の代わり）
+ *
+ * System.out.println は呼ぶたびに文字列を UTF-8 に変換し、行ごとに write のシステムコールを出す。
+ * Output はスレッドごとのバッファ（StringBuilder）に文字のまま貯め、書き出すときに1回だけ UTF-8 にして
+ * チャネルへまとめて書く。int・long は文字列を作らずにそのままバッファに書く。
+ *
+ *   Output out = Output.stdout();            // FlushPolicy.FULL
+ *   for (Person p : people) {
+ *       out.print(p.getName());
+ *       out.print(',');
+ *       out.println(p.getAge());
+ *   }
+ *   out.flush();                              // 最後に必ず呼ぶ
+ *
+ * いつ書き出すかは FlushPolicy で決める。どの方針でも flush() を呼べばすぐに書く。
+ * バッファはスレッドごとなので、スレッドは終わる前に自分で flush() すること（他のスレッドの分は書けない）。
+ * 自動で書き出すのは改行のときだけで、1回の書き出しは他のスレッドの書き出しと混ざらない
+ * （行の途中に他のスレッドの出力が割り込まない）。
+ * System.out と混ぜて使うときは、切り替える前に flush() する。
+ * stdout() はまとめたバイト列を System.out に1回で書くので、System.setOut で差し替えた先（Sections など）にも届く。
+ */
+public final class Output implements Flushable {
+
+    public enum FlushPolicy {
+        // 改行するたびに書く（System.out と同じ見え方。対話的な表示向け）
+        LINE,
+        // バッファが一杯になった後の最初の改行で書く（レポートの生成など、まとめて大量に出すとき）
+        FULL,
+        // flush() を呼ぶまで書かない（バッファは必要なだけ広がる）
+        MANUAL
+    }
+
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final Output STDOUT = new Output(new SystemOutChannel(), FlushPolicy.FULL, DEFAULT_CAPACITY);
+
+    private final WritableByteChannel channel;
+    private final FlushPolicy policy;
+    private final int capacity;  // これだけの文字が貯まったら、次の改行で書く（FULL のとき）
+    private final ThreadLocal<Buffer> buffers;
+
+    private Output(WritableByteChannel channel, FlushPolicy policy, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("バッファの大きさは2文字以上です: " + capacity);
+        }
+        this.channel = Objects.requireNonNull(channel);
+        this.policy = Objects.requireNonNull(policy);
+        this.capacity = capacity;
+        this.buffers = ThreadLocal.withInitial(Buffer::new);
+    }
+
+    // 標準出力（FlushPolicy.FULL）
+    public static Output stdout() {
+        return STDOUT;
+    }
+
+    public static Output stdout(FlushPolicy policy) {
+        return policy == FlushPolicy.FULL ? STDOUT : new Output(STDOUT.channel, policy, DEFAULT_CAPACITY);
+    }
+
+    // ファイル（FileChannel）やソケットなど任意のチャネルへ書く。チャネルを閉じるのは呼び出し側
+    public static Output of(WritableByteChannel channel, FlushPolicy policy, int capacity) {
+        return new Output(channel, policy, capacity);
+    }
+
+    // ========== 書く ==========
+
+    // print は貯めるだけ。書き出すのは println・改行を含む printf・flush のとき
+
+    public void print(CharSequence text) {
+        buffers.get().chars.append(text);
+    }
+
+    public void print(String text) {
+        buffers.get().chars.append(text);
+    }
+
+    public void print(char c) {
+        buffers.get().chars.append(c);
+    }
+
+    public void print(int value) {
+        buffers.get().chars.append(value);
+    }
+
+    public void print(long value) {
+        buffers.get().chars.append(value);
+    }
+
+    public void print(double value) {
+        buffers.get().chars.append(value);
+    }
+
+    public void print(boolean value) {
+        buffers.get().chars.append(value);
+    }
+
+    public void print(Object value) {
+        buffers.get().chars.append(value);
+    }
+
+    public void println() {
+        Buffer buffer = buffers.get();
+        buffer.chars.append('\n');
+        newLine(buffer);
+    }
+
+    public void println(CharSequence text) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(text).append('\n');
+        newLine(buffer);
+    }
+
+    public void println(String text) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(text).append('\n');
+        newLine(buffer);
+    }
+
+    public void println(char c) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(c).append('\n');
+        newLine(buffer);
+    }
+
+    public void println(int value) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(value).append('\n');
+        newLine(buffer);
+    }
+
+    public void println(long value) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(value).append('\n');
+        newLine(buffer);
+    }
+
+    public void println(double value) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(value).append('\n');
+        newLine(buffer);
+    }
+
+    public void println(boolean value) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(value).append('\n');
+        newLine(buffer);
+    }
+
+    public void println(Object value) {
+        Buffer buffer = buffers.get();
+        buffer.chars.append(value).append('\n');
+        newLine(buffer);
+    }
+
+    // String.format と同じ書式。Formatter はスレッドごとに1つを使い回し、結果をバッファへ直接書く
+    public void printf(String format, Object... args) {
+        Buffer buffer = buffers.get();
+        buffer.formatter.format(format, args);
+        if (format.contains("%n") || format.indexOf('\n') >= 0) {
+            newLine(buffer);
+        }
+    }
+
+    // このスレッドのバッファの中身をすぐに書く
+    @Override
+    public void flush() {
+        write(buffers.get());
+    }
+
+    // 書き出すのは改行したときだけなので、1行が途中で切れて他のスレッドの行と混ざることはない
+    private void newLine(Buffer buffer) {
+        if (policy == FlushPolicy.LINE || policy == FlushPolicy.FULL && buffer.chars.length() >= capacity) {
+            write(buffer);
+        }
+    }
+
+    // ========== 書き出し ==========
+
+    // スレッドごとの文字のバッファと、UTF-8 に変換した結果を入れるバイト列
+    private static final class Buffer {
+        final StringBuilder chars;
+        final Formatter formatter;
+        char[] copy = new char[0];  // StringBuilder.charAt を1文字ずつ呼ぶより、まとめて写してから読む方が速い
+        byte[] bytes = new byte[0];
+        ByteBuffer view = ByteBuffer.wrap(bytes);
+
+        // 少ししか書かないスレッド（仮想スレッドなど）もあるので、どれも必要になってから広げる
+        Buffer() {
+            chars = new StringBuilder();
+            formatter = new Formatter(chars);
+        }
+
+        // chars を UTF-8 にして bytes の先頭から書き、バイト数を返す。
+        // サロゲートペアの前半で終わっていたら、その1文字は次回に回す
+        int encode() {
+            StringBuilder chars = this.chars;
+            int length = chars.length();
+            if (length > 0 && Character.isHighSurrogate(chars.charAt(length - 1))) {
+                length--;
+            }
+            if (copy.length < length) {
+                copy = new char[Math.max(length, copy.length * 2)];
+                bytes = new byte[copy.length * 3];
+                view = ByteBuffer.wrap(bytes);
+            }
+            char[] copy = this.copy;
+            byte[] bytes = this.bytes;
+            chars.getChars(0, length, copy, 0);
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                char c = copy[i];
+                if (c < 0x80) {
+                    bytes[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[n++] = (byte) (0xC0 | c >> 6);
+                    bytes[n++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(copy[i + 1])) {
+                    int cp = Character.toCodePoint(c, copy[++i]);
+                    bytes[n++] = (byte) (0xF0 | cp >> 18);
+                    bytes[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    bytes[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    bytes[n++] = (byte) (0x80 | cp & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    bytes[n++] = '?';  // 対になっていないサロゲートは String.getBytes と同じく ? にする
+                } else {
+                    bytes[n++] = (byte) (0xE0 | c >> 12);
+                    bytes[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[n++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            chars.delete(0, length);
+            return n;
+        }
+    }
+
+    private void write(Buffer buffer) {
+        if (buffer.chars.isEmpty()) {
+            return;
+        }
+        int n = buffer.encode();
+        ByteBuffer view = buffer.view;
+        view.clear().limit(n);
+        try {
+            if (channel instanceof SystemOutChannel) {
+                // 1回の write で全部を書き、混ざらないようにするのは PrintStream のロックに任せる。
+                // synchronized の中で PrintStream のロックを待つと、仮想スレッドがキャリアを手放せず
+                // （Sections の節の中など）、ロックを持った仮想スレッドが戻れなくなることがある
+                channel.write(view);
+                return;
+            }
+            // 1回分を他のスレッドの書き出しと混ぜない
+            synchronized (channel) {
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 書くたびにその時点の System.out を取り直して、まとめたバイト列を1回で渡す
+    private static final class SystemOutChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            PrintStream out = System.out;
+            out.write(src.array(), src.arrayOffset() + src.position(), n);  // Buffer.view は必ず配列を持つ
+            out.flush();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // 標準出力は閉じない
+        }
+    }
+}
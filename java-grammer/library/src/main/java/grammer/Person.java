@@ -0,0 +1,35 @@
+package grammer;
+
+/**
+ * 名前と年齢を持つ人物（JavaGrammar のクラス定義の例）
+ */
+public class Person {
+    // フィールド（プライベート）
+    private String name;
+    private int age;
+
+    // コンストラクタ
+    public Person(String name, int age) {
+        this.name = name;
+        this.age = age;
+    }
+
+    // ゲッター
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    // セッター（同期しないので、スレッド間で共有する年齢は PersonRegistry に置く）
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    // メソッド
+    public void introduce() {
+        System.out.println("私の名前は" + name + "、" + age + "歳です。");
+    }
+}
@@ -0,0 +1,425 @@
+package grammer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Person と JSON（UTF-8）の相互変換。リフレクションを使わず、バイト列を直接読み書きする
+ *
+ * JavaGrammar.stringOperations() のテキストブロックや String.format と違い、
+ * 途中で String を作らずに、使い回すバッファへ {"name":"太郎","age":25} を書き込む。
+ *
+ *   PersonCodec codec = new PersonCodec();
+ *   codec.reset().write(person);            // バッファは次の reset() まで使い回す
+ *   out.write(codec.buffer(), 0, codec.size());
+ *
+ *   Person person = PersonCodec.read(bytes, 0, length);
+ */
+public class PersonCodec {
+
+    private static final byte[] NAME_KEY = "{\"name\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] AGE_KEY = "\",\"age\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+    private int size;
+
+    public PersonCodec() {
+        this(256);
+    }
+
+    public PersonCodec(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    // ========== 書き込み ==========
+
+    public PersonCodec reset() {
+        size = 0;
+        return this;
+    }
+
+    public PersonCodec write(Person person) {
+        String name = person.getName();
+        // 1文字は UTF-8 で最大3バイト、エスケープ（\u001f）でも6バイトなので、それだけ確保しておけば途中で伸ばさずに済む
+        ensureCapacity(NAME_KEY.length + name.length() * 6 + AGE_KEY.length + 11 + 1);
+        append(NAME_KEY);
+        writeString(name);
+        append(AGE_KEY);
+        writeInt(person.getAge());
+        buffer[size++] = '}';
+        return this;
+    }
+
+    // [{...},{...}] の形でまとめて書き込む
+    public PersonCodec writeArray(Collection<Person> people) {
+        ensureCapacity(2 + people.size());
+        buffer[size++] = '[';
+        boolean first = true;
+        for (Person person : people) {
+            if (!first) {
+                ensureCapacity(1);
+                buffer[size++] = ',';
+            }
+            write(person);
+            first = false;
+        }
+        ensureCapacity(1);
+        buffer[size++] = ']';
+        return this;
+    }
+
+    // サロゲートペアを含めて UTF-8 に符号化し、JSON で必要な文字だけエスケープする
+    private void writeString(String value) {
+        byte[] out = buffer;
+        int pos = size;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    out[pos++] = '\\';
+                    out[pos++] = (byte) c;
+                } else if (c < 0x20) {
+                    out[pos++] = '\\';
+                    out[pos++] = 'u';
+                    out[pos++] = '0';
+                    out[pos++] = '0';
+                    out[pos++] = HEX[c >> 4];
+                    out[pos++] = HEX[c & 0xF];
+                } else {
+                    out[pos++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[pos++] = '?';  // 対になっていないサロゲートは String.getBytes と同じく ? にする
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        size = pos;
+    }
+
+    // Integer.toString を使わずに数字を書く
+    private void writeInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            append("-2147483648".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int pos = size + digits - 1; pos >= size; pos--) {
+            buffer[pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    private void append(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(size + additional, buffer.length * 2));
+        }
+    }
+
+    // ========== 書き出し ==========
+
+    // 書き込んだ内容は buffer() の [0, size()) にある（バッファはコピーしない）
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void writeTo(ByteBuffer target) {
+        target.put(buffer, 0, size);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.UTF_8);
+    }
+
+    // ========== 読み込み ==========
+
+    public static Person read(byte[] bytes, int offset, int length) {
+        Parser parser = new Parser(bytes, offset, offset + length);
+        Person person = parser.readPerson();
+        parser.expectEnd();
+        return person;
+    }
+
+    public static Person read(ByteBuffer source) {
+        if (source.hasArray()) {
+            Person person = read(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            source.position(source.limit());
+            return person;
+        }
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        return read(bytes, 0, bytes.length);
+    }
+
+    // [{...},{...}] を読み、1人ずつ consumer に渡す
+    public static void readArray(byte[] bytes, int offset, int length, Consumer<Person> consumer) {
+        Parser parser = new Parser(bytes, offset, offset + length);
+        parser.expect('[');
+        if (!parser.tryConsume(']')) {
+            do {
+                consumer.accept(parser.readPerson());
+            } while (parser.tryConsume(','));
+            parser.expect(']');
+        }
+        parser.expectEnd();
+    }
+
+    public static List<Person> readArray(byte[] bytes, int offset, int length) {
+        List<Person> people = new ArrayList<>();
+        readArray(bytes, offset, length, people::add);
+        return people;
+    }
+
+    // 空白とキーの順序の違い、知らないキー（文字列・数値・true/false/null の値）は受け付ける
+    private static final class Parser {
+        private final byte[] bytes;
+        private final int limit;
+        private int pos;
+
+        Parser(byte[] bytes, int from, int to) {
+            Objects.checkFromToIndex(from, to, bytes.length);
+            this.bytes = bytes;
+            this.pos = from;
+            this.limit = to;
+        }
+
+        Person readPerson() {
+            String name = null;
+            int age = 0;
+            boolean hasAge = false;
+            expect('{');
+            if (!tryConsume('}')) {
+                do {
+                    if (tryKey("name")) {
+                        name = readString();
+                    } else if (tryKey("age")) {
+                        age = readInt();
+                        hasAge = true;
+                    } else {
+                        skipString();
+                        expect(':');
+                        skipValue();
+                    }
+                } while (tryConsume(','));
+                expect('}');
+            }
+            if (name == null || !hasAge) {
+                throw error("name と age が必要です");
+            }
+            return new Person(name, age);
+        }
+
+        // "key": まで読めたら true。違うキーなら位置を戻して false
+        private boolean tryKey(String key) {
+            int start = skipWhitespace();
+            if (pos < limit && bytes[pos] == '"') {
+                int p = pos + 1;
+                for (int i = 0; i < key.length(); i++, p++) {
+                    if (p >= limit || bytes[p] != key.charAt(i)) {
+                        pos = start;
+                        return false;
+                    }
+                }
+                if (p < limit && bytes[p] == '"') {
+                    pos = p + 1;
+                    expect(':');
+                    return true;
+                }
+            }
+            pos = start;
+            return false;
+        }
+
+        // エスケープがなければバイト列から直接 String を作る
+        String readString() {
+            expect('"');
+            int start = pos;
+            while (pos < limit && bytes[pos] != '"') {
+                if (bytes[pos] == '\\') {
+                    return readEscapedString(start);
+                }
+                pos++;
+            }
+            if (pos >= limit) {
+                throw error("文字列が閉じられていません");
+            }
+            return new String(bytes, start, pos++ - start, StandardCharsets.UTF_8);
+        }
+
+        private String readEscapedString(int start) {
+            StringBuilder sb = new StringBuilder().append(new String(bytes, start, pos - start, StandardCharsets.UTF_8));
+            int chunk = pos;
+            while (true) {
+                if (pos >= limit) {
+                    throw error("文字列が閉じられていません");
+                }
+                byte b = bytes[pos];
+                if (b == '"') {
+                    sb.append(new String(bytes, chunk, pos - chunk, StandardCharsets.UTF_8));
+                    pos++;
+                    return sb.toString();
+                }
+                if (b != '\\') {
+                    pos++;
+                    continue;
+                }
+                sb.append(new String(bytes, chunk, pos - chunk, StandardCharsets.UTF_8));
+                if (pos + 1 >= limit) {
+                    throw error("エスケープが途中で終わっています");
+                }
+                byte escape = bytes[pos + 1];
+                pos += 2;
+                switch (escape) {
+                    case '"', '\\', '/' -> sb.append((char) escape);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > limit) {
+                            throw error("\\u の後ろに4桁の16進数が必要です");
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(bytes[pos++], 16);
+                            if (digit < 0) {
+                                throw error("\\u の後ろに4桁の16進数が必要です");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        sb.append((char) code);
+                    }
+                    default -> throw error("不明なエスケープです: \\" + (char) escape);
+                }
+                chunk = pos;
+            }
+        }
+
+        private void skipString() {
+            expect('"');
+            while (pos < limit && bytes[pos] != '"') {
+                pos += bytes[pos] == '\\' ? 2 : 1;
+            }
+            if (pos >= limit) {
+                throw error("文字列が閉じられていません");
+            }
+            pos++;
+        }
+
+        private void skipValue() {
+            skipWhitespace();
+            if (pos < limit && bytes[pos] == '"') {
+                skipString();
+                return;
+            }
+            int start = pos;
+            while (pos < limit && bytes[pos] != ',' && bytes[pos] != '}' && bytes[pos] != ']'
+                    && !isWhitespace(bytes[pos])) {
+                pos++;
+            }
+            if (pos == start) {
+                throw error("値がありません");
+            }
+        }
+
+        int readInt() {
+            skipWhitespace();
+            boolean negative = pos < limit && bytes[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            int start = pos;
+            long value = 0;
+            while (pos < limit && bytes[pos] >= '0' && bytes[pos] <= '9') {
+                value = value * 10 + (bytes[pos++] - '0');
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw error("int の範囲外です");
+                }
+            }
+            if (pos == start) {
+                throw error("数値が必要です");
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw error("int の範囲外です");
+            }
+            return (int) value;
+        }
+
+        void expect(char c) {
+            if (!tryConsume(c)) {
+                throw error("'" + c + "' が必要です");
+            }
+        }
+
+        boolean tryConsume(char c) {
+            skipWhitespace();
+            if (pos < limit && bytes[pos] == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (pos != limit) {
+                throw error("余分なデータがあります");
+            }
+        }
+
+        private int skipWhitespace() {
+            while (pos < limit && isWhitespace(bytes[pos])) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+        }
+
+        private IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("JSON が不正です: " + reason + "（位置 " + pos + "）");
+        }
+    }
+}
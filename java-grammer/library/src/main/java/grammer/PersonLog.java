@@ -0,0 +1,493 @@
+package grammer;
+
+import java.io.IOException;
+import java.lang.foreign.*;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Person の変更を追記だけで記録するログ（メモリマップしたファイル）
+ *
+ * JavaGrammar.classesAndObjects() の Person や setAge の変更はメモリにしかなく、終了すると消える。
+ * PersonLog は「名前と年齢」を1件ずつファイルの末尾に追記し、開き直したときに先頭から読み直して
+ * 名前ごとの最新の年齢を復元する。書き込みは FileChannel.map した MemorySegment への代入だけで、
+ * システムコールは出さない。
+ *
+ *   try (PersonLog log = PersonLog.open(path)) {   // 既存のログは読み直して復元する
+ *       log.append(person);
+ *       log.append("山田太郎", 26);
+ *       log.commit();                             // ここまでの追記をディスクに書き切る（force）
+ *       int age = log.age("山田太郎", -1);         // 26
+ *       Person first = log.read(0);               // 記録番号で読む
+ *   }
+ *
+ * ファイルの形式（整数はリトルエンディアン）：
+ *   ヘッダ 16 バイト：マジック "PLOG"・版・チャンクの大きさ（2 の何乗か）・予約
+ *   記録：長さ（4）・CRC32C（4）・中身（年齢 4 + 名前の UTF-8）
+ * ファイルはチャンク（既定 1GB）ごとにマップする。記録はチャンクをまたがず、入りきらないときは
+ * 残りを PADDING にして次のチャンクから書く。
+ *
+ * commit() を呼ぶまでの追記は、OS が書き出す前に電源が落ちると失われることがある。
+ * 複数のスレッドが同時に commit() を呼ぶと、1回の force にまとめる（グループコミット）。
+ * 先に force しているスレッドを待つ間に追記された分は、次の1回の force でまとめて書く。
+ * ただし force の直後は末尾のページが書き込み禁止になり、次の追記はページの書き出しを待つことがある
+ * （その間は他のスレッドの追記も止まる）ので、1回にまとまる件数はスレッドの数ほどは増えない。
+ * 1つのスレッドで大量に書くときは、数千件ごとに commit() する方がずっと速い。
+ *
+ * 開いたときは、長さが 0・範囲外・CRC が合わない記録を「書いている途中で止まった」とみなしてそこで止め、
+ * その後ろを切り詰める（古いデータが後ろに残っていると、上書きした後に偶然つながって読めてしまうため）。
+ * 記録番号での読み出しには、INDEX_INTERVAL 件ごとの位置だけを持つ疎な索引を使う。
+ */
+public final class PersonLog implements AutoCloseable {
+
+    static final int INDEX_INTERVAL = 256;  // 索引に位置を残す間隔（記録番号で読むときは最大これだけ読み飛ばす）
+    static final int DEFAULT_CHUNK_SHIFT = 30;
+
+    private static final int MAGIC = 0x474F4C50;  // "PLOG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER = 8;   // 長さ + CRC32C
+    private static final int MIN_RECORD = RECORD_HEADER + 4;
+    private static final int PADDING = -1;        // ここからチャンクの終わりまでは空き
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final Arena arena = Arena.ofShared();  // commit() は追記と別のスレッドからも force する
+    private final int chunkShift;
+    private final long chunkSize;
+
+    // ここから下は this で守る
+    private final List<MemorySegment> chunks = new ArrayList<>();
+    private final ObjectIntMap<String> ages = new ObjectIntMap<>();
+    private final CRC32C crc = new CRC32C();
+    private byte[] scratch = new byte[64];
+    private long[] index = new long[16];  // index[k] は記録番号 k * INDEX_INTERVAL の位置
+    private long count;
+    private long position;                // 次の記録を書く位置
+    private boolean closed;
+
+    // ここから下は commitLock で守る（durableCount は待たずに読めるよう volatile）
+    private final Object commitLock = new Object();
+    private volatile long durableCount;
+    private long durablePosition;
+    private long forces;
+
+    private PersonLog(FileChannel channel, int chunkShift) {
+        this.channel = channel;
+        this.chunkShift = chunkShift;
+        this.chunkSize = 1L << chunkShift;
+    }
+
+    // ファイルがなければ作る。あれば読み直して、名前ごとの最新の年齢を復元する
+    public static PersonLog open(Path path) throws IOException {
+        return open(path, DEFAULT_CHUNK_SHIFT);
+    }
+
+    // chunkShift は新しく作るときだけ使う（既存のファイルはヘッダの値に従う）
+    static PersonLog open(Path path, int chunkShift) throws IOException {
+        if (chunkShift < 12 || chunkShift > 30) {
+            throw new IllegalArgumentException("チャンクは 2^12〜2^30 バイトです: 2^" + chunkShift);
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PersonLog log = null;
+        try {
+            if (channel.size() == 0) {
+                log = new PersonLog(channel, chunkShift);
+                log.writeHeader();
+            } else {
+                log = new PersonLog(channel, readHeader(channel, path));
+                log.recover();
+            }
+            return log;
+        } catch (IOException | RuntimeException e) {
+            if (log != null) {
+                log.arena.close();
+            }
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        MemorySegment first = chunk(0);
+        first.set(INT, 0, MAGIC);
+        first.set(INT, 4, VERSION);
+        first.set(INT, 8, chunkShift);
+        first.asSlice(0, HEADER_SIZE).force();
+        channel.force(true);  // ファイルの大きさ（メタデータ）も書き切る
+        position = HEADER_SIZE;
+        durablePosition = HEADER_SIZE;
+    }
+
+    private static int readHeader(FileChannel channel, Path path) throws IOException {
+        java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // 読めるだけ読む
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+            throw new IOException("PersonLog のファイルではありません: " + path);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("対応していない版です: " + header.getInt(4) + "（" + path + "）");
+        }
+        int chunkShift = header.getInt(8);
+        if (chunkShift < 12 || chunkShift > 30) {
+            throw new IOException("ヘッダが壊れています: " + path);
+        }
+        return chunkShift;
+    }
+
+    // ========== 追記 ==========
+
+    public long append(Person person) {
+        return append(person.getName(), person.getAge());
+    }
+
+    // 記録番号（0 から）を返す。ディスクに書き切るのは commit() のとき
+    public synchronized long append(String name, int age) {
+        ensureOpen();
+        int length = encode(name, age);
+        int recordSize = RECORD_HEADER + length;
+        if (recordSize > chunkSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("名前が長すぎます（" + (length - 4) + " バイト）");
+        }
+        long inChunk = position & (chunkSize - 1);
+        if (inChunk + recordSize > chunkSize) {
+            if (chunkSize - inChunk >= 4) {
+                chunk(position).set(INT, inChunk, PADDING);
+            }
+            position += chunkSize - inChunk;
+            inChunk = 0;
+        }
+        MemorySegment chunk = chunk(position);
+        crc.reset();
+        crc.update(scratch, 0, length);
+        chunk.set(INT, inChunk, length);
+        chunk.set(INT, inChunk + 4, (int) crc.getValue());
+        MemorySegment.copy(scratch, 0, chunk, ValueLayout.JAVA_BYTE, inChunk + RECORD_HEADER, length);
+        indexed(position);
+        ages.put(name, age);
+        position += recordSize;
+        return count - 1;
+    }
+
+    // 年齢と名前の UTF-8 を scratch に並べ、その長さを返す
+    private int encode(String name, int age) {
+        int maxLength = 4 + name.length() * 3;
+        if (scratch.length < maxLength) {
+            scratch = new byte[Math.max(maxLength, scratch.length * 2)];
+        }
+        byte[] out = scratch;
+        out[0] = (byte) age;
+        out[1] = (byte) (age >> 8);
+        out[2] = (byte) (age >> 16);
+        out[3] = (byte) (age >> 24);
+        int n = 4;
+        for (int i = 0, length = name.length(); i < length; i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                out[n++] = (byte) c;
+            } else if (c < 0x800) {
+                out[n++] = (byte) (0xC0 | c >> 6);
+                out[n++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(name.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, name.charAt(++i));
+                out[n++] = (byte) (0xF0 | cp >> 18);
+                out[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                out[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                out[n++] = '?';  // 対になっていないサロゲートは String.getBytes と同じく ? にする
+            } else {
+                out[n++] = (byte) (0xE0 | c >> 12);
+                out[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[n++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return n;
+    }
+
+    // 記録を1件数え、INDEX_INTERVAL 件ごとに位置を索引に残す（追記と復元で共通）
+    private void indexed(long recordPosition) {
+        if (count % INDEX_INTERVAL == 0) {
+            int k = (int) (count / INDEX_INTERVAL);
+            if (k == index.length) {
+                index = Arrays.copyOf(index, k + (k >> 1));
+            }
+            index[k] = recordPosition;
+        }
+        count++;
+    }
+
+    // ========== コミット ==========
+
+    // この呼び出しより前の追記を、すべてディスクに書き切ってから戻る。
+    // 他のスレッドの force を待っている間に、自分の分がそれに含まれたら force せずに戻る
+    public void commit() {
+        long target;
+        synchronized (this) {
+            ensureOpen();
+            target = count;
+        }
+        if (durableCount >= target) {
+            return;
+        }
+        synchronized (commitLock) {
+            if (durableCount >= target) {
+                return;  // 前の人の force にまとめて入った
+            }
+            long toCount;
+            long toPosition;
+            List<MemorySegment> mapped;
+            synchronized (this) {
+                toCount = count;
+                toPosition = position;
+                mapped = List.copyOf(chunks);
+            }
+            // force の間も他のスレッドは追記を続けられる（その分は次の force で書く）
+            for (long from = durablePosition; from < toPosition; ) {
+                long to = Math.min(toPosition, (from >> chunkShift) + 1 << chunkShift);
+                long inChunk = from & (chunkSize - 1);
+                mapped.get((int) (from >> chunkShift)).asSlice(inChunk, to - from).force();
+                from = to;
+            }
+            durablePosition = toPosition;
+            durableCount = toCount;
+            forces++;
+        }
+    }
+
+    // ========== 読み出し ==========
+
+    // 名前の最新の年齢。記録がなければ defaultAge
+    public synchronized int age(String name, int defaultAge) {
+        return ages.getOrDefault(name, defaultAge);
+    }
+
+    // 名前ごとの最新の年齢をすべて渡す（順序は決まっていない）
+    public synchronized void forEachLatest(ObjIntConsumer<String> action) {
+        ages.forEach(action);
+    }
+
+    // 名前の数
+    public synchronized int people() {
+        return ages.size();
+    }
+
+    // 記録の数（commit していない分も含む）
+    public synchronized long size() {
+        return count;
+    }
+
+    // ディスクに書き切った記録の数
+    public long durableSize() {
+        return durableCount;
+    }
+
+    // これまでに force した回数（グループコミットでどれだけまとまったかを見る）
+    long forces() {
+        synchronized (commitLock) {
+            return forces;
+        }
+    }
+
+    // recordNumber 番目の記録。索引で近くまで飛び、そこから最大 INDEX_INTERVAL - 1 件を読み飛ばす
+    public synchronized Person read(long recordNumber) {
+        ensureOpen();
+        Objects.checkIndex(recordNumber, count);
+        long offset = index[(int) (recordNumber / INDEX_INTERVAL)];
+        for (long skip = recordNumber % INDEX_INTERVAL; skip > 0; skip--) {
+            offset = recordStart(offset + RECORD_HEADER + chunk(offset).get(INT, offset & (chunkSize - 1)));
+        }
+        MemorySegment chunk = chunk(offset);
+        long inChunk = offset & (chunkSize - 1);
+        int length = chunk.get(INT, inChunk);
+        byte[] payload = new byte[length];
+        MemorySegment.copy(chunk, ValueLayout.JAVA_BYTE, inChunk + RECORD_HEADER, payload, 0, length);
+        return new Person(new String(payload, 4, length - 4, StandardCharsets.UTF_8), ageOf(payload, 0));
+    }
+
+    private static int ageOf(byte[] payload, int at) {
+        return payload[at] & 0xFF | (payload[at + 1] & 0xFF) << 8 | (payload[at + 2] & 0xFF) << 16 | payload[at + 3] << 24;
+    }
+
+    // offset に記録が入りきらない（PADDING・チャンクの残りが足りない）なら次のチャンクの先頭
+    private long recordStart(long offset) {
+        long remaining = chunkSize - (offset & (chunkSize - 1));
+        if (remaining < MIN_RECORD || chunk(offset).get(INT, offset & (chunkSize - 1)) == PADDING) {
+            return offset + remaining;
+        }
+        return offset;
+    }
+
+    // ========== 復元 ==========
+
+    // 先頭から読み直す。最初の壊れた記録（書きかけ）で止め、その後ろを切り詰める。
+    // 同じ名前が何度も出てくるので、名前は UTF-8 のまま NameTable で数え、String は最後に1人1回だけ作る
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        long offset = HEADER_SIZE;
+        NameTable names = new NameTable();
+        while (offset < fileSize) {
+            long inChunk = offset & (chunkSize - 1);
+            long remaining = chunkSize - inChunk;
+            if (remaining < MIN_RECORD) {
+                offset += remaining;
+                continue;
+            }
+            MemorySegment chunk = chunk(offset);
+            int length = chunk.get(INT, inChunk);
+            if (length == PADDING) {
+                offset += remaining;
+                continue;
+            }
+            if (length < 4 || length > remaining - RECORD_HEADER) {
+                break;
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            MemorySegment.copy(chunk, ValueLayout.JAVA_BYTE, inChunk + RECORD_HEADER, scratch, 0, length);
+            crc.reset();
+            crc.update(scratch, 0, length);
+            if ((int) crc.getValue() != chunk.get(INT, inChunk + 4)) {
+                break;
+            }
+            names.put(scratch, 4, length - 4, ageOf(scratch, 0));
+            indexed(offset);
+            offset += RECORD_HEADER + length;
+        }
+        names.forEach(ages::put);
+        position = offset;
+        durablePosition = offset;
+        durableCount = count;
+        if (fileSize > offset) {
+            // 切り詰めた後ろは、書くときにマップし直すとゼロで埋まる
+            channel.truncate(offset);
+            channel.force(true);
+            int last = (int) (offset >> chunkShift);
+            chunks.subList(Math.min(last, chunks.size()), chunks.size()).clear();
+        }
+    }
+
+    // 復元のときだけ使う「名前の UTF-8 → 最新の年齢」の表。名前のバイト列は1本の byte[] に詰めて持つ。
+    // 名前が多いと表を引くたびにキャッシュミスになるので、ハッシュ値・年齢・名前の位置と長さを1つのスロットに並べ、
+    // 1件あたりスロットと名前のバイト列の2か所だけを読む
+    private static final class NameTable {
+        private byte[] bytes = new byte[1 << 12];
+        private int used;
+        private int size;
+        private int[] slots = new int[4 * 256];  // [4k] ハッシュ値（0 は空き）・[4k + 1] 年齢・[4k + 2] 位置・[4k + 3] 長さ
+        private int mask = 255;
+
+        void put(byte[] name, int from, int length, int age) {
+            int h = 1;
+            for (int i = from, to = from + length; i < to; i++) {
+                h = 31 * h + name[i];
+            }
+            h *= 0x9E3779B9;
+            h ^= h >>> 16;
+            h = h == 0 ? 1 : h;
+            int[] slots = this.slots;
+            for (int k = h & mask; ; k = (k + 1) & mask) {
+                int stored = slots[4 * k];
+                if (stored == 0) {
+                    add(k, h, name, from, length, age);
+                    return;
+                }
+                if (stored == h && slots[4 * k + 3] == length) {
+                    int at = slots[4 * k + 2];
+                    if (Arrays.equals(bytes, at, at + length, name, from, from + length)) {
+                        slots[4 * k + 1] = age;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void add(int k, int h, byte[] name, int from, int length, int age) {
+            if (used + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(used + length, bytes.length * 2));
+            }
+            System.arraycopy(name, from, bytes, used, length);
+            slots[4 * k] = h;
+            slots[4 * k + 1] = age;
+            slots[4 * k + 2] = used;
+            slots[4 * k + 3] = length;
+            used += length;
+            if (++size > (mask + 1) * 3 / 4) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            int[] old = slots;
+            slots = new int[old.length * 2];
+            mask = slots.length / 4 - 1;
+            for (int k = 0; k < old.length; k += 4) {
+                if (old[k] != 0) {
+                    int j = old[k] & mask;
+                    while (slots[4 * j] != 0) {
+                        j = (j + 1) & mask;
+                    }
+                    System.arraycopy(old, k, slots, 4 * j, 4);
+                }
+            }
+        }
+
+        void forEach(ObjIntConsumer<String> action) {
+            for (int k = 0; k < slots.length; k += 4) {
+                if (slots[k] != 0) {
+                    action.accept(new String(bytes, slots[k + 2], slots[k + 3], StandardCharsets.UTF_8), slots[k + 1]);
+                }
+            }
+        }
+    }
+
+    // ========== マップ ==========
+
+    // offset を含むチャンク。まだマップしていなければマップする（ファイルはその分だけ伸びる）
+    private MemorySegment chunk(long offset) {
+        int i = (int) (offset >> chunkShift);
+        while (chunks.size() <= i) {
+            try {
+                chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() << chunkShift, chunkSize, arena));
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }
+        return chunks.get(i);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("PersonLog は閉じられています");
+        }
+    }
+
+    // commit してから閉じる。マップのために伸ばしたファイルの後ろ（ゼロ）は切り詰める
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        commit();
+        synchronized (commitLock) {
+            synchronized (this) {
+                closed = true;
+                arena.close();
+                try (channel) {
+                    channel.truncate(position);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package grammer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 名前 → 年齢を複数のスレッドで共有する登録簿
+ *
+ * Person の age は同期なしの setAge で書き換わり、JavaGrammar.collections() の HashMap もスレッドセーフではない。
+ * PersonRegistry は次のように分けて持つ。
+ *   読み取り     ロックなし。バケツ（Entry[]）と年齢を VarHandle の getAcquire で読む
+ *   書き込み     名前のハッシュで 64 本のストライプに分け、ストライプごとのロックで直列にする。
+ *                年齢は setRelease で書くので、読む側は書き終わった値だけを見る
+ *   スナップショット  ある一瞬の全員の年齢を写す。書き込みを止めない（下の「スナップショットの仕組み」）
+ *
+ *   PersonRegistry registry = new PersonRegistry();
+ *   registry.put("太郎", 25);
+ *   registry.updateAge("太郎", age -> age + 1);   // 26（読んで書くまでが1つの操作）
+ *   registry.age("太郎", -1);                     // 26
+ *   for (Person person : registry.snapshot()) {
+ *       ... person.getName(), person.getAge() ...
+ *   }
+ *
+ * スナップショットの仕組み：
+ *   書き込みは共有の時計 clock を読み、その値を書き込みの時刻 stamp としてエントリに残す。
+ *   snapshot() は clock を1つ進めた値 at を自分の時刻にして、stamp < at の書き込みだけを見る。
+ *   スナップショットが開いている間、書き込みは上書き前の値を history に残すので、
+ *   at より後の書き込みが先に済んでいても、その前の値を読める。削除もすぐには外さず削除済みの印を付けて残す。
+ *   書き込み側は clock を読む前にストライプの seq を奇数にしておく。スナップショットは at を決めた後で
+ *   各ストライプの seq が偶数になるのを一度だけ待つ（at より前の時刻を読んだ書き込みが途中なら、その終わりを待つ）。
+ *   スナップショットが待つのは書きかけの1件だけで、書き込みの側がスナップショットを待つことはない。
+ *
+ * 名前に null は使えない。
+ */
+public final class PersonRegistry {
+
+    // ストライプの数（2 の累乗）。ハッシュの上位ビットで選ぶ
+    static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES);
+    private static final Entry[] EMPTY = {};
+
+    private static final VarHandle AGE;
+    private static final VarHandle REMOVED;
+    private static final VarHandle ENTRY_SEQ;
+    private static final VarHandle TABLE;
+    private static final VarHandle STRIPE_SEQ;
+    private static final VarHandle BUCKET = MethodHandles.arrayElementVarHandle(Entry[][].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            AGE = lookup.findVarHandle(Entry.class, "age", int.class);
+            REMOVED = lookup.findVarHandle(Entry.class, "removed", boolean.class);
+            ENTRY_SEQ = lookup.findVarHandle(Entry.class, "seq", int.class);
+            TABLE = lookup.findVarHandle(Stripe.class, "table", Entry[][].class);
+            STRIPE_SEQ = lookup.findVarHandle(Stripe.class, "seq", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // 名前ごとのエントリ。一度作ったら別のエントリに置き換えない（表を広げても同じオブジェクトを入れ直す）
+    private static final class Entry {
+        final String name;
+        final int hash;
+        // 年齢と削除済みの印。ロックなしで読むので getAcquire / setRelease
+        int age;
+        boolean removed;
+        // 以下はストライプのロックを持って書く。書いている間 seq は奇数
+        int seq;
+        long stamp;
+        Version history;
+
+        Entry(String name, int hash, int age, long stamp) {
+            this.name = name;
+            this.hash = hash;
+            this.age = age;
+            this.stamp = stamp;
+        }
+    }
+
+    // スナップショットのために残した上書き前の値（新しい順につながる）
+    private record Version(int age, boolean removed, long stamp, Version older) {
+    }
+
+    // バケツは Entry[] で、書き換えるときは丸ごと作り直して差し替える（読む側は古い配列を最後まで読める）
+    private static final class Stripe {
+        Entry[][] table;
+        // 書き込みの間は奇数
+        int seq;
+        // 削除済みの印が付いたものも含めた、表にあるエントリの数
+        int entries;
+        volatile int size;
+
+        Stripe(int buckets) {
+            table = new Entry[buckets][];
+            Arrays.fill(table, EMPTY);
+        }
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong clock = new AtomicLong();
+    // 開いているスナップショットの数。0 でなければ書き込みは上書き前の値を残す
+    private final AtomicInteger openSnapshots = new AtomicInteger();
+
+    public PersonRegistry() {
+        this(STRIPES * 16);
+    }
+
+    public PersonRegistry(int expectedSize) {
+        int buckets = Integer.highestOneBit(Math.max(4, expectedSize / STRIPES) - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(buckets);
+        }
+    }
+
+    // ObjectIntMap と同じく、黄金比の定数を掛けて上位ビットを混ぜる（上位ビットでストライプ、下位ビットでバケツを選ぶ）
+    private static int hash(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Stripe stripeOf(int hash) {
+        return stripes[hash >>> STRIPE_SHIFT];
+    }
+
+    // 削除されていないエントリ。なければ null
+    private static Entry find(Entry[][] table, int hash, String name) {
+        Entry[] bucket = (Entry[]) BUCKET.getAcquire(table, hash & (table.length - 1));
+        for (Entry e : bucket) {
+            if (e.hash == hash && e.name.equals(name) && !(boolean) REMOVED.getAcquire(e)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    // ========== 取得（ロックなし） ==========
+
+    // 名前の年齢。登録されていなければ defaultAge
+    public int age(String name, int defaultAge) {
+        int h = hash(name);
+        Entry e = find((Entry[][]) TABLE.getAcquire(stripeOf(h)), h, name);
+        return e == null ? defaultAge : (int) AGE.getAcquire(e);
+    }
+
+    public boolean contains(String name) {
+        int h = hash(name);
+        return find((Entry[][]) TABLE.getAcquire(stripeOf(h)), h, name) != null;
+    }
+
+    // 登録されている人数。各ストライプの数を順に足すので、書き込みと並行して呼ぶと前後にずれることがある
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    // ========== 更新（ストライプごとのロック） ==========
+
+    // 年齢を設定する。新しく登録したら true
+    public boolean put(String name, int age) {
+        int h = hash(Objects.requireNonNull(name));
+        Stripe stripe = stripeOf(h);
+        synchronized (stripe) {
+            Entry e = find(stripe.table, h, name);
+            long now = begin(stripe);
+            boolean keep = openSnapshots.get() > 0;
+            try {
+                if (e != null) {
+                    write(e, age, false, now, keep);
+                    return false;
+                }
+                insert(stripe, new Entry(name, h, age, now), keep);
+                stripe.size++;
+                return true;
+            } finally {
+                end(stripe);
+            }
+        }
+    }
+
+    public boolean register(Person person) {
+        return put(person.getName(), person.getAge());
+    }
+
+    // 今の年齢に update を適用して書き、新しい年齢を返す。読んでから書くまでの間に他の書き込みは入らない。
+    // update はストライプのロックを持ったまま呼ぶので、短く、この登録簿を触らないものにする
+    public int updateAge(String name, IntUnaryOperator update) {
+        int h = hash(name);
+        Stripe stripe = stripeOf(h);
+        synchronized (stripe) {
+            Entry e = find(stripe.table, h, name);
+            if (e == null) {
+                throw new NoSuchElementException("登録されていません: " + name);
+            }
+            int age = update.applyAsInt(e.age);
+            long now = begin(stripe);
+            try {
+                write(e, age, false, now, openSnapshots.get() > 0);
+            } finally {
+                end(stripe);
+            }
+            return age;
+        }
+    }
+
+    // 削除したら true
+    public boolean remove(String name) {
+        int h = hash(name);
+        Stripe stripe = stripeOf(h);
+        synchronized (stripe) {
+            Entry e = find(stripe.table, h, name);
+            if (e == null) {
+                return false;
+            }
+            long now = begin(stripe);
+            boolean keep = openSnapshots.get() > 0;
+            try {
+                write(e, e.age, true, now, keep);
+                if (!keep) {
+                    // 開いているスナップショットがなければ、削除済みのものはバケツから外してよい
+                    int i = h & (stripe.table.length - 1);
+                    Entry[] bucket = stripe.table[i];
+                    BUCKET.setRelease(stripe.table, i, live(bucket));
+                    stripe.entries -= bucket.length - stripe.table[i].length;
+                }
+                stripe.size--;
+            } finally {
+                end(stripe);
+            }
+            return true;
+        }
+    }
+
+    // 書き込みの始まり：seq を奇数にしてから clock を読む（どちらも volatile なので、この順序がスナップショットからも保たれる）
+    private long begin(Stripe stripe) {
+        STRIPE_SEQ.setVolatile(stripe, stripe.seq + 1);
+        return clock.get();
+    }
+
+    private static void end(Stripe stripe) {
+        STRIPE_SEQ.setRelease(stripe, stripe.seq + 1);
+    }
+
+    private static void write(Entry e, int age, boolean removed, long now, boolean keep) {
+        ENTRY_SEQ.setOpaque(e, e.seq + 1);
+        VarHandle.storeStoreFence();
+        if (!keep) {
+            e.history = null;
+        } else if (e.stamp < now) {
+            // 時刻が now と同じ値は、どのスナップショットからも読まれないので残さない
+            e.history = new Version(e.age, e.removed, e.stamp, e.history);
+        }
+        e.stamp = now;
+        REMOVED.setRelease(e, removed);
+        AGE.setRelease(e, age);
+        ENTRY_SEQ.setRelease(e, e.seq + 1);
+    }
+
+    private static void insert(Stripe stripe, Entry entry, boolean keep) {
+        if (stripe.entries >= stripe.table.length) {
+            resize(stripe, keep);
+        }
+        Entry[][] table = stripe.table;
+        int i = entry.hash & (table.length - 1);
+        Entry[] old = table[i];
+        Entry[] bucket = keep ? old : live(old);
+        Entry[] grown = Arrays.copyOf(bucket, bucket.length + 1);
+        grown[bucket.length] = entry;
+        BUCKET.setRelease(table, i, grown);
+        stripe.entries += grown.length - old.length;
+    }
+
+    // 表を2倍にする。エントリは同じオブジェクトを入れ直すだけなので、古い表を読んでいる途中の読み取りもそのまま正しい
+    private static void resize(Stripe stripe, boolean keep) {
+        Entry[][] old = stripe.table;
+        int mask = old.length * 2 - 1;
+        int[] counts = new int[old.length * 2];
+        int entries = 0;
+        for (Entry[] bucket : old) {
+            for (Entry e : bucket) {
+                if (keep || !e.removed) {
+                    counts[e.hash & mask]++;
+                    entries++;
+                }
+            }
+        }
+        Entry[][] table = new Entry[old.length * 2][];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = counts[i] == 0 ? EMPTY : new Entry[counts[i]];
+            counts[i] = 0;
+        }
+        for (Entry[] bucket : old) {
+            for (Entry e : bucket) {
+                if (keep || !e.removed) {
+                    int i = e.hash & mask;
+                    table[i][counts[i]++] = e;
+                }
+            }
+        }
+        stripe.entries = entries;
+        TABLE.setRelease(stripe, table);
+    }
+
+    // 削除済みのものを除いたバケツ。除くものがなければ同じ配列を返す
+    private static Entry[] live(Entry[] bucket) {
+        int count = 0;
+        for (Entry e : bucket) {
+            if (!e.removed) {
+                count++;
+            }
+        }
+        if (count == bucket.length) {
+            return bucket;
+        }
+        Entry[] kept = count == 0 ? EMPTY : new Entry[count];
+        int j = 0;
+        for (Entry e : bucket) {
+            if (!e.removed) {
+                kept[j++] = e;
+            }
+        }
+        return kept;
+    }
+
+    // ========== スナップショット ==========
+
+    // 呼んだ時点の全員の年齢を写す。書き込みと並行して呼べて、書き込みを止めない。
+    // 写している間に済んだ書き込みは、clock の値で前後を決めて、後のものは含めない
+    public Snapshot snapshot() {
+        openSnapshots.incrementAndGet();
+        try {
+            long at = clock.incrementAndGet();
+            List<String> names = new ArrayList<>();
+            IntList ages = new IntList();
+            for (Stripe stripe : stripes) {
+                // at より前の時刻を読んだ書き込みが途中なら、それが終わるまで待つ（後から始まる書き込みは at 以降の時刻になる）
+                for (int spins = 0; ((int) STRIPE_SEQ.getVolatile(stripe) & 1) != 0; spins++) {
+                    if (spins < 64) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                Entry[][] table = (Entry[][]) TABLE.getAcquire(stripe);
+                for (int i = 0; i < table.length; i++) {
+                    for (Entry e : (Entry[]) BUCKET.getAcquire(table, i)) {
+                        copy(e, at, names, ages);
+                    }
+                }
+            }
+            return new Snapshot(names.toArray(new String[0]), ages.toArray());
+        } finally {
+            openSnapshots.decrementAndGet();
+        }
+    }
+
+    // 時刻 at の時点の値を写す。書きかけ（seq が奇数か、読んでいる間に変わった）なら読み直す
+    private static void copy(Entry e, long at, List<String> names, IntList ages) {
+        while (true) {
+            int seq = (int) ENTRY_SEQ.getAcquire(e);
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long stamp = e.stamp;
+            int age = e.age;
+            boolean removed = e.removed;
+            Version history = e.history;
+            VarHandle.loadLoadFence();
+            if ((int) ENTRY_SEQ.getOpaque(e) != seq) {
+                continue;
+            }
+            if (stamp >= at) {
+                while (history != null && history.stamp() >= at) {
+                    history = history.older();
+                }
+                if (history == null) {
+                    return;    // at の後で登録された
+                }
+                age = history.age();
+                removed = history.removed();
+            }
+            if (!removed) {
+                names.add(e.name);
+                ages.add(age);
+            }
+            return;
+        }
+    }
+
+    // 写した名前と年齢。並びは決まっていない
+    public static final class Snapshot implements Iterable<Person> {
+        private final String[] names;
+        private final int[] ages;
+
+        private Snapshot(String[] names, int[] ages) {
+            this.names = names;
+            this.ages = ages;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public void forEach(ObjIntConsumer<String> action) {
+            for (int i = 0; i < names.length; i++) {
+                action.accept(names[i], ages[i]);
+            }
+        }
+
+        // 写しから作った Person を返す（書き換えても登録簿には影響しない）
+        @Override
+        public Iterator<Person> iterator() {
+            return new Iterator<>() {
+                int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < names.length;
+                }
+
+                @Override
+                public Person next() {
+                    if (next >= names.length) {
+                        throw new NoSuchElementException();
+                    }
+                    Person person = new Person(names[next], ages[next]);
+                    next++;
+                    return person;
+                }
+            };
+        }
+    }
+}
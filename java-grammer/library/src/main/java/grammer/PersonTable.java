@@ -0,0 +1,151 @@
+package grammer;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Person を列ごとに持つ表（列指向ストア）
+ *
+ * List<Person> は1行ごとに Person・String のオブジェクトを持つが、PersonTable は
+ * 年齢を int[]、名前を「辞書の番号」の int[] として持つ。同じ名前は辞書に1回だけ入る。
+ * 「年齢が N より大きい人の数・平均」のような集計は int[] を先頭から読むだけで済み、
+ * 大きな表では範囲を分けて並列にも計算できる。
+ */
+public class PersonTable {
+
+    // 並列集計で1タスクが受け持つ行数
+    static final int CHUNK_ROWS = 1 << 16;
+
+    private int[] ages = new int[16];
+    private int[] nameIds = new int[16];
+    private int size;
+
+    // 名前の辞書（番号 → 名前、名前 → 番号）
+    private final List<String> names = new ArrayList<>();
+    private final ObjectIntMap<String> nameToId = new ObjectIntMap<>();
+
+    // 集計結果
+    public record AgeSummary(long count, long sum) {
+
+        public double average() {
+            return count == 0 ? Double.NaN : (double) sum / count;
+        }
+
+        AgeSummary plus(AgeSummary other) {
+            return new AgeSummary(count + other.count, sum + other.sum);
+        }
+    }
+
+    // ========== 追加・取得 ==========
+
+    public int append(String name, int age) {
+        if (size == ages.length) {
+            int capacity = size + (size >> 1);
+            ages = Arrays.copyOf(ages, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+        }
+        ages[size] = age;
+        nameIds[size] = nameId(name);
+        return size++;
+    }
+
+    public int append(Person person) {
+        return append(person.getName(), person.getAge());
+    }
+
+    private int nameId(String name) {
+        int id = nameToId.getOrDefault(Objects.requireNonNull(name), -1);
+        if (id < 0) {
+            id = names.size();
+            names.add(name);
+            nameToId.put(name, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 辞書に入っている異なる名前の数
+    public int distinctNames() {
+        return names.size();
+    }
+
+    public String name(int row) {
+        return names.get(nameIds[Objects.checkIndex(row, size)]);
+    }
+
+    public int age(int row) {
+        return ages[Objects.checkIndex(row, size)];
+    }
+
+    public void setAge(int row, int age) {
+        ages[Objects.checkIndex(row, size)] = age;
+    }
+
+    // 1行を Person として取り出す（新しいオブジェクトを作る）
+    public Person person(int row) {
+        return new Person(name(row), age(row));
+    }
+
+    // 年齢の列をコピーせずに流す
+    public IntStream ages() {
+        return Arrays.stream(ages, 0, size);
+    }
+
+    // ========== 集計 ==========
+
+    public long countAgeAbove(int threshold) {
+        return summarizeAgeAbove(threshold).count();
+    }
+
+    public double averageAgeAbove(int threshold) {
+        return summarizeAgeAbove(threshold).average();
+    }
+
+    // 年齢が threshold より大きい行の件数と年齢の合計
+    public AgeSummary summarizeAgeAbove(int threshold) {
+        return summarizeAgeAbove(threshold, 0, size);
+    }
+
+    // 範囲を CHUNK_ROWS 行ずつに分けて Fork/Join の共通プールで集計する
+    public AgeSummary parallelSummarizeAgeAbove(int threshold) {
+        int chunks = (size + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        return IntStream.range(0, chunks)
+            .parallel()
+            .mapToObj(i -> summarizeAgeAbove(threshold, i * CHUNK_ROWS, Math.min(size, (i + 1) * CHUNK_ROWS)))
+            .reduce(new AgeSummary(0, 0), AgeSummary::plus);
+    }
+
+    private AgeSummary summarizeAgeAbove(int threshold, int from, int to) {
+        int[] column = ages;
+        long count = 0;
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            int age = column[i];
+            // 分岐を使わずに数えると、条件の当たり外れがランダムでも遅くならない
+            int hit = (int) (((long) threshold - age) >>> 63);  // age > threshold なら 1
+            count += hit;
+            sum += age & -hit;
+        }
+        return new AgeSummary(count, sum);
+    }
+
+    // 名前で絞り込んだ集計。文字列の比較は辞書で1回だけ行い、あとは番号の比較になる
+    public AgeSummary summarizeByName(String name) {
+        int target = nameToId.getOrDefault(name, -1);
+        if (target < 0) {
+            return new AgeSummary(0, 0);
+        }
+        long count = 0;
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            if (nameIds[i] == target) {
+                count++;
+                sum += ages[i];
+            }
+        }
+        return new AgeSummary(count, sum);
+    }
+}
@@ -0,0 +1,369 @@
+package grammer;
+
+import java.util.*;
+
+/**
+ * if-else の段階分けと、文字列の switch を表に変換して、分岐なしで（まとめて）分類する
+ *
+ * JavaGrammar.controlFlow() の
+ *   if (score >= 90) 優秀  else if (score >= 70) 良好  else 要努力
+ *   switch (day) { case "月曜日", "火曜日" -> 週の始まり; case "金曜日" -> 週末前; default -> その他の日 }
+ * と同じ規則を、次のように書く。
+ *
+ *   Rules.Bands grade = Rules.bands("要努力").atLeast(70, "良好").atLeast(90, "優秀").build();
+ *   Rules.Keywords week = Rules.keywords("その他の日")
+ *       .put("週の始まり", "月曜日", "火曜日")
+ *       .put("週末前", "金曜日")
+ *       .build();
+ *
+ *   int category = grade.classify(85);          // カテゴリ番号（0 が「それより下」「どれでもない」）
+ *   grade.label(category);                      // "良好"
+ *   byte[] categories = grade.classify(scores); // int[] をまとめて分類
+ *
+ * 段階分け（Bands）は、しきい値の幅が DENSE_LIMIT 未満なら値 → カテゴリの表（byte[]）を引くだけ
+ * （範囲外の値は両端に寄せる）。幅が広ければ、しきい値を2の累乗の個数に詰めて、回数の決まった二分探索をする
+ * （比較の結果を足すだけなので、条件分岐にならない）。
+ * 文字列（Keywords）は、キーの集合に対して衝突のない（完全な）ハッシュ関数を作っておき、
+ * 1つのスロットを見て、そのキーと equals なら当たり。switch のように hashCode を順に比べることはない
+ * （スロットはキーの数の2倍程度。キーが何千個あっても作れる）。
+ *
+ * カテゴリは最大 256 個（結果を byte で返す）。名前が同じカテゴリは同じ番号になる。
+ */
+public final class Rules {
+
+    static final int DENSE_LIMIT = 1 << 16;  // しきい値の幅がこれ未満なら表にする（最大 64KB）
+    static final int MAX_CATEGORIES = 256;
+
+    private Rules() {
+    }
+
+    // below: 最初のしきい値より小さい値のカテゴリ
+    public static BandsBuilder bands(String below) {
+        return new BandsBuilder(below);
+    }
+
+    // otherwise: どのキーでもない文字列のカテゴリ
+    public static KeywordsBuilder keywords(String otherwise) {
+        return new KeywordsBuilder(otherwise);
+    }
+
+    // ========== 段階分け ==========
+
+    public static final class BandsBuilder {
+        private final Categories categories;
+        private final IntList thresholds = new IntList();
+        private final IntList bandCategories = new IntList();
+
+        private BandsBuilder(String below) {
+            categories = new Categories(below);
+            bandCategories.add(0);
+        }
+
+        // threshold 以上（次のしきい値未満）は label。しきい値は小さい順に足す
+        public BandsBuilder atLeast(int threshold, String label) {
+            if (!thresholds.isEmpty() && threshold <= thresholds.get(thresholds.size() - 1)) {
+                throw new IllegalArgumentException("しきい値は小さい順に足してください: " + threshold);
+            }
+            thresholds.add(threshold);
+            bandCategories.add(categories.id(label));
+            return this;
+        }
+
+        public Bands build() {
+            return new Bands(thresholds.toArray(), bandCategories.toArray(), categories.labels());
+        }
+    }
+
+    public static final class Bands {
+        private final String[] labels;
+
+        // 表（幅が狭いとき）。table[i] は値 low + i のカテゴリ。low はしきい値の最小 - 1、high は最大
+        private final byte[] table;
+        private final int low;
+        private final int high;
+
+        // 二分探索（幅が広いとき）。しきい値の後ろを Integer.MAX_VALUE で埋めて2の累乗の個数にする
+        private final int[] breakpoints;
+        private final byte[] rankCategory;  // 「値以下のしきい値の個数」→ カテゴリ
+
+        private Bands(int[] thresholds, int[] bandCategories, String[] labels) {
+            this.labels = labels;
+            int k = thresholds.length;
+            if (k > 0 && (long) thresholds[k - 1] - thresholds[0] < DENSE_LIMIT) {
+                low = (int) Math.max(thresholds[0] - 1L, Integer.MIN_VALUE);
+                high = thresholds[k - 1];
+                table = new byte[high - low + 1];
+                int rank = 0;
+                for (int i = 0; i < table.length; i++) {
+                    while (rank < k && thresholds[rank] <= low + (long) i) {
+                        rank++;
+                    }
+                    table[i] = (byte) bandCategories[rank];
+                }
+                breakpoints = null;
+                rankCategory = null;
+            } else {
+                low = 0;
+                high = 0;
+                table = null;
+                breakpoints = new int[Math.max(1, Integer.highestOneBit(k) << 1)];  // k + 1 以上の2の累乗
+                Arrays.fill(breakpoints, Integer.MAX_VALUE);
+                System.arraycopy(thresholds, 0, breakpoints, 0, k);
+                // 埋めた MAX_VALUE も数えてしまう（value が MAX_VALUE のとき）ので、k より後ろもカテゴリ k にする
+                rankCategory = new byte[breakpoints.length];
+                for (int i = 0; i < rankCategory.length; i++) {
+                    rankCategory[i] = (byte) bandCategories[Math.min(i, k)];
+                }
+            }
+        }
+
+        public int classify(int value) {
+            if (table != null) {
+                return table[index(value)] & 0xFF;
+            }
+            return rankCategory[rank(value)] & 0xFF;
+        }
+
+        public byte[] classify(int[] values) {
+            byte[] categories = new byte[values.length];
+            classify(values, categories);
+            return categories;
+        }
+
+        // values を分類して categories に書く（表か二分探索かの分岐はループの外に出す）
+        public void classify(int[] values, byte[] categories) {
+            if (categories.length < values.length) {
+                throw new IllegalArgumentException("categories が短い: " + categories.length + " < " + values.length);
+            }
+            if (table != null) {
+                byte[] table = this.table;
+                for (int i = 0; i < values.length; i++) {
+                    categories[i] = table[index(values[i])];
+                }
+            } else {
+                byte[] rankCategory = this.rankCategory;
+                for (int i = 0; i < values.length; i++) {
+                    categories[i] = rankCategory[rank(values[i])];
+                }
+            }
+        }
+
+        // 範囲外は両端に寄せる（int の Math.min/max は条件付き移動命令になる。high - low は DENSE_LIMIT 以下）
+        private int index(int value) {
+            return Math.min(Math.max(value, low), high) - low;
+        }
+
+        // value 以下のしきい値の個数。比較の結果を足していくだけの二分探索（回数は log2(breakpoints.length)）
+        private int rank(int value) {
+            int[] breakpoints = this.breakpoints;
+            int position = 0;
+            for (int step = breakpoints.length >> 1; step > 0; step >>= 1) {
+                position += breakpoints[position + step - 1] <= value ? step : 0;
+            }
+            return position;
+        }
+
+        public String label(int category) {
+            return labels[category];
+        }
+
+        public int categories() {
+            return labels.length;
+        }
+
+        // 表を引くか（false なら二分探索）
+        boolean dense() {
+            return table != null;
+        }
+    }
+
+    // ========== 文字列 ==========
+
+    public static final class KeywordsBuilder {
+        private final Categories categories;
+        private final Map<String, Integer> keys = new LinkedHashMap<>();
+
+        private KeywordsBuilder(String otherwise) {
+            categories = new Categories(otherwise);
+        }
+
+        // keys のどれかと等しい文字列は label
+        public KeywordsBuilder put(String label, String... keys) {
+            int id = categories.id(label);
+            for (String key : keys) {
+                if (this.keys.putIfAbsent(Objects.requireNonNull(key), id) != null) {
+                    throw new IllegalArgumentException("キーが重複しています: " + key);
+                }
+            }
+            return this;
+        }
+
+        public Keywords build() {
+            return new Keywords(keys, categories.labels());
+        }
+    }
+
+    // 完全ハッシュ（hash and displace）：キーをまず バケツ（キー2個に1つ）に分け、バケツごとに
+    // 「ずらし」の値 d を選んで、そのバケツのキーが空いているスロットにだけ入るようにする。
+    // 大きいバケツから順に決めていくので、d はすぐ見つかる。引くときは d を読んで、スロットを1つ見るだけ
+    public static final class Keywords {
+        private static final int MAX_DISPLACEMENT = 1 << 16;
+
+        private final String[] labels;
+        private final String[] slots;          // スロット → キー（空きは null）
+        private final byte[] slotCategory;     // スロット → カテゴリ（空きは 0）
+        private final int[] displacements;     // バケツ → d
+        private final int bucketShift;
+        private final int slotShift;
+        private final boolean byChars;         // hashCode が同じキーがあるときは、文字から作ったハッシュを使う
+
+        private Keywords(Map<String, Integer> keys, String[] labels) {
+            this.labels = labels;
+            byChars = keys.keySet().stream().mapToInt(String::hashCode).distinct().count() < keys.size();
+            int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, keys.size()) - 1);  // 2^bits >= キーの数
+            bucketShift = 32 - Math.max(1, bits - 1);
+            displacements = new int[1 << (32 - bucketShift)];
+            // スロットはキーの数の2倍以上。ずらしが見つからないバケツがあれば倍にする
+            String[] slots = null;
+            int slotBits = bits;
+            do {
+                if (++slotBits > 30) {
+                    throw new IllegalStateException("完全ハッシュが見つかりません");
+                }
+                slots = new String[1 << slotBits];
+            } while (!place(keys.keySet(), slots, 32 - slotBits));
+            this.slots = slots;
+            this.slotShift = 32 - slotBits;
+            this.slotCategory = new byte[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null) {
+                    slotCategory[i] = (byte) (int) keys.get(slots[i]);
+                }
+            }
+        }
+
+        private boolean place(Set<String> keys, String[] slots, int slotShift) {
+            List<List<String>> buckets = new ArrayList<>();
+            for (int i = 0; i < displacements.length; i++) {
+                buckets.add(new ArrayList<>());
+            }
+            for (String key : keys) {
+                buckets.get(bucket(hash(key))).add(key);
+            }
+            Integer[] order = new Integer[buckets.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+            int[] candidate = new int[keys.size()];
+            for (int bucket : order) {
+                List<String> members = buckets.get(bucket);
+                if (members.isEmpty()) {
+                    break;
+                }
+                boolean placed = false;
+                for (int d = 0; d < MAX_DISPLACEMENT && !placed; d++) {
+                    placed = true;
+                    for (int i = 0; i < members.size() && placed; i++) {
+                        candidate[i] = slot(hash(members.get(i)), d, slotShift);
+                        placed = slots[candidate[i]] == null;
+                        // 同じバケツのキーどうしも重ならない
+                        for (int j = 0; j < i && placed; j++) {
+                            placed = candidate[j] != candidate[i];
+                        }
+                    }
+                    if (placed) {
+                        displacements[bucket] = d;
+                        for (int i = 0; i < members.size(); i++) {
+                            slots[candidate[i]] = members.get(i);
+                        }
+                    }
+                }
+                if (!placed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int hash(String key) {
+            if (!byChars) {
+                return key.hashCode();  // String が覚えているので、2回目からは計算しない
+            }
+            int h = 0x811C9DC5;
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x01000193;
+            }
+            return h;
+        }
+
+        private int bucket(int hash) {
+            return (hash * 0x9E3779B9) >>> bucketShift;
+        }
+
+        private static int slot(int hash, int displacement, int slotShift) {
+            int x = hash * 0x85EBCA6B + displacement * 0x9E3779B9;
+            x ^= x >>> 15;
+            x *= 0x2C1B3C6D;
+            return x >>> slotShift;
+        }
+
+        public int classify(String key) {
+            int h = hash(key);
+            int slot = slot(h, displacements[bucket(h)], slotShift);
+            return key.equals(slots[slot]) ? slotCategory[slot] & 0xFF : 0;
+        }
+
+        public byte[] classify(String[] keys) {
+            byte[] categories = new byte[keys.length];
+            classify(keys, categories);
+            return categories;
+        }
+
+        public void classify(String[] keys, byte[] categories) {
+            if (categories.length < keys.length) {
+                throw new IllegalArgumentException("categories が短い: " + categories.length + " < " + keys.length);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                categories[i] = (byte) classify(keys[i]);
+            }
+        }
+
+        public String label(int category) {
+            return labels[category];
+        }
+
+        public int categories() {
+            return labels.length;
+        }
+
+        // スロットの数（完全ハッシュの表の大きさ）
+        int slotCount() {
+            return slots.length;
+        }
+    }
+
+    // ========== カテゴリの名前 → 番号 ==========
+
+    private static final class Categories {
+        private final Map<String, Integer> ids = new LinkedHashMap<>();
+
+        Categories(String first) {
+            id(first);
+        }
+
+        int id(String label) {
+            Integer id = ids.get(Objects.requireNonNull(label));
+            if (id != null) {
+                return id;
+            }
+            if (ids.size() == MAX_CATEGORIES) {
+                throw new IllegalArgumentException("カテゴリは " + MAX_CATEGORIES + " 個まで");
+            }
+            ids.put(label, ids.size());
+            return ids.size() - 1;
+        }
+
+        String[] labels() {
+            return ids.keySet().toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package grammer;
+
+import java.io.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * 互いに関係のない「節」を仮想スレッドで同時に実行し、出力は元の順番で並べる
+ *
+ * JavaGrammar.main のように basics()・operators()… と順に呼ぶだけの処理を、順番を変えずに同時に動かす。
+ * 節の中で System.out に書いたものは節ごとのバッファに貯まり、前の節がすべて出し終わってから出る。
+ * ある節が例外を投げても他の節は最後まで動き、その節の出力の後ろにスタックトレースが出る。
+ *
+ *   Sections.runAndPrint(List.of(
+ *       Sections.section("1. 基本型", JavaGrammar::basics),
+ *       Sections.section("2. 演算子", JavaGrammar::operators)));
+ *
+ * 待ち時間の長い節（ファイル・ネットワーク・sleep）ほど効く。計算だけの節はコアの数までしか速くならない。
+ * 出力を節ごとに分けるため、run・runAndPrint の間だけ System.out を「スレッドごとに書き先を切り替える PrintStream」に
+ * 置き換え、終わったら元に戻す。節の中で作ったスレッド（仮想スレッドを含む）の出力も、その節のバッファに入る。
+ * 共通プールのスレッド（parallel stream など）はどの節の仕事をしているか分からないので、その出力は
+ * 節の出力に混ぜず、すべての節が終わって System.out を戻した後にまとめて出す。
+ * 入れ子（節の中で run を呼ぶ）はよいが、関係のない2つのスレッドから同時に run を呼んではいけない。
+ */
+public final class Sections {
+
+    private Sections() {
+    }
+
+    // 節の中身。例外は Result に記録される
+    public interface Body {
+        void run() throws Exception;
+    }
+
+    public record Section(String name, Body body) {
+    }
+
+    public static Section section(String name, Body body) {
+        return new Section(Objects.requireNonNull(name), Objects.requireNonNull(body));
+    }
+
+    // 節ごとの結果。failure は正常に終わったら null
+    public record Result(String name, String output, Duration elapsed, Throwable failure) {
+
+        public boolean failed() {
+            return failure != null;
+        }
+    }
+
+    // ========== 実行 ==========
+
+    // すべての節を同時に実行し、終わるのを待って元の順番で結果を返す（節の出力は Result に入り、表示しない）
+    public static List<Result> run(List<Section> sections) {
+        return run(sections, result -> { });
+    }
+
+    // すべての節を同時に実行し、前から順に、終わったものから出力する。失敗した節はスタックトレースも出す
+    public static List<Result> runAndPrint(List<Section> sections) {
+        PrintStream out = System.out;
+        return run(sections, result -> {
+            out.print(result.output());
+            if (result.failed()) {
+                out.println("【" + result.name() + "】が失敗しました:");
+                result.failure().printStackTrace(out);
+            }
+            out.flush();
+        });
+    }
+
+    // 1つずつ順に実行する（比較用。出力は run と同じく節ごとに貯める）
+    public static List<Result> runSequentially(List<Section> sections) {
+        List<Result> results = new ArrayList<>();
+        try (Capture capture = Capture.start()) {
+            for (Section section : sections) {
+                results.add(capture.execute(section));
+            }
+        }
+        return results;
+    }
+
+    private static List<Result> run(List<Section> sections, Consumer<Result> done) {
+        List<Result> results = new ArrayList<>();
+        // executor を先に閉じる（すべての節が終わってから System.out を戻す）
+        try (Capture capture = Capture.start();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Result>> futures = new ArrayList<>(sections.size());
+            for (Section section : sections) {
+                futures.add(executor.submit(() -> capture.execute(section)));
+            }
+            for (Future<Result> future : futures) {
+                Result result = join(future);
+                done.accept(result);
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private static Result join(Future<Result> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("節の完了を待っている間に割り込まれました");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());  // execute は例外を投げないので起きない
+        }
+    }
+
+    // ========== 出力の切り替え ==========
+
+    // run の間だけ System.out を差し替え、書いたスレッドの節のバッファに振り分ける。close で元に戻す
+    private static final class Capture implements AutoCloseable {
+        final PrintStream original;
+        final PrintStream stream;
+        // 節を実行しているスレッドと、そこから作ったスレッドの書き先（この Capture の間だけ使う）
+        final InheritableThreadLocal<OutputStream> target = new InheritableThreadLocal<>();
+        // どの節のものでもないスレッド（共通プールなど）の出力。close で元の System.out に出す
+        final ByteArrayOutputStream others = new ByteArrayOutputStream();
+
+        private Capture(PrintStream original) {
+            this.original = original;
+            OutputStream router = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    current().write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    current().write(bytes, offset, length);
+                }
+            };
+            // 1回の print の中身はまとめて write されるので、スレッドの出力が混ざらない
+            this.stream = new PrintStream(router, true, original.charset());
+        }
+
+        static Capture start() {
+            Capture capture = new Capture(System.out);
+            System.setOut(capture.stream);
+            return capture;
+        }
+
+        private OutputStream current() {
+            OutputStream out = target.get();
+            return out != null ? out : others;
+        }
+
+        // 出力を節のバッファに向けて実行する。例外もエラーも Result に入れて返す
+        Result execute(Section section) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            OutputStream previous = target.get();
+            target.set(buffer);
+            Throwable failure = null;
+            long start = System.nanoTime();
+            try {
+                section.body().run();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                Output.stdout().flush();  // Output に貯めたままの分もこの節の出力に入れる
+                target.set(previous);
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            return new Result(section.name(), buffer.toString(original.charset()), elapsed, failure);
+        }
+
+        @Override
+        public void close() {
+            System.setOut(original);
+            byte[] rest = others.toByteArray();
+            original.write(rest, 0, rest.length);
+            original.flush();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package grammer;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * プリミティブ配列とオブジェクト配列のソート
+ *
+ *   radixSort / parallelRadixSort   … int[]・long[] の LSD 基数ソート（8ビットずつ、比較なし）
+ *   sortByKey / parallelSortByKey   … オブジェクトを int のキーで安定ソート（Person を年齢順など）
+ *   parallelTopK / parallelTopKByKey … 全体をソートせずに大きい方から k 個を取り出す
+ *
+ * sortByKey はキーを最初に1回だけ取り出し、「キー << 32 | 元の位置」の long[] を並べ替えてから
+ * オブジェクトを並べ直す。Comparator は1回も呼ばない。元の位置は最初から昇順に並んでいるので、
+ * 安定な基数ソートで上位32ビット（キー）だけを並べればよく、キーの範囲が狭ければパスも減る
+ * （年齢 0〜99 なら1パス）。
+ */
+public class Sorts {
+
+    // これより短い配列は Arrays.sort に任せる（基数ソートは作業用配列と固定の手間がかかる）
+    static final int RADIX_THRESHOLD = 1 << 12;
+    // 並列処理で1タスクが受け持つ要素数の目安
+    static final int PARALLEL_CHUNK = 1 << 16;
+
+    static final int RADIX = 256;
+
+    private Sorts() {
+    }
+
+    // ========== 基数ソート ==========
+
+    public static void radixSort(int[] a) {
+        radixSort(a, 1);
+    }
+
+    public static void parallelRadixSort(int[] a) {
+        radixSort(a, chunkCount(a.length));
+    }
+
+    public static void radixSort(long[] a) {
+        radixSort(a, 1, 0);
+    }
+
+    public static void parallelRadixSort(long[] a) {
+        radixSort(a, chunkCount(a.length), 0);
+    }
+
+    private static int chunkCount(int length) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(1, Math.min(parallelism * 4, length / PARALLEL_CHUNK));
+    }
+
+    // 配列を chunks 個に分けて、各範囲の [from, to) に action を実行する
+    private static void forEachChunk(int length, int chunks, ChunkAction action) {
+        IntConsumer body = c -> action.run(c, (int) ((long) length * c / chunks), (int) ((long) length * (c + 1) / chunks));
+        if (chunks == 1) {
+            body.accept(0);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(body);
+        }
+    }
+
+    private interface ChunkAction {
+        void run(int chunk, int from, int to);
+    }
+
+    // 下位バイトから順に、範囲ごとの度数分布 → 書き込み位置の計算 → 振り分け を繰り返す。
+    // 最上位バイトは符号ビットを反転して、負の数が先に来るようにする
+    private static void radixSort(int[] a, int chunks) {
+        int n = a.length;
+        if (n < RADIX_THRESHOLD) {
+            Arrays.sort(a);
+            return;
+        }
+        int[][] counts = new int[chunks][RADIX];
+        int[] src = a;
+        int[] dst = new int[n];
+        for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+            int flip = shift == Integer.SIZE - 8 ? 0x80 : 0;
+            int s = shift;
+            int[] from = src;
+            int[] to = dst;
+            forEachChunk(n, chunks, (c, lo, hi) -> {
+                int[] count = counts[c];
+                Arrays.fill(count, 0);
+                for (int i = lo; i < hi; i++) {
+                    count[((from[i] >>> s) & 0xFF) ^ flip]++;
+                }
+            });
+            if (toOffsets(counts, n)) {
+                continue;  // 全要素のこのバイトが同じなら並び順は変わらない
+            }
+            forEachChunk(n, chunks, (c, lo, hi) -> {
+                int[] offset = counts[c];
+                for (int i = lo; i < hi; i++) {
+                    int value = from[i];
+                    to[offset[((value >>> s) & 0xFF) ^ flip]++] = value;
+                }
+            });
+            src = to;
+            dst = from;
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, n);
+        }
+    }
+
+    // fromShift より下のビットは見ない（そこは並び順がすでに正しい前提）
+    private static void radixSort(long[] a, int chunks, int fromShift) {
+        int n = a.length;
+        if (n < RADIX_THRESHOLD) {
+            Arrays.sort(a);
+            return;
+        }
+        int[][] counts = new int[chunks][RADIX];
+        long[] src = a;
+        long[] dst = new long[n];
+        for (int shift = fromShift; shift < Long.SIZE; shift += 8) {
+            int flip = shift == Long.SIZE - 8 ? 0x80 : 0;
+            int s = shift;
+            long[] from = src;
+            long[] to = dst;
+            forEachChunk(n, chunks, (c, lo, hi) -> {
+                int[] count = counts[c];
+                Arrays.fill(count, 0);
+                for (int i = lo; i < hi; i++) {
+                    count[(int) ((from[i] >>> s) & 0xFF) ^ flip]++;
+                }
+            });
+            if (toOffsets(counts, n)) {
+                continue;
+            }
+            forEachChunk(n, chunks, (c, lo, hi) -> {
+                int[] offset = counts[c];
+                for (int i = lo; i < hi; i++) {
+                    long value = from[i];
+                    to[offset[(int) ((value >>> s) & 0xFF) ^ flip]++] = value;
+                }
+            });
+            src = to;
+            dst = from;
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, n);
+        }
+    }
+
+    // 範囲ごとの度数 counts[c][d] を、範囲 c が値 d を書き始める位置に置き換える。
+    // 1つの値に全要素が集まっていたら（このパスは不要なので）true
+    private static boolean toOffsets(int[][] counts, int n) {
+        int position = 0;
+        for (int d = 0; d < RADIX; d++) {
+            int total = 0;
+            for (int[] count : counts) {
+                total += count[d];
+            }
+            if (total == n) {
+                return true;
+            }
+            for (int[] count : counts) {
+                int c = count[d];
+                count[d] = position;
+                position += c;
+            }
+        }
+        return false;
+    }
+
+    // ========== キーによるオブジェクトのソート ==========
+
+    // キーの小さい順に安定ソートする
+    public static <T> void sortByKey(T[] items, ToIntFunction<? super T> key) {
+        long[] packed = packKeys(items, key, false);
+        radixSort(packed, 1, Integer.SIZE);
+        reorder(items, packed, false);
+    }
+
+    public static <T> void parallelSortByKey(T[] items, ToIntFunction<? super T> key) {
+        long[] packed = packKeys(items, key, true);
+        radixSort(packed, chunkCount(packed.length), Integer.SIZE);
+        reorder(items, packed, true);
+    }
+
+    // List.sort と同じく、配列にしてから並べて書き戻す
+    @SuppressWarnings("unchecked")
+    public static <T> void parallelSortByKey(List<T> list, ToIntFunction<? super T> key) {
+        T[] items = (T[]) list.toArray();
+        parallelSortByKey(items, key);
+        ListIterator<T> iterator = list.listIterator();
+        for (T item : items) {
+            iterator.next();
+            iterator.set(item);
+        }
+    }
+
+    // 上位32ビットにキー、下位32ビットに元の位置
+    private static <T> long[] packKeys(T[] items, ToIntFunction<? super T> key, boolean parallel) {
+        long[] packed = new long[items.length];
+        IntStream indexes = IntStream.range(0, items.length);
+        (parallel ? indexes.parallel() : indexes)
+            .forEach(i -> packed[i] = (long) key.applyAsInt(items[i]) << 32 | i);
+        return packed;
+    }
+
+    private static <T> void reorder(T[] items, long[] packed, boolean parallel) {
+        T[] original = items.clone();
+        IntStream indexes = IntStream.range(0, items.length);
+        (parallel ? indexes.parallel() : indexes)
+            .forEach(i -> items[i] = original[(int) packed[i]]);
+    }
+
+    // ========== 上位 k 個 ==========
+
+    // 大きい方から k 個を降順で返す。範囲ごとに大きさ k のヒープで候補を絞り、最後に合わせる
+    public static int[] parallelTopK(int[] a, int k) {
+        k = Math.min(Math.max(k, 0), a.length);
+        long[] top = topK(a.length, k, i -> a[i]);
+        int[] result = new int[top.length];
+        for (int i = 0; i < top.length; i++) {
+            result[i] = (int) top[i];
+        }
+        return result;
+    }
+
+    // キーの大きい方から k 個を返す。同じキーなら配列で前にあるものを先にする
+    public static <T> List<T> parallelTopKByKey(T[] items, int k, ToIntFunction<? super T> key) {
+        k = Math.min(Math.max(k, 0), items.length);
+        // 下位ビットに (MAX - 位置) を入れ、同じキーなら前の要素ほど大きくなるようにする
+        long[] top = topK(items.length, k,
+            i -> (long) key.applyAsInt(items[i]) << 32 | (Integer.MAX_VALUE - i));
+        List<T> result = new ArrayList<>(top.length);
+        for (long packed : top) {
+            result.add(items[Integer.MAX_VALUE - (int) packed]);
+        }
+        return result;
+    }
+
+    private interface LongAt {
+        long get(int index);
+    }
+
+    private static long[] topK(int n, int k, LongAt values) {
+        if (k == 0) {
+            return new long[0];
+        }
+        int chunks = Math.max(1, Math.min(chunkCount(n), n / Math.max(k, 1)));
+        LongMinHeap top = IntStream.range(0, chunks).parallel()
+            .mapToObj(c -> {
+                LongMinHeap heap = new LongMinHeap(k);
+                int to = (int) ((long) n * (c + 1) / chunks);
+                for (int i = (int) ((long) n * c / chunks); i < to; i++) {
+                    heap.offer(values.get(i));
+                }
+                return heap;
+            })
+            .reduce(LongMinHeap::merge)
+            .orElseThrow();
+        return top.toDescendingArray();
+    }
+
+    // 大きい方から k 個だけを残す最小ヒープ（根が残っている中で最小）
+    private static final class LongMinHeap {
+        private final long[] heap;
+        private int size;
+
+        LongMinHeap(int capacity) {
+            heap = new long[capacity];
+        }
+
+        void offer(long value) {
+            if (size < heap.length) {
+                int i = size++;
+                while (i > 0 && heap[(i - 1) >>> 1] > value) {
+                    heap[i] = heap[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = value;
+            } else if (value > heap[0]) {
+                siftDown(value);
+            }
+        }
+
+        // 根を value で置き換えて下ろす
+        private void siftDown(long value) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= value) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+
+        LongMinHeap merge(LongMinHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.heap[i]);
+            }
+            return this;
+        }
+
+        long[] toDescendingArray() {
+            long[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+                long t = result[i];
+                result[i] = result[j];
+                result[j] = t;
+            }
+            return result;
+        }
+    }
+}
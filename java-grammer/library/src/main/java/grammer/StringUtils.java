@@ -0,0 +1,172 @@
+package grammer;
+
+/**
+ * 文字列のユーティリティ（StaticExample のユーティリティクラスの例を、大量に呼ぶ場面向けに広げたもの）
+ *
+ * reverse(String) や String.split は呼ぶたびに新しい文字列や配列を作る。
+ * 大量に呼ぶ場面向けに、呼び出し側のバッファに書き込む reverse と、
+ * 部分文字列を作らずに位置（オフセット）だけを返す Splitter も用意している。
+ */
+public final class StringUtils {
+    // ユーティリティクラスは通常すべてstaticにする
+    // オブジェクト生成を防ぐためprivateコンストラクタを使う
+    private StringUtils() {
+        // インスタンス化を防ぐ
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    public static String reverse(String str) {
+        return new StringBuilder(str).reverse().toString();
+    }
+
+    // source を逆順にして target の先頭に書き込み、書き込んだ文字数を返す
+    // サロゲートペア（絵文字などの BMP 外の文字）は2文字で1文字として扱い、順序を崩さない
+    public static int reverse(CharSequence source, char[] target) {
+        int length = source.length();
+        if (target.length < length) {
+            throw new IllegalArgumentException("バッファが足りません: " + target.length + " < " + length);
+        }
+        if (source instanceof String str) {
+            str.getChars(0, length, target, 0);  // 1文字ずつ charAt するより速い一括コピー
+            for (int i = 0, j = length - 1; i < j; i++, j--) {
+                char tmp = target[i];
+                target[i] = target[j];
+                target[j] = tmp;
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                target[length - 1 - i] = source.charAt(i);
+            }
+        }
+        // 逆順にしたことで「下位・上位」の順になったサロゲートペアを元に戻す
+        for (int i = 0; i < length - 1; i++) {
+            if (Character.isLowSurrogate(target[i]) && Character.isHighSurrogate(target[i + 1])) {
+                char low = target[i];
+                target[i] = target[i + 1];
+                target[++i] = low;
+            }
+        }
+        return length;
+    }
+
+    // ========== 分割 ==========
+
+    // 区切り文字で分割した各項目の位置を順に返すカーソル。部分文字列は作らない
+    //
+    //   StringUtils.Splitter splitter = new StringUtils.Splitter();
+    //   splitter.reset("apple,banana,orange", ',');
+    //   while (splitter.next()) {
+    //       ... splitter.start(), splitter.end() ...
+    //   }
+    //
+    // reset() で使い回せるので、1行ごとにオブジェクトを作る必要もない。
+    // String.split と違い、末尾の空の項目も省略せずに返す（"a,b," は "a", "b", "" の3項目）。
+    public static final class Splitter {
+        private CharSequence text;
+        private char delimiter;
+        private CharSequence delimiters;  // 2文字以上の区切りのときだけ使う
+        private int start;
+        private int end;
+        private int next;
+
+        public Splitter() {
+        }
+
+        // 1文字の区切り（高速パス）
+        public Splitter reset(CharSequence text, char delimiter) {
+            this.text = text;
+            this.delimiter = delimiter;
+            this.delimiters = null;
+            this.next = 0;
+            return this;
+        }
+
+        // 任意の長さの区切り（正規表現ではなく、そのままの文字列として探す）
+        public Splitter reset(CharSequence text, CharSequence delimiter) {
+            if (delimiter.length() == 0) {
+                throw new IllegalArgumentException("区切りが空です");
+            }
+            if (delimiter.length() == 1) {
+                return reset(text, delimiter.charAt(0));
+            }
+            this.text = text;
+            this.delimiters = delimiter;
+            this.next = 0;
+            return this;
+        }
+
+        // 次の項目に進む。項目がなければ false
+        public boolean next() {
+            int length = text.length();
+            if (next > length) {
+                return false;
+            }
+            start = next;
+            int found = delimiters == null ? indexOf(start) : indexOfDelimiters(start);
+            if (found < 0) {
+                end = length;
+                next = length + 1;
+            } else {
+                end = found;
+                next = found + (delimiters == null ? 1 : delimiters.length());
+            }
+            return true;
+        }
+
+        private int indexOf(int from) {
+            for (int i = from, length = text.length(); i < length; i++) {
+                if (text.charAt(i) == delimiter) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOfDelimiters(int from) {
+            int last = text.length() - delimiters.length();
+            outer:
+            for (int i = from; i <= last; i++) {
+                for (int j = 0; j < delimiters.length(); j++) {
+                    if (text.charAt(i + j) != delimiters.charAt(j)) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        public int start() {
+            return start;
+        }
+
+        public int end() {
+            return end;
+        }
+
+        public int length() {
+            return end - start;
+        }
+
+        // 現在の項目が expected と等しいか（部分文字列を作らずに比べる）
+        public boolean contentEquals(CharSequence expected) {
+            if (expected.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < expected.length(); i++) {
+                if (text.charAt(start + i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 文字列が必要なときだけ作る
+        public String current() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package grammer;
+
+import jdk.incubator.vector.*;
+
+/**
+ * Vector API（SIMD）で書いた数値カーネル
+ *
+ * JavaGrammar の sumAll / multiply と、lambdaAndStreams() の reduce や
+ * filter → 二乗 → 合計 を、CPU のベクトル命令で複数要素ずつ処理する。
+ * どのカーネルにもスカラー版（scalarXxx）があり、結果はスカラー版と完全に一致する
+ * （整数はオーバーフローも含めて同じ、double の要素ごとの掛け算は丸めも同じ）。
+ *
+ * 実行には incubator モジュールの指定（--add-modules jdk.incubator.vector）が必要。ベンチマークは付けて起動する：
+ *   java -jar benchmarks/target/benchmarks.jar VectorKernelsBenchmark
+ * -Dkernels.scalar=true でスカラー版に切り替えられる（ベンチマークでは -jvmArgsAppend -Dkernels.scalar=true）。
+ */
+public class VectorKernels {
+
+    static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    // レーンが1本しかない環境（ベクトル命令なし）ではスカラー版の方が速い
+    static final boolean VECTORIZED = INTS.length() > 1 && !Boolean.getBoolean("kernels.scalar");
+
+    private VectorKernels() {
+        // インスタンス化を防ぐ
+    }
+
+    // ========== 合計 ==========
+
+    // sumAll と同じく int で足す（オーバーフローしたら折り返す）
+    public static int sum(int[] values) {
+        return VECTORIZED ? vectorSum(values) : scalarSum(values);
+    }
+
+    static int scalarSum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    static int vectorSum(int[] values) {
+        IntVector acc = IntVector.zero(INTS);
+        int i = 0;
+        int bound = INTS.loopBound(values.length);
+        for (; i < bound; i += INTS.length()) {
+            acc = acc.add(IntVector.fromArray(INTS, values, i));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    // 何億件もの int を足すとき用。long に広げてから足すのでオーバーフローしない
+    public static long sumToLong(int[] values) {
+        return VECTORIZED ? vectorSumToLong(values) : scalarSumToLong(values);
+    }
+
+    static long scalarSumToLong(int[] values) {
+        long sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    static long vectorSumToLong(int[] values) {
+        // int のベクトル1本を long のベクトル2本（前半・後半）に広げて足す
+        LongVector acc = LongVector.zero(LONGS);
+        int i = 0;
+        int bound = INTS.loopBound(values.length);
+        for (; i < bound; i += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, i);
+            for (int part = 0; part < INTS.length() / LONGS.length(); part++) {
+                acc = acc.add((LongVector) v.convertShape(VectorOperators.I2L, LONGS, part));
+            }
+        }
+        long sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    // ========== 内積 ==========
+
+    public static int dot(int[] a, int[] b) {
+        checkSameLength(a.length, b.length);
+        return VECTORIZED ? vectorDot(a, b) : scalarDot(a, b);
+    }
+
+    static int scalarDot(int[] a, int[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static int vectorDot(int[] a, int[] b) {
+        IntVector acc = IntVector.zero(INTS);
+        int i = 0;
+        int bound = INTS.loopBound(a.length);
+        for (; i < bound; i += INTS.length()) {
+            IntVector va = IntVector.fromArray(INTS, a, i);
+            IntVector vb = IntVector.fromArray(INTS, b, i);
+            acc = acc.add(va.mul(vb));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    // ========== 要素ごとの掛け算 ==========
+
+    // result[i] = a[i] * b[i]（multiply(int, int) の配列版）
+    public static void multiply(int[] a, int[] b, int[] result) {
+        checkSameLength(a.length, b.length);
+        checkSameLength(a.length, result.length);
+        if (VECTORIZED) {
+            vectorMultiply(a, b, result);
+        } else {
+            scalarMultiply(a, b, result);
+        }
+    }
+
+    static void scalarMultiply(int[] a, int[] b, int[] result) {
+        for (int i = 0; i < a.length; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    static void vectorMultiply(int[] a, int[] b, int[] result) {
+        int i = 0;
+        int bound = INTS.loopBound(a.length);
+        for (; i < bound; i += INTS.length()) {
+            IntVector.fromArray(INTS, a, i).mul(IntVector.fromArray(INTS, b, i)).intoArray(result, i);
+        }
+        for (; i < a.length; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    // result[i] = a[i] * b[i]（multiply(double, double) の配列版）
+    public static void multiply(double[] a, double[] b, double[] result) {
+        checkSameLength(a.length, b.length);
+        checkSameLength(a.length, result.length);
+        if (VECTORIZED) {
+            vectorMultiply(a, b, result);
+        } else {
+            scalarMultiply(a, b, result);
+        }
+    }
+
+    static void scalarMultiply(double[] a, double[] b, double[] result) {
+        for (int i = 0; i < a.length; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    static void vectorMultiply(double[] a, double[] b, double[] result) {
+        int i = 0;
+        int bound = DOUBLES.loopBound(a.length);
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).mul(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(result, i);
+        }
+        for (; i < a.length; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    // ========== filter → 二乗 → 合計 ==========
+
+    // numbers.stream().filter(n -> n > threshold).map(n -> n * n).reduce(0, Integer::sum) を1回の走査で行う
+    public static int sumOfSquaresAbove(int[] values, int threshold) {
+        return VECTORIZED ? vectorSumOfSquaresAbove(values, threshold) : scalarSumOfSquaresAbove(values, threshold);
+    }
+
+    static int scalarSumOfSquaresAbove(int[] values, int threshold) {
+        int sum = 0;
+        for (int value : values) {
+            if (value > threshold) {
+                sum += value * value;
+            }
+        }
+        return sum;
+    }
+
+    // 条件を満たすレーンだけをマスクで足す（分岐しない）
+    static int vectorSumOfSquaresAbove(int[] values, int threshold) {
+        IntVector acc = IntVector.zero(INTS);
+        int i = 0;
+        int bound = INTS.loopBound(values.length);
+        for (; i < bound; i += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, i);
+            VectorMask<Integer> above = v.compare(VectorOperators.GT, threshold);
+            acc = acc.add(v.mul(v), above);
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            if (values[i] > threshold) {
+                sum += values[i] * values[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void checkSameLength(int expected, int actual) {
+        if (expected != actual) {
+            throw new IllegalArgumentException("配列の長さが違います: " + expected + " と " + actual);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package grammer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * AppCDS のアーカイブを作るための練習の実行：入口の main を順に呼ぶ
+ *
+ * 普段の起動で読み込まれるクラスが、ここでもすべて読み込まれる。
+ * startup モジュールの package で -XX:ArchiveClassesAtExit を付けて起動され、終わるときにアーカイブが書かれる。
+ */
+public final class Training {
+
+    static final List<String> ENTRY_POINTS = List.of("JavaGrammar", "ArrayVsList", "StaticExample", "first");
+
+    private Training() {
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        for (String entryPoint : ENTRY_POINTS) {
+            Class<?> type = Class.forName(entryPoint);
+            try {
+                type.getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+            } catch (NoSuchMethodException e) {
+                // first.java のような名前のないクラスは、インスタンスの main()（どちらもパッケージ外からは見えない）
+                Method main = type.getDeclaredMethod("main");
+                main.setAccessible(true);
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                main.invoke(constructor.newInstance());
+            }
+        }
+    }
+}